@@ -1,9 +1,24 @@
 package org.finemop.finemop.maven;
 
 import java.io.File;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.FutureTask;
 
 /**
  * This class is adapted from STARTS's SurefireMojoInterceptor
@@ -15,12 +30,27 @@ import java.util.List;
 
 public final class SurefireMojoInterceptor extends AbstractMojoInterceptor {
     public static final String UNSUPPORTED_SUREFIRE_VERSION_EXCEPTION = "Unsupported surefire version. ";
+    /** AspectJ's list of weaver configuration files to read in place of the ones in the agent jar. */
+    public static final String CONFIGURATION_PROPERTY = "-Dorg.aspectj.weaver.loadtime.configuration=";
     public static Object sfMojo;
+    /** The surefire run of the RPP background phase, when it runs concurrently with the critical phase. */
+    public static FutureTask<Boolean> backgroundRun;
+    private static Object backgroundMojo;
+
+    /** Forgets the background phase once it is done, so that the next build starts its own. */
+    public static void clearBackgroundRun() {
+        backgroundRun = null;
+        backgroundMojo = null;
+    }
 
     /**
      * Method that executes at the very beginning of SurefirePlugin's execute method.
      */
     public static void execute(Object mojo) throws Exception {
+        if (mojo == backgroundMojo) {
+            // the background phase's copy of the mojo, whose arguments are already set up
+            return;
+        }
         sfMojo = mojo;
         String currentArgs = checkSurefireVersion(mojo);
         if (Boolean.getBoolean("exiting-rps")) {
@@ -28,6 +58,11 @@ public final class SurefireMojoInterceptor extends AbstractMojoInterceptor {
         }
         if (Boolean.getBoolean("running-rpp")) {
             manipulateArgs(mojo, currentArgs);
+            if (Boolean.getBoolean("rpp-concurrent-background") && backgroundRun == null) {
+                startBackgroundRun(mojo, currentArgs);
+            }
+        } else if (System.getProperty("monitor-agent-config") != null) {
+            addAgentConfig(mojo, currentArgs);
         }
     }
 
@@ -52,18 +87,142 @@ public final class SurefireMojoInterceptor extends AbstractMojoInterceptor {
 
     }
 
+    /**
+     * Adds the configuration that MonitorMojo generated to the argLine, for the JavaMOP agent to read it in place of
+     * the configuration in its JAR.
+     */
+    private static void addAgentConfig(Object mojo, String currentArgs)
+            throws NoSuchFieldException, IllegalAccessException {
+        String configArg = CONFIGURATION_PROPERTY + System.getProperty("monitor-agent-config");
+        if (currentArgs == null) {
+            setField("argLine", mojo, configArg);
+        } else if (!currentArgs.contains(configArg)) {
+            setField("argLine", mojo, configArg + " " + currentArgs);
+        }
+    }
+
     private static void manipulateArgs(Object mojo, String currentArgs)
             throws NoSuchFieldException, IllegalAccessException {
+        String agentPathString = System.getProperty("rpp-agent");
+        if (agentPathString != null) {
+            setField("argLine", mojo, phaseArgLine(agentPathString, System.getProperty("rpp-agent-config"),
+                    preservedArgs(currentArgs)));
+        }
+    }
+
+    /**
+     * Returns all preexisting arguments besides -javaagent:${previousJavamopAgent}, and besides the configuration of
+     * the previous phase, if the agent was configured with one.
+     */
+    private static String preservedArgs(String currentArgs) {
         String argsToAppend = "";
         if (currentArgs != null) {
-            // we want to preserve all preexisting arguments besides -javaagent:${previousJavamopAgent}
             String previousJavamopAgent = System.getProperty("previous-javamop-agent");
             argsToAppend = currentArgs.replace("-javaagent:" + previousJavamopAgent, "");
+            String previousAgentConfig = System.getProperty("previous-agent-config");
+            if (previousAgentConfig != null) {
+                argsToAppend = argsToAppend.replace(CONFIGURATION_PROPERTY + previousAgentConfig, "");
+            }
         }
-        String agentPathString = System.getProperty("rpp-agent");
-        if (agentPathString != null) {
-            String newArgLine = "-javaagent:" + agentPathString + " " + argsToAppend;
-            setField("argLine", mojo, newArgLine);
+        return argsToAppend;
+    }
+
+    private static String phaseArgLine(String agentPath, String agentConfig, String argsToAppend) {
+        return "-javaagent:" + agentPath + (agentConfig != null ? " " + CONFIGURATION_PROPERTY + agentConfig : "")
+                + " " + argsToAppend;
+    }
+
+    /**
+     * Starts the RPP background phase in a copy of the mojo, which forks its own JVM for the tests while the critical
+     * phase runs. The copy runs the tests in the background directory, where the JavaMOP agent writes its
+     * violation-counts, and writes its reports there, so that neither phase overwrites the files of the other.
+     */
+    private static void startBackgroundRun(Object mojo, String currentArgs) throws Exception {
+        String backgroundAgent = System.getProperty("background-agent");
+        if (backgroundAgent == null || backgroundAgent.isEmpty()) {
+            return;
+        }
+        Object copy = copyMojo(mojo);
+        String cpuArgs = System.getProperty("rpp-background-args", "");
+        setField("argLine", copy, phaseArgLine(backgroundAgent, System.getProperty("background-agent-config"),
+                cpuArgs + " " + preservedArgs(currentArgs)));
+        File backgroundDir = new File(System.getProperty("rpp-background-dir"));
+        backgroundDir.mkdirs();
+        setField("workingDirectory", copy, backgroundDir);
+        setField("reportsDirectory", copy, new File(backgroundDir, "surefire-reports"));
+        // a single test JVM at a time, whatever the forkCount of the critical phase
+        setField("forkCount", copy, "1");
+        backgroundMojo = copy;
+        backgroundRun = new FutureTask<>(() -> {
+            copy.getClass().getMethod("execute").invoke(copy);
+            return true;
+        });
+        Thread thread = new Thread(backgroundRun, "rpp-background-phase");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    /**
+     * Creates a mojo of the same class with the same field values. Arrays, collections, and maps are copied, so that
+     * the mojo of one phase does not see the changes that the other makes to, e.g., its excludes or system properties.
+     * The project is cloned, with its model and properties, which surefire reads to interpolate the argLine. Other
+     * objects are shared, e.g., the session, which surefire only reads for toolchains and command line options.
+     */
+    private static Object copyMojo(Object mojo) throws Exception {
+        Constructor<?> constructor = mojo.getClass().getDeclaredConstructor();
+        constructor.setAccessible(true);
+        Object copy = constructor.newInstance();
+        for (Class<?> clz = mojo.getClass(); clz != null; clz = clz.getSuperclass()) {
+            for (Field field : clz.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers())) {
+                    field.setAccessible(true);
+                    Object value = field.get(mojo);
+                    field.set(copy, field.getName().equals("project") ? cloneProject(value, field.getType())
+                            : copyValue(value, field.getType()));
+                }
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Returns a clone of the MavenProject, which copies its model, or else the project itself.
+     */
+    private static Object cloneProject(Object project, Class<?> type) throws Exception {
+        if (!(project instanceof Cloneable)) {
+            return project;
+        }
+        Object clone = project.getClass().getMethod("clone").invoke(project);
+        return type.isInstance(clone) ? clone : project;
+    }
+
+    /**
+     * Returns a copy of an array, collection, or map that the field type accepts, or else the value itself.
+     */
+    private static Object copyValue(Object value, Class<?> type) {
+        if (value == null) {
+            return null;
+        }
+        Object copy = value;
+        if (value.getClass().isArray()) {
+            copy = Array.newInstance(value.getClass().getComponentType(), Array.getLength(value));
+            System.arraycopy(value, 0, copy, 0, Array.getLength(value));
+        } else if (value instanceof Properties) {
+            Properties properties = new Properties();
+            properties.putAll((Properties) value);
+            copy = properties;
+        } else if (value instanceof SortedSet) {
+            copy = new TreeSet<>((SortedSet<?>) value);
+        } else if (value instanceof Set) {
+            copy = new LinkedHashSet<>((Set<?>) value);
+        } else if (value instanceof Collection) {
+            copy = new ArrayList<>((Collection<?>) value);
+        } else if (value instanceof SortedMap) {
+            copy = new TreeMap<>((SortedMap<?, ?>) value);
+        } else if (value instanceof Map) {
+            copy = new LinkedHashMap<>((Map<?, ?>) value);
         }
+        return type.isInstance(copy) ? copy : value;
     }
 }
@@ -0,0 +1,140 @@
+package org.finemop.finemop.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * The exclude patterns of an agent configuration, with the excluded classes in a trie of their packages. A package
+ * that neither holds nor has subpackages that hold classes to weave is excluded with a single pkg..* wildcard, and the
+ * classes of the other packages by name.
+ *
+ * <p>A wildcard also excludes the library classes in its packages, so it is only put at or below a package that
+ * holds a class of the project, e.g., org.example..* but never org..*, and never above an include pattern, e.g., the
+ * one of surefire for the statistics. The classes of libraries that are woven or excluded, e.g., the ones of the
+ * lib-jars directory, do not make their packages the project's.
+ *
+ * <p>The AspectJ load-time weaver matches the name of every loaded type against its exclude patterns one by one, but
+ * it matches pkg..* and exact names by string comparison, so the fewest of those is the fastest configuration. It
+ * cannot include a class again once an exclude matched it, so a package with a class to weave is never excluded as a
+ * whole. With include patterns, only the classes that they include need excludes.
+ */
+final class ExcludePatterns {
+
+    /**
+     * A package, with its excluded classes, whether it or one of its subpackages holds a class to weave or to exclude,
+     * whether it holds any class of the project, and whether one of its subpackages is included.
+     */
+    private static final class Node {
+        private final Map<String, Node> subpackages = new TreeMap<>();
+        private final Set<String> excluded = new TreeSet<>();
+        private boolean weaves;
+        private boolean excludes;
+        private boolean holdsClasses;
+        private boolean aboveIncludeRoot;
+    }
+
+    private ExcludePatterns() {
+    }
+
+    /**
+     * Returns the exclude patterns, in package order, taking every excluded and woven class as a class of the project.
+     *
+     * @param excludedClasses The classes to not weave
+     * @param wovenClasses The classes to weave
+     * @param includedPackageNames The packages of the include patterns, or null or empty to include everything
+     */
+    static List<String> compress(Set<String> excludedClasses, Set<String> wovenClasses,
+                                 Set<String> includedPackageNames) {
+        return compress(excludedClasses, wovenClasses, null, includedPackageNames);
+    }
+
+    /**
+     * Returns the exclude patterns, in package order.
+     *
+     * @param excludedClasses The classes to not weave
+     * @param wovenClasses The classes to weave
+     * @param projectClasses The classes of the project, which wildcards may be put at, or null if every excluded and
+     *                       woven class is one, e.g., without the classes of libraries
+     * @param includedPackageNames The packages of the include patterns, or null or empty to include everything
+     */
+    static List<String> compress(Set<String> excludedClasses, Set<String> wovenClasses, Set<String> projectClasses,
+                                 Set<String> includedPackageNames) {
+        Node root = new Node();
+        for (String className : excludedClasses) {
+            if (isIncluded(className, includedPackageNames)) {
+                findPackage(root, className, false, projectClasses).excluded.add(className);
+            }
+        }
+        for (String className : wovenClasses) {
+            if (isIncluded(className, includedPackageNames)) {
+                findPackage(root, className, true, projectClasses);
+            }
+        }
+        if (includedPackageNames != null) {
+            for (String packageName : includedPackageNames) {
+                Node node = root;
+                for (String name : packageName.split("\\.")) {
+                    node.aboveIncludeRoot = true;
+                    node = node.subpackages.computeIfAbsent(name, key -> new Node());
+                }
+            }
+        }
+        List<String> patterns = new ArrayList<>();
+        collect(root, "", false, patterns);
+        return patterns;
+    }
+
+    private static boolean isIncluded(String className, Set<String> includedPackageNames) {
+        if (includedPackageNames == null || includedPackageNames.isEmpty()) {
+            return true;
+        }
+        for (String packageName : includedPackageNames) {
+            if (className.startsWith(packageName + ".")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Returns the node of the package of the class, creating the nodes on the way. */
+    private static Node findPackage(Node root, String className, boolean weaves, Set<String> projectClasses) {
+        Node node = root;
+        node.weaves |= weaves;
+        node.excludes |= !weaves;
+        int start = 0;
+        for (int dot = className.indexOf('.'); dot >= 0; dot = className.indexOf('.', start)) {
+            node = node.subpackages.computeIfAbsent(className.substring(start, dot), name -> new Node());
+            node.weaves |= weaves;
+            node.excludes |= !weaves;
+            start = dot + 1;
+        }
+        node.holdsClasses |= projectClasses == null || projectClasses.contains(className);
+        return node;
+    }
+
+    /**
+     * Adds the patterns of the package and its subpackages.
+     *
+     * @param inProject Whether a package above holds a class of the project
+     */
+    private static void collect(Node node, String packageName, boolean inProject, List<String> patterns) {
+        if (!node.excludes) {
+            return;
+        }
+        // The default package has no wildcard of its own, ..* would exclude everything
+        inProject |= node.holdsClasses && !packageName.isEmpty();
+        if (!node.weaves && inProject && !node.aboveIncludeRoot) {
+            patterns.add(packageName + "..*");
+            return;
+        }
+        patterns.addAll(node.excluded);
+        for (Map.Entry<String, Node> subpackage : node.subpackages.entrySet()) {
+            collect(subpackage.getValue(), packageName.isEmpty() ? subpackage.getKey()
+                    : packageName + "." + subpackage.getKey(), inProject, patterns);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package org.finemop.finemop.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * The methods of a file by line, to find the method around a line with a binary search. The lines are split into
+ * segments at the first line of every method and after its last line, and every segment knows its method.
+ *
+ * <p>Line ranges of methods may nest, e.g., the synthetic method of a lambda within the method that declares it in
+ * library bytecode, or overlap, e.g., a constructor whose field initializers are above and below other methods. A
+ * line belongs to the narrowest range around it, and to the first added of equally narrow ranges.
+ */
+final class MethodLineIndex {
+
+    /** First line of every segment, in increasing order. */
+    private final int[] starts;
+    /** Method of every segment, or null for lines outside of all methods. */
+    private final String[] methods;
+
+    /**
+     * @param names  Names of the methods, in the order they were found
+     * @param ranges Line range of every method, as (begin, end)
+     */
+    MethodLineIndex(List<String> names, List<? extends List<Integer>> ranges) {
+        int count = names.size();
+        int[] begins = new int[count];
+        int[] ends = new int[count];
+        for (int i = 0; i < count; i++) {
+            begins[i] = ranges.get(i).get(0);
+            ends[i] = ranges.get(i).get(1);
+        }
+        Integer[] byBegin = new Integer[count];
+        Integer[] byEnd = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            byBegin[i] = i;
+            byEnd[i] = i;
+        }
+        Arrays.sort(byBegin, Comparator.comparingInt(i -> begins[i]));
+        Arrays.sort(byEnd, Comparator.comparingInt(i -> ends[i]));
+
+        // Sweep the boundaries, keeping the ranges around the current line from narrowest to widest
+        TreeSet<Integer> open = new TreeSet<>(Comparator.<Integer>comparingInt(i -> ends[i] - begins[i])
+                .thenComparingInt(i -> i));
+        List<Integer> segmentStarts = new ArrayList<>();
+        List<String> segmentMethods = new ArrayList<>();
+        int nextBegin = 0;
+        int nextEnd = 0;
+        while (nextEnd < count) {
+            int line = nextBegin < count ? Math.min(begins[byBegin[nextBegin]], ends[byEnd[nextEnd]] + 1)
+                    : ends[byEnd[nextEnd]] + 1;
+            while (nextBegin < count && begins[byBegin[nextBegin]] == line) {
+                if (begins[byBegin[nextBegin]] <= ends[byBegin[nextBegin]]) {
+                    open.add(byBegin[nextBegin]);
+                }
+                nextBegin++;
+            }
+            while (nextEnd < count && ends[byEnd[nextEnd]] + 1 == line) {
+                open.remove(byEnd[nextEnd]);
+                nextEnd++;
+            }
+            String method = open.isEmpty() ? null : names.get(open.first());
+            if (segmentMethods.isEmpty() ? method != null
+                    : method == null ? segmentMethods.get(segmentMethods.size() - 1) != null
+                    : !method.equals(segmentMethods.get(segmentMethods.size() - 1))) {
+                segmentStarts.add(line);
+                segmentMethods.add(method);
+            }
+        }
+        starts = new int[segmentStarts.size()];
+        for (int i = 0; i < starts.length; i++) {
+            starts[i] = segmentStarts.get(i);
+        }
+        methods = segmentMethods.toArray(new String[0]);
+    }
+
+    /** Returns the method around the line, or null if there is none. */
+    String getMethod(int line) {
+        int index = Arrays.binarySearch(starts, line);
+        if (index < 0) {
+            // The segment that starts before the line
+            index = -index - 2;
+        }
+        return index < 0 ? null : methods[index];
+    }
+}
@@ -10,6 +10,7 @@ import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.nio.file.NoSuchFileException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -31,10 +32,12 @@ public class MethodsHelper {
 
     /** Map from method name to their line range in the format of (begin, end). */
     private static Map<String, ArrayList<Integer>> methodsToLineNumbers = new HashMap<>();
-    /** Map from a class to the methods it contains. */
-    private static Map<String, ArrayList<String>> classToMethods = new HashMap<>();
+    /** Map from a class to the index of its methods by line. */
+    private static Map<String, MethodLineIndex> classToLineIndex = new HashMap<>();
     /** Set to keep track of files that have been parsed. */
     private static Set<String> cachedFile = new HashSet<>();
+    /** Map from a Java source file to its model, which all the classes it declares share. */
+    private static Map<String, SourceFile> sourceFiles = new HashMap<>();
 
     public static Map<String, ArrayList<Integer>> getMethodsToLineNumbers() {
         return Collections.unmodifiableMap(methodsToLineNumbers);
@@ -69,6 +72,8 @@ public class MethodsHelper {
      * Returns a modified version of methodsToLineNumbers mapping.
      * In the original format, keys are of the format:
      *   /$full_path_to_project/src/test/java/org/example/project/SomeTest.java#method(String,String)
+     * or, for class files of the project or of libraries:
+     *   /$full_path_to_project/target/test-classes/org/example/project/SomeTest.class#method(String,String)
      * This method will return a modified version of the mapping with key in the format of:
      *   org/example/project/SomeTest#method(String,String)
      * in order to match the format of impactedMethods.
@@ -81,7 +86,7 @@ public class MethodsHelper {
             String shortenedKey = entry.getKey();
             if (shortenedKey.contains(".class")) {
                 shortenedKey = shortenedKey
-                        .split("/lib-jars/")[1]
+                        .split("/lib-jars/|/target/classes/|/target/test-classes/", 2)[1]
                         .replace(".class", "");
             } else {
                 shortenedKey = shortenedKey
@@ -119,16 +124,18 @@ public class MethodsHelper {
 
         String tempPath = filePath.replace(".java", "");
         String[] classesNames = tempPath.split("\\$");
-        File file = new File(classesNames[0] + ".java");
-
-        JavaClassSource javaClass = null;
-        try {
-            javaClass = Roaster.parse(JavaClassSource.class, Files.newInputStream(file.toPath()));
-        } catch (NoSuchFileException ex) {
-            System.err.println("File " + filePath + " not found.");
-            return;
+        String sourcePath = classesNames[0] + ".java";
+        SourceFile source = sourceFiles.get(sourcePath);
+        if (source == null) {
+            try {
+                source = new SourceFile(new String(Files.readAllBytes(Paths.get(sourcePath))));
+            } catch (NoSuchFileException ex) {
+                System.err.println("File " + filePath + " not found.");
+                return;
+            }
+            sourceFiles.put(sourcePath, source);
         }
-        String sourceCode = new String(Files.readAllBytes(Paths.get(file.toURI())));
+        JavaClassSource javaClass = source.javaClass;
 
         ArrayList<String> methods = new ArrayList<>();
         for (int i = 1; i < classesNames.length; i++) {
@@ -144,8 +151,8 @@ public class MethodsHelper {
         }
 
         for (MethodSource<?> method : javaClass.getMethods()) {
-            int beginLine = sourceCode.substring(0, method.getStartPosition()).split("\n").length;
-            int endLine = sourceCode.substring(0, method.getEndPosition()).split("\n").length;
+            int beginLine = source.getLine(method.getStartPosition());
+            int endLine = source.getLine(method.getEndPosition());
             ArrayList<Integer> nums = new ArrayList<>();
             nums.add(beginLine);
             nums.add(endLine);
@@ -160,7 +167,7 @@ public class MethodsHelper {
             methodsToLineNumbers.put(filePath + "#" + temp, nums);
 //            System.out.println("methodsToLineNumbers: " + filePath + "#" + temp + " -> " + nums);
         }
-        classToMethods.put(filePath, methods);
+        indexMethods(filePath, methods);
         cachedFile.add(filePath);
     }
 
@@ -222,12 +229,9 @@ public class MethodsHelper {
     /**
      * Returns the name of the method that wraps the given line number in the given
      * file.
-     * The method first retrieves the list of methods in the given file from a
-     * cache.
-     * The method then iterates over the methods and checks if their line numbers
-     * contain the given line number.
-     * If a wrapping method is found, its name is returned. Otherwise, null is
-     * returned.
+     * The method looks the line number up in the index of the methods of the given file,
+     * which the compute methods build. If methods overlap at the line, e.g., a lambda
+     * within the method that declares it, the innermost method is returned.
      *
      * @param filePath The path of the Java source file to be searched.
      * @param lineNum  The line number to be searched for.
@@ -235,14 +239,43 @@ public class MethodsHelper {
      *         found. (Null means there is probably a bug)
      */
     public static String getWrapMethod(String filePath, int lineNum) {
-        ArrayList<String> methods = classToMethods.getOrDefault(filePath, new ArrayList<>());
-        for (String m : methods) {
-            ArrayList<Integer> nums = methodsToLineNumbers.get(filePath + "#" + m);
-            if (nums.get(0) <= lineNum && nums.get(1) >= lineNum) {
-                return m;
-            }
+        MethodLineIndex index = classToLineIndex.get(filePath);
+        return index == null ? null : index.getMethod(lineNum);
+    }
+
+    /** Indexes the line ranges of the methods of a file, which the compute methods have just found. */
+    private static void indexMethods(String filePath, ArrayList<String> methods) {
+        ArrayList<ArrayList<Integer>> ranges = new ArrayList<>();
+        for (String method : methods) {
+            ranges.add(methodsToLineNumbers.get(filePath + "#" + method));
+        }
+        classToLineIndex.put(filePath, new MethodLineIndex(methods, ranges));
+    }
+
+    /**
+     * Same as computeMethodToLineNumbersLibrary, but takes the line ranges of the methods of the class file
+     * from the line number tables that the method graph scan already read, instead of reading the file again.
+     *
+     * @param filePath    The path of the class file.
+     * @param methodLines The first and last line of every method, keyed by name and descriptor.
+     */
+    public static void computeMethodToLineNumbers(String filePath, Map<String, int[]> methodLines) {
+        if (cachedFile.contains(filePath)) {
+            return;
+        }
+
+        ArrayList<String> methods = new ArrayList<>();
+        for (Map.Entry<String, int[]> entry : methodLines.entrySet()) {
+            ArrayList<Integer> nums = new ArrayList<>();
+            nums.add(entry.getValue()[0]);
+            nums.add(entry.getValue()[1]);
+
+            String method = convertAsmToJava(entry.getKey());
+            methods.add(method);
+            methodsToLineNumbers.put(filePath + "#" + method, nums);
         }
-        return null;
+        indexMethods(filePath, methods);
+        cachedFile.add(filePath);
     }
 
     public static void computeMethodToLineNumbersLibrary(String filePath) throws IOException {
@@ -294,7 +327,48 @@ public class MethodsHelper {
 
             classReader.accept(classVisitor, 0);
         }
-        classToMethods.put(filePath, methods);
+        indexMethods(filePath, methods);
         cachedFile.add(filePath);
     }
+
+    /** A parsed Java source file, with the offsets of its newlines to turn positions in the source into lines. */
+    private static final class SourceFile {
+
+        private final String sourceCode;
+        private final JavaClassSource javaClass;
+        private final int[] newlines;
+
+        private SourceFile(String sourceCode) {
+            this.sourceCode = sourceCode;
+            javaClass = Roaster.parse(JavaClassSource.class, sourceCode);
+            int count = 0;
+            for (int i = 0; i < sourceCode.length(); i++) {
+                if (sourceCode.charAt(i) == '\n') {
+                    count++;
+                }
+            }
+            newlines = new int[count];
+            for (int i = 0, j = 0; i < sourceCode.length(); i++) {
+                if (sourceCode.charAt(i) == '\n') {
+                    newlines[j++] = i;
+                }
+            }
+        }
+
+        /**
+         * Returns the line of the last character before the position that is not a newline, which is the number of
+         * lines that sourceCode.substring(0, position).split("\n") returns.
+         */
+        private int getLine(int position) {
+            int last = position - 1;
+            while (last >= 0 && sourceCode.charAt(last) == '\n') {
+                last--;
+            }
+            if (last < 0) {
+                return position == 0 ? 1 : 0;
+            }
+            // The line of a character is one more than the number of newlines before it
+            return -Arrays.binarySearch(newlines, last);
+        }
+    }
 }
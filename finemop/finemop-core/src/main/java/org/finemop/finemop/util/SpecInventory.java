@@ -0,0 +1,206 @@
+package org.finemop.finemop.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * The specs of JavaMOP agent JARs, held in memory for the rest of the build, and in the artifacts directory for later
+ * builds. An inventory stays valid while its JAR has the same central directory, which holds the names and CRC-32
+ * checksums of all files in the JAR. Within a build, an inventory is reused without reading the JAR while the JAR has
+ * the same size and modification time.
+ */
+final class SpecInventory {
+
+    static final String FILE_NAME = "spec-inventory.bin";
+
+    private static final Map<String, Entry> INVENTORIES = new ConcurrentHashMap<>();
+
+    /** Length of the end of central directory record without the comment. */
+    private static final int END_LENGTH = 22;
+
+    private static final class Entry implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final long size;
+        private final long lastModified;
+        private final long fingerprint;
+        private final Set<String> specs;
+
+        private Entry(long size, long lastModified, long fingerprint, Set<String> specs) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.fingerprint = fingerprint;
+            this.specs = specs;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Entry)) {
+                return false;
+            }
+            Entry entry = (Entry) other;
+            return size == entry.size && lastModified == entry.lastModified && fingerprint == entry.fingerprint
+                    && specs.equals(entry.specs);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(size, lastModified, fingerprint, specs);
+        }
+    }
+
+    private SpecInventory() {
+    }
+
+    /**
+     * Returns the specs of the JAR, from the inventory if it is still valid, or else from the loader.
+     *
+     * @param jarPath Path to the JAR file
+     * @param kind What the loader reads from the JAR, to keep the inventories of different loaders apart
+     * @param artifactsDir The directory to keep the inventories in for later builds, or null to only keep them in memory
+     * @param loader Reads the specs from the JAR, or returns null if it cannot, so that no inventory is kept
+     * @return A new set, which the caller may change
+     */
+    static Set<String> get(String jarPath, String kind, String artifactsDir, Supplier<Set<String>> loader) {
+        File jar = new File(jarPath);
+        String key = kind + "!" + jar.getAbsolutePath();
+        long size = jar.length();
+        long lastModified = jar.lastModified();
+        Entry entry = INVENTORIES.get(key);
+        if (entry != null && entry.size == size && entry.lastModified == lastModified) {
+            return new HashSet<>(entry.specs);
+        }
+
+        long fingerprint = fingerprint(jar);
+        if (fingerprint < 0) {
+            // Not a JAR that can be read, which the loader reports
+            return load(loader);
+        }
+        Map<String, Entry> persisted = artifactsDir != null ? read(artifactsDir) : new HashMap<>();
+        Entry persistedEntry = persisted.get(key);
+        if (entry == null) {
+            entry = persistedEntry;
+        }
+        if (entry == null || entry.fingerprint != fingerprint) {
+            Set<String> specs = loader.get();
+            if (specs == null) {
+                return new HashSet<>();
+            }
+            entry = new Entry(size, lastModified, fingerprint, new HashSet<>(specs));
+        } else {
+            entry = new Entry(size, lastModified, fingerprint, entry.specs);
+        }
+        INVENTORIES.put(key, entry);
+        if (artifactsDir != null && !entry.equals(persistedEntry)) {
+            persisted.put(key, entry);
+            write(artifactsDir, persisted);
+        }
+        return new HashSet<>(entry.specs);
+    }
+
+    /** Returns the specs from the loader, or an empty set if it cannot read them. */
+    private static Set<String> load(Supplier<Set<String>> loader) {
+        Set<String> specs = loader.get();
+        return specs != null ? specs : new HashSet<>();
+    }
+
+    /** Forgets the inventories in memory, as a new build would. */
+    static void clear() {
+        INVENTORIES.clear();
+    }
+
+    /**
+     * Returns the CRC-32 checksum of the central directory of the JAR, or -1 if there is none that can be read, e.g.,
+     * if the JAR does not exist.
+     */
+    private static long fingerprint(File jar) {
+        try (RandomAccessFile file = new RandomAccessFile(jar, "r")) {
+            long length = file.length();
+            // The end of central directory record is last, followed by a comment of up to 65535 bytes
+            int tailLength = (int) Math.min(length, END_LENGTH + 0xFFFF);
+            byte[] tail = new byte[tailLength];
+            file.seek(length - tailLength);
+            file.readFully(tail);
+            for (int i = tailLength - END_LENGTH; i >= 0; i--) {
+                if (tail[i] == 'P' && tail[i + 1] == 'K' && tail[i + 2] == 5 && tail[i + 3] == 6) {
+                    long directorySize = readInt(tail, i + 12);
+                    long directoryOffset = readInt(tail, i + 16);
+                    if (directoryOffset + directorySize > length) {
+                        return -1;
+                    }
+                    CRC32 crc = new CRC32();
+                    byte[] buffer = new byte[8192];
+                    file.seek(directoryOffset);
+                    for (long remaining = directorySize; remaining > 0; ) {
+                        int read = file.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                        if (read < 0) {
+                            return -1;
+                        }
+                        crc.update(buffer, 0, read);
+                        remaining -= read;
+                    }
+                    return crc.getValue();
+                }
+            }
+        } catch (IOException ex) {
+            return -1;
+        }
+        return -1;
+    }
+
+    /** Reads an unsigned little-endian int, as ZIP files store them. */
+    private static long readInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFFL) | (bytes[offset + 1] & 0xFFL) << 8 | (bytes[offset + 2] & 0xFFL) << 16
+                | (bytes[offset + 3] & 0xFFL) << 24;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Entry> read(String artifactsDir) {
+        File file = new File(artifactsDir, FILE_NAME);
+        if (file.exists()) {
+            try (ObjectInputStream input = new ObjectInputStream(new FileInputStream(file))) {
+                return (Map<String, Entry>) input.readObject();
+            } catch (IOException | ClassNotFoundException | ClassCastException ex) {
+                // An inventory of another version, which is read from the JARs again
+            }
+        }
+        return new HashMap<>();
+    }
+
+    /** Writes the inventories to a temporary file, and moves that over the previous inventories. */
+    private static void write(String artifactsDir, Map<String, Entry> inventories) {
+        Path dir = Paths.get(artifactsDir);
+        Path temp = null;
+        try {
+            Files.createDirectories(dir);
+            temp = Files.createTempFile(dir, FILE_NAME, ".tmp");
+            try (ObjectOutputStream output = new ObjectOutputStream(Files.newOutputStream(temp))) {
+                output.writeObject(inventories);
+            }
+            Files.move(temp, dir.resolve(FILE_NAME), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            ex.printStackTrace();
+            if (temp != null) {
+                temp.toFile().delete();
+            }
+        }
+    }
+}
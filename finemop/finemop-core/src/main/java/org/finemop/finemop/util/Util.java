@@ -13,6 +13,7 @@ import java.lang.reflect.Field;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URL;
+import java.net.URLConnection;
 import java.nio.file.FileSystem;
 import java.nio.file.FileSystems;
 import java.nio.file.FileVisitResult;
@@ -24,11 +25,13 @@ import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -98,6 +101,24 @@ public class Util {
      * @return A set that contains all specs used in the JavaMOP agent.
      */
     public static Set<String> getFullSpecSet(String jarPath, String pathInJar) {
+        return getFullSpecSet(jarPath, pathInJar, null);
+    }
+
+    /**
+     * Obtains a set of all the specifications in a JavaMOP agent jar, reading the jar only if it changed since the
+     * last time.
+     *
+     * @param jarPath Path to the .jar file
+     * @param pathInJar Path in the .jar file that contains all the specifications
+     * @param artifactsDir The directory to keep the specifications of the jar in for later builds, or null
+     * @return A set that contains all specs used in the JavaMOP agent.
+     */
+    public static Set<String> getFullSpecSet(String jarPath, String pathInJar, String artifactsDir) {
+        return SpecInventory.get(jarPath, pathInJar, artifactsDir, () -> listSpecs(jarPath, pathInJar));
+    }
+
+    /** Lists the specs in the jar, or returns null if the jar cannot be read. */
+    private static Set<String> listSpecs(String jarPath, String pathInJar) {
         URI jarFile = URI.create("jar:file:" + jarPath);
         try (FileSystem jarfs = FileSystems.newFileSystem(jarFile, new HashMap<String, String>())) {
             Path pathInJarFile = jarfs.getPath(pathInJar);
@@ -115,8 +136,8 @@ public class Util {
             }
         } catch (IOException ex) {
             ex.printStackTrace();
+            return null;
         }
-        return new HashSet<>();
     }
 
     /**
@@ -127,6 +148,23 @@ public class Util {
      * @return a set of all specifications that are built into the specified jar.
      */
     public static Set<String> retrieveSpecListFromJar(String jarPath, Log log) {
+        return retrieveSpecListFromJar(jarPath, log, null);
+    }
+
+    /**
+     * Retrieve a set of all specifications that are built into the specified jar, reading the jar only if it changed
+     * since the last time.
+     *
+     * @param jarPath Path to the jar file.
+     * @param log The log object.
+     * @param artifactsDir The directory to keep the specifications of the jar in for later builds, or null.
+     * @return a set of all specifications that are built into the specified jar.
+     */
+    public static Set<String> retrieveSpecListFromJar(String jarPath, Log log, String artifactsDir) {
+        return SpecInventory.get(jarPath, "specs.txt", artifactsDir, () -> readSpecList(jarPath, log));
+    }
+
+    private static Set<String> readSpecList(String jarPath, Log log) {
         // Assume that the jar contains a specs.txt.
         Set<String> specs = new HashSet<>();
         URL specsFileInJar = null;
@@ -137,9 +175,14 @@ public class Util {
             log.error("Please rebuild the JavaMOP agent using the provided script.");
             System.exit(1);
         }
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(specsFileInJar.openStream()))) {
-            while (reader.ready()) {
-                specs.add(reader.readLine());
+        try {
+            // The cached jar of an earlier read would still have the specs.txt of before the jar changed
+            URLConnection connection = specsFileInJar.openConnection();
+            connection.setUseCaches(false);
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream()))) {
+                while (reader.ready()) {
+                    specs.add(reader.readLine());
+                }
             }
         } catch (IOException ex) {
             log.error("An I/O error occurred while reading the JavaMOP agent's specs.txt.");
@@ -215,6 +258,70 @@ public class Util {
                                                          Set<String> excludedClasses,
                                                          boolean enableStats,
                                                          boolean verboseAgent) {
+        generateNewAgentConfigurationFile(agentConfigurationPath, specsToMonitor, includedPackageNames,
+                excludedClasses, enableStats, verboseAgent, null);
+    }
+
+    /**
+     * Generates a new agent configuration file, usually, aop-ajc.xml, which excludes the classes in packages
+     * without classes to instrument with one wildcard per package, instead of one exclude per class.
+     *
+     * @param agentConfigurationPath The path to store the new agent configuration file in
+     * @param specsToMonitor The set of specs to instrument
+     * @param includedPackageNames The set of the client program's package names to instrument
+     * @param excludedClasses The set of client program's classes to NOT instrument
+     * @param enableStats Decides whether to enable statistics or not
+     * @param verboseAgent Decides whether to show weave info or not
+     * @param instrumentedClasses The set of client program's classes to instrument, or null to exclude each class of
+     *                            excludedClasses by name
+     */
+    public static void generateNewAgentConfigurationFile(String agentConfigurationPath,
+                                                         Set<String> specsToMonitor,
+                                                         Set<String> includedPackageNames,
+                                                         Set<String> excludedClasses,
+                                                         boolean enableStats,
+                                                         boolean verboseAgent,
+                                                         Set<String> instrumentedClasses) {
+        generateNewAgentConfigurationFile(agentConfigurationPath, specsToMonitor, includedPackageNames,
+                excludedClasses, enableStats, verboseAgent, instrumentedClasses, null);
+    }
+
+    /**
+     * Generates a new agent configuration file, usually, aop-ajc.xml, which excludes the classes in packages
+     * without classes to instrument with one wildcard per package, instead of one exclude per class. Wildcards are
+     * only put at or below the packages of the project's own classes.
+     *
+     * @param agentConfigurationPath The path to store the new agent configuration file in
+     * @param specsToMonitor The set of specs to instrument
+     * @param includedPackageNames The set of the client program's package names to instrument
+     * @param excludedClasses The set of client program's classes to NOT instrument
+     * @param enableStats Decides whether to enable statistics or not
+     * @param verboseAgent Decides whether to show weave info or not
+     * @param instrumentedClasses The set of client program's classes to instrument, or null to exclude each class of
+     *                            excludedClasses by name
+     * @param projectClasses The classes of the classes and test-classes directories, or null if all the excluded
+     *                       and instrumented classes are
+     */
+    public static void generateNewAgentConfigurationFile(String agentConfigurationPath,
+                                                         Set<String> specsToMonitor,
+                                                         Set<String> includedPackageNames,
+                                                         Set<String> excludedClasses,
+                                                         boolean enableStats,
+                                                         boolean verboseAgent,
+                                                         Set<String> instrumentedClasses,
+                                                         Set<String> projectClasses) {
+        List<String> includePatterns = new ArrayList<>();
+        if (includedPackageNames != null) {
+            includePatterns.addAll(includedPackageNames);
+            if (enableStats && !includedPackageNames.isEmpty()) {
+                includePatterns.add("org.apache.maven.surefire");
+            }
+        }
+        Collection<String> excludePatterns = excludedClasses;
+        if (excludedClasses != null && instrumentedClasses != null) {
+            excludePatterns = ExcludePatterns.compress(excludedClasses, instrumentedClasses, projectClasses,
+                    new HashSet<>(includePatterns));
+        }
         try (PrintWriter writer = new PrintWriter(agentConfigurationPath)) {
             // Write header
             writer.println("<aspectj>");
@@ -230,16 +337,11 @@ public class Util {
             } else {
                 writer.println("<weaver options=\"-nowarn -Xlint:ignore\">");
             }
-            if (includedPackageNames != null) {
-                for (String packageName : includedPackageNames) {
-                    writer.println("<include within=\"" + packageName + "..*\"/>");
-                }
-                if (enableStats && !includedPackageNames.isEmpty()) {
-                    writer.println("<include within=\"org.apache.maven.surefire..*\"/>");
-                }
+            for (String packageName : includePatterns) {
+                writer.println("<include within=\"" + packageName + "..*\"/>");
             }
-            if (excludedClasses != null) {
-                for (String nonAffectedClass : excludedClasses) {
+            if (excludePatterns != null) {
+                for (String nonAffectedClass : excludePatterns) {
                     writer.println("<exclude within=\"" + nonAffectedClass + "\"/>");
                 }
             }
@@ -268,9 +370,33 @@ public class Util {
                                              boolean includeNonAffected,
                                              boolean finerInstrumentationAlt,
                                              Set<String> packageNames) {
+        generateNewBaseAspect(outputPath, baseRV, includeLibraries, includeNonAffected, finerInstrumentationAlt,
+                packageNames, null);
+    }
+
+    /**
+     * Generate a new BaseAspect.aj file
+     * @param outputPath Output path of the new BaseAspect.aj file.
+     * @param baseRV Set true to revert to base RV, false to use finer instrumentation.
+     * @param includeLibraries Whether to include joinpoints in library or not.
+     * @param includeNonAffected Whether to include nonAffected or not.
+     * @param finerInstrumentationAlt Whether to use the alternative implementation of finer instrumentation or not.
+     *                                Effective only when finerInstrumentation is also true.
+     * @param packageNames Package names of files in the project.
+     * @param impactedMethods Impacted methods (as pkg.Class#method) and classes (as pkg.Class) to restrict the
+     *                        pointcut to when the aspect is woven, or null to check every join point against the
+     *                        impacted methods file at runtime. Overrides finerInstrumentationAlt.
+     */
+    public static void generateNewBaseAspect(String outputPath,
+                                             boolean baseRV,
+                                             boolean includeLibraries,
+                                             boolean includeNonAffected,
+                                             boolean finerInstrumentationAlt,
+                                             Set<String> packageNames,
+                                             Set<String> impactedMethods) {
         try (PrintWriter writer = new PrintWriter(outputPath)) {
             writer.println("package mop;");
-            if (!baseRV && !includeNonAffected) {
+            if (!baseRV && !includeNonAffected && impactedMethods == null) {
                 writer.println("import java.io.File;");
                 writer.println("import java.io.FileInputStream;");
                 writer.println("import java.io.ObjectInputStream;");
@@ -278,14 +404,28 @@ public class Util {
                 writer.println("import java.io.IOException;");
                 writer.println("import java.util.HashMap;");
                 writer.println("import java.util.HashSet;");
+                writer.println("import java.util.concurrent.ConcurrentHashMap;");
                 writer.println("import org.aspectj.lang.JoinPoint;");
             }
             writer.println("public aspect BaseAspect {");
-            if (!baseRV && !includeNonAffected) {
+            if (!baseRV && !includeNonAffected && impactedMethods == null) {
+                // The decision only depends on the static part, which ajc creates once per join point shadow and
+                // which has identity equality, so it is computed once per shadow and then looked up without
+                // building any string. The map is concurrent because monitored tests may run in many threads.
+                writer.println("private static final ConcurrentHashMap<JoinPoint.StaticPart, Boolean> decisions");
+                writer.println("        = new ConcurrentHashMap<JoinPoint.StaticPart, Boolean>();");
+                writer.println("public static boolean inSet(JoinPoint.StaticPart joinPoint) {");
+                writer.println("    Boolean decision = decisions.get(joinPoint);");
+                writer.println("    if (decision == null) {");
+                writer.println("        decision = computeInSet(joinPoint);");
+                writer.println("        decisions.put(joinPoint, decision);");
+                writer.println("    }");
+                writer.println("    return decision;");
+                writer.println("}");
                 if (finerInstrumentationAlt) {
                     writer.println("private static HashMap<String, HashSet<Integer>> classToImpactedLineNumbers;");
                     writer.println("private static boolean baseRV = false;");
-                    writer.println("public static boolean inSet(JoinPoint.StaticPart joinPoint) {");
+                    writer.println("private static boolean computeInSet(JoinPoint.StaticPart joinPoint) {");
                     writer.println("    if (baseRV) {");
                     writer.println("        return baseRV;");
                     writer.println("    }");
@@ -320,7 +460,7 @@ public class Util {
                 } else {
                     writer.println("private static HashSet<String> affectedMethods;");
                     writer.println("private static boolean baseRV = false;");
-                    writer.println("public static boolean inSet(JoinPoint.StaticPart contextJoinPoint) {");
+                    writer.println("private static boolean computeInSet(JoinPoint.StaticPart contextJoinPoint) {");
                     writer.println("    if (baseRV) {");
                     writer.println("        return baseRV;");
                     writer.println("    }");
@@ -379,22 +519,22 @@ public class Util {
                 writer.println("  !within(org.jmock..*);");
             } else {
                 writer.println("  !within(org.jmock..*) &&");
+                String filter;
+                if (impactedMethods != null) {
+                    filter = toWithinPointcut(impactedMethods);
+                } else if (finerInstrumentationAlt) {
+                    filter = "if(inSet(thisJoinPointStaticPart))";
+                } else {
+                    filter = "if(inSet(thisEnclosingJoinPointStaticPart))";
+                }
                 if (includeLibraries) {
-                    if (finerInstrumentationAlt) {
-                        writer.println("(if(inSet(thisJoinPointStaticPart))");
-                    } else {
-                        writer.println("(if(inSet(thisEnclosingJoinPointStaticPart))");
-                    }
+                    writer.println("(" + filter);
                     for (String packageName : packageNames) {
                         writer.print(" || !within(" + packageName + "..*)");
                     }
                     writer.println(");");
                 } else {
-                    if (finerInstrumentationAlt) {
-                        writer.println("if(inSet(thisJoinPointStaticPart));");
-                    } else {
-                        writer.println("if(inSet(thisEnclosingJoinPointStaticPart));");
-                    }
+                    writer.println(filter + ";");
                 }
             }
             writer.println("}");
@@ -403,6 +543,36 @@ public class Util {
         }
     }
 
+    /**
+     * Returns a pointcut that picks out the code of the given methods and classes, like the runtime inSet check of
+     * thisEnclosingJoinPointStaticPart does. The code of anonymous and local classes, and of static initializers,
+     * cannot be named in a pointcut, so the whole enclosing top-level or member class is picked out for them.
+     *
+     * @param impactedMethods Methods as pkg.Class#method, and classes as pkg.Class, with $ for nested classes
+     * @return A pointcut, which matches nothing if there is no impacted method
+     */
+    private static String toWithinPointcut(Set<String> impactedMethods) {
+        Set<String> pointcuts = new TreeSet<>();
+        for (String impacted : impactedMethods) {
+            String[] parts = impacted.split("#", 2);
+            // Names of anonymous and local classes start with a digit after the $
+            String type = parts[0].replaceAll("\\$[0-9].*", "");
+            boolean named = type.equals(parts[0]);
+            type = type.replace('$', '.');
+            if (parts.length == 1 || !named || parts[1].equals("<clinit>")) {
+                pointcuts.add("within(" + type + ")");
+            } else if (parts[1].equals("<init>")) {
+                pointcuts.add("withincode(" + type + ".new(..))");
+            } else {
+                pointcuts.add("withincode(* " + type + "." + parts[1] + "(..))");
+            }
+        }
+        if (pointcuts.isEmpty()) {
+            return "if(false)";
+        }
+        return "(" + String.join(" || ", pointcuts) + ")";
+    }
+
     /**
      * Relocates the generated violation-counts file.
      *
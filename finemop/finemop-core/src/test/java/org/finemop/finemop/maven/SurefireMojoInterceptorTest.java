@@ -0,0 +1,188 @@
+package org.finemop.finemop.maven;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class SurefireMojoInterceptorTest {
+
+    private static final String[] PROPERTIES = {"running-rpp", "rpp-agent", "rpp-agent-config",
+        "previous-javamop-agent", "previous-agent-config", "monitor-agent-config", "background-agent",
+        "rpp-concurrent-background", "rpp-background-dir", "rpp-background-args"};
+
+    /** Stands in for SurefirePlugin, which the interceptor only accesses through its fields. */
+    private static class Mojo {
+        private String argLine;
+    }
+
+    /** Stands in for MavenProject, whose clone copies its model. */
+    public static class Project implements Cloneable {
+        private Properties properties = new Properties();
+
+        @Override
+        public Project clone() {
+            Project clone = new Project();
+            clone.properties.putAll(properties);
+            return clone;
+        }
+    }
+
+    /** Stands in for SurefirePlugin, with the fields that the background phase sets and an instrumented execute. */
+    private static class SurefirePlugin {
+        private static final CountDownLatch CRITICAL_STARTED = new CountDownLatch(1);
+        private static SurefirePlugin executed;
+
+        private String argLine;
+        private File workingDirectory;
+        private File reportsDirectory;
+        private String forkCount = "2";
+        private List<String> excludes = new ArrayList<>(Arrays.asList("**/*IT"));
+        private Map<String, String> systemPropertyVariables = new HashMap<>();
+        private String[] dependenciesToScan = {"org.example:lib"};
+        private Project project = new Project();
+        private Object session = new Object();
+
+        public void execute() throws Exception {
+            SurefireMojoInterceptor.execute(this);
+            CRITICAL_STARTED.await();
+            executed = this;
+        }
+    }
+
+    @After
+    public void cleanUp() {
+        for (String property : PROPERTIES) {
+            System.clearProperty(property);
+        }
+        SurefireMojoInterceptor.clearBackgroundRun();
+    }
+
+    @Test
+    public void testMonitorAddsTheAgentConfigurationOnce() throws Exception {
+        Mojo mojo = new Mojo();
+        mojo.argLine = "-javaagent:/agent.jar";
+        System.setProperty("monitor-agent-config", "file:/new-aop-ajc.xml");
+        SurefireMojoInterceptor.execute(mojo);
+        assertEquals("-Dorg.aspectj.weaver.loadtime.configuration=file:/new-aop-ajc.xml -javaagent:/agent.jar",
+                mojo.argLine);
+        SurefireMojoInterceptor.execute(mojo);
+        assertEquals("-Dorg.aspectj.weaver.loadtime.configuration=file:/new-aop-ajc.xml -javaagent:/agent.jar",
+                mojo.argLine);
+
+        mojo.argLine = null;
+        SurefireMojoInterceptor.execute(mojo);
+        assertEquals("-Dorg.aspectj.weaver.loadtime.configuration=file:/new-aop-ajc.xml", mojo.argLine);
+    }
+
+    @Test
+    public void testPhasesSwapTheAgentJar() throws Exception {
+        Mojo mojo = new Mojo();
+        mojo.argLine = "-javaagent:/agent.jar -Xmx1g";
+        System.setProperty("running-rpp", "true");
+        System.setProperty("previous-javamop-agent", "/agent.jar");
+        System.setProperty("rpp-agent", "/critical-javamop.jar");
+        SurefireMojoInterceptor.execute(mojo);
+        assertEquals("-javaagent:/critical-javamop.jar  -Xmx1g", mojo.argLine);
+
+        System.setProperty("previous-javamop-agent", "/critical-javamop.jar");
+        System.setProperty("rpp-agent", "/background-javamop.jar");
+        SurefireMojoInterceptor.execute(mojo);
+        assertEquals("-javaagent:/background-javamop.jar   -Xmx1g", mojo.argLine);
+    }
+
+    @Test
+    public void testPhasesSwapTheAgentConfiguration() throws Exception {
+        Mojo mojo = new Mojo();
+        mojo.argLine = "-javaagent:/agent.jar -Xmx1g";
+        System.setProperty("running-rpp", "true");
+        System.setProperty("previous-javamop-agent", "/agent.jar");
+        System.setProperty("rpp-agent", "/agent.jar");
+        System.setProperty("rpp-agent-config", "file:/critical-ajc.xml");
+        SurefireMojoInterceptor.execute(mojo);
+        assertEquals("-javaagent:/agent.jar -Dorg.aspectj.weaver.loadtime.configuration=file:/critical-ajc.xml"
+                + "  -Xmx1g", mojo.argLine);
+
+        System.setProperty("previous-agent-config", "file:/critical-ajc.xml");
+        System.setProperty("rpp-agent-config", "file:/background-ajc.xml");
+        SurefireMojoInterceptor.execute(mojo);
+        assertEquals("-javaagent:/agent.jar -Dorg.aspectj.weaver.loadtime.configuration=file:/background-ajc.xml"
+                + "    -Xmx1g", mojo.argLine);
+    }
+
+    @Test
+    public void testBackgroundPhaseRunsConcurrently() throws Exception {
+        File backgroundDir = new File(Files.createTempDirectory("rpp").toFile(), "background-run");
+        SurefirePlugin mojo = new SurefirePlugin();
+        mojo.argLine = "-javaagent:/agent.jar -Xmx1g";
+        System.setProperty("running-rpp", "true");
+        System.setProperty("previous-javamop-agent", "/agent.jar");
+        System.setProperty("rpp-agent", "/critical-javamop.jar");
+        System.setProperty("background-agent", "/background-javamop.jar");
+        System.setProperty("rpp-concurrent-background", "true");
+        System.setProperty("rpp-background-dir", backgroundDir.getPath());
+        System.setProperty("rpp-background-args", "-XX:ActiveProcessorCount=1");
+        SurefireMojoInterceptor.execute(mojo);
+        // the background phase waits for the critical phase to get here
+        SurefirePlugin.CRITICAL_STARTED.countDown();
+        assertTrue(SurefireMojoInterceptor.backgroundRun.get());
+
+        SurefirePlugin background = SurefirePlugin.executed;
+        assertNotSame(mojo, background);
+        assertEquals(mojo, SurefireMojoInterceptor.sfMojo);
+        assertEquals("-javaagent:/critical-javamop.jar  -Xmx1g", mojo.argLine);
+        assertEquals("-javaagent:/background-javamop.jar -XX:ActiveProcessorCount=1  -Xmx1g", background.argLine);
+        assertEquals(backgroundDir, background.workingDirectory);
+        assertTrue(backgroundDir.isDirectory());
+        assertEquals(new File(backgroundDir, "surefire-reports"), background.reportsDirectory);
+        assertEquals("1", background.forkCount);
+        assertEquals("2", mojo.forkCount);
+
+        // the phases share no mutable collection
+        assertNotSame(mojo.excludes, background.excludes);
+        assertEquals(mojo.excludes, background.excludes);
+        assertNotSame(mojo.systemPropertyVariables, background.systemPropertyVariables);
+        assertNotSame(mojo.dependenciesToScan, background.dependenciesToScan);
+        assertArrayEquals(mojo.dependenciesToScan, background.dependenciesToScan);
+        background.excludes.add("**/*Slow*");
+        assertEquals(Arrays.asList("**/*IT"), mojo.excludes);
+
+        // the project is cloned with its properties, and the session, which surefire only reads, is shared
+        assertNotSame(mojo.project, background.project);
+        background.project.properties.setProperty("argLine", "-Xmx2g");
+        assertTrue(mojo.project.properties.isEmpty());
+        assertSame(mojo.session, background.session);
+
+        // once cleared, the copy is a mojo like any other
+        SurefireMojoInterceptor.clearBackgroundRun();
+        System.clearProperty("rpp-concurrent-background");
+        SurefireMojoInterceptor.execute(background);
+        assertEquals(background, SurefireMojoInterceptor.sfMojo);
+        deleteAll(backgroundDir.getParentFile());
+    }
+
+    private static void deleteAll(File file) throws IOException {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                deleteAll(child);
+            }
+        }
+        Files.delete(file.toPath());
+    }
+}
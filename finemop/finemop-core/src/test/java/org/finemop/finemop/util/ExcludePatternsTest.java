@@ -0,0 +1,145 @@
+package org.finemop.finemop.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+public class ExcludePatternsTest {
+
+    private static final Set<String> EXCLUDED = new HashSet<>(Arrays.asList("Top", "a.b.C1", "a.b.C2", "a.b.d.E",
+            "a.x.N", "a.x.N$Inner"));
+    private static final Set<String> WOVEN = new HashSet<>(Arrays.asList("a.x.W", "c.F"));
+
+    @Test
+    public void testPackagesWithoutWovenClassesAreWildcards() {
+        assertEquals(Arrays.asList("Top", "a.b..*", "a.x.N", "a.x.N$Inner"),
+                ExcludePatterns.compress(EXCLUDED, WOVEN, null));
+    }
+
+    @Test
+    public void testOnlyIncludedClassesAreExcluded() {
+        assertEquals(Arrays.asList("a.x.N", "a.x.N$Inner"),
+                ExcludePatterns.compress(EXCLUDED, WOVEN, new HashSet<>(Arrays.asList("a.x", "c"))));
+        // A woven class outside of the includes is not woven anyway, but a.b..* would be above the include a.b.d
+        assertEquals(Arrays.asList("a.b.C1", "a.b.C2", "a.b.d..*"),
+                ExcludePatterns.compress(EXCLUDED, WOVEN, new HashSet<>(Arrays.asList("a.b", "a.b.d", "a.x.N"))));
+    }
+
+    @Test
+    public void testWildcardsAreNotAboveProjectPackages() {
+        // With includeLibraries there are no includes, and org..* would exclude every library in org
+        Set<String> excluded = new HashSet<>(Arrays.asList("org.example.a.X", "org.example.a.sub.Y", "org.example.b.Z"));
+        Set<String> woven = new HashSet<>(Arrays.asList("com.acme.W"));
+        List<String> patterns = ExcludePatterns.compress(excluded, woven, new HashSet<>());
+        assertEquals(Arrays.asList("org.example.a..*", "org.example.b..*"), patterns);
+        assertFalse(matches(patterns, "org.apache.commons.Lib"));
+        assertFalse(matches(patterns, "org.example.Lib"));
+        assertEquals(Arrays.asList("org.example.a..*", "org.example.b..*"),
+                ExcludePatterns.compress(excluded, woven, null));
+    }
+
+    @Test
+    public void testLibraryClassesAreNotProjectClasses() {
+        // Classes of lib-jars in a sibling and in a parent package of the project's classes
+        Set<String> project = new HashSet<>(Arrays.asList("org.example.a.X", "org.example.b.Y"));
+        Set<String> excluded = new HashSet<>(Arrays.asList("org.example.a.X", "org.example.lib.L", "org.Lib"));
+        Set<String> woven = new HashSet<>(Arrays.asList("org.example.b.Y"));
+        List<String> patterns = ExcludePatterns.compress(excluded, woven, project, new HashSet<>());
+        assertEquals(Arrays.asList("org.Lib", "org.example.a..*", "org.example.lib.L"), patterns);
+        assertFalse(matches(patterns, "org.example.lib.Other"));
+        assertFalse(matches(patterns, "org.apache.commons.Lib"));
+    }
+
+    @Test
+    public void testWildcardsAreNotAboveIncludes() {
+        Set<String> excluded = new HashSet<>(Arrays.asList("org.example.A", "org.example.sub.B", "com.acme.C"));
+        Set<String> woven = new HashSet<>(Arrays.asList("com.acme.util.D"));
+        assertEquals(Arrays.asList("com.acme.C", "org.example..*"),
+                ExcludePatterns.compress(excluded, woven, new HashSet<>(Arrays.asList("org.example", "com.acme"))));
+
+        // A project with classes in org itself, and surefire included for the statistics
+        excluded = new HashSet<>(Arrays.asList("org.A", "org.sub.B"));
+        assertEquals(Collections.singletonList("org..*"),
+                ExcludePatterns.compress(excluded, woven, new HashSet<>(Arrays.asList("org"))));
+        assertEquals(Arrays.asList("org.A", "org.sub..*"), ExcludePatterns.compress(excluded, woven,
+                new HashSet<>(Arrays.asList("org", "org.apache.maven.surefire"))));
+    }
+
+    @Test
+    public void testPatternsExcludeTheSameClasses() {
+        Random random = new Random(0);
+        String[] packages = {"", "p", "p.q", "p.q.r", "p.s", "t", "t.u"};
+        for (int run = 0; run < 200; run++) {
+            Set<String> excluded = new HashSet<>();
+            Set<String> woven = new HashSet<>();
+            for (int i = 0; i < 30; i++) {
+                String packageName = packages[random.nextInt(packages.length)];
+                String className = (packageName.isEmpty() ? "" : packageName + ".") + "C" + random.nextInt(10);
+                if (!woven.contains(className) && random.nextInt(5) > 0) {
+                    excluded.add(className);
+                } else if (!excluded.contains(className)) {
+                    woven.add(className);
+                }
+            }
+            List<String> patterns = ExcludePatterns.compress(excluded, woven, null);
+            assertTrue(patterns.size() <= excluded.size());
+            for (String className : excluded) {
+                assertTrue(patterns + " " + className, matches(patterns, className));
+            }
+            for (String className : woven) {
+                assertTrue(patterns + " " + className, !matches(patterns, className));
+            }
+        }
+    }
+
+    @Test
+    public void testConfigurationFile() throws IOException {
+        Path file = Files.createTempFile("aop-ajc", ".xml");
+        Util.generateNewAgentConfigurationFile(file.toString(), Collections.singleton("SpecMonitorAspect"),
+                new HashSet<>(Arrays.asList("a", "c")), EXCLUDED, false, false, WOVEN);
+        List<String> excludes = Files.readAllLines(file).stream().filter(line -> line.startsWith("<exclude"))
+                .collect(Collectors.toList());
+        Files.delete(file);
+        assertEquals(Arrays.asList("<exclude within=\"a.b..*\"/>", "<exclude within=\"a.x.N\"/>",
+                "<exclude within=\"a.x.N$Inner\"/>"), excludes);
+    }
+
+    @Test
+    public void testConfigurationFileWithStatistics() throws IOException {
+        Path file = Files.createTempFile("aop-ajc", ".xml");
+        Util.generateNewAgentConfigurationFile(file.toString(), Collections.singleton("SpecMonitorAspect"),
+                Collections.singleton("org"), new HashSet<>(Arrays.asList("org.A", "org.sub.B")), true, false,
+                new HashSet<>());
+        List<String> lines = Files.readAllLines(file).stream()
+                .filter(line -> line.startsWith("<include") || line.startsWith("<exclude"))
+                .collect(Collectors.toList());
+        Files.delete(file);
+        assertEquals(Arrays.asList("<include within=\"org..*\"/>",
+                "<include within=\"org.apache.maven.surefire..*\"/>", "<exclude within=\"org.A\"/>",
+                "<exclude within=\"org.sub..*\"/>"), lines);
+    }
+
+    /** Whether the class matches a pattern, as the weaver matches pkg..* patterns and exact names. */
+    private static boolean matches(List<String> patterns, String className) {
+        for (String pattern : patterns) {
+            if (pattern.endsWith("..*") ? className.startsWith(pattern.substring(0, pattern.length() - 2))
+                    : className.equals(pattern)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,92 @@
+package org.finemop.finemop.util;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+
+/**
+ * Compares {@link MethodsHelper#getWrapMethod} with the linear scan over the methods of a file that it used to make,
+ * on a generated source file, with a random line per lookup like the join points of a weaving log. Arguments: the
+ * numbers of methods in the file (default 10, 100, and 1000) and of lookups (default 100000).
+ */
+public class MethodLineIndexBenchmark {
+
+    private static final int RUNS = 5;
+
+    public static void main(String[] args) throws IOException {
+        int[] sizes = args.length > 0 ? new int[] {Integer.parseInt(args[0])} : new int[] {10, 100, 1000};
+        int lookups = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+        Path dir = Files.createTempDirectory("line-index-benchmark");
+        for (int size : sizes) {
+            StringBuilder source = new StringBuilder("public class C").append(size).append(" {\n");
+            List<String> methods = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                source.append("    int m").append(i).append("(int i) {\n        i++;\n        return i;\n    }\n\n");
+                methods.add("m" + i + "(int)");
+            }
+            Path file = dir.resolve("C" + size + ".java");
+            Files.write(file, source.append("}\n").toString().getBytes(StandardCharsets.UTF_8));
+            String filePath = file.toString();
+            MethodsHelper.computeMethodToLineNumbers(filePath);
+
+            int[] lines = new int[lookups];
+            Random random = new Random(0);
+            for (int i = 0; i < lookups; i++) {
+                lines[i] = 2 + random.nextInt(5 * size);
+            }
+            for (int line : lines) {
+                if (!Objects.equals(linearScan(filePath, methods, line), MethodsHelper.getWrapMethod(filePath, line))) {
+                    throw new IllegalStateException("The lookups disagree on line " + line);
+                }
+            }
+            long scanTotal = 0;
+            long indexTotal = 0;
+            for (int run = 0; run <= RUNS; run++) {
+                long middle = System.nanoTime();
+                int found = 0;
+                for (int line : lines) {
+                    if (linearScan(filePath, methods, line) != null) {
+                        found++;
+                    }
+                }
+                long end = System.nanoTime();
+                for (int line : lines) {
+                    if (MethodsHelper.getWrapMethod(filePath, line) != null) {
+                        found--;
+                    }
+                }
+                // The first run warms up
+                if (run > 0) {
+                    scanTotal += end - middle;
+                    indexTotal += System.nanoTime() - end;
+                }
+                if (found != 0) {
+                    throw new IllegalStateException("The lookups disagree");
+                }
+            }
+            System.out.println("Methods: " + size + ", lookups: " + lookups);
+            System.out.println("  Linear scan: " + scanTotal / RUNS / lookups + " ns/lookup");
+            System.out.println("  Binary search: " + indexTotal / RUNS / lookups + " ns/lookup");
+            Files.delete(file);
+        }
+        Files.delete(dir);
+    }
+
+    /** The lookup that getWrapMethod made before it indexed the methods. */
+    private static String linearScan(String filePath, List<String> methods, int lineNum) {
+        Map<String, ? extends List<Integer>> methodsToLineNumbers = MethodsHelper.getMethodsToLineNumbers();
+        for (String m : methods) {
+            List<Integer> nums = methodsToLineNumbers.get(filePath + "#" + m);
+            if (nums.get(0) <= lineNum && nums.get(1) >= lineNum) {
+                return m;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,161 @@
+package org.finemop.finemop.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.tools.ToolProvider;
+
+import org.jboss.forge.roaster.Roaster;
+import org.jboss.forge.roaster.model.source.JavaClassSource;
+import org.jboss.forge.roaster.model.source.MethodSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MethodsHelperTest {
+
+    private Path dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("methods");
+    }
+
+    @After
+    public void cleanUp() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    public void testLambdaLinesBelongToTheirSyntheticMethod() throws IOException {
+        Path source = write("L.java", "public class L {\n"
+                + "    int m(int a) {\n"
+                + "        int b = a + 1;\n"
+                + "        java.util.function.IntSupplier s = () ->\n"
+                + "            b * 2;\n"
+                + "        return s.getAsInt();\n"
+                + "    }\n"
+                + "}\n");
+        assertEquals(0, ToolProvider.getSystemJavaCompiler().run(null, null, null, "-g", "-d", dir.toString(),
+                source.toString()));
+        String classFile = dir.resolve("L.class").toString();
+        MethodsHelper.computeMethodToLineNumbers(classFile);
+
+        assertEquals("m(int)", MethodsHelper.getWrapMethod(classFile, 3));
+        assertEquals("lambda$m$0(int)", MethodsHelper.getWrapMethod(classFile, 5));
+        assertEquals("m(int)", MethodsHelper.getWrapMethod(classFile, 6));
+    }
+
+    @Test
+    public void testInnerClassesHaveTheirOwnMethods() throws IOException {
+        write("A.java", "public class A {\n"
+                + "    void m() {\n"
+                + "    }\n"
+                + "    class Inner {\n"
+                + "        void m(int i) {\n"
+                + "            i++;\n"
+                + "        }\n"
+                + "    }\n"
+                + "    void n() {}\n"
+                + "}\n");
+        String outer = dir.resolve("A.java").toString();
+        String inner = dir.resolve("A$Inner.java").toString();
+        MethodsHelper.computeMethodToLineNumbers(outer);
+        MethodsHelper.computeMethodToLineNumbers(inner);
+
+        assertEquals("m()", MethodsHelper.getWrapMethod(outer, 3));
+        assertNull(MethodsHelper.getWrapMethod(outer, 6));
+        assertEquals("n()", MethodsHelper.getWrapMethod(outer, 9));
+        assertEquals("m(int)", MethodsHelper.getWrapMethod(inner, 6));
+        assertNull(MethodsHelper.getWrapMethod(inner, 3));
+        assertNull(MethodsHelper.getWrapMethod(dir.resolve("B.java").toString(), 3));
+    }
+
+    @Test
+    public void testLinesMatchSplittingTheSource() throws IOException {
+        String sourceCode = "public class S {\n"
+                + "void atColumnZero() {}\n"
+                + "\n\n"
+                + "    /** Doc */\n"
+                + "    int m(int i) { return i; }\r\n"
+                + "    class Inner {\n"
+                + "        void k() {\n"
+                + "        }\n"
+                + "    }\n"
+                + "    void last() {\n\n\n}}";
+        write("S.java", sourceCode);
+        String outer = dir.resolve("S.java").toString();
+        String inner = dir.resolve("S$Inner.java").toString();
+        MethodsHelper.computeMethodToLineNumbers(outer);
+        MethodsHelper.computeMethodToLineNumbers(inner);
+
+        JavaClassSource javaClass = Roaster.parse(JavaClassSource.class, sourceCode);
+        assertSplitLines(sourceCode, outer, javaClass);
+        assertSplitLines(sourceCode, inner, (JavaClassSource) javaClass.getNestedTypes().get(0));
+    }
+
+    /** Asserts the line ranges of the methods of the class, which the test declares without or with one int. */
+    private static void assertSplitLines(String sourceCode, String path, JavaClassSource javaClass) {
+        for (MethodSource<?> method : javaClass.getMethods()) {
+            String name = method.getName() + (method.getParameters().isEmpty() ? "()" : "(int)");
+            assertEquals(name, Arrays.asList(
+                    sourceCode.substring(0, method.getStartPosition()).split("\n").length,
+                    sourceCode.substring(0, method.getEndPosition()).split("\n").length),
+                    MethodsHelper.getMethodsToLineNumbers().get(path + "#" + name));
+        }
+    }
+
+    @Test
+    public void testOverlappingRangesResolveToTheNarrowest() {
+        MethodLineIndex index = index("<init>()", 1, 20, "b()", 5, 8, "c()", 7, 12, "d()", 7, 12, "e()", 30, 30);
+        assertNull(index.getMethod(0));
+        assertEquals("<init>()", index.getMethod(1));
+        assertEquals("<init>()", index.getMethod(4));
+        assertEquals("b()", index.getMethod(5));
+        assertEquals("b()", index.getMethod(8));
+        // c() and d() are as narrow, c() was found first
+        assertEquals("c()", index.getMethod(9));
+        assertEquals("c()", index.getMethod(12));
+        assertEquals("<init>()", index.getMethod(13));
+        assertEquals("<init>()", index.getMethod(20));
+        assertNull(index.getMethod(21));
+        assertEquals("e()", index.getMethod(30));
+        assertNull(index.getMethod(31));
+    }
+
+    @Test
+    public void testNoMethods() {
+        assertNull(index().getMethod(1));
+    }
+
+    /** Returns the index of the methods given as name, begin, and end. */
+    private static MethodLineIndex index(Object... methods) {
+        List<String> names = new ArrayList<>();
+        List<List<Integer>> ranges = new ArrayList<>();
+        for (int i = 0; i < methods.length; i += 3) {
+            names.add((String) methods[i]);
+            ranges.add(Arrays.asList((Integer) methods[i + 1], (Integer) methods[i + 2]));
+        }
+        return new MethodLineIndex(names, ranges);
+    }
+
+    private Path write(String relativePath, String content) throws IOException {
+        Path file = dir.resolve(relativePath);
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
@@ -0,0 +1,97 @@
+package org.finemop.finemop.util;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jboss.forge.roaster.Roaster;
+import org.jboss.forge.roaster.model.JavaType;
+import org.jboss.forge.roaster.model.source.JavaClassSource;
+import org.jboss.forge.roaster.model.source.MethodSource;
+
+/**
+ * Compares {@link MethodsHelper#computeMethodToLineNumbers} on a generated source file, for the file and for the
+ * nested class it declares, with parsing the file for both and splitting the source before every method position,
+ * as it used to. Arguments: the number of lines of the file (default 50000) and of runs (default 3).
+ */
+public class SourceLinesBenchmark {
+
+    private static final int LINES_PER_METHOD = 25;
+
+    public static void main(String[] args) throws IOException {
+        int lines = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        StringBuilder source = new StringBuilder("public class Generated {\n");
+        int methods = lines / LINES_PER_METHOD;
+        for (int i = 0; i < methods; i++) {
+            if (i == methods / 2) {
+                source.append("    class Inner {\n");
+            }
+            source.append("    int m").append(i).append("(int i) {\n");
+            for (int j = 0; j < LINES_PER_METHOD - 3; j++) {
+                source.append("        i += ").append(j).append(";\n");
+            }
+            source.append("        return i;\n    }\n");
+        }
+        String sourceCode = source.append("    }\n}\n").toString();
+        Path dir = Files.createTempDirectory("source-lines-benchmark");
+
+        long splitTotal = 0;
+        long tableTotal = 0;
+        for (int run = 0; run <= runs; run++) {
+            // A new file per run, as the model of every file stays cached
+            Path file = dir.resolve("Generated" + run + ".java");
+            Files.write(file, sourceCode.getBytes(StandardCharsets.UTF_8));
+            String outer = file.toString();
+            String inner = outer.replace(".java", "$Inner.java");
+
+            long start = System.nanoTime();
+            Map<String, List<Integer>> split = new HashMap<>();
+            splitLines(file, outer, false, split);
+            splitLines(file, inner, true, split);
+            long middle = System.nanoTime();
+            MethodsHelper.computeMethodToLineNumbers(outer);
+            MethodsHelper.computeMethodToLineNumbers(inner);
+            long end = System.nanoTime();
+            // The first run warms up
+            if (run > 0) {
+                splitTotal += middle - start;
+                tableTotal += end - middle;
+            }
+            for (Map.Entry<String, List<Integer>> entry : split.entrySet()) {
+                if (!entry.getValue().equals(MethodsHelper.getMethodsToLineNumbers().get(entry.getKey()))) {
+                    throw new IllegalStateException("The line numbers disagree on " + entry.getKey());
+                }
+            }
+            Files.delete(file);
+        }
+        Files.delete(dir);
+        System.out.println("Lines: " + sourceCode.split("\n").length + ", methods: " + methods + ", runs: " + runs);
+        System.out.println("Parse per class, split per position: " + splitTotal / runs / 1000000 + " ms");
+        System.out.println("Cached model, line offset table: " + tableTotal / runs / 1000000 + " ms");
+    }
+
+    /** The line numbers that computeMethodToLineNumbers computed before it cached the models and newlines. */
+    private static void splitLines(Path file, String filePath, boolean nested, Map<String, List<Integer>> result)
+            throws IOException {
+        JavaClassSource javaClass = Roaster.parse(JavaClassSource.class, Files.newInputStream(file));
+        String sourceCode = new String(Files.readAllBytes(file));
+        if (nested) {
+            for (JavaType<?> innerClass : javaClass.getNestedTypes()) {
+                javaClass = (JavaClassSource) innerClass;
+            }
+        }
+        List<MethodSource<JavaClassSource>> methods = new ArrayList<>(javaClass.getMethods());
+        for (MethodSource<?> method : methods) {
+            int beginLine = sourceCode.substring(0, method.getStartPosition()).split("\n").length;
+            int endLine = sourceCode.substring(0, method.getEndPosition()).split("\n").length;
+            result.put(filePath + "#" + method.getName() + "(int)", Arrays.asList(beginLine, endLine));
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package org.finemop.finemop.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SpecInventoryTest {
+
+    private Path dir;
+    private Path jar;
+    private String artifactsDir;
+
+    @Before
+    public void setUp() throws IOException {
+        SpecInventory.clear();
+        dir = Files.createTempDirectory("inventory");
+        jar = dir.resolve("javamop-agent.jar");
+        artifactsDir = dir.resolve(".starts").toString();
+    }
+
+    @After
+    public void cleanUp() throws IOException {
+        SpecInventory.clear();
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    public void testRepeatedLookupsDoNotReadTheJar() throws IOException {
+        writeJar("A");
+        AtomicInteger loads = new AtomicInteger();
+        Set<String> specs = SpecInventory.get(jar.toString(), "mop", null, counting(loads));
+        assertEquals(set("AMonitorAspect"), specs);
+        // The caller may change its set
+        specs.add("BMonitorAspect");
+        assertEquals(set("AMonitorAspect"), SpecInventory.get(jar.toString(), "mop", null, counting(loads)));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void testModifiedJarInvalidatesTheInventory() throws IOException {
+        writeJar("A");
+        assertEquals(set("AMonitorAspect"), Util.getFullSpecSet(jar.toString(), "mop", artifactsDir));
+        assertEquals(set("AMonitorAspect"), Util.retrieveSpecListFromJar(jar.toString(), null, artifactsDir));
+
+        writeJar("A", "B");
+        assertEquals(set("AMonitorAspect", "BMonitorAspect"),
+                Util.getFullSpecSet(jar.toString(), "mop", artifactsDir));
+        assertEquals(set("AMonitorAspect", "BMonitorAspect"),
+                Util.retrieveSpecListFromJar(jar.toString(), null, artifactsDir));
+    }
+
+    @Test
+    public void testPersistedInventoryIsReusedUntilTheJarChanges() throws IOException {
+        writeJar("A");
+        FileTime lastModified = Files.getLastModifiedTime(jar);
+        long size = Files.size(jar);
+        AtomicInteger loads = new AtomicInteger();
+        SpecInventory.get(jar.toString(), "mop", artifactsDir, counting(loads));
+        assertTrue(Files.exists(dir.resolve(".starts").resolve(SpecInventory.FILE_NAME)));
+
+        // A later build reads the inventory from the artifacts directory
+        SpecInventory.clear();
+        assertEquals(set("AMonitorAspect"), SpecInventory.get(jar.toString(), "mop", artifactsDir, counting(loads)));
+        assertEquals(1, loads.get());
+
+        // A jar of the same size and modification time, with another spec
+        writeJar("B");
+        Files.setLastModifiedTime(jar, lastModified);
+        assertEquals(size, Files.size(jar));
+        SpecInventory.clear();
+        assertEquals(set("BMonitorAspect"), SpecInventory.get(jar.toString(), "mop", artifactsDir, counting(loads)));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testMissingJarIsNotKept() {
+        AtomicInteger loads = new AtomicInteger();
+        Supplier<Set<String>> loader = () -> {
+            loads.incrementAndGet();
+            return new HashSet<>();
+        };
+        SpecInventory.get(jar.toString(), "mop", artifactsDir, loader);
+        SpecInventory.get(jar.toString(), "mop", artifactsDir, loader);
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testUnchangedInventoryIsNotWritten() throws IOException {
+        writeJar("A");
+        SpecInventory.get(jar.toString(), "mop", artifactsDir, counting(new AtomicInteger()));
+        Path inventory = dir.resolve(".starts").resolve(SpecInventory.FILE_NAME);
+        FileTime written = FileTime.fromMillis(Files.getLastModifiedTime(inventory).toMillis() - 60_000);
+        Files.setLastModifiedTime(inventory, written);
+
+        SpecInventory.clear();
+        SpecInventory.get(jar.toString(), "mop", artifactsDir, counting(new AtomicInteger()));
+        assertEquals(written, Files.getLastModifiedTime(inventory));
+        try (Stream<Path> files = Files.list(inventory.getParent())) {
+            assertEquals(Arrays.asList(inventory), files.collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void testUnreadableJarIsNotKept() throws IOException {
+        writeJar("A");
+        AtomicInteger loads = new AtomicInteger();
+        Supplier<Set<String>> failing = () -> {
+            loads.incrementAndGet();
+            return null;
+        };
+        assertEquals(set(), SpecInventory.get(jar.toString(), "mop", artifactsDir, failing));
+        assertFalse(Files.exists(dir.resolve(".starts").resolve(SpecInventory.FILE_NAME)));
+        assertEquals(set("AMonitorAspect"), SpecInventory.get(jar.toString(), "mop", artifactsDir, counting(loads)));
+        assertEquals(2, loads.get());
+    }
+
+    /** Returns a loader that lists the aspects in the jar, and counts how often it did. */
+    private Supplier<Set<String>> counting(AtomicInteger loads) {
+        return () -> {
+            loads.incrementAndGet();
+            try (ZipFile zip = new ZipFile(jar.toFile())) {
+                return zip.stream().map(ZipEntry::getName).filter(name -> name.endsWith("MonitorAspect.class"))
+                        .map(name -> name.substring("mop/".length(), name.length() - ".class".length()))
+                        .collect(Collectors.toSet());
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        };
+    }
+
+    /** Writes an agent jar with the aspects of the specs, and their specs.txt. */
+    private void writeJar(String... specs) throws IOException {
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(jar))) {
+            out.putNextEntry(new ZipEntry("mop/BaseAspect.class"));
+            out.closeEntry();
+            StringBuilder list = new StringBuilder();
+            for (String spec : specs) {
+                out.putNextEntry(new ZipEntry("mop/" + spec + "MonitorAspect.class"));
+                out.write(new byte[100]);
+                out.closeEntry();
+                list.append(spec).append("MonitorAspect\n");
+            }
+            out.putNextEntry(new ZipEntry("specs.txt"));
+            out.write(list.toString().getBytes(StandardCharsets.UTF_8));
+            out.closeEntry();
+        }
+    }
+
+    private static Set<String> set(String... specs) {
+        return new HashSet<>(Arrays.asList(specs));
+    }
+}
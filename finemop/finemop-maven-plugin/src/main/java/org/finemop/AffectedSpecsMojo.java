@@ -34,6 +34,7 @@ import org.finemop.finemop.util.MethodsHelper;
 import org.finemop.finemop.util.Util;
 import edu.illinois.starts.enums.Granularity;
 import edu.illinois.starts.helpers.Writer;
+import edu.illinois.starts.smethods.MethodLevelStaticDepsBuilder;
 import edu.illinois.starts.util.ChecksumUtil;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.Mojo;
@@ -42,6 +43,7 @@ import org.apache.maven.plugins.annotations.ResolutionScope;
 import org.apache.maven.project.MavenProject;
 import org.apache.maven.surefire.booter.Classpath;
 import org.aspectj.bridge.IMessage;
+import org.aspectj.bridge.Message;
 import org.aspectj.bridge.MessageHandler;
 import org.aspectj.tools.ajc.Main;
 import org.jboss.forge.roaster.ParserException;
@@ -49,10 +51,6 @@ import org.jboss.forge.roaster.ParserException;
 @Mojo(name = "affected-specs", requiresDirectInvocation = true, requiresDependencyResolution = ResolutionScope.TEST)
 public class AffectedSpecsMojo extends ImpactedComponentsMojo {
 
-    private static final int CLASS_INDEX_IN_MSG = 3;
-    private static final int SPEC_LINE_NUMBER = 4;
-    private static final int TRIMMED_SPEC_NAME_INDEX = 4;
-    private static final int SPEC_INDEX_IN_MSG = 5;
     private static final String CLASSES_TO_SPECS_FILE_NAME = "classesToSpecs.bin";
     private static final String CLASSES_TO_SPECS_DEBUG_FILE_NAME = "classesToSpecs.txt";
     private static final String METHODS_TO_SPECS_FILE_NAME = "methodsToSpecs.bin";
@@ -92,6 +90,14 @@ public class AffectedSpecsMojo extends ImpactedComponentsMojo {
     @Parameter(property = "finerInstrumentationAlt", required = false, defaultValue = "false")
     protected boolean finerInstrumentationAlt;
 
+    /**
+     * Whether finer instrumentation restricts the BaseAspect to the impacted methods when it is compiled, with
+     * withincode pointcuts, so that code outside of them is not woven at all, instead of checking every join point
+     * against impactedMethods.bin at runtime. Depends on finerInstrumentation; finerInstrumentationAlt is ignored.
+     */
+    @Parameter(property = "weaveTimeFiltering", required = false, defaultValue = "false")
+    protected boolean weaveTimeFiltering;
+
     /**
      * Whether to find affected specs by using a finer-grained mapping to specs.
      * Setting this to true will enable the use of method -> specs mapping if there is one,
@@ -100,6 +106,41 @@ public class AffectedSpecsMojo extends ImpactedComponentsMojo {
     @Parameter(property = "finerSpecMapping", required = false, defaultValue = "false")
     protected boolean finerSpecMapping;
 
+    /**
+     * Whether METHOD granularity maps join points to methods with the line number tables of the class files, which
+     * the method graph scan reads anyway, instead of parsing the Java source that the class file path is rewritten
+     * to. This also works for generated sources and for classes compiled from other languages.
+     */
+    @Parameter(property = "bytecodeLineMapping", required = false, defaultValue = "false")
+    protected boolean bytecodeLineMapping;
+
+    /**
+     * Whether to reuse the weave results of classes whose source (or, for libraries, bytecode) was already woven
+     * with the same aspects, instead of passing them to ajc again.
+     */
+    @Parameter(property = "weaveCache", required = false, defaultValue = "false")
+    protected boolean weaveCache;
+
+    /**
+     * Number of ajc runs to split the sources (or library classes) to weave into. With more than one shard, every
+     * shard is woven in its own JVM, in parallel, and their messages are merged.
+     */
+    @Parameter(property = "weaveShards", required = false, defaultValue = "1")
+    protected int weaveShards;
+
+    /**
+     * Whether to run ajc in a local daemon that stays warm across Maven invocations, instead of in-process. The
+     * daemon is started on demand; if it cannot be reached, ajc runs in-process.
+     */
+    @Parameter(property = "weaveDaemon", required = false, defaultValue = "false")
+    protected boolean weaveDaemon;
+
+    /**
+     * Seconds after which an idle weave daemon exits.
+     */
+    @Parameter(property = "weaveDaemonIdleTimeout", required = false, defaultValue = "900")
+    protected int weaveDaemonIdleTimeout;
+
     /**
      * A mapping from class to all the line numbers that are impacted.
      * This data structure enables the use of thisJoinPointStaticPart over
@@ -182,7 +223,7 @@ public class AffectedSpecsMojo extends ImpactedComponentsMojo {
             }
             getLog().info("[eMOP] Invoking the AffectedSpecs Mojo...");
 
-            IMessage[] ms = doCompileTimeInstrumentation();
+            WeaveInfoTable ms = doCompileTimeInstrumentation();
 
             long start = System.currentTimeMillis();
             classToSpecs = readMapFromFile("classToSpecs.bin");
@@ -190,7 +231,7 @@ public class AffectedSpecsMojo extends ImpactedComponentsMojo {
 
             List<String> classesToInstrument = getNewlyUsedLibraries();
             if (classesToInstrument != null) {
-                IMessage[] ms2 = doCompileTimeInstrumentation(classesToInstrument);
+                WeaveInfoTable ms2 = doCompileTimeInstrumentation(classesToInstrument);
                 computeMapFromMessage(ms2);
                 Util.deleteRecursively(Paths.get(getArtifactsDir(), "lib-jars-tmp"));
 
@@ -220,12 +261,12 @@ public class AffectedSpecsMojo extends ImpactedComponentsMojo {
             getLog().info("[eMOP Timer] Write affected specs to disk takes " + (end - start) + " ms");
 
             getLog().info("[eMOP] Number of impacted classes: " + getImpacted().size());
-            getLog().info("[eMOP] Number of messages to process: " + Arrays.asList(ms).size());
+            getLog().info("[eMOP] Number of messages to process: " + ms.getMessageCount());
         } else if (getGranularity() == Granularity.METHOD) {
             // TODO: Shouldn't this part be done by the Monitor Mojo?
             if (dependencyChanged) {
                 // Revert to base RV, use all specs, include libraries and non-affected classes.
-                affectedSpecs.addAll(Objects.requireNonNull(Util.getFullSpecSet(javamopAgent, "mop")));
+                affectedSpecs.addAll(Objects.requireNonNull(Util.getFullSpecSet(javamopAgent, "mop", getArtifactsDir())));
                 includeLibraries = true;
                 includeNonAffected = true;
             }
@@ -242,7 +283,7 @@ public class AffectedSpecsMojo extends ImpactedComponentsMojo {
             }
             getLog().info("[eMOP] Invoking the AffectedSpecsMethods Mojo...");
 
-            IMessage[] ms = doCompileTimeInstrumentation();
+            WeaveInfoTable ms = doCompileTimeInstrumentation();
 
             long start = System.currentTimeMillis();
             methodsToSpecs = readMapFromFile(METHODS_TO_SPECS_FILE_NAME);
@@ -254,7 +295,7 @@ public class AffectedSpecsMojo extends ImpactedComponentsMojo {
 
                 List<String> classesToInstrument = getNewlyUsedLibraries();
                 if (classesToInstrument != null) {
-                    IMessage[] ms2 = doCompileTimeInstrumentation(classesToInstrument);
+                    WeaveInfoTable ms2 = doCompileTimeInstrumentation(classesToInstrument);
                     computeMapFromMessage(ms2);
                     Util.deleteRecursively(Paths.get(getArtifactsDir(), "lib-jars-tmp"));
                 }
@@ -263,7 +304,7 @@ public class AffectedSpecsMojo extends ImpactedComponentsMojo {
                 ex.printStackTrace();
             }
 
-            if (finerInstrumentation) {
+            if (finerInstrumentation && !weaveTimeFiltering) {
                 if (!dependencyChanged) {
                     Util.setEnv("IMPACTED_METHODS_FILE", getArtifactsDir() + File.separator + "impactedMethods.bin");
                     getLog().info("IMPACTED_METHODS_FILE is set to " + System.getenv("IMPACTED_METHODS_FILE"));
@@ -297,15 +338,7 @@ public class AffectedSpecsMojo extends ImpactedComponentsMojo {
                             }
                             oos.writeObject(classToImpactedLineNumbers);
                         } else {
-                            oos.writeObject(getImpactedMethods().stream()
-                                    // Filter is needed to filter out variables.
-                                    .filter(str -> str.matches(".*\\(.*\\)"))
-                                    .map(str -> MethodsHelper.convertAsmToJava(str)
-                                            .replace('/', '.')
-                                            .split("\\(")[0]
-                                    )
-                                    .collect(Collectors.toSet())
-                            );
+                            oos.writeObject(getImpactedMethodsToInstrument());
                         }
                     } catch (IOException ex) {
                         ex.printStackTrace();
@@ -392,16 +425,16 @@ public class AffectedSpecsMojo extends ImpactedComponentsMojo {
                 getLog().info("[eMOP Timer] Write affected specs to disk takes " + (end - start) + " ms");
 
 //                getLog().info("[eMOP] Number of impacted classes: " + getImpacted().size());
-                getLog().info("[eMOP] Number of messages to process: " + Arrays.asList(ms).size());
+                getLog().info("[eMOP] Number of messages to process: " + ms.getMessageCount());
             }
 
             getLog().info("[eMOP] Number of changed classes: " + getChangedClasses().size());
             getLog().info("[eMOP] Number of new classes: " + getNewClasses().size());
-            getLog().info("[eMOP] Number of messages to process: " + Arrays.asList(ms).size());
+            getLog().info("[eMOP] Number of messages to process: " + ms.getMessageCount());
         } else if (getGranularity() == Granularity.HYBRID) {
             if (dependencyChanged) {
                 // Revert to base RV, use all specs, include libraries and non-affected classes.
-                affectedSpecs.addAll(Objects.requireNonNull(Util.getFullSpecSet(javamopAgent, "mop")));
+                affectedSpecs.addAll(Objects.requireNonNull(Util.getFullSpecSet(javamopAgent, "mop", getArtifactsDir())));
                 includeLibraries = true;
                 includeNonAffected = true;
             }
@@ -423,13 +456,13 @@ public class AffectedSpecsMojo extends ImpactedComponentsMojo {
             }
 
             getLog().info("[eMOP] Invoking the AffectedSpecsHybrid Mojo...");
-            IMessage[] ms = doCompileTimeInstrumentation();
+            WeaveInfoTable ms = doCompileTimeInstrumentation();
 
             long start = System.currentTimeMillis();
             classesToSpecs = readMapFromFile(CLASSES_TO_SPECS_FILE_NAME);
             methodsToSpecs = readMapFromFile(METHODS_TO_SPECS_FILE_NAME);
 
-            if (finerInstrumentation) {
+            if (finerInstrumentation && !weaveTimeFiltering) {
                 if (!dependencyChanged) {
                     Util.setEnv("IMPACTED_METHODS_FILE", getArtifactsDir() + File.separator + "impactedMethods.bin");
                     getLog().info("IMPACTED_METHODS_FILE is set to " + System.getenv("IMPACTED_METHODS_FILE"));
@@ -467,19 +500,7 @@ public class AffectedSpecsMojo extends ImpactedComponentsMojo {
                             }
                             oos.writeObject(classToImpactedLineNumbers);
                         } else {
-                            Set<String> toWrite = getImpactedMethods().stream()
-                                    // Filter is needed to filter out variables.
-                                    .filter(str -> str.matches(".*\\(.*\\)"))
-                                    .map(str -> MethodsHelper.convertAsmToJava(str)
-                                            .replace('/', '.')
-                                            .split("\\(")[0]
-                                    )
-                                    .collect(Collectors.toSet());
-                            // Also add classes to this set.
-                            toWrite.addAll(getImpactedClasses().stream()
-                                    .map(str -> str.replace('/', '.')).
-                                    collect(Collectors.toSet()));
-                            oos.writeObject(toWrite);
+                            oos.writeObject(getImpactedMethodsToInstrument());
                         }
                     } catch (IOException ex) {
                         ex.printStackTrace();
@@ -494,7 +515,7 @@ public class AffectedSpecsMojo extends ImpactedComponentsMojo {
 
                     List<String> classesToInstrument = getNewlyUsedLibraries();
                     if (classesToInstrument != null) {
-                        IMessage[] ms2 = doCompileTimeInstrumentation(classesToInstrument);
+                        WeaveInfoTable ms2 = doCompileTimeInstrumentation(classesToInstrument);
 
                         computeMethodsToSpecsMapFromMessage(ms2);
                         computeClassesToSpecsMapFromMessage(ms2);
@@ -525,7 +546,8 @@ public class AffectedSpecsMojo extends ImpactedComponentsMojo {
                 }
                 if (dependencyChanged) {
                     // Revert to base RV, use all specs, include libraries and non-affected classes.
-                    affectedSpecs.addAll(Objects.requireNonNull(Util.getFullSpecSet(javamopAgent, "mop")));
+                    affectedSpecs.addAll(Objects.requireNonNull(
+                            Util.getFullSpecSet(javamopAgent, "mop", getArtifactsDir())));
                     includeLibraries = true;
                     includeNonAffected = true;
                 }
@@ -539,12 +561,12 @@ public class AffectedSpecsMojo extends ImpactedComponentsMojo {
                 writeMapToFile(methodsToSpecs, METHODS_TO_SPECS_FILE_NAME, OutputFormat.BIN);
                 end = System.currentTimeMillis();
                 getLog().info("[eMOP Timer] Write affected specs to disk takes " + (end - start) + " ms");
-                getLog().info("[eMOP] Number of messages to process: " + Arrays.asList(ms).size());
+                getLog().info("[eMOP] Number of messages to process: " + ms.getMessageCount());
             } else {
                 computeMapFromMessage(ms);
                 List<String> classesToInstrument = getNewlyUsedLibraries();
                 if (classesToInstrument != null) {
-                    IMessage[] ms2 = doCompileTimeInstrumentation(classesToInstrument);
+                    WeaveInfoTable ms2 = doCompileTimeInstrumentation(classesToInstrument);
                     computeMapFromMessage(ms2);
                     Util.deleteRecursively(Paths.get(getArtifactsDir(), "lib-jars-tmp"));
                 }
@@ -566,52 +588,200 @@ public class AffectedSpecsMojo extends ImpactedComponentsMojo {
                 getLog().info("[eMOP Timer] Write affected specs to disk takes " + (end - start) + " ms");
 
 //                getLog().info("[eMOP] Number of impacted classes: " + getImpacted().size());
-                getLog().info("[eMOP] Number of messages to process: " + Arrays.asList(ms).size());
+                getLog().info("[eMOP] Number of messages to process: " + ms.getMessageCount());
             }
         }
     }
 
-    private IMessage[] doCompileTimeInstrumentation() throws MojoExecutionException {
+    private WeaveInfoTable doCompileTimeInstrumentation() throws MojoExecutionException {
         return doCompileTimeInstrumentation(null);
     }
 
-    private IMessage[] doCompileTimeInstrumentation(List<String> classesToInstrument) throws MojoExecutionException {
+    private WeaveInfoTable doCompileTimeInstrumentation(List<String> classesToInstrument)
+            throws MojoExecutionException {
         long start = System.currentTimeMillis();
         String[] arguments = createAJCArguments(classesToInstrument);
-        Main compiler = new Main();
-        MessageHandler mh = new MessageHandler();
-        try {
-            compiler.run(arguments, mh);
-        } catch (IllegalArgumentException ex) {
-            ex.printStackTrace();
-            getLog().error("Arguments: " + Arrays.asList(arguments));
-            IMessage[] ms = mh.getMessages(IMessage.WEAVEINFO, false);
-            getLog().error("IMessages: " + Arrays.asList(ms));
+        WeaveInfoTable ms;
+        if (weaveCache || weaveShards > 1) {
+            ms = weaveInputs(arguments, classesToInstrument != null);
+        } else {
+            MessageHandler mh = runAJC(arguments);
+            logErrors(mh);
+            ms = WeaveInfoTable.of(mh.getMessages(IMessage.WEAVEINFO, false));
         }
-        IMessage[] ms = mh.getMessages(IMessage.WEAVEINFO, false);
         long end = System.currentTimeMillis();
         getLog().info("[eMOP Timer] Compile-time weaving takes " + (end - start) + " ms.");
 
+        if (debug) {
+            try (PrintWriter writer
+                         = new PrintWriter(getArtifactsDir() + File.separator + "compileWeaveMessage.txt")) {
+                writer.print(ms);
+            } catch (IOException ex) {
+                ex.printStackTrace();
+            }
+        }
+
+        return ms;
+    }
+
+    /**
+     * Weaves the sources (or library classes) that are not in the weave cache, in shards if configured, and returns
+     * the join points of all of them.
+     */
+    private WeaveInfoTable weaveInputs(String[] arguments, boolean libraries) throws MojoExecutionException {
+        String aspectList = getArtifactsDir() + File.separator + "aspects.lst";
+        String sourceList = getArtifactsDir() + File.separator + "sources.lst";
+        Path inpath = Paths.get(getArtifactsDir(), "lib-jars-tmp");
+        try {
+            List<Path> inputs;
+            if (libraries) {
+                try (Stream<Path> classFiles = Files.walk(inpath)) {
+                    inputs = classFiles.filter(file -> file.toString().endsWith(".class")).collect(Collectors.toList());
+                }
+            } else {
+                inputs = Files.readAllLines(Paths.get(sourceList)).stream()
+                        .filter(line -> !line.isEmpty())
+                        .map(Paths::get)
+                        .collect(Collectors.toList());
+            }
+
+            WeaveCache.Weaver weaver;
+            if (weaveShards > 1) {
+                // The shards get their own inputs and output directories
+                List<String> options = new ArrayList<>();
+                String outputDir = null;
+                for (int i = 0; i < arguments.length; i++) {
+                    if (arguments[i].equals("-argfile") && arguments[i + 1].equals(sourceList)
+                            || arguments[i].equals("-inpath")) {
+                        i++;
+                    } else if (arguments[i].equals("-d")) {
+                        outputDir = arguments[++i];
+                    } else {
+                        options.add(arguments[i]);
+                    }
+                }
+                weaver = new ShardedWeaver(options, weaveShards, Paths.get(outputDir), libraries ? inpath : null,
+                        Paths.get(getArtifactsDir(), "weave-shards"));
+            } else {
+                weaver = missed -> {
+                    try {
+                        if (libraries) {
+                            Set<Path> missedSet = new HashSet<>(missed);
+                            for (Path input : inputs) {
+                                if (!missedSet.contains(input)) {
+                                    Files.delete(input);
+                                }
+                            }
+                        } else {
+                            Writer.writeToFile(missed.stream().map(Path::toString).collect(Collectors.toList()),
+                                    sourceList);
+                        }
+                    } catch (IOException ex) {
+                        throw new RuntimeException(ex);
+                    }
+                    return runAJC(arguments);
+                };
+            }
+            if (!weaveCache) {
+                MessageHandler mh = weaver.weave(inputs);
+                logErrors(mh);
+                return WeaveInfoTable.of(mh.getMessages(IMessage.WEAVEINFO, false));
+            }
+
+            // Everything but the inputs: the options, the aspects, the argument file, and the jars on the classpath
+            List<String> options = new ArrayList<>(Arrays.asList(arguments));
+            List<Path> files = new ArrayList<>();
+            for (int i = 0; i < arguments.length - 1; i++) {
+                if (arguments[i].equals("-argfile") && !arguments[i + 1].equals(sourceList)) {
+                    files.add(Paths.get(arguments[i + 1]));
+                    if (arguments[i + 1].equals(aspectList)) {
+                        for (String aspect : Files.readAllLines(Paths.get(aspectList))) {
+                            files.add(Paths.get(aspect));
+                        }
+                    }
+                } else if (arguments[i].equals("-classpath")) {
+                    for (String entry : arguments[i + 1].split(File.pathSeparator)) {
+                        File jar = new File(entry);
+                        if (jar.isFile()) {
+                            options.add(entry + ":" + jar.length() + ":" + jar.lastModified());
+                        }
+                    }
+                }
+            }
+            WeaveCache cache = new WeaveCache(Paths.get(getArtifactsDir(), WeaveCache.CACHE_DIR_NAME),
+                    WeaveCache.hashEnvironment(options, files));
+            WeaveInfoTable ms = cache.weave(inputs, missed -> {
+                MessageHandler mh = weaver.weave(missed);
+                logErrors(mh);
+                return mh;
+            });
+            getLog().info("[eMOP] Weave cache hits: " + cache.getHits() + ", misses: " + cache.getMisses());
+            return ms;
+        } catch (IOException ex) {
+            throw new MojoExecutionException("Could not weave " + (libraries ? inpath : sourceList), ex);
+        }
+    }
+
+    private MessageHandler runAJC(String[] arguments) {
+        MessageHandler mh = null;
+        if (weaveDaemon) {
+            mh = WeaveDaemon.weave(WeaveDaemon.defaultStateDir(), arguments, weaveDaemonIdleTimeout);
+            if (mh == null) {
+                getLog().warn("[eMOP] Could not reach the weave daemon, running ajc in-process");
+            }
+        }
+        if (mh == null) {
+            Main compiler = new Main();
+            mh = new MessageHandler();
+            try {
+                compiler.run(arguments, mh);
+            } catch (IllegalArgumentException ex) {
+                ex.printStackTrace();
+                getLog().error("Arguments: " + Arrays.asList(arguments));
+                IMessage[] ms = mh.getMessages(IMessage.WEAVEINFO, false);
+                getLog().error("IMessages: " + Arrays.asList(ms));
+                mh.handleMessage(new Message(ex.toString(), IMessage.ERROR, ex, null));
+            }
+        }
+
         if (debug) {
             StringBuilder ajcCommand = new StringBuilder();
             for (String arg : arguments) {
                 ajcCommand.append(arg).append(" ");
             }
             getLog().info("AJC command: ajc " + ajcCommand);
+        }
+        return mh;
+    }
+
+    private void logErrors(MessageHandler mh) {
+        if (debug) {
             for (IMessage errMsg : mh.getErrors()) {
                 getLog().error(errMsg.toString());
             }
-            try (PrintWriter writer
-                         = new PrintWriter(getArtifactsDir() + File.separator + "compileWeaveMessage.txt")) {
-                for (IMessage message : ms) {
-                    writer.println(message.getMessage());
-                }
-            } catch (IOException ex) {
-                ex.printStackTrace();
-            }
         }
+    }
 
-        return ms;
+    /**
+     * Returns the impacted methods as pkg.Class#method, without their parameters, and in the hybrid granularity
+     * also the impacted classes, as the BaseAspect expects them.
+     */
+    private Set<String> getImpactedMethodsToInstrument() {
+        Set<String> impacted = getImpactedMethods().stream()
+                // Filter is needed to filter out variables.
+                .filter(str -> str.matches(".*\\(.*\\)"))
+                .map(str -> MethodsHelper.convertAsmToJava(str)
+                        .replace('/', '.')
+                        .split("\\(")[0]
+                )
+                .collect(Collectors.toSet());
+        if (getGranularity() == Granularity.HYBRID) {
+            // Also add classes to this set.
+            impacted.addAll(getImpactedClasses().stream()
+                    .map(str -> str.replace('/', '.'))
+                    .collect(Collectors.toSet()));
+        }
+        return impacted;
     }
 
     private void recompileBaseAspect() throws MojoExecutionException {
@@ -620,23 +790,19 @@ public class AffectedSpecsMojo extends ImpactedComponentsMojo {
                 includeLibraries,
                 includeNonAffected,
                 finerInstrumentationAlt,
-                Util.retrieveProjectPackageNames(getClassesDirectory()));
+                Util.retrieveProjectPackageNames(getClassesDirectory()),
+                weaveTimeFiltering && finerInstrumentation && !dependencyChanged
+                        ? getImpactedMethodsToInstrument() : null);
         String[] arguments = new String[] {getArtifactsDir() + File.separator + "BaseAspect.aj",
                 "-source", "1.8", "-target", "1.8", "-d", getArtifactsDir(),
                 "-classpath", getClassPath() + File.pathSeparator + getRuntimeJars()};
-        Main compiler = new Main();
         MessageHandler mh = new MessageHandler();
         try {
-            compiler.run(arguments, mh);
+            mh = runAJC(arguments);
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         if (debug) {
-            StringBuilder ajcCommand = new StringBuilder();
-            for (String arg : arguments) {
-                ajcCommand.append(" ").append(arg);
-            }
-            getLog().info("AJC command: ajc" + ajcCommand);
             getLog().info("AJC error messages:");
             for (IMessage errMsg : mh.getErrors()) {
                 getLog().error(errMsg.toString());
@@ -665,17 +831,9 @@ public class AffectedSpecsMojo extends ImpactedComponentsMojo {
         }
     }
 
-    private void computeClassesToSpecsMapFromMessage(IMessage[] ms) throws MojoExecutionException {
+    private void computeClassesToSpecsMapFromMessage(WeaveInfoTable ms) throws MojoExecutionException {
         MethodsHelper.loadMethodsToLineNumbers(getArtifactsDir());
-        for (IMessage message : ms) {
-            String[] lexedMessage = message.getMessage().split("'");
-            String key = lexedMessage[CLASS_INDEX_IN_MSG];
-            String value = lexedMessage[SPEC_INDEX_IN_MSG].substring(TRIMMED_SPEC_NAME_INDEX);
-            if (!classToSpecsUpdateMap.containsKey(key)) {
-                classToSpecsUpdateMap.put(key, new HashSet<>());
-            }
-            classToSpecsUpdateMap.get(key).add(value);
-        }
+        ms.addClassesToSpecs(classToSpecsUpdateMap);
         for (String clazz : getImpactedClasses()) {
             classToSpecsUpdateMap.putIfAbsent(clazz.replace('/', '.'), new HashSet<>());
         }
@@ -686,55 +844,71 @@ public class AffectedSpecsMojo extends ImpactedComponentsMojo {
      * Compute a mapping from affected classes to specifications based on the
      * messages from AJC.
      *
-     * @param ms An array of IMessage objects
+     * @param ms The join points reported by AJC
      */
-    private void computeMethodsToSpecsMapFromMessage(IMessage[] ms) throws Exception {
+    private void computeMethodsToSpecsMapFromMessage(WeaveInfoTable ms) throws Exception {
         Classpath sfClassPath = getSureFireClassPath();
         ClassLoader loader = createClassLoader(sfClassPath);
         MethodsHelper.loadMethodsToLineNumbers(getArtifactsDir());
-        for (IMessage message : ms) {
-            String[] lexedMessage = message.getMessage().split("'");
-            String klasName = lexedMessage[CLASS_INDEX_IN_MSG];
-            String spec = lexedMessage[SPEC_INDEX_IN_MSG].substring(TRIMMED_SPEC_NAME_INDEX);
-            int specLineNumber = Integer
-                    .parseInt(lexedMessage[SPEC_LINE_NUMBER].split(" ")[1].split(":")[1].replace(")", ""));
-
+        String artifactsDir = getArtifactsDir();
+        ms.forEachLine((klasName, spec, specLineNumber) -> {
             String klas = ChecksumUtil.toClassOrJavaName(klasName, false);
-            URL url = loader.getResource(klas);
-            String filePath = url.getPath();
-
-            if (filePath.contains("jar!")) {
-                filePath = getArtifactsDir() + "lib-jars" + filePath.split("!")[1];
-            } else {
-                filePath = filePath.replace(".class", ".java")
-                        .replace("target", "src")
-                        .replace("test-classes", "test/java")
-                        .replace("classes", "main/java");
-            }
-
-            try {
-                MethodsHelper.computeMethodToLineNumbers(filePath);
-            } catch (ParserException exception) {
-                getLog().warn("File contains interface only, no methods found in " + filePath);
-            }
+            String filePath = computeMethodLines(loader, artifactsDir, klas);
             String method = MethodsHelper.getWrapMethod(filePath, specLineNumber);
             if (method == null) {
                 getLog().warn("Spec at line " + specLineNumber + " in " + filePath + " is not within a method");
-                continue;
+                return;
             }
             String key = klas.replace(".class", "") + "#" + method;
             Set<String> methodSpecs = methodToSpecsUpdateMap.getOrDefault(key, new HashSet<>());
             methodToSpecsUpdateMap.put(key, methodSpecs);
             methodSpecs.add(spec);
-        }
+        });
         for (String method : getImpactedMethods()) {
             methodToSpecsUpdateMap.putIfAbsent(MethodsHelper.convertAsmToJava(method), new HashSet<>());
         }
         MethodsHelper.saveMethodsToLineNumbers(getArtifactsDir());
     }
 
+    /**
+     * Computes the line ranges of the methods of a class, and returns the file they are recorded for: the extracted
+     * class file of a library class, the class file itself with bytecodeLineMapping, or else the source file that the
+     * path of the class file is rewritten to.
+     *
+     * @param klas The path of the class file relative to the classpath
+     */
+    private String computeMethodLines(ClassLoader loader, String artifactsDir, String klas) {
+        URL url = loader.getResource(klas);
+        String filePath = url.getPath();
+
+        if (filePath.contains("jar!")) {
+            filePath = artifactsDir + "lib-jars" + filePath.split("!")[1];
+        } else if (bytecodeLineMapping) {
+            Map<String, int[]> methodLines = MethodLevelStaticDepsBuilder.classToMethodLines
+                    .get(klas.replace(".class", "").replace(File.separatorChar, '/'));
+            if (methodLines != null) {
+                MethodsHelper.computeMethodToLineNumbers(filePath, methodLines);
+            }
+        } else {
+            filePath = filePath.replace(".class", ".java")
+                    .replace("target", "src")
+                    .replace("test-classes", "test/java")
+                    .replace("classes", "main/java");
+        }
+
+        try {
+            // Does nothing if the line ranges are known already, reads a class file that the graph scan did not
+            MethodsHelper.computeMethodToLineNumbers(filePath);
+        } catch (ParserException exception) {
+            getLog().warn("File contains interface only, no methods found in " + filePath);
+        } catch (IOException exception) {
+            getLog().warn("Could not read " + filePath + ", no methods found: " + exception);
+        }
+        return filePath;
+    }
+
     // TODO: Currently implemented as an overload, need to merge together eventually, and add documentation
-    private void computeAffectedSpecs(boolean dependencyChangeDetected) {
+    private void computeAffectedSpecs(boolean dependencyChangeDetected) throws MojoExecutionException {
         Set<String> impactedClasses = null;
         if (getGranularity() == Granularity.CLASS || getGranularity() == Granularity.FINE) {
             impactedClasses = new HashSet<>(getImpacted());
@@ -751,7 +925,7 @@ public class AffectedSpecsMojo extends ImpactedComponentsMojo {
         }
         if (dependencyChangeDetected) {
             // Revert to base RV, use all specs, include libraries and non-affected classes.
-            affectedSpecs.addAll(Objects.requireNonNull(Util.getFullSpecSet(javamopAgent, "mop")));
+            affectedSpecs.addAll(Objects.requireNonNull(Util.getFullSpecSet(javamopAgent, "mop", getArtifactsDir())));
             includeLibraries = true;
             includeNonAffected = true;
         } else {
@@ -784,76 +958,35 @@ public class AffectedSpecsMojo extends ImpactedComponentsMojo {
      * that we can use the line numbers of the methods to find the corresponding
      * specs inside that method. This is because the messages from AJC contain only
      * the class and line number of the spec not the method.
-     * Example message entry lexed with "'":
-     *   0: [AppClassLoader@18b4aac2] weaveinfo Join point
-     *   1: method-call(java.lang.StringBuilder java.lang.StringBuilder.append(java.lang.String))
-     *   2: in Type
-     *   3: org.mitre.dsmiley.httpproxy.ProxyServletTest
-     *   4: (ProxyServletTest.java:53) advised by before advice from
-     *   5: mop.Appendable_ThreadSafeMonitorAspect
-     *   6: (Appendable_ThreadSafeMonitorAspect.aj:34)
+     * See {@link WeaveInfoTable} for how the class, spec, and line of a join point are taken from a message.
      *
-     * @param ms An array of IMessage objects
+     * @param ms The join points reported by AJC
      */
-    private void computeMapFromMessage(IMessage[] ms) throws MojoExecutionException {
+    private void computeMapFromMessage(WeaveInfoTable ms) throws MojoExecutionException {
         if (getGranularity() == Granularity.CLASS || getGranularity() == Granularity.FINE || !finerSpecMapping) {
-            for (IMessage message : ms) {
-                String[] lexedMessage = message.getMessage().split("'");
-                String key = lexedMessage[CLASS_INDEX_IN_MSG];
-                String value = lexedMessage[SPEC_INDEX_IN_MSG].substring(TRIMMED_SPEC_NAME_INDEX);
-                if (!changedMap.containsKey(key)) {
-                    changedMap.put(key, new HashSet<>());
-                }
-                changedMap.get(key).add(value);
-            }
+            ms.addClassesToSpecs(changedMap);
         } else if (getGranularity() == Granularity.METHOD) {
             Classpath sfClassPath = getSureFireClassPath();
             ClassLoader loader = createClassLoader(sfClassPath);
 
-            for (IMessage message : ms) {
-                String[] lexedMessage = message.getMessage().split("'");
-                String klasName = lexedMessage[CLASS_INDEX_IN_MSG];
-                String spec = lexedMessage[SPEC_INDEX_IN_MSG].substring(TRIMMED_SPEC_NAME_INDEX);
-
-                // It is possible that we don't have line number, so we need this tmp thing and set default to 0
-                String[] tmp = lexedMessage[SPEC_LINE_NUMBER].split(" ")[1].split(":");
-                int specLineNumber = 0;
-                if (tmp.length > 1) {
-                    specLineNumber = Integer.parseInt(tmp[1].replace(")", ""));
-                }
-
+            String artifactsDir = getArtifactsDir();
+            // It is possible that we don't have line number, in which case it is 0
+            ms.forEachLine((klasName, spec, specLineNumber) -> {
                 String klas = ChecksumUtil.toClassOrJavaName(klasName, false);
-                URL url = loader.getResource(klas);
-                String filePath = url.getPath();
+                String filePath = computeMethodLines(loader, artifactsDir, klas);
 //                System.out.println("Granularity.METHOD " + filePath + " and klas is " + klas);
 
-                if (filePath.contains("jar!")) {
-                    filePath = getArtifactsDir() + "lib-jars" + filePath.split("!")[1];
-                } else {
-                    filePath = filePath.replace(".class", ".java")
-                            .replace("target", "src")
-                            .replace("test-classes", "test/java")
-                            .replace("classes", "main/java");
-                }
-
-                try {
-                    // This method has a return value, but it also updated a global variable inside its class.
-                    MethodsHelper.computeMethodToLineNumbers(filePath);
-                } catch (ParserException | IOException exception) {
-                    getLog().warn("File contains interface only, no methods found in " + filePath);
-                }
-
                 String method = MethodsHelper.getWrapMethod(filePath, specLineNumber);
                 if (method == null) {
                     getLog().warn("Cannot find method for " + filePath + " at line " + specLineNumber);
-                    continue;
+                    return;
                 }
                 String key = klas.replace(".class", "") + "#" + method;
                 Set<String> methodSpecs = methodToSpecsUpdateMap.getOrDefault(key, new HashSet<>());
                 methodToSpecsUpdateMap.put(key, methodSpecs);
                 methodSpecs.add(spec);
 //                System.out.println(">>> KEY IS " + key + ", methodSpecs is " + methodSpecs);
-            }
+            });
             for (String method : getImpactedMethods()) {
 //                System.out.println(">>> METHOD IS " + method);
                 methodToSpecsUpdateMap.putIfAbsent(MethodsHelper.convertAsmToJava(method), new HashSet<>());
@@ -997,7 +1130,7 @@ public class AffectedSpecsMojo extends ImpactedComponentsMojo {
         String aspectList = getArtifactsDir() + File.separator + "aspects.lst";
         List<String> aspects = extractOrFind(destinationDir, ".aj", "weaved-specs");
         // Users have the freedom to delete specs. Simply using this list may lead to errors.
-        Set<String> existingSpecs = Util.getFullSpecSet(javamopAgent, "mop");
+        Set<String> existingSpecs = Util.getFullSpecSet(javamopAgent, "mop", getArtifactsDir());
         aspects = aspects.stream()
                         .filter(spec -> existingSpecs.contains(
                                 spec.substring(spec.lastIndexOf(File.separator) + 1).split("\\.")[0]
@@ -19,6 +19,8 @@ public class MonitorMojo extends AffectedSpecsMojo {
     public static final String AGENT_CONFIGURATION_FILE = "new-aop-ajc.xml";
     protected static Set<String> monitorIncludes;
     protected static Set<String> monitorExcludes;
+    protected static Set<String> monitorInstrumentedClasses;
+    protected static Set<String> monitorProjectClasses;
 
     @Parameter(property = "rpsRpp", defaultValue = "false")
     private boolean rpsRpp;
@@ -32,7 +34,24 @@ public class MonitorMojo extends AffectedSpecsMojo {
     @Parameter(property = "haltForRTS", defaultValue = "false")
     protected boolean haltForRTS;
 
+    /**
+     * Whether to pass the generated configuration to the JavaMOP agent through surefire's argLine instead of writing
+     * it into the agent JAR, which stays read-only for builds that share it.
+     */
+    @Parameter(property = "externalAgentConfig", defaultValue = "false")
+    private boolean externalAgentConfig;
+
+    /**
+     * Whether to exclude the packages without affected classes with one wildcard each, instead of excluding every
+     * non-affected class by name. The wildcards also exclude classes that the build does not know of in those
+     * packages, e.g., classes generated while the tests run.
+     */
+    @Parameter(property = "compressExcludes", defaultValue = "false")
+    private boolean compressExcludes;
+
     public void execute() throws MojoExecutionException {
+        // Set again by configureAgent if externalAgentConfig, and must not leak into a later build in the same JVM
+        System.clearProperty("monitor-agent-config");
         super.execute();
 
         if (dependencyChanged) {
@@ -55,8 +74,11 @@ public class MonitorMojo extends AffectedSpecsMojo {
             long start = System.currentTimeMillis();
             monitorIncludes = includeLibraries ? new HashSet<>() : retrieveIncludePackages();
             monitorExcludes = includeNonAffected ? new HashSet<>() : getNonAffected();
+            monitorInstrumentedClasses = compressExcludes ? instrumentedClasses(monitorExcludes) : null;
+            monitorProjectClasses = compressExcludes ? new HashSet<>(getProjectClasses()) : null;
             Util.generateNewAgentConfigurationFile(getArtifactsDir() + File.separator + AGENT_CONFIGURATION_FILE, affectedSpecs,
-                    monitorIncludes, monitorExcludes, enableStats, verboseAgent);
+                    monitorIncludes, monitorExcludes, enableStats, verboseAgent, monitorInstrumentedClasses,
+                    monitorProjectClasses);
             if (rpsRpp) {
                 getLog().info("In mode RPS-RPP, writing the list of affected specs to affected-specs.txt...");
                 try {
@@ -67,8 +89,7 @@ public class MonitorMojo extends AffectedSpecsMojo {
                 System.setProperty("rpsRpp", "true");
             }
             getLog().info("AffectedSpecs: " + affectedSpecs.size());
-            Util.replaceFileInJar(javamopAgent, "/META-INF/aop-ajc.xml",
-                    getArtifactsDir() + File.separator + AGENT_CONFIGURATION_FILE);
+            configureAgent();
             long end = System.currentTimeMillis();
             getLog().info("[eMOP Timer] Generating aop-ajc.xml and replace it takes " + (end - start) + " ms");
         } else if (getGranularity() == Granularity.METHOD) {
@@ -88,14 +109,16 @@ public class MonitorMojo extends AffectedSpecsMojo {
 
             monitorIncludes = includeLibraries ? new HashSet<>() : retrieveIncludePackages();
             monitorExcludes = includeNonAffected ? new HashSet<>() : getNonAffectedClasses();
+            monitorInstrumentedClasses = compressExcludes ? instrumentedClasses(monitorExcludes) : null;
+            monitorProjectClasses = compressExcludes ? new HashSet<>(getProjectClasses()) : null;
             getLog().info("AffectedSpecs: " + affectedSpecs.size());
             if (debug) {
                 getLog().info("AffectedSpecs: " + affectedSpecs);
             }
             Util.generateNewAgentConfigurationFile(getArtifactsDir() + File.separator + AGENT_CONFIGURATION_FILE, affectedSpecs,
-                    monitorIncludes, monitorExcludes, enableStats, verboseAgent);
-            Util.replaceFileInJar(javamopAgent, "/META-INF/aop-ajc.xml",
-                    getArtifactsDir() + File.separator + AGENT_CONFIGURATION_FILE);
+                    monitorIncludes, monitorExcludes, enableStats, verboseAgent, monitorInstrumentedClasses,
+                    monitorProjectClasses);
+            configureAgent();
             long end = System.currentTimeMillis();
             getLog().info("[eMOP Timer] Generating aop-ajc.xml and replace it takes " + (end - start) + " ms");
         } else if (getGranularity() == Granularity.HYBRID) {
@@ -113,14 +136,16 @@ public class MonitorMojo extends AffectedSpecsMojo {
             long start = System.currentTimeMillis();
             monitorIncludes = includeLibraries ? new HashSet<>() : retrieveIncludePackages();
             monitorExcludes = includeNonAffected ? new HashSet<>() : getNonAffectedClasses();
+            monitorInstrumentedClasses = compressExcludes ? instrumentedClasses(monitorExcludes) : null;
+            monitorProjectClasses = compressExcludes ? new HashSet<>(getProjectClasses()) : null;
             getLog().info("AffectedSpecs: " + affectedSpecs.size());
             if (debug) {
                 getLog().info("AffectedSpecs: " + affectedSpecs);
             }
             Util.generateNewAgentConfigurationFile(getArtifactsDir() + File.separator + AGENT_CONFIGURATION_FILE, affectedSpecs,
-                    monitorIncludes, monitorExcludes, enableStats, verboseAgent);
-            Util.replaceFileInJar(javamopAgent, "/META-INF/aop-ajc.xml",
-                    getArtifactsDir() + File.separator + AGENT_CONFIGURATION_FILE);
+                    monitorIncludes, monitorExcludes, enableStats, verboseAgent, monitorInstrumentedClasses,
+                    monitorProjectClasses);
+            configureAgent();
             long end = System.currentTimeMillis();
             getLog().info("[eMOP Timer] Generating aop-ajc.xml and replace it takes " + (end - start) + " ms");
         }
@@ -130,6 +155,42 @@ public class MonitorMojo extends AffectedSpecsMojo {
         }
     }
 
+    /**
+     * Computes the set of classes of the project that should be monitored.
+     * @param excludedClasses the classes that should not be monitored.
+     * @return all classes besides the excluded classes.
+     */
+    private Set<String> instrumentedClasses(Set<String> excludedClasses) {
+        Set<String> instrumentedClasses = new HashSet<>(getAllClasses());
+        instrumentedClasses.removeAll(excludedClasses);
+        return instrumentedClasses;
+    }
+
+    /**
+     * Makes the JavaMOP agent use the generated configuration, either by writing it into the agent JAR, or by having
+     * surefire pass it to the agent.
+     * @throws MojoExecutionException if the agent that manipulates surefire's arguments could not be attached.
+     */
+    private void configureAgent() throws MojoExecutionException {
+        String configuration = getArtifactsDir() + File.separator + AGENT_CONFIGURATION_FILE;
+        if (externalAgentConfig) {
+            useExternalAgentConfig(configuration);
+            if (!AgentLoader.loadDynamicAgent("JavaAgent.class")) {
+                throw new MojoExecutionException("Could not attach agent");
+            }
+        } else {
+            Util.replaceFileInJar(javamopAgent, "/META-INF/aop-ajc.xml", configuration);
+        }
+    }
+
+    /**
+     * Sets up the System property for SurefireMojoInterceptor to add the configuration to surefire's argLine.
+     * @param configuration the path to the generated agent configuration file.
+     */
+    static void useExternalAgentConfig(String configuration) {
+        System.setProperty("monitor-agent-config", "file:" + new File(configuration).getAbsolutePath());
+    }
+
     /**
      * Generates the set of package names of classes that should be monitored. If the set is non-empty, then any
      * package not included in this set will not be monitored.
@@ -12,6 +12,7 @@ import java.util.stream.Collectors;
 
 import com.google.common.collect.Sets;
 import org.finemop.finemop.maven.AgentLoader;
+import org.finemop.finemop.maven.SurefireMojoInterceptor;
 import org.finemop.finemop.util.Util;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.Mojo;
@@ -36,6 +37,27 @@ public class RppHandlerMojo extends MonitorMojo {
     @Parameter(property = "javamopAgent")
     private String javamopAgent;
 
+    /**
+     * Whether to leave the JavaMOP agent JAR as is and write only the configuration of each phase, which the agent
+     * reads in place of its own configuration, instead of creating a copy of the agent JAR for each phase.
+     */
+    @Parameter(property = "overlayAgentConfig", defaultValue = "false")
+    private boolean overlayAgentConfig;
+
+    /**
+     * Whether to run the background phase in its own surefire run concurrently with the critical phase, instead of
+     * after it. The background phase runs the tests in the background-run directory of the artifacts directory, so
+     * tests that resolve files against the working directory may not find them there.
+     */
+    @Parameter(property = "concurrentBackground", defaultValue = "false")
+    private boolean concurrentBackground;
+
+    /**
+     * The fraction of the available processors that the JVM of a concurrent background phase may use, at least one.
+     */
+    @Parameter(property = "backgroundCpuQuota", defaultValue = "0.5")
+    private double backgroundCpuQuota;
+
     /**
      * Reads a file containing specifications (one on each line), and outputs the set contained in the file.
      * @param specsFilePath The path to the specifications file.
@@ -81,7 +103,8 @@ public class RppHandlerMojo extends MonitorMojo {
     private void computeSpecSets() {
         Set<String> allSpecs;
         if (!Boolean.getBoolean("rpsRpp")) {
-            allSpecs = Util.retrieveSpecListFromJar(javamopAgent, getLog());
+            allSpecs = Util.retrieveSpecListFromJar(javamopAgent, getLog(),
+                    metaInfoDirectory.getAbsolutePath());
         } else {
             allSpecs = parseSpecsFile(new File(metaInfoDirectory, "affected-specs.txt").getAbsolutePath());
         }
@@ -119,17 +142,21 @@ public class RppHandlerMojo extends MonitorMojo {
 
     /**
      * Creates a JavaMOP agent JAR configured to only monitor the specified set of specifications.
+     * @param javamopAgent the path to the JavaMOP agent JAR to copy.
+     * @param metaInfoDirectory the directory to create the JAR in.
      * @param mode an identifier for the jar (either "critical" or "background").
      * @param specsToMonitor  the list of specifications that the agent should monitor.
      * @return The path to the created JAR.
      */
-    private String setUpSingleJar(String mode, Set<String> specsToMonitor) {
+    static String setUpSingleJar(String javamopAgent, File metaInfoDirectory, String mode,
+                                 Set<String> specsToMonitor) {
         File javamopAgentFile = new File(javamopAgent);
         File createdJar = new File(metaInfoDirectory, mode + "-javamop.jar");
         try {
             Files.copy(javamopAgentFile.toPath(), createdJar.toPath(), StandardCopyOption.REPLACE_EXISTING);
             Util.generateNewAgentConfigurationFile(metaInfoDirectory + File.separator + mode + "-ajc.xml",
-                    specsToMonitor, MonitorMojo.monitorIncludes, MonitorMojo.monitorExcludes, false, false);
+                    specsToMonitor, MonitorMojo.monitorIncludes, MonitorMojo.monitorExcludes, false, false,
+                    MonitorMojo.monitorInstrumentedClasses, MonitorMojo.monitorProjectClasses);
             Util.replaceFileInJar(createdJar.getAbsolutePath(), "/META-INF/aop-ajc.xml",
                     metaInfoDirectory + File.separator + mode + "-ajc.xml");
         } catch (IOException ex) {
@@ -138,6 +165,35 @@ public class RppHandlerMojo extends MonitorMojo {
         return createdJar.getAbsolutePath();
     }
 
+    /**
+     * Creates an AspectJ configuration file to only monitor the specified set of specifications, for the JavaMOP
+     * agent to read in place of the configuration in its JAR.
+     * @param metaInfoDirectory the directory to create the file in.
+     * @param mode an identifier for the file (either "critical" or "background").
+     * @param specsToMonitor  the list of specifications that the agent should monitor.
+     * @return The file URL of the created configuration, as the org.aspectj.weaver.loadtime.configuration property
+     *         takes it.
+     */
+    static String setUpConfiguration(File metaInfoDirectory, String mode, Set<String> specsToMonitor) {
+        File createdConfig = new File(metaInfoDirectory, mode + "-ajc.xml");
+        Util.generateNewAgentConfigurationFile(createdConfig.getAbsolutePath(), specsToMonitor,
+                MonitorMojo.monitorIncludes, MonitorMojo.monitorExcludes, false, false,
+                MonitorMojo.monitorInstrumentedClasses, MonitorMojo.monitorProjectClasses);
+        return "file:" + createdConfig.getAbsolutePath();
+    }
+
+    /**
+     * Returns the JVM arguments that limit a JVM to its share of the processors, for thread pools and the garbage
+     * collector to size themselves to it. JVMs that do not know -XX:ActiveProcessorCount ignore it.
+     * @param quota the fraction of the processors.
+     * @param processors the number of available processors.
+     * @return The JVM arguments.
+     */
+    static String backgroundCpuArgs(double quota, int processors) {
+        int count = Math.max(1, (int) (quota * processors));
+        return "-XX:+IgnoreUnrecognizedVMOptions -XX:ActiveProcessorCount=" + count;
+    }
+
     /**
      * Creates new agent JARs for running critical and background phases, and sets up System properties to record
      * paths to critical and background phase JARs.
@@ -152,14 +208,42 @@ public class RppHandlerMojo extends MonitorMojo {
         System.setProperty("previous-javamop-agent", javamopAgent);
         setupSpecFiles();
         computeSpecSets();
-        String criticalRunAgentPath = setUpSingleJar("critical", criticalSpecsSet);
-        String backgroundRunAgentPath = setUpSingleJar("background", backgroundSpecsSet);
+        String criticalRunAgentPath;
+        String backgroundRunAgentPath;
+        System.clearProperty("previous-agent-config");
+        SurefireMojoInterceptor.clearBackgroundRun();
+        if (concurrentBackground) {
+            System.setProperty("rpp-concurrent-background", "true");
+            System.setProperty("rpp-background-dir", new File(metaInfoDirectory, "background-run").getAbsolutePath());
+            System.setProperty("rpp-background-args", backgroundCpuArgs(backgroundCpuQuota,
+                    Runtime.getRuntime().availableProcessors()));
+        } else {
+            System.clearProperty("rpp-concurrent-background");
+        }
+        if (overlayAgentConfig) {
+            // both phases run the agent as is, each with its own configuration
+            criticalRunAgentPath = javamopAgent;
+            backgroundRunAgentPath = javamopAgent;
+            String criticalRunConfig = setUpConfiguration(metaInfoDirectory, "critical", criticalSpecsSet);
+            String backgroundRunConfig = setUpConfiguration(metaInfoDirectory, "background", backgroundSpecsSet);
+            System.setProperty("rpp-agent-config", criticalRunConfig);
+            System.setProperty("background-agent-config", backgroundRunConfig);
+        } else {
+            criticalRunAgentPath = setUpSingleJar(javamopAgent, metaInfoDirectory, "critical", criticalSpecsSet);
+            backgroundRunAgentPath = setUpSingleJar(javamopAgent, metaInfoDirectory, "background",
+                    backgroundSpecsSet);
+            System.clearProperty("rpp-agent-config");
+            System.clearProperty("background-agent-config");
+        }
         if (!criticalRunAgentPath.isEmpty()) {
             System.setProperty("rpp-agent", criticalRunAgentPath);
             System.setProperty("background-agent", backgroundRunAgentPath);
         } else {
             getLog().info("Critical phase had no specs, skipping and running background phase...");
             System.setProperty("rpp-agent", backgroundRunAgentPath);
+            if (overlayAgentConfig) {
+                System.setProperty("rpp-agent-config", System.getProperty("background-agent-config"));
+            }
             System.setProperty("background-agent", ""); // prevent RppMojo from running a second time
         }
     }
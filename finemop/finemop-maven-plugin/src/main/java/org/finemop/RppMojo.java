@@ -9,6 +9,7 @@ import java.nio.file.Paths;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
 
 import org.finemop.finemop.maven.SurefireMojoInterceptor;
@@ -61,12 +62,33 @@ public class RppMojo extends RppHandlerMojo {
         return true;
     }
 
+    /**
+     * Waits for the background phase that runs concurrently with the critical phase.
+     * @return false if the surefire run resulted in an exception, true if otherwise
+     * @throws MojoExecutionException when interrupted while waiting.
+     */
+    private boolean awaitBackgroundRun() throws MojoExecutionException {
+        getLog().info("RPP waiting for the concurrent background phase: " + timeFormatter.format(new Date()));
+        try {
+            return SurefireMojoInterceptor.backgroundRun.get();
+        } catch (ExecutionException ex) {
+            getLog().warn("RPP concurrent background phase failed", ex.getCause());
+            return false;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while waiting for the background phase", ex);
+        } finally {
+            SurefireMojoInterceptor.clearBackgroundRun();
+            getLog().info("RPP concurrent background phase end: " + timeFormatter.format(new Date()));
+        }
+    }
+
     public void updateCriticalAndBackgroundSpecs(Path criticalViolationsPath,
                                                  Path backgroundViolationsPath,
                                                  String javamopAgent)
             throws MojoExecutionException, FileNotFoundException {
         Set<String> criticalSpecsSet = new HashSet<>();
-        Set<String> allSpecs = Util.retrieveSpecListFromJar(javamopAgent, getLog());
+        Set<String> allSpecs = Util.retrieveSpecListFromJar(javamopAgent, getLog(), getArtifactsDir());
         if (!demoteCritical && !RppHandlerMojo.criticalSpecsSet.equals(allSpecs)) {
             // demote specs if the critical specs set contained all specs (first run)
             criticalSpecsSet.addAll(RppHandlerMojo.criticalSpecsSet);
@@ -102,9 +124,21 @@ public class RppMojo extends RppHandlerMojo {
         criticalViolationsPath = Paths.get(Util.moveViolationCounts(getBasedir(), getArtifactsDir(), "critical"));
         String previousJavamopAgent = System.getProperty("rpp-agent");
         String backgroundAgent = System.getProperty("background-agent");
-        if (!backgroundAgent.isEmpty()) {
+        if (SurefireMojoInterceptor.backgroundRun != null) {
+            // the background phase started with the critical phase, in its own directory
+            if (!awaitBackgroundRun()) {
+                getLog().info("Surefire run threw an exception.");
+            }
+            backgroundViolationsPath = Paths.get(Util.moveViolationCounts(
+                    new File(System.getProperty("rpp-background-dir")), getArtifactsDir(), "background"));
+        } else if (!backgroundAgent.isEmpty()) {
             System.setProperty("previous-javamop-agent", previousJavamopAgent);
             System.setProperty("rpp-agent", backgroundAgent);
+            String previousAgentConfig = System.getProperty("rpp-agent-config");
+            if (previousAgentConfig != null) {
+                System.setProperty("previous-agent-config", previousAgentConfig);
+                System.setProperty("rpp-agent-config", System.getProperty("background-agent-config"));
+            }
             if (!invokeSurefire()) {
                 getLog().info("Surefire run threw an exception.");
             }
@@ -29,10 +29,6 @@ import org.jboss.forge.roaster.ParserException;
 @Execute(phase = LifecyclePhase.TEST, lifecycle = "rps")
 public class RpsMojo extends MonitorMojo {
 
-    private static final int CLASS_INDEX_IN_MSG = 3;
-    private static final int SPEC_LINE_NUMBER = 4;
-    private static final int TRIMMED_SPEC_NAME_INDEX = 4;
-    private static final int SPEC_INDEX_IN_MSG = 5;
     private static final String CLASSES_TO_SPECS_FILE_NAME = "classesToSpecs.bin";
     private static final String ASPECTJ_WEAVING_FILE = "aspectj-weaving-message.log";
     private static final String METHODS_TO_SPECS_FILE_NAME = "methodsToSpecs.bin";
@@ -48,10 +44,16 @@ public class RpsMojo extends MonitorMojo {
         Path ajcLog = Paths.get(getArtifactsDir() + File.separator + ASPECTJ_WEAVING_FILE);
         if (Files.exists(ajcLog)) {
             getLog().info("AspectJ weaving log found: " + ajcLog.toString());
+            WeaveInfoTable ms;
+            try {
+                ms = WeaveInfoTable.readLog(ajcLog);
+            } catch (IOException e) {
+                throw new MojoExecutionException("Error reading ajcLog file", e);
+            }
 
             if (getGranularity() == Granularity.CLASS || getGranularity() == Granularity.FINE) {
                 classToSpecs = Util.readMapFromFile(getArtifactsDir(), "classToSpecs.bin");
-                computeMapFromMessage(ajcLog);
+                computeMapFromMessage(ms);
                 changedMap.forEach((key, value) -> classToSpecs.merge(key, value, (oldValue, newValue) -> newValue));
                 writeMapToFile();
             } else if (getGranularity() == Granularity.METHOD) {
@@ -59,7 +61,7 @@ public class RpsMojo extends MonitorMojo {
 
                 try {
                     MethodsHelper.loadMethodsToLineNumbers(getArtifactsDir());
-                    computeMapFromMessage(ajcLog);
+                    computeMapFromMessage(ms);
                     MethodsHelper.saveMethodsToLineNumbers(getArtifactsDir());
                 } catch (Exception ex) {
                     ex.printStackTrace();
@@ -81,8 +83,8 @@ public class RpsMojo extends MonitorMojo {
 
                 if (finerSpecMapping) {
                     try {
-                        computeMethodsToSpecsMapFromMessage(ajcLog);
-                        computeClassesToSpecsMapFromMessage(ajcLog);
+                        computeMethodsToSpecsMapFromMessage(ms);
+                        computeClassesToSpecsMapFromMessage(ms);
                     } catch (Exception exception) {
                         exception.printStackTrace();
                     }
@@ -95,7 +97,7 @@ public class RpsMojo extends MonitorMojo {
                     writeMapToFile(methodsToSpecs, METHODS_TO_SPECS_FILE_NAME, OutputFormat.BIN);
                 } else {
                     classToSpecs = readMapFromFile("classToSpecs.bin");
-                    computeMapFromMessage(ajcLog);
+                    computeMapFromMessage(ms);
                     changedMap.forEach((key, value) -> classToSpecs.merge(key, value, (oldValue, newValue) -> newValue));
                     writeMapToFile();
                 }
@@ -111,61 +113,26 @@ public class RpsMojo extends MonitorMojo {
         getLog().info("[eMOP Timer] Compute affected specs from log takes " + (end - start) + " ms");
     }
 
-    private void computeMapFromMessage(Path ajcLog) throws MojoExecutionException {
-        String[] ms;
-        try {
-            ms = Files.lines(ajcLog).toArray(String[]::new);
-        } catch (IOException e) {
-            throw new MojoExecutionException("Error reading ajcLog file", e);
-        }
-
-        int i = 0;
+    private void computeMapFromMessage(WeaveInfoTable ms) throws MojoExecutionException {
         if (getGranularity() == Granularity.CLASS || getGranularity() == Granularity.FINE || !finerSpecMapping) {
-            for (String message : ms) {
-                if (!message.contains("weaveinfo Join point")) {
-                    continue;
-                }
+            ms.addClassesToSpecs(changedMap);
 
-                String[] lexedMessage = message.split("'");
-                String key = lexedMessage[CLASS_INDEX_IN_MSG];
-                String value = lexedMessage[SPEC_INDEX_IN_MSG].substring(TRIMMED_SPEC_NAME_INDEX);
-
-                if (!changedMap.containsKey(key)) {
-                    changedMap.put(key, new HashSet<>());
-                }
-                changedMap.get(key).add(value);
-                i += 1;
-            }
-
-            getLog().info("Added " + i + " class/spec to the changedMap from AspectJ's log.");
+            getLog().info("Added " + ms.getMessageCount() + " class/spec to the changedMap from AspectJ's log.");
         } if (getGranularity() == Granularity.METHOD) {
             Classpath sfClassPath = getSureFireClassPath();
             ClassLoader loader = createClassLoader(sfClassPath);
 
-            for (String message : ms) {
-                if (!message.contains("weaveinfo Join point")) {
-                    continue;
-                }
-
-//                System.out.println(message);
-                String[] lexedMessage = message.split("'");
-                String klasName = lexedMessage[CLASS_INDEX_IN_MSG];
-                String spec = lexedMessage[SPEC_INDEX_IN_MSG].substring(TRIMMED_SPEC_NAME_INDEX);
-
-                // It is possible that we don't have line number, so we need this tmp thing and set default to 0
-                String[] tmp = lexedMessage[SPEC_LINE_NUMBER].split(" ")[1].split(":");
-                int specLineNumber = 0;
-                if (tmp.length > 1) {
-                    specLineNumber = Integer.parseInt(tmp[1].replace(")", ""));
-                }
-
+            String artifactsDir = getArtifactsDir();
+            // It is possible that we don't have line number, in which case it is 0
+            int[] added = new int[1];
+            ms.forEachLine((klasName, spec, specLineNumber) -> {
                 String klas = ChecksumUtil.toClassOrJavaName(klasName, false);
 //                System.out.println("CLASS: " + klas + " and spec is " + spec + " at line " + specLineNumber);
                 URL url = loader.getResource(klas);
                 String filePath = url.getPath();
 
                 if (filePath.contains("jar!")) {
-                    filePath = getArtifactsDir() + "lib-jars" + filePath.split("!")[1];
+                    filePath = artifactsDir + "lib-jars" + filePath.split("!")[1];
                 } else {
                     filePath = filePath.replace(".class", ".java")
                             .replace("target", "src")
@@ -186,7 +153,7 @@ public class RpsMojo extends MonitorMojo {
                 String method = MethodsHelper.getWrapMethod(filePath, specLineNumber);
                 if (method == null) {
                     getLog().warn("Cannot find method for " + filePath + " at line " + specLineNumber);
-                    continue;
+                    return;
                 }
 
 //                key should be com/conveyal/osmlib/RoundTripTest#compareMap(Map,Map)
@@ -194,35 +161,16 @@ public class RpsMojo extends MonitorMojo {
                 Set<String> methodSpecs = methodToSpecsUpdateMap.getOrDefault(key, new HashSet<>());
                 methodToSpecsUpdateMap.put(key, methodSpecs);
                 methodSpecs.add(spec);
-                i += 1;
-            }
+                added[0] += 1;
+            });
 
-            getLog().info("Added " + i + " method/spec to the methodToSpecsUpdateMap from AspectJ's log.");
+            getLog().info("Added " + added[0] + " method/spec to the methodToSpecsUpdateMap from AspectJ's log.");
         }
     }
 
-    private void computeClassesToSpecsMapFromMessage(Path ajcLog) throws MojoExecutionException {
-        String[] ms;
-        try {
-            ms = Files.lines(ajcLog).toArray(String[]::new);
-        } catch (IOException e) {
-            throw new MojoExecutionException("Error reading ajcLog file", e);
-        }
-
+    private void computeClassesToSpecsMapFromMessage(WeaveInfoTable ms) throws MojoExecutionException {
         MethodsHelper.loadMethodsToLineNumbers(getArtifactsDir());
-        for (String message : ms) {
-            if (!message.contains("weaveinfo Join point")) {
-                continue;
-            }
-
-            String[] lexedMessage = message.split("'");
-            String key = lexedMessage[CLASS_INDEX_IN_MSG];
-            String value = lexedMessage[SPEC_INDEX_IN_MSG].substring(TRIMMED_SPEC_NAME_INDEX);
-            if (!classToSpecsUpdateMap.containsKey(key)) {
-                classToSpecsUpdateMap.put(key, new HashSet<>());
-            }
-            classToSpecsUpdateMap.get(key).add(value);
-        }
+        ms.addClassesToSpecs(classToSpecsUpdateMap);
         MethodsHelper.saveMethodsToLineNumbers(getArtifactsDir());
     }
 
@@ -230,39 +178,19 @@ public class RpsMojo extends MonitorMojo {
      * Compute a mapping from affected classes to specifications based on the
      * messages from AJC log.
      */
-    private void computeMethodsToSpecsMapFromMessage(Path ajcLog) throws Exception {
-        String[] ms;
-        try {
-            ms = Files.lines(ajcLog).toArray(String[]::new);
-        } catch (IOException e) {
-            throw new MojoExecutionException("Error reading ajcLog file", e);
-        }
-
+    private void computeMethodsToSpecsMapFromMessage(WeaveInfoTable ms) throws Exception {
         Classpath sfClassPath = getSureFireClassPath();
         ClassLoader loader = createClassLoader(sfClassPath);
         MethodsHelper.loadMethodsToLineNumbers(getArtifactsDir());
-        for (String message : ms) {
-            if (!message.contains("weaveinfo Join point")) {
-                continue;
-            }
-
-            String[] lexedMessage = message.split("'");
-            String klasName = lexedMessage[CLASS_INDEX_IN_MSG];
-            String spec = lexedMessage[SPEC_INDEX_IN_MSG].substring(TRIMMED_SPEC_NAME_INDEX);
-
-            // It is possible that we don't have line number, so we need this tmp thing and set default to 0
-            String[] tmp = lexedMessage[SPEC_LINE_NUMBER].split(" ")[1].split(":");
-            int specLineNumber = 0;
-            if (tmp.length > 1) {
-                specLineNumber = Integer.parseInt(tmp[1].replace(")", ""));
-            }
-
+        String artifactsDir = getArtifactsDir();
+        // It is possible that we don't have line number, in which case it is 0
+        ms.forEachLine((klasName, spec, specLineNumber) -> {
             String klas = ChecksumUtil.toClassOrJavaName(klasName, false);
             URL url = loader.getResource(klas);
             String filePath = url.getPath();
 
             if (filePath.contains("jar!")) {
-                filePath = getArtifactsDir() + "lib-jars" + filePath.split("!")[1];
+                filePath = artifactsDir + "lib-jars" + filePath.split("!")[1];
             } else {
                 filePath = filePath.replace(".class", ".java")
                         .replace("target", "src")
@@ -272,20 +200,20 @@ public class RpsMojo extends MonitorMojo {
 
             try {
                 MethodsHelper.computeMethodToLineNumbers(filePath);
-            } catch (ParserException exception) {
+            } catch (ParserException | IOException exception) {
                 getLog().warn("File contains interface only, no methods found in " + filePath);
             }
 
             String method = MethodsHelper.getWrapMethod(filePath, specLineNumber);
             if (method == null) {
                 getLog().warn("Spec at line " + specLineNumber + " in " + filePath + " is not within a method");
-                continue;
+                return;
             }
             String key = klas.replace(".class", "") + "#" + method;
             Set<String> methodSpecs = methodToSpecsUpdateMap.getOrDefault(key, new HashSet<>());
             methodToSpecsUpdateMap.put(key, methodSpecs);
             methodSpecs.add(spec);
-        }
+        });
 
         MethodsHelper.saveMethodsToLineNumbers(getArtifactsDir());
     }
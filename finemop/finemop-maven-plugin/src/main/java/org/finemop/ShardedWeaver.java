@@ -0,0 +1,232 @@
+package org.finemop;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.aspectj.bridge.IMessage;
+import org.aspectj.bridge.Message;
+import org.aspectj.bridge.MessageHandler;
+import org.aspectj.tools.ajc.Main;
+import org.finemop.finemop.util.Util;
+
+/**
+ * Runs ajc over shards of the inputs in parallel, one forked JVM per shard, and merges their messages. Every shard
+ * is compiled with the same options, so it weaves the same aspects, and writes to its own output directory. The
+ * inputs are balanced over the shards by size.
+ *
+ * <p>The forks only need ajc and this class on their classpath. Each one writes the weave info messages and the
+ * errors of its ajc run to a file, in the order ajc reported them.
+ *
+ * <p>The work directory is recreated on every run. Only the logs of the shards are kept afterwards; the argument
+ * files, inpaths, and messages are deleted.
+ */
+public class ShardedWeaver implements WeaveCache.Weaver {
+
+    private final List<String> options;
+    private final int shards;
+    private final Path outputDir;
+    private final Path inpathRoot;
+    private final Path workDir;
+
+    /**
+     * @param options    Options passed to ajc, other than the inputs and the output directory
+     * @param shards     Maximum number of ajc runs
+     * @param outputDir  Directory of the output directories of the shards
+     * @param inpathRoot Directory that contains the inputs if they are class files, or null if they are sources
+     * @param workDir    Directory for the argument files, inpaths, and messages of the shards
+     */
+    public ShardedWeaver(List<String> options, int shards, Path outputDir, Path inpathRoot, Path workDir) {
+        this.options = options;
+        this.shards = Math.max(1, shards);
+        this.outputDir = outputDir;
+        this.inpathRoot = inpathRoot;
+        this.workDir = workDir;
+    }
+
+    @Override
+    public MessageHandler weave(List<Path> inputs) {
+        MessageHandler handler = new MessageHandler();
+        handler.dontIgnore(IMessage.WEAVEINFO);
+        List<Process> processes = new ArrayList<>();
+        try {
+            List<List<Path>> partition = partition(inputs);
+            Util.deleteRecursively(workDir);
+            Files.createDirectories(workDir);
+            for (int shard = 0; shard < partition.size(); shard++) {
+                processes.add(start(shard, partition.get(shard)));
+            }
+            for (int shard = 0; shard < processes.size(); shard++) {
+                int exitCode = processes.get(shard).waitFor();
+                Path messages = workDir.resolve("shard-" + shard + ".messages");
+                if (exitCode != 0 || !Files.exists(messages)) {
+                    handler.handleMessage(new Message("ajc shard " + shard + " exited with " + exitCode + ", see "
+                            + workDir.resolve("shard-" + shard + ".log"), IMessage.ERROR, null, null));
+                    continue;
+                }
+                readMessages(messages, handler);
+            }
+        } catch (IOException ex) {
+            handler.handleMessage(new Message(ex.toString(), IMessage.ERROR, ex, null));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            handler.handleMessage(new Message(ex.toString(), IMessage.ERROR, ex, null));
+        } finally {
+            // Forks are still running only if a later shard failed to start or the wait was interrupted
+            for (Process process : processes) {
+                if (process.isAlive()) {
+                    process.destroyForcibly();
+                }
+            }
+            cleanUp();
+        }
+        return handler;
+    }
+
+    /** Deletes the argument files, inpaths, and messages of the shards, but not their logs. */
+    private void cleanUp() {
+        try (Stream<Path> files = Files.list(workDir)) {
+            for (Path file : files.collect(Collectors.toList())) {
+                if (!file.getFileName().toString().endsWith(".log")) {
+                    Util.deleteRecursively(file);
+                }
+            }
+        } catch (IOException ex) {
+            // Recreated on the next run
+        }
+    }
+
+    /** Splits the inputs into at most as many shards as configured, largest input first to the smallest shard. */
+    List<List<Path>> partition(List<Path> inputs) throws IOException {
+        List<List<Path>> partition = new ArrayList<>();
+        long[] sizes = new long[Math.min(shards, Math.max(1, inputs.size()))];
+        for (int shard = 0; shard < sizes.length; shard++) {
+            partition.add(new ArrayList<>());
+        }
+        Map<Path, Long> inputSizes = new HashMap<>();
+        for (Path input : inputs) {
+            inputSizes.put(input, Files.size(input));
+        }
+        List<Path> sorted = new ArrayList<>(inputs);
+        sorted.sort(Comparator.comparing((Path input) -> inputSizes.get(input)).reversed()
+                .thenComparing(Comparator.naturalOrder()));
+        for (Path input : sorted) {
+            int smallest = 0;
+            for (int shard = 1; shard < sizes.length; shard++) {
+                if (sizes[shard] < sizes[smallest]) {
+                    smallest = shard;
+                }
+            }
+            partition.get(smallest).add(input);
+            sizes[smallest] += inputSizes.get(input);
+        }
+        return partition;
+    }
+
+    private Process start(int shard, List<Path> inputs) throws IOException {
+        List<String> arguments = new ArrayList<>(options);
+        arguments.add("-d");
+        arguments.add(outputDir.resolve("shard-" + shard).toString());
+        if (inpathRoot == null) {
+            Path sourceList = workDir.resolve("shard-" + shard + ".lst");
+            List<String> sources = new ArrayList<>();
+            for (Path input : inputs) {
+                sources.add(input.toString());
+            }
+            Files.write(sourceList, sources);
+            arguments.add("-argfile");
+            arguments.add(sourceList.toString());
+        } else {
+            Path inpath = workDir.resolve("shard-" + shard + "-inpath");
+            for (Path input : inputs) {
+                Path destination = inpath.resolve(inpathRoot.relativize(input).toString());
+                Files.createDirectories(destination.getParent());
+                Files.copy(input, destination, StandardCopyOption.REPLACE_EXISTING);
+            }
+            arguments.add("-inpath");
+            arguments.add(inpath.toString());
+        }
+        Path messages = workDir.resolve("shard-" + shard + ".messages");
+
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-cp");
+        command.add(codeSource(ShardedWeaver.class) + File.pathSeparator + codeSource(Main.class));
+        command.add(ShardedWeaver.class.getName());
+        command.add(messages.toString());
+        command.addAll(arguments);
+        return new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(workDir.resolve("shard-" + shard + ".log").toFile())
+                .start();
+    }
+
+    /** Returns the jar or directory that the class was loaded from. */
+    static String codeSource(Class<?> clazz) {
+        try {
+            return Paths.get(clazz.getProtectionDomain().getCodeSource().getLocation().toURI()).toString();
+        } catch (URISyntaxException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static void readMessages(Path file, MessageHandler handler) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            readMessages(in, handler);
+        }
+    }
+
+    /** Reads the messages written by {@link #writeMessages} into the handler. */
+    static void readMessages(DataInputStream in, MessageHandler handler) throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            boolean error = in.readBoolean();
+            handler.handleMessage(new Message(in.readUTF(), error ? IMessage.ERROR : IMessage.WEAVEINFO, null, null));
+        }
+    }
+
+    /** Writes the weave info messages and the errors collected by the handler. */
+    static void writeMessages(DataOutputStream out, MessageHandler handler) throws IOException {
+        IMessage[] weaveInfo = handler.getMessages(IMessage.WEAVEINFO, false);
+        IMessage[] errors = handler.getErrors();
+        out.writeInt(weaveInfo.length + errors.length);
+        for (IMessage message : weaveInfo) {
+            out.writeBoolean(false);
+            out.writeUTF(message.getMessage());
+        }
+        for (IMessage message : errors) {
+            out.writeBoolean(true);
+            out.writeUTF(String.valueOf(message));
+        }
+    }
+
+    /**
+     * Runs ajc in a shard's JVM.
+     *
+     * @param args The file to write the messages to, followed by the arguments of ajc
+     */
+    public static void main(String[] args) throws IOException {
+        MessageHandler handler = new MessageHandler();
+        new Main().run(Arrays.copyOfRange(args, 1, args.length), handler);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(Paths.get(args[0]))))) {
+            writeMessages(out, handler);
+        }
+    }
+}
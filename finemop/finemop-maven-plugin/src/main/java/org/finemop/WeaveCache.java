@@ -0,0 +1,241 @@
+package org.finemop;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.aspectj.bridge.IMessage;
+import org.aspectj.bridge.MessageHandler;
+import org.aspectj.bridge.Version;
+
+/**
+ * A content-addressed cache of the weave results of ajc, kept under the artifacts directory. An entry is keyed by
+ * the hash of one ajc input (a source file, or a class file on the inpath), the hash of the aspects and options it
+ * was woven with, and the ajc version. It holds the {@link WeaveInfoTable} of the classes of that input, which is
+ * all that the class-to-specs and method-to-specs mappings are computed from.
+ *
+ * <p>Only the inputs without an entry are passed to ajc. Its messages are assigned back to the inputs by the type
+ * and source file they name, and are only cached if ajc reported no error and every message could be assigned.
+ * Messages about join points in the aspects themselves do not depend on the inputs, and are cached under the hash
+ * of the environment alone.
+ *
+ * <p>Like the per-class specs maps, an entry assumes that the weave result of a class does not change when only
+ * other classes of the project change.
+ */
+public class WeaveCache {
+
+    public static final String CACHE_DIR_NAME = "weave-cache";
+
+    private final Path cacheDir;
+    private final String environment;
+
+    private int hits;
+    private int misses;
+
+    /**
+     * @param cacheDir    Directory of the entries
+     * @param environment Hash of everything the weave results depend on besides the inputs, see
+     *                    {@link #hashEnvironment}
+     */
+    public WeaveCache(Path cacheDir, String environment) {
+        this.cacheDir = cacheDir;
+        this.environment = environment;
+    }
+
+    /**
+     * Hashes the ajc version, the given options, and the content of the given files, e.g., the aspects.
+     *
+     * @param options Options passed to ajc, other than the inputs
+     * @param files   Files that ajc reads, other than the inputs
+     * @return The hash, in hex
+     */
+    public static String hashEnvironment(List<String> options, List<Path> files) throws IOException {
+        MessageDigest digest = newDigest();
+        update(digest, Version.text);
+        for (String option : options) {
+            update(digest, option);
+        }
+        for (Path file : files) {
+            update(digest, file.toString());
+            digest.update(Files.readAllBytes(file));
+        }
+        return toHex(digest.digest());
+    }
+
+    public int getHits() {
+        return hits;
+    }
+
+    public int getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the join points of the given inputs, and runs the weaver on the inputs that are not cached. The weaver
+     * is not run at all if every input is cached.
+     *
+     * @param inputs Source files, or class files under an inpath directory
+     * @param weaver Runs ajc on the given subset of the inputs
+     * @return The join points of all inputs
+     */
+    public WeaveInfoTable weave(List<Path> inputs, Weaver weaver) throws IOException {
+        WeaveInfoTable table = new WeaveInfoTable();
+        Map<Path, String> missedKeys = new HashMap<>();
+        List<Path> missed = new ArrayList<>();
+        for (Path input : inputs) {
+            String key = key(input);
+            WeaveInfoTable cached = read(key);
+            if (cached == null) {
+                missedKeys.put(input, key);
+                missed.add(input);
+            } else {
+                table.addAll(cached);
+            }
+        }
+        hits = inputs.size() - missed.size();
+        misses = missed.size();
+        // Join points in the aspects themselves are reported by every run, whatever the inputs are
+        WeaveInfoTable aspectJoinPoints = read(environment);
+        if (missed.isEmpty() && aspectJoinPoints != null) {
+            table.addAll(aspectJoinPoints);
+            return table;
+        }
+
+        MessageHandler handler = weaver.weave(missed);
+        IMessage[] woven = handler.getMessages(IMessage.WEAVEINFO, false);
+        table.addAll(WeaveInfoTable.of(woven));
+        if (!handler.hasAnyMessage(IMessage.ERROR, true)) {
+            Map<Path, List<IMessage>> results = assign(missed, woven);
+            if (results != null) {
+                write(environment, results.remove(null));
+                for (Map.Entry<Path, List<IMessage>> result : results.entrySet()) {
+                    write(missedKeys.get(result.getKey()), result.getValue());
+                }
+            }
+        }
+        return table;
+    }
+
+    /** Returns the key of an input: the hash of its content and of the environment. */
+    String key(Path input) throws IOException {
+        MessageDigest digest = newDigest();
+        update(digest, environment);
+        digest.update(Files.readAllBytes(input));
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Assigns every message to the input that contains the advised join point, or to null if the join point is in
+     * an aspect. Returns null if a message does not belong to any of the inputs or aspects. The type and the source
+     * file of a join point are taken from the message like {@link WeaveInfoTable} does, e.g., a join point in Type
+     * 'org.example.Foo$Inner' (Foo.java:53) belongs to org/example/Foo.java if the inputs are sources, and to
+     * org/example/Foo$Inner.class otherwise.
+     */
+    private static Map<Path, List<IMessage>> assign(List<Path> inputs, IMessage[] messages) {
+        Map<Path, List<IMessage>> results = new HashMap<>();
+        Map<String, List<Path>> inputsByName = new HashMap<>();
+        results.put(null, new ArrayList<>());
+        for (Path input : inputs) {
+            results.put(input, new ArrayList<>());
+            inputsByName.computeIfAbsent(input.getFileName().toString(), name -> new ArrayList<>()).add(input);
+        }
+        for (IMessage message : messages) {
+            String type = WeaveInfoTable.type(message);
+            if (type == null) {
+                return null;
+            }
+            String packagePath = type.lastIndexOf('.') < 0 ? "" : type.substring(0, type.lastIndexOf('.'))
+                    .replace('.', '/') + "/";
+            String simpleName = type.substring(type.lastIndexOf('.') + 1);
+            String sourceName = WeaveInfoTable.sourceFile(message);
+            if (sourceName.endsWith(".aj")) {
+                results.get(null).add(message);
+                continue;
+            }
+            if (!sourceName.endsWith(".java")) {
+                // No source information, e.g., for some synthetic join points
+                int nested = simpleName.indexOf('$');
+                sourceName = (nested < 0 ? simpleName : simpleName.substring(0, nested)) + ".java";
+            }
+            Path input = find(inputsByName, packagePath + sourceName);
+            if (input == null) {
+                input = find(inputsByName, packagePath + simpleName + ".class");
+            }
+            if (input == null) {
+                return null;
+            }
+            results.get(input).add(message);
+        }
+        return results;
+    }
+
+    private static Path find(Map<String, List<Path>> inputsByName, String relativePath) {
+        Path path = Paths.get(relativePath);
+        for (Path input : inputsByName.getOrDefault(path.getFileName().toString(), new ArrayList<>())) {
+            if (input.endsWith(path)) {
+                return input;
+            }
+        }
+        return null;
+    }
+
+    private WeaveInfoTable read(String key) {
+        Path entry = cacheDir.resolve(key);
+        if (!Files.exists(entry)) {
+            return null;
+        }
+        try {
+            return WeaveInfoTable.read(entry);
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    private void write(String key, List<IMessage> messages) throws IOException {
+        Files.createDirectories(cacheDir);
+        Path temp = Files.createTempFile(cacheDir, key, ".tmp");
+        WeaveInfoTable.of(messages.toArray(new IMessage[0])).write(temp);
+        Files.move(temp, cacheDir.resolve(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        digest.update(bytes);
+        // Separates consecutive values
+        digest.update((byte) 0);
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    /** Runs ajc on a subset of the inputs. */
+    public interface Weaver {
+        /**
+         * @param inputs The inputs that are not cached
+         * @return The handler that collected the messages of ajc
+         */
+        MessageHandler weave(List<Path> inputs);
+    }
+}
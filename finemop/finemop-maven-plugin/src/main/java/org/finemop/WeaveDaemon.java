@@ -0,0 +1,245 @@
+package org.finemop;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.aspectj.bridge.IMessage;
+import org.aspectj.bridge.Message;
+import org.aspectj.bridge.MessageHandler;
+import org.aspectj.tools.ajc.Main;
+
+/**
+ * A long-lived local JVM that runs ajc for the mojos of many Maven invocations, so that they do not pay for loading
+ * and warming up the compiler every time. The daemon is started on demand by {@link #weave}, listens on the
+ * loopback interface only, and exits after being idle for a while.
+ *
+ * <p>The daemon writes its port and a random token to a file in its state directory that only the user can read;
+ * requests without the token are dropped. A request is the working directory and the arguments of ajc, and the
+ * reply is the weave info messages and the errors of the run. Requests are handled one at a time, and a client that
+ * does not send its request within a second is dropped.
+ */
+public class WeaveDaemon {
+
+    public static final String PORT_FILE_NAME = "weave-daemon.port";
+
+    private static final String LOCK_FILE_NAME = "weave-daemon.lock";
+    static final int PROTOCOL_VERSION = 1;
+    private static final int CONNECT_TIMEOUT_MILLIS = 1000;
+    private static final int START_TIMEOUT_MILLIS = 30000;
+
+    private WeaveDaemon() {
+    }
+
+    /**
+     * Returns the state directory of the daemon of this plugin and ajc, under the user's home, so that builds of
+     * all projects share one daemon, and builds with another version of the plugin or ajc start their own.
+     */
+    public static Path defaultStateDir() {
+        String classpath = ShardedWeaver.codeSource(WeaveDaemon.class) + File.pathSeparator
+                + ShardedWeaver.codeSource(Main.class);
+        return Paths.get(System.getProperty("user.home"), ".finemop", "weave-daemon",
+                Integer.toHexString(classpath.hashCode()));
+    }
+
+    /**
+     * Runs ajc in the daemon of the state directory, and starts the daemon if it is not running.
+     *
+     * @param stateDir    Directory of the port and lock files of the daemon
+     * @param arguments   Arguments of ajc; relative output directories are resolved against the working directory
+     * @param idleSeconds Seconds after which a daemon started by this call exits if it gets no request
+     * @return The messages of the run, or null if no daemon could be reached, in which case ajc should run
+     *         in-process
+     */
+    public static MessageHandler weave(Path stateDir, String[] arguments, int idleSeconds) {
+        try {
+            MessageHandler handler = request(stateDir, arguments);
+            if (handler != null) {
+                return handler;
+            }
+            Files.createDirectories(stateDir);
+            try (FileChannel lockChannel = FileChannel.open(stateDir.resolve(LOCK_FILE_NAME),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                 FileLock lock = lockChannel.lock()) {
+                // Another build may have started the daemon while we waited for the lock
+                handler = request(stateDir, arguments);
+                if (handler != null) {
+                    return handler;
+                }
+                start(stateDir, idleSeconds);
+                long deadline = System.currentTimeMillis() + START_TIMEOUT_MILLIS;
+                while (System.currentTimeMillis() < deadline) {
+                    handler = request(stateDir, arguments);
+                    if (handler != null) {
+                        return handler;
+                    }
+                    Thread.sleep(100);
+                }
+            }
+        } catch (IOException ex) {
+            return null;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
+    /** Sends a request to a running daemon, or returns null if there is none. */
+    private static MessageHandler request(Path stateDir, String[] arguments) {
+        Path portFile = stateDir.resolve(PORT_FILE_NAME);
+        if (!Files.exists(portFile)) {
+            return null;
+        }
+        try {
+            List<String> lines = Files.readAllLines(portFile, StandardCharsets.UTF_8);
+            int port = Integer.parseInt(lines.get(0));
+            String token = lines.get(1);
+            try (Socket socket = new Socket()) {
+                socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port),
+                        CONNECT_TIMEOUT_MILLIS);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                out.writeInt(PROTOCOL_VERSION);
+                out.writeUTF(token);
+                out.writeUTF(System.getProperty("user.dir"));
+                out.writeInt(arguments.length);
+                for (String argument : arguments) {
+                    out.writeUTF(argument);
+                }
+                out.flush();
+                // Whatever listens on a stale port must acknowledge the request quickly
+                socket.setSoTimeout(CONNECT_TIMEOUT_MILLIS);
+                if (in.readInt() != PROTOCOL_VERSION) {
+                    return null;
+                }
+                socket.setSoTimeout(0);
+                MessageHandler handler = new MessageHandler();
+                handler.dontIgnore(IMessage.WEAVEINFO);
+                ShardedWeaver.readMessages(in, handler);
+                return handler;
+            }
+        } catch (IOException | RuntimeException ex) {
+            // A stale port file, or a daemon that just exited
+            return null;
+        }
+    }
+
+    private static void start(Path stateDir, int idleSeconds) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-cp");
+        command.add(ShardedWeaver.codeSource(WeaveDaemon.class) + File.pathSeparator
+                + ShardedWeaver.codeSource(Main.class));
+        command.add(WeaveDaemon.class.getName());
+        command.add(stateDir.toString());
+        command.add(String.valueOf(idleSeconds));
+        new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(stateDir.resolve("weave-daemon.log").toFile())
+                .start();
+    }
+
+    /**
+     * Runs the daemon until it is idle for the given time.
+     *
+     * @param args The state directory, and the idle time in seconds
+     */
+    public static void main(String[] args) throws IOException {
+        Path stateDir = Paths.get(args[0]);
+        int idleSeconds = Integer.parseInt(args[1]);
+        byte[] random = new byte[16];
+        new SecureRandom().nextBytes(random);
+        StringBuilder token = new StringBuilder();
+        for (byte b : random) {
+            token.append(String.format("%02x", b));
+        }
+
+        try (ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            server.setSoTimeout(idleSeconds * 1000);
+            Path portFile = stateDir.resolve(PORT_FILE_NAME);
+            Path temp = Files.createTempFile(stateDir, PORT_FILE_NAME, ".tmp");
+            try {
+                Files.setPosixFilePermissions(temp, PosixFilePermissions.fromString("rw-------"));
+            } catch (UnsupportedOperationException ex) {
+                // Not a POSIX file system, the file keeps the default permissions
+            }
+            Files.write(temp, Arrays.asList(String.valueOf(server.getLocalPort()), token.toString()),
+                    StandardCharsets.UTF_8);
+            Files.move(temp, portFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            try {
+                while (true) {
+                    Socket socket;
+                    try {
+                        socket = server.accept();
+                    } catch (SocketTimeoutException ex) {
+                        break;
+                    }
+                    try (Socket client = socket) {
+                        // A client that connects but never sends its request must not block the daemon
+                        client.setSoTimeout(CONNECT_TIMEOUT_MILLIS);
+                        serve(client, token.toString());
+                    } catch (IOException ex) {
+                        ex.printStackTrace();
+                    }
+                }
+            } finally {
+                // Only remove the port file if it is still ours
+                List<String> lines = Files.exists(portFile) ? Files.readAllLines(portFile, StandardCharsets.UTF_8)
+                        : new ArrayList<>();
+                if (lines.size() > 1 && lines.get(1).equals(token.toString())) {
+                    Files.delete(portFile);
+                }
+            }
+        }
+    }
+
+    private static void serve(Socket socket, String token) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        if (in.readInt() != PROTOCOL_VERSION || !in.readUTF().equals(token)) {
+            return;
+        }
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        out.writeInt(PROTOCOL_VERSION);
+        out.flush();
+        Path workingDir = Paths.get(in.readUTF());
+        String[] arguments = new String[in.readInt()];
+        for (int i = 0; i < arguments.length; i++) {
+            arguments[i] = in.readUTF();
+        }
+        for (int i = 0; i < arguments.length - 1; i++) {
+            if (arguments[i].equals("-d")) {
+                arguments[i + 1] = workingDir.resolve(arguments[i + 1]).toString();
+            }
+        }
+
+        MessageHandler handler = new MessageHandler();
+        try {
+            new Main().run(arguments, handler);
+        } catch (RuntimeException ex) {
+            handler.handleMessage(new Message(ex.toString(), IMessage.ERROR, ex, null));
+        }
+        ShardedWeaver.writeMessages(out, handler);
+        out.flush();
+    }
+}
@@ -0,0 +1,452 @@
+package org.finemop;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.aspectj.bridge.AbortException;
+import org.aspectj.bridge.IMessage;
+import org.aspectj.bridge.IMessageHandler;
+import org.aspectj.bridge.WeaveMessage;
+
+/**
+ * The advice join points reported by ajc, as a class -> spec -> line set table. Class and spec names are interned
+ * to ints, every (class, spec) pair is a slot of an open-addressing table keyed by a long, and the lines of a pair
+ * are a sorted int array.
+ *
+ * <p>As an {@link IMessageHandler}, the table takes the type and the aspect of a weave info message from the
+ * {@link WeaveMessage} that ajc creates, and only scans the text of the message for the line of the join point.
+ * Messages that were serialized as text, e.g., by the load-time weaver, are scanned once, without splitting them.
+ * Example message:
+ * <pre>
+ *   Join point 'method-call(java.lang.StringBuilder java.lang.StringBuilder.append(java.lang.String))' in Type
+ *   'org.mitre.dsmiley.httpproxy.ProxyServletTest' (ProxyServletTest.java:53) advised by before advice from
+ *   'mop.Appendable_ThreadSafeMonitorAspect' (Appendable_ThreadSafeMonitorAspect.aj:34)
+ * </pre>
+ * The spec is the name of the aspect without its package, and the line is 0 if the message has none.
+ */
+public class WeaveInfoTable implements IMessageHandler {
+
+    private static final int MAGIC = 0x464d5749; // "FMWI"
+    private static final int FORMAT_VERSION = 1;
+
+    private static final String JOIN_POINT = "Join point '";
+    private static final String IN_TYPE = "' in Type '";
+    private static final String ADVICE_FROM = " advice from '";
+    private static final String LOG_JOIN_POINT = "weaveinfo Join point";
+    private static final int TRIMMED_SPEC_NAME_INDEX = 4;
+
+    private static final long EMPTY = -1L;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final Map<String, Integer> classIds = new HashMap<>();
+    private final List<String> classNames = new ArrayList<>();
+    private final Map<String, Integer> specIds = new HashMap<>();
+    private final List<String> specNames = new ArrayList<>();
+
+    private long[] keys = newKeys(INITIAL_CAPACITY);
+    private int[][] lines = new int[INITIAL_CAPACITY][];
+    private int[] lineCounts = new int[INITIAL_CAPACITY];
+    private int pairs;
+
+    private int messageCount;
+
+    /** Visits a (class, spec, line) triple of the table. */
+    public interface LineVisitor {
+        void visit(String className, String spec, int line);
+    }
+
+    /** Returns a table of the weave info messages among the given messages. */
+    public static WeaveInfoTable of(IMessage[] messages) {
+        WeaveInfoTable table = new WeaveInfoTable();
+        for (IMessage message : messages) {
+            table.handleMessage(message);
+        }
+        return table;
+    }
+
+    /** Returns a table of the weave info lines of a text log, e.g., the log of the load-time weaver. */
+    public static WeaveInfoTable readLog(Path log) throws IOException {
+        WeaveInfoTable table = new WeaveInfoTable();
+        try (BufferedReader reader = Files.newBufferedReader(log, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.contains(LOG_JOIN_POINT)) {
+                    table.add(line);
+                }
+            }
+        }
+        return table;
+    }
+
+    @Override
+    public boolean handleMessage(IMessage message) throws AbortException {
+        if (message.getKind() != IMessage.WEAVEINFO) {
+            return true;
+        }
+        String text = message.getMessage();
+        if (message instanceof WeaveMessage && ((WeaveMessage) message).getAffectedtypename() != null
+                && ((WeaveMessage) message).getAspectname() != null) {
+            WeaveMessage weaveMessage = (WeaveMessage) message;
+            int typeStart = text.indexOf(IN_TYPE);
+            int typeEnd = typeStart < 0 ? -1 : text.indexOf('\'', typeStart + IN_TYPE.length());
+            if (typeEnd >= 0) {
+                add(weaveMessage.getAffectedtypename(), weaveMessage.getAspectname().substring(TRIMMED_SPEC_NAME_INDEX),
+                        line(text, typeEnd + 1));
+                return true;
+            }
+        }
+        add(text);
+        return true;
+    }
+
+    @Override
+    public boolean isIgnoring(IMessage.Kind kind) {
+        return kind != IMessage.WEAVEINFO;
+    }
+
+    @Override
+    public void dontIgnore(IMessage.Kind kind) {
+    }
+
+    @Override
+    public void ignore(IMessage.Kind kind) {
+    }
+
+    /**
+     * Adds the join point of the text of a weave info message.
+     *
+     * @return Whether the text is an advised join point
+     */
+    public boolean add(String text) {
+        int joinPoint = text.indexOf(JOIN_POINT);
+        if (joinPoint < 0) {
+            return false;
+        }
+        int typeStart = text.indexOf(IN_TYPE, joinPoint + JOIN_POINT.length());
+        if (typeStart < 0) {
+            return false;
+        }
+        typeStart += IN_TYPE.length();
+        int typeEnd = text.indexOf('\'', typeStart);
+        int aspectStart = typeEnd < 0 ? -1 : text.indexOf(ADVICE_FROM, typeEnd);
+        if (aspectStart < 0) {
+            return false;
+        }
+        aspectStart += ADVICE_FROM.length();
+        int aspectEnd = text.indexOf('\'', aspectStart);
+        if (aspectEnd < 0) {
+            return false;
+        }
+        add(text.substring(typeStart, typeEnd), text.substring(aspectStart + TRIMMED_SPEC_NAME_INDEX, aspectEnd),
+                line(text, typeEnd + 1));
+        return true;
+    }
+
+    /** Returns the type of the join point of a weave info message, or null if the message names none. */
+    static String type(IMessage message) {
+        String text = message.getMessage();
+        int typeStart = text.indexOf(IN_TYPE);
+        int typeEnd = typeStart < 0 ? -1 : text.indexOf('\'', typeStart + IN_TYPE.length());
+        if (typeEnd < 0) {
+            return null;
+        }
+        if (message instanceof WeaveMessage && ((WeaveMessage) message).getAffectedtypename() != null) {
+            return ((WeaveMessage) message).getAffectedtypename();
+        }
+        return text.substring(typeStart + IN_TYPE.length(), typeEnd);
+    }
+
+    /**
+     * Returns the file in the "(File.java:line)" that follows the type of the join point of a weave info message, or
+     * "" if there is none, e.g., "(no source information available)".
+     */
+    static String sourceFile(IMessage message) {
+        String text = message.getMessage();
+        int typeStart = text.indexOf(IN_TYPE);
+        int typeEnd = typeStart < 0 ? -1 : text.indexOf('\'', typeStart + IN_TYPE.length());
+        int open = typeEnd < 0 ? -1 : text.indexOf('(', typeEnd + 1);
+        int close = open < 0 ? -1 : text.indexOf(')', open);
+        if (close < 0) {
+            return "";
+        }
+        int colon = text.lastIndexOf(':', close);
+        return colon < open ? "" : text.substring(open + 1, colon);
+    }
+
+    /**
+     * Returns the line in the "(File.java:line)" that follows the type at the given position, or 0 if there is
+     * none, e.g., "(no source information available)".
+     */
+    private static int line(String text, int from) {
+        int open = text.indexOf('(', from);
+        int close = open < 0 ? -1 : text.indexOf(')', open);
+        if (close < 0) {
+            return 0;
+        }
+        int colon = text.lastIndexOf(':', close);
+        if (colon < open) {
+            return 0;
+        }
+        int line = 0;
+        for (int i = colon + 1; i < close; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return 0;
+            }
+            line = line * 10 + (c - '0');
+        }
+        return line;
+    }
+
+    /** Adds a join point of the spec at the line of the class. */
+    public void add(String className, String spec, int line) {
+        messageCount++;
+        int slot = slot(key(id(className, classIds, classNames), id(spec, specIds, specNames)));
+        int[] slotLines = lines[slot];
+        int count = lineCounts[slot];
+        int index = Arrays.binarySearch(slotLines, 0, count, line);
+        if (index >= 0) {
+            return;
+        }
+        index = -index - 1;
+        if (count == slotLines.length) {
+            slotLines = Arrays.copyOf(slotLines, count * 2);
+            lines[slot] = slotLines;
+        }
+        System.arraycopy(slotLines, index, slotLines, index + 1, count - index);
+        slotLines[index] = line;
+        lineCounts[slot] = count + 1;
+    }
+
+    /** Adds every join point of the other table. */
+    public void addAll(WeaveInfoTable other) {
+        other.forEachLine(this::add);
+        messageCount += other.messageCount - other.lineCount();
+    }
+
+    /** Returns the number of join points added to the table, including the ones at lines that were already in it. */
+    public int getMessageCount() {
+        return messageCount;
+    }
+
+    public boolean isEmpty() {
+        return pairs == 0;
+    }
+
+    /** Adds the specs of every class to the map. */
+    public void addClassesToSpecs(Map<String, Set<String>> map) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != EMPTY) {
+                map.computeIfAbsent(classNames.get((int) (keys[slot] >>> 32)), key -> new HashSet<>())
+                        .add(specNames.get((int) keys[slot]));
+            }
+        }
+    }
+
+    /** Visits every (class, spec, line) triple, once. */
+    public void forEachLine(LineVisitor visitor) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != EMPTY) {
+                String className = classNames.get((int) (keys[slot] >>> 32));
+                String spec = specNames.get((int) keys[slot]);
+                for (int i = 0; i < lineCounts[slot]; i++) {
+                    visitor.visit(className, spec, lines[slot][i]);
+                }
+            }
+        }
+    }
+
+    private int lineCount() {
+        int count = 0;
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != EMPTY) {
+                count += lineCounts[slot];
+            }
+        }
+        return count;
+    }
+
+    /** Writes the table in a compact binary form: the names once, then the lines of every pair as deltas. */
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(messageCount);
+        writeNames(out, classNames);
+        writeNames(out, specNames);
+        writeVarInt(out, pairs);
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] == EMPTY) {
+                continue;
+            }
+            writeVarInt(out, (int) (keys[slot] >>> 32));
+            writeVarInt(out, (int) keys[slot]);
+            writeVarInt(out, lineCounts[slot]);
+            int previous = 0;
+            for (int i = 0; i < lineCounts[slot]; i++) {
+                writeVarInt(out, lines[slot][i] - previous);
+                previous = lines[slot][i];
+            }
+        }
+    }
+
+    /** Reads a table written by {@link #write}. */
+    public static WeaveInfoTable read(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+            throw new IOException("Not a weave info table");
+        }
+        WeaveInfoTable table = new WeaveInfoTable();
+        int messageCount = in.readInt();
+        List<String> classes = readNames(in);
+        List<String> specs = readNames(in);
+        int pairCount = readVarInt(in);
+        for (int pair = 0; pair < pairCount; pair++) {
+            String className = classes.get(readVarInt(in));
+            String spec = specs.get(readVarInt(in));
+            int count = readVarInt(in);
+            int line = 0;
+            for (int i = 0; i < count; i++) {
+                line += readVarInt(in);
+                table.add(className, spec, line);
+            }
+        }
+        table.messageCount = messageCount;
+        return table;
+    }
+
+    public void write(Path file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            write(out);
+        }
+    }
+
+    public static WeaveInfoTable read(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            return read(in);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        forEachLine((className, spec, line) -> builder.append(className).append(':').append(line).append(' ')
+                .append(spec).append('\n'));
+        return builder.toString();
+    }
+
+    private static int id(String name, Map<String, Integer> ids, List<String> names) {
+        Integer id = ids.get(name);
+        if (id == null) {
+            id = names.size();
+            ids.put(name, id);
+            names.add(name);
+        }
+        return id;
+    }
+
+    private static long key(int classId, int specId) {
+        return ((long) classId << 32) | specId;
+    }
+
+    /** Returns the slot of the key, and claims an empty one if the key is not in the table. */
+    private int slot(long key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if ((pairs + 1) * 2 > keys.length) {
+            grow();
+            return slot(key);
+        }
+        keys[slot] = key;
+        lines[slot] = new int[2];
+        pairs++;
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[][] oldLines = lines;
+        int[] oldLineCounts = lineCounts;
+        keys = newKeys(oldKeys.length * 2);
+        lines = new int[keys.length][];
+        lineCounts = new int[keys.length];
+        int mask = keys.length - 1;
+        for (int oldSlot = 0; oldSlot < oldKeys.length; oldSlot++) {
+            if (oldKeys[oldSlot] == EMPTY) {
+                continue;
+            }
+            int slot = hash(oldKeys[oldSlot]) & mask;
+            while (keys[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = oldKeys[oldSlot];
+            lines[slot] = oldLines[oldSlot];
+            lineCounts[slot] = oldLineCounts[oldSlot];
+        }
+    }
+
+    private static int hash(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    private static long[] newKeys(int capacity) {
+        long[] newKeys = new long[capacity];
+        Arrays.fill(newKeys, EMPTY);
+        return newKeys;
+    }
+
+    private static void writeNames(DataOutputStream out, List<String> names) throws IOException {
+        writeVarInt(out, names.size());
+        for (String name : names) {
+            out.writeUTF(name);
+        }
+    }
+
+    private static List<String> readNames(DataInputStream in) throws IOException {
+        int count = readVarInt(in);
+        List<String> names = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            names.add(in.readUTF());
+        }
+        return names;
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable-length int");
+    }
+}
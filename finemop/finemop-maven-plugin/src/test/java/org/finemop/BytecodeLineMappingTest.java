@@ -0,0 +1,162 @@
+package org.finemop;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.tools.ToolProvider;
+
+import edu.illinois.starts.smethods.ParallelBytecodeScanner;
+import org.finemop.finemop.util.MethodsHelper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Checks that the line ranges from the class files, as the method graph scan collects them, map every line with
+ * code of the integration test projects to the same method as the line ranges from parsing their sources.
+ */
+public class BytecodeLineMappingTest {
+
+    private static final Path IT_PROJECTS = Paths.get("..", "..", "starts", "starts-plugin", "src", "it");
+
+    private Path dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("line-mapping");
+    }
+
+    @After
+    public void cleanUp() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    public void testBytecodeAndSourceLineRangesFindTheSameMethods() throws IOException {
+        assumeTrue(Files.isDirectory(IT_PROJECTS));
+        int compared = 0;
+        try (Stream<Path> projects = Files.list(IT_PROJECTS)) {
+            for (Path project : projects.filter(p -> Files.isDirectory(p.resolve("src")))
+                    .collect(Collectors.toList())) {
+                compared += compare(project);
+            }
+        }
+        assertNotEquals(0, compared);
+    }
+
+    /** Compares the methods found for every line with code of a project, and returns the number of lines. */
+    private int compare(Path project) throws IOException {
+        Path classes = dir.resolve(project.getFileName());
+        Files.createDirectories(classes);
+        List<String> arguments = new ArrayList<>();
+        arguments.add("-g");
+        arguments.add("-cp");
+        arguments.add(System.getProperty("java.class.path"));
+        arguments.add("-d");
+        arguments.add(classes.toString());
+        arguments.addAll(list(project.resolve("src"), ".java"));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        assertEquals(output.toString(), 0, ToolProvider.getSystemJavaCompiler().run(null, output, output,
+                arguments.toArray(new String[0])));
+
+        Map<String, Map<String, int[]>> classToMethodLines = new HashMap<>();
+        new ParallelBytecodeScanner(2).scan(new HashSet<>(list(classes, ".class")), new HashMap<>(),
+                new HashMap<>(), new HashMap<>(), new HashMap<>(), classToMethodLines);
+
+        int compared = 0;
+        for (Map.Entry<String, Map<String, int[]>> entry : classToMethodLines.entrySet()) {
+            String className = entry.getKey();
+            String classFile = classes.resolve(className + ".class").toString();
+            MethodsHelper.computeMethodToLineNumbers(classFile, entry.getValue());
+            String sourceFile = sourceFile(project, className);
+            if (sourceFile == null) {
+                // A second top-level class in the file of another one, which the mojos cannot find either
+                continue;
+            }
+            MethodsHelper.computeMethodToLineNumbers(sourceFile);
+
+            for (int line : codeLines(classFile)) {
+                String fromSource = MethodsHelper.getWrapMethod(sourceFile, line);
+                if (fromSource == null) {
+                    // Field initializers are code of the constructors, but outside of them in the source
+                    continue;
+                }
+                String simpleName = className.substring(className.lastIndexOf('/') + 1);
+                simpleName = simpleName.substring(simpleName.lastIndexOf('$') + 1);
+                assertEquals(classFile + ":" + line, fromSource.replaceAll("<[^>]*>", ""),
+                        MethodsHelper.getWrapMethod(classFile, line).replace("<init>", simpleName));
+                compared++;
+            }
+        }
+        return compared;
+    }
+
+    /** Returns the lines with code of the methods that were not generated by the compiler. */
+    private static Set<Integer> codeLines(String classFile) throws IOException {
+        Set<Integer> lines = new HashSet<>();
+        new ClassReader(Files.readAllBytes(Paths.get(classFile))).accept(new ClassVisitor(Opcodes.ASM9) {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature,
+                                             String[] exceptions) {
+                if ((access & Opcodes.ACC_SYNTHETIC) != 0 || name.equals("<clinit>")) {
+                    return null;
+                }
+                return new MethodVisitor(Opcodes.ASM9) {
+                    @Override
+                    public void visitLineNumber(int line, Label start) {
+                        lines.add(line);
+                    }
+                };
+            }
+        }, 0);
+        return lines;
+    }
+
+    /**
+     * Returns the source file of a class, named like the mojos name it, with the nested classes after a $, or null
+     * if there is no source file named after the class.
+     */
+    private static String sourceFile(Path project, String className) {
+        String topLevel = className.split("\\$")[0] + ".java";
+        for (String root : new String[] {"src/main/java", "src/test/java"}) {
+            Path source = project.resolve(root).resolve(topLevel);
+            if (Files.exists(source)) {
+                return source.toAbsolutePath().normalize().toString().replace(".java", "")
+                        + className.substring(className.split("\\$")[0].length()) + ".java";
+            }
+        }
+        return null;
+    }
+
+    private static List<String> list(Path root, String extension) throws IOException {
+        try (Stream<Path> files = Files.walk(root)) {
+            return files.map(Path::toString).filter(file -> file.endsWith(extension))
+                    .map(file -> file.replace('/', File.separatorChar)).collect(Collectors.toList());
+        }
+    }
+}
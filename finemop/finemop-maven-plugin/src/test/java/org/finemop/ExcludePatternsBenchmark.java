@@ -0,0 +1,136 @@
+package org.finemop;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.aspectj.bridge.MessageHandler;
+import org.aspectj.tools.ajc.Main;
+import org.aspectj.weaver.loadtime.Aj;
+import org.finemop.finemop.util.Util;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Compares the load-time weaving of a generated project with one exclude per non-affected class and with the
+ * compressed excludes, by passing every class of the project through the weaver of a new class loader, as a test JVM
+ * loads them. The project has 10 packages of 10 subpackages each, and its affected classes are in 2 subpackages.
+ * Arguments: the number of classes (default 2000, 10000, and 40000) and of runs (default 5).
+ */
+public class ExcludePatternsBenchmark {
+
+    private static final int PACKAGES = 100;
+
+    public static void main(String[] args) throws IOException {
+        int[] sizes = args.length > 0 ? new int[] {Integer.parseInt(args[0])} : new int[] {2000, 10000, 40000};
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        Path dir = Files.createTempDirectory("exclude-patterns-benchmark");
+        Path aspects = dir.resolve("aspects");
+        MessageHandler handler = new MessageHandler();
+        new Main().run(new String[] {"-classpath", ShardedWeaver.codeSource(Main.class), "-1.8", "-d",
+            aspects.toString(), write(dir, "mop/BenchMonitorAspect.aj", "package mop;\n"
+                + "public aspect BenchMonitorAspect {\n    before(): execution(* org.example..*.m()) {}\n}\n")
+                .toString()}, handler);
+        if (handler.getErrors().length > 0) {
+            throw new IllegalStateException(Arrays.toString(handler.getErrors()));
+        }
+
+        for (int size : sizes) {
+            Map<String, byte[]> classes = new LinkedHashMap<>();
+            Set<String> woven = new HashSet<>();
+            Set<String> excluded = new HashSet<>();
+            for (int i = 0; i < size; i++) {
+                int pkg = i % PACKAGES;
+                String className = "org.example.m" + pkg / 10 + ".s" + pkg % 10 + ".C" + i;
+                classes.put(className, generate(className));
+                (pkg == 0 || pkg == 57 ? woven : excluded).add(className);
+            }
+            Set<String> includes = Collections.singleton("org.example");
+            Path byName = dir.resolve("by-name-" + size + ".xml");
+            Util.generateNewAgentConfigurationFile(byName.toString(), Collections.singleton("BenchMonitorAspect"),
+                    includes, excluded, false, false);
+            Path compressed = dir.resolve("compressed-" + size + ".xml");
+            Util.generateNewAgentConfigurationFile(compressed.toString(), Collections.singleton("BenchMonitorAspect"),
+                    includes, excluded, false, false, woven);
+
+            long byNameTotal = 0;
+            long compressedTotal = 0;
+            for (int run = 0; run <= runs; run++) {
+                long byNameTime = load(byName, aspects, classes, woven);
+                long compressedTime = load(compressed, aspects, classes, woven);
+                // The first run warms up
+                if (run > 0) {
+                    byNameTotal += byNameTime;
+                    compressedTotal += compressedTime;
+                }
+            }
+            System.out.println("Classes: " + size + ", woven: " + woven.size() + ", runs: " + runs);
+            System.out.println("  One exclude per class: " + excludes(byName) + " patterns, "
+                    + byNameTotal / runs / 1000000 + " ms");
+            System.out.println("  Compressed excludes: " + excludes(compressed) + " patterns, "
+                    + compressedTotal / runs / 1000000 + " ms");
+        }
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    /**
+     * Passes the classes through the weaver with the configuration, checks that it wove the woven classes only, and
+     * returns the time, which includes reading the configuration.
+     */
+    private static long load(Path configuration, Path aspects, Map<String, byte[]> classes, Set<String> woven)
+            throws IOException {
+        System.setProperty("org.aspectj.weaver.loadtime.configuration", "file:" + configuration);
+        URLClassLoader loader = new URLClassLoader(new URL[] {aspects.toUri().toURL()});
+        Aj aj = new Aj();
+        long start = System.nanoTime();
+        for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+            byte[] bytes = aj.preProcess(entry.getKey(), entry.getValue(), loader, null);
+            if ((bytes != entry.getValue()) != woven.contains(entry.getKey())) {
+                throw new IllegalStateException("Unexpected weaving of " + entry.getKey());
+            }
+        }
+        long time = System.nanoTime() - start;
+        loader.close();
+        return time;
+    }
+
+    private static long excludes(Path configuration) throws IOException {
+        return Files.readAllLines(configuration).stream().filter(line -> line.startsWith("<exclude")).count();
+    }
+
+    private static byte[] generate(String className) {
+        ClassWriter writer = new ClassWriter(0);
+        writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, className.replace('.', '/'), null, "java/lang/Object", null);
+        MethodVisitor method = writer.visitMethod(Opcodes.ACC_PUBLIC, "m", "()V", null, null);
+        method.visitCode();
+        method.visitInsn(Opcodes.RETURN);
+        method.visitMaxs(0, 1);
+        method.visitEnd();
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    private static Path write(Path dir, String relativePath, String content) throws IOException {
+        Path file = dir.resolve(relativePath);
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
@@ -0,0 +1,165 @@
+package org.finemop;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import javax.tools.ToolProvider;
+
+import org.aspectj.bridge.IMessage;
+import org.aspectj.bridge.MessageHandler;
+import org.aspectj.tools.ajc.Main;
+import org.aspectj.weaver.loadtime.Aj;
+import org.finemop.finemop.maven.SurefireMojoInterceptor;
+import org.finemop.finemop.util.Util;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Runs two builds in parallel JVMs that monitor different specs with one read-only agent JAR, and checks that each
+ * build weaves its own specs only and that the agent JAR stays as it was.
+ */
+public class ExternalAgentConfigTest {
+
+    private static final String[] SPECS = {"AMonitorAspect", "BMonitorAspect"};
+
+    private Path dir;
+    private Path agent;
+    private Path targetClasses;
+
+    /** Stands in for SurefirePlugin, which the interceptor only accesses through its fields. */
+    private static class SurefireMojo {
+        private String argLine;
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("external-config");
+        List<String> arguments = new ArrayList<>(Arrays.asList("-classpath", ShardedWeaver.codeSource(Main.class),
+                "-1.8", "-d", dir.resolve("agent-classes").toString()));
+        StringBuilder config = new StringBuilder("<aspectj>\n<aspects>\n");
+        for (String spec : SPECS) {
+            String method = spec.substring(0, 1).toLowerCase();
+            arguments.add(write("mop/" + spec + ".aj", "package mop;\npublic aspect " + spec + " {\n"
+                    + "    before(): execution(* pkg.Target." + method + "()) {}\n}\n").toString());
+            config.append("<aspect name=\"mop.").append(spec).append("\"/>\n");
+        }
+        MessageHandler handler = new MessageHandler();
+        new Main().run(arguments.toArray(new String[0]), handler);
+        assertEquals(Arrays.toString(handler.getErrors()), 0, handler.numMessages(IMessage.ERROR, true));
+
+        // The agent JAR monitors all specs unless the configuration is replaced
+        agent = dir.resolve("javamop-agent.jar");
+        try (ZipOutputStream jar = new ZipOutputStream(Files.newOutputStream(agent))) {
+            for (String spec : SPECS) {
+                jar.putNextEntry(new ZipEntry("mop/" + spec + ".class"));
+                jar.write(Files.readAllBytes(dir.resolve("agent-classes").resolve("mop").resolve(spec + ".class")));
+                jar.closeEntry();
+            }
+            jar.putNextEntry(new ZipEntry("META-INF/aop-ajc.xml"));
+            jar.write(config.append("</aspects>\n</aspectj>\n").toString().getBytes(StandardCharsets.UTF_8));
+            jar.closeEntry();
+        }
+        assertTrue(agent.toFile().setWritable(false));
+
+        targetClasses = dir.resolve("target-classes");
+        Files.createDirectories(targetClasses);
+        Path target = write("pkg/Target.java", "package pkg;\npublic class Target {\n"
+                + "    public void a() {}\n    public void b() {}\n}\n");
+        assertEquals(0, ToolProvider.getSystemJavaCompiler().run(null, null, null, "-d", targetClasses.toString(),
+                target.toString()));
+    }
+
+    @After
+    public void cleanUp() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    public void testParallelBuildsShareTheAgentJar() throws IOException, InterruptedException {
+        byte[] agentBytes = Files.readAllBytes(agent);
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        List<Process> builds = new ArrayList<>();
+        for (String spec : SPECS) {
+            Path artifacts = Files.createDirectories(dir.resolve("build-" + spec).resolve(".starts"));
+            builds.add(new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                    Build.class.getName(), agent.toString(), artifacts.toString(), spec, targetClasses.toString())
+                    .redirectErrorStream(true)
+                    .redirectOutput(artifacts.resolve("build.txt").toFile())
+                    .start());
+        }
+        for (int i = 0; i < SPECS.length; i++) {
+            Path output = dir.resolve("build-" + SPECS[i]).resolve(".starts").resolve("build.txt");
+            assertEquals(0, builds.get(i).waitFor());
+            List<String> lines = Files.readAllLines(output);
+            assertEquals(String.join("\n", lines), "woven: [" + SPECS[i] + "]", lines.get(lines.size() - 1));
+        }
+        assertArrayEquals(agentBytes, Files.readAllBytes(agent));
+    }
+
+    /**
+     * A build, which generates the configuration for its spec as MonitorMojo does, lets the interceptor set up the
+     * argLine, and weaves the target class with the system properties of the argLine, as the surefire JVM would.
+     * Arguments: the agent JAR, the artifacts directory, the spec, and the directory of the target class.
+     */
+    public static class Build {
+
+        public static void main(String[] args) throws Exception {
+            String configuration = args[1] + File.separator + MonitorMojo.AGENT_CONFIGURATION_FILE;
+            Util.generateNewAgentConfigurationFile(configuration, Collections.singleton(args[2]), null, null,
+                    false, false);
+            MonitorMojo.useExternalAgentConfig(configuration);
+            SurefireMojo mojo = new SurefireMojo();
+            mojo.argLine = "-javaagent:" + args[0];
+            SurefireMojoInterceptor.execute(mojo);
+
+            for (String argument : mojo.argLine.split(" ")) {
+                if (argument.startsWith("-D")) {
+                    String[] property = argument.substring(2).split("=", 2);
+                    System.setProperty(property[0], property[1]);
+                }
+            }
+            URLClassLoader loader = new URLClassLoader(new URL[] {Paths.get(args[0]).toUri().toURL(),
+                Paths.get(args[3]).toUri().toURL()});
+            byte[] woven = new Aj().preProcess("pkg.Target",
+                    Files.readAllBytes(Paths.get(args[3], "pkg", "Target.class")), loader, null);
+            String constants = new String(woven, StandardCharsets.ISO_8859_1);
+            List<String> specs = new ArrayList<>();
+            for (String spec : SPECS) {
+                if (constants.contains("mop/" + spec)) {
+                    specs.add(spec);
+                }
+            }
+            System.out.println("woven: " + specs);
+        }
+    }
+
+    private Path write(String relativePath, String content) throws IOException {
+        Path file = dir.resolve(relativePath);
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
@@ -0,0 +1,139 @@
+package org.finemop;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.aspectj.bridge.IMessage;
+import org.aspectj.bridge.MessageHandler;
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.runtime.reflect.Factory;
+import org.aspectj.tools.ajc.Main;
+import org.finemop.finemop.util.Util;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class GeneratedBaseAspectTest {
+
+    private Path dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("base-aspect");
+    }
+
+    @After
+    public void cleanUp() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    public void testGeneratedAspectsCompile() throws IOException {
+        HashSet<String> packageNames = new HashSet<>(Arrays.asList("org.example", "com.example"));
+        HashSet<String> impactedMethods = new HashSet<>(Arrays.asList("org.example.A#m", "org.example.A$1#run",
+                "org.example.B", "org.example.C#<init>", "org.example.C#<clinit>"));
+        compile(true, false, false, false, packageNames, null);
+        compile(false, false, true, false, packageNames, null);
+        for (boolean includeLibraries : new boolean[] {false, true}) {
+            for (boolean finerInstrumentationAlt : new boolean[] {false, true}) {
+                compile(false, includeLibraries, false, finerInstrumentationAlt, packageNames, null);
+                compile(false, includeLibraries, false, finerInstrumentationAlt, packageNames, impactedMethods);
+                compile(false, includeLibraries, false, finerInstrumentationAlt, packageNames, new HashSet<>());
+            }
+        }
+    }
+
+    @Test
+    public void testInSetMatchesComputeInSet() throws Exception {
+        Factory factory = new Factory("GeneratedBaseAspectTest.java", GeneratedBaseAspectTest.class);
+        Factory otherFactory = new Factory("String.java", String.class);
+        List<JoinPoint.StaticPart> joinPoints = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            joinPoints.add(factory.makeSJP(JoinPoint.METHOD_EXECUTION, factory.makeMethodSig(1, "m" + i,
+                    GeneratedBaseAspectTest.class, new Class[0], new String[0], new Class[0], void.class), i));
+            joinPoints.add(otherFactory.makeSJP(JoinPoint.METHOD_EXECUTION, otherFactory.makeMethodSig(1, "m" + i,
+                    String.class, new Class[0], new String[0], new Class[0], void.class), i));
+        }
+
+        // Impacted methods, and a whole class
+        HashSet<String> affectedMethods = new HashSet<>(Arrays.asList(GeneratedBaseAspectTest.class.getName() + "#m1",
+                GeneratedBaseAspectTest.class.getName() + "#m4", String.class.getName()));
+        checkDecisions(compile(false, false, false, false, new HashSet<>(), null), "affectedMethods",
+                affectedMethods, joinPoints, 12);
+
+        // Impacted lines of a class
+        HashMap<String, HashSet<Integer>> classToImpactedLineNumbers = new HashMap<>();
+        classToImpactedLineNumbers.put(GeneratedBaseAspectTest.class.getName(), new HashSet<>(Arrays.asList(2, 3, 7)));
+        checkDecisions(compile(false, false, false, true, new HashSet<>(), null), "classToImpactedLineNumbers",
+                classToImpactedLineNumbers, joinPoints, 3);
+    }
+
+    /**
+     * Sets the impacted methods or lines that the aspect would read from the impacted methods file, and checks that
+     * inSet agrees with computeInSet on every join point, also when the decision is cached.
+     */
+    private static void checkDecisions(Class<?> aspect, String field, Object impacted,
+                                       List<JoinPoint.StaticPart> joinPoints, int expectedInSet) throws Exception {
+        Field impactedField = aspect.getDeclaredField(field);
+        impactedField.setAccessible(true);
+        impactedField.set(null, impacted);
+        Method inSet = aspect.getMethod("inSet", JoinPoint.StaticPart.class);
+        Method computeInSet = aspect.getDeclaredMethod("computeInSet", JoinPoint.StaticPart.class);
+        computeInSet.setAccessible(true);
+
+        int count = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            count = 0;
+            for (JoinPoint.StaticPart joinPoint : joinPoints) {
+                boolean decision = (boolean) inSet.invoke(null, joinPoint);
+                assertEquals(joinPoint.toString(), computeInSet.invoke(null, joinPoint), decision);
+                if (decision) {
+                    count++;
+                }
+            }
+        }
+        assertEquals(expectedInSet, count);
+    }
+
+    /** Generates the BaseAspect, compiles it with ajc, and loads it. */
+    private Class<?> compile(boolean baseRV, boolean includeLibraries, boolean includeNonAffected,
+                             boolean finerInstrumentationAlt, HashSet<String> packageNames,
+                             HashSet<String> impactedMethods) throws IOException {
+        Path aspect = dir.resolve("BaseAspect.aj");
+        Util.generateNewBaseAspect(aspect.toString(), baseRV, includeLibraries, includeNonAffected,
+                finerInstrumentationAlt, packageNames, impactedMethods);
+        Path out = Files.createTempDirectory(dir, "out");
+        MessageHandler handler = new MessageHandler();
+        new Main().run(new String[] {"-classpath", ShardedWeaver.codeSource(Main.class), "-1.8", "-d",
+            out.toString(), aspect.toString()}, handler);
+        assertFalse(Arrays.toString(handler.getErrors()), handler.hasAnyMessage(IMessage.ERROR, true));
+        assertTrue(Files.exists(out.resolve("mop").resolve("BaseAspect.class")));
+        try {
+            return new URLClassLoader(new URL[] {out.toUri().toURL()}, GeneratedBaseAspectTest.class.getClassLoader())
+                    .loadClass("mop.BaseAspect");
+        } catch (ClassNotFoundException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
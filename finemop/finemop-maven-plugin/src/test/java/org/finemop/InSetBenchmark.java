@@ -0,0 +1,142 @@
+package org.finemop;
+
+import java.io.FileOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.management.ManagementFactory;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.aspectj.bridge.IMessage;
+import org.aspectj.bridge.MessageHandler;
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.runtime.reflect.Factory;
+import org.aspectj.tools.ajc.Main;
+import org.finemop.finemop.util.Util;
+
+/**
+ * Measures the inSet check of the generated BaseAspect against the check it used to make on every join point,
+ * which concatenates the signature and looks it up in the set of impacted methods. Every size runs in its own JVM,
+ * which gets the impacted methods file through the environment like the tests do. Arguments: the numbers of
+ * impacted methods (default 10, 1000, and 100000).
+ */
+public class InSetBenchmark {
+
+    private static final int JOIN_POINTS = 1000;
+    private static final int ROUNDS = 20000;
+
+    public static void main(String[] args) throws Throwable {
+        if (args.length > 0 && args[0].equals("run")) {
+            run(Paths.get(args[1]), args[2]);
+            return;
+        }
+        List<String> sizes = args.length > 0 ? Arrays.asList(args) : Arrays.asList("10", "1000", "100000");
+        Path dir = Files.createTempDirectory("inset-benchmark");
+        Util.generateNewBaseAspect(dir.resolve("BaseAspect.aj").toString(), false, false, false, false,
+                new HashSet<>());
+        MessageHandler handler = new MessageHandler();
+        new Main().run(new String[] {"-classpath", ShardedWeaver.codeSource(Main.class), "-1.8", "-d",
+            dir.resolve("out").toString(), dir.resolve("BaseAspect.aj").toString()}, handler);
+        if (handler.hasAnyMessage(IMessage.ERROR, true)) {
+            throw new IllegalStateException(Arrays.toString(handler.getErrors()));
+        }
+
+        for (String size : sizes) {
+            HashSet<String> impacted = new HashSet<>();
+            for (int i = 0; i < Integer.parseInt(size); i++) {
+                impacted.add(InSetBenchmark.class.getName() + "#m" + 2 * i);
+            }
+            Path impactedFile = dir.resolve("impacted-" + size + ".bin");
+            try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(impactedFile.toFile()))) {
+                out.writeObject(impacted);
+            }
+            List<String> command = new ArrayList<>(Arrays.asList(
+                    Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                    "-cp", System.getProperty("java.class.path"), InSetBenchmark.class.getName(),
+                    "run", dir.resolve("out").toString(), size));
+            ProcessBuilder builder = new ProcessBuilder(command).inheritIO();
+            builder.environment().put("IMPACTED_METHODS_FILE", impactedFile.toString());
+            if (builder.start().waitFor() != 0) {
+                throw new IllegalStateException("Failed for " + size + " impacted methods");
+            }
+        }
+        System.out.println("Remove " + dir + " afterwards");
+    }
+
+    private static void run(Path aspectDir, String size) throws Throwable {
+        HashSet<String> impacted;
+        try (ObjectInputStream in = new ObjectInputStream(Files.newInputStream(
+                Paths.get(System.getenv("IMPACTED_METHODS_FILE"))))) {
+            impacted = (HashSet<String>) in.readObject();
+        }
+        Factory factory = new Factory("InSetBenchmark.java", InSetBenchmark.class);
+        JoinPoint.StaticPart[] joinPoints = new JoinPoint.StaticPart[JOIN_POINTS];
+        for (int i = 0; i < JOIN_POINTS; i++) {
+            joinPoints[i] = factory.makeSJP(JoinPoint.METHOD_EXECUTION, factory.makeMethodSig(1, "m" + i,
+                    InSetBenchmark.class, new Class[0], new String[0], new Class[0], void.class), i);
+        }
+        Class<?> aspect = new URLClassLoader(new URL[] {aspectDir.toUri().toURL()},
+                InSetBenchmark.class.getClassLoader()).loadClass("mop.BaseAspect");
+        MethodHandle inSet = MethodHandles.publicLookup().findStatic(aspect, "inSet",
+                MethodType.methodType(boolean.class, JoinPoint.StaticPart.class));
+
+        for (JoinPoint.StaticPart joinPoint : joinPoints) {
+            if ((boolean) inSet.invokeExact(joinPoint) != concatenatingCheck(impacted, joinPoint)) {
+                throw new IllegalStateException("The checks disagree on " + joinPoint);
+            }
+        }
+        long[] concatenating = measure(joinPoints, joinPoint -> concatenatingCheck(impacted, joinPoint));
+        long[] cached = measure(joinPoints, joinPoint -> (boolean) inSet.invokeExact(joinPoint));
+        System.out.println("Impacted methods: " + size + ", join points: " + JOIN_POINTS);
+        System.out.println("  Concatenating check: " + concatenating[0] + " ns/check, " + concatenating[1]
+                + " bytes/check");
+        System.out.println("  Generated inSet: " + cached[0] + " ns/check, " + cached[1] + " bytes/check");
+    }
+
+    /** The check that the generated BaseAspect made before it cached its decisions. */
+    private static boolean concatenatingCheck(HashSet<String> affectedMethods, JoinPoint.StaticPart contextJoinPoint) {
+        return affectedMethods.contains(contextJoinPoint.getSignature().getDeclaringTypeName()
+                + "#" + contextJoinPoint.getSignature().getName())
+                || affectedMethods.contains(contextJoinPoint.getSignature().getDeclaringTypeName());
+    }
+
+    private interface Check {
+        boolean test(JoinPoint.StaticPart joinPoint) throws Throwable;
+    }
+
+    /** Returns the time and the allocated bytes per check, after as many checks for warm-up. */
+    private static long[] measure(JoinPoint.StaticPart[] joinPoints, Check check) throws Throwable {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long[] result = new long[2];
+        int hits = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            long bytes = threads.getThreadAllocatedBytes(thread);
+            long start = System.nanoTime();
+            for (int round = 0; round < ROUNDS; round++) {
+                for (JoinPoint.StaticPart joinPoint : joinPoints) {
+                    if (check.test(joinPoint)) {
+                        hits++;
+                    }
+                }
+            }
+            long checks = (long) ROUNDS * joinPoints.length;
+            result[0] = (System.nanoTime() - start) / checks;
+            result[1] = (threads.getThreadAllocatedBytes(thread) - bytes) / checks;
+        }
+        if (hits < 0) {
+            throw new IllegalStateException();
+        }
+        return result;
+    }
+}
@@ -0,0 +1,99 @@
+package org.finemop;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Compares the setup of the critical and background phases of RPP with copies of the JavaMOP agent JAR, as
+ * {@link RppHandlerMojo#setUpSingleJar}, and with configuration files only, as
+ * {@link RppHandlerMojo#setUpConfiguration}, on generated agent JARs with an aspect and its inner classes per spec.
+ * Arguments: the number of specs in the agent (default 100, 400, and 1600) and of runs (default 5).
+ */
+public class RppConfigBenchmark {
+
+    /** Classes per spec: the aspect, and the monitor and its inner classes. */
+    private static final int CLASSES_PER_SPEC = 6;
+
+    private static final int CLASS_SIZE = 8192;
+
+    public static void main(String[] args) throws IOException {
+        int[] sizes = args.length > 0 ? new int[] {Integer.parseInt(args[0])} : new int[] {100, 400, 1600};
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        Path dir = Files.createTempDirectory("rpp-config-benchmark");
+        for (int size : sizes) {
+            Path agent = dir.resolve("javamop-agent-" + size + ".jar");
+            Set<String> critical = new HashSet<>();
+            Set<String> background = new HashSet<>();
+            writeAgent(agent, size, critical, background);
+            File metaInfoDirectory = Files.createDirectory(dir.resolve("artifacts-" + size)).toFile();
+
+            long copyTotal = 0;
+            long configTotal = 0;
+            for (int run = 0; run <= runs; run++) {
+                long start = System.nanoTime();
+                RppHandlerMojo.setUpSingleJar(agent.toString(), metaInfoDirectory, "critical", critical);
+                RppHandlerMojo.setUpSingleJar(agent.toString(), metaInfoDirectory, "background", background);
+                long middle = System.nanoTime();
+                RppHandlerMojo.setUpConfiguration(metaInfoDirectory, "critical", critical);
+                RppHandlerMojo.setUpConfiguration(metaInfoDirectory, "background", background);
+                long end = System.nanoTime();
+                // The first run warms up
+                if (run > 0) {
+                    copyTotal += middle - start;
+                    configTotal += end - middle;
+                }
+            }
+            long written = Files.size(metaInfoDirectory.toPath().resolve("critical-javamop.jar"))
+                    + Files.size(metaInfoDirectory.toPath().resolve("background-javamop.jar"));
+            long configWritten = Files.size(metaInfoDirectory.toPath().resolve("critical-ajc.xml"))
+                    + Files.size(metaInfoDirectory.toPath().resolve("background-ajc.xml"));
+            System.out.println("Specs: " + size + ", agent JAR: " + Files.size(agent) / 1024 + " KB, runs: " + runs);
+            System.out.println("  Agent JAR copies, both phases: " + copyTotal / runs / 1000000 + " ms, "
+                    + written / 1024 + " KB written");
+            System.out.println("  Configuration files, both phases: " + configTotal / runs / 1000 + " us, "
+                    + configWritten / 1024 + " KB written");
+        }
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    /** Writes an agent JAR with the specs, and splits them into critical and background specs. */
+    private static void writeAgent(Path agent, int specs, Set<String> critical, Set<String> background)
+            throws IOException {
+        Random random = new Random(0);
+        byte[] bytes = new byte[CLASS_SIZE];
+        StringBuilder config = new StringBuilder("<aspectj>\n<aspects>\n");
+        try (ZipOutputStream jar = new ZipOutputStream(Files.newOutputStream(agent))) {
+            for (int i = 0; i < specs; i++) {
+                String spec = "Spec" + i + "MonitorAspect";
+                (i % 4 == 0 ? critical : background).add(spec);
+                config.append("<aspect name=\"mop.").append(spec).append("\"/>\n");
+                for (int j = 0; j < CLASSES_PER_SPEC; j++) {
+                    jar.putNextEntry(new ZipEntry("mop/" + spec + (j == 0 ? "" : "$" + j) + ".class"));
+                    // Half random, as class files compress to about half
+                    random.nextBytes(bytes);
+                    jar.write(bytes, 0, CLASS_SIZE / 2);
+                    jar.write(new byte[CLASS_SIZE / 2]);
+                    jar.closeEntry();
+                }
+            }
+            jar.putNextEntry(new ZipEntry("META-INF/aop-ajc.xml"));
+            jar.write(config.append("</aspects>\n</aspectj>\n").toString().getBytes(StandardCharsets.UTF_8));
+            jar.closeEntry();
+        }
+    }
+}
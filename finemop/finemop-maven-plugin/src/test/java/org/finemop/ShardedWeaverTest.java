@@ -0,0 +1,192 @@
+package org.finemop;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.aspectj.bridge.IMessage;
+import org.aspectj.bridge.MessageHandler;
+import org.aspectj.tools.ajc.Main;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ShardedWeaverTest {
+
+    private static final String[] CALLS = {
+        "new StringBuilder().append(i)",
+        "new Object().hashCode()",
+        "new java.util.ArrayList<Object>().add(this)",
+        "String.valueOf(i).length()",
+    };
+
+    private Path dir;
+    private List<Path> aspects;
+    private List<Path> sources;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("shards");
+        aspects = Arrays.asList(
+                aspect("Append_Aspect", "call(* java.lang.StringBuilder.append(..))"),
+                aspect("HashCode_Aspect", "call(* java.lang.Object.hashCode())"),
+                aspect("Collection_Aspect", "call(* java.util.Collection+.add(..))"));
+        sources = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            StringBuilder body = new StringBuilder();
+            for (int j = 0; j <= i % 7; j++) {
+                body.append("        ").append(CALLS[(i + j) % CALLS.length]).append(";\n");
+            }
+            String pkg = i % 2 == 0 ? "pkg" : "pkg.sub";
+            sources.add(write("src/" + pkg.replace('.', '/') + "/C" + i + ".java", "package " + pkg + ";\n"
+                    + "public class C" + i + " {\n    void m(int i) {\n" + body + "    }\n"
+                    + "    class Inner {\n        void m(int i) {\n" + body + "        }\n    }\n}\n"));
+        }
+    }
+
+    @After
+    public void cleanUp() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    public void testShardedSourcesMatchSingleShard() {
+        List<String> arguments = options();
+        arguments.add("-d");
+        arguments.add(dir.resolve("single").toString());
+        arguments.addAll(sources.stream().map(Path::toString).collect(Collectors.toList()));
+        Map<String, Set<String>> single = classToSpecs(run(arguments));
+        // All classes but C7 and C7$Inner, which only call String.length
+        assertEquals(38, single.size());
+
+        for (int shards : new int[] {2, 3, 8}) {
+            MessageHandler handler = new ShardedWeaver(options(), shards, dir.resolve("out" + shards), null,
+                    dir.resolve("work" + shards)).weave(sources);
+            assertFalse(handler.hasAnyMessage(IMessage.ERROR, true));
+            assertEquals(single, classToSpecs(handler));
+        }
+    }
+
+    @Test
+    public void testShardedInpathMatchesSingleShard() throws IOException {
+        Path classes = dir.resolve("classes");
+        List<String> arguments = new ArrayList<>(Arrays.asList("-classpath", ajcJar(), "-1.8", "-d",
+                classes.toString()));
+        arguments.addAll(sources.stream().map(Path::toString).collect(Collectors.toList()));
+        assertFalse(run(arguments).hasAnyMessage(IMessage.ERROR, true));
+
+        arguments = options();
+        arguments.addAll(Arrays.asList("-inpath", classes.toString(), "-d", dir.resolve("single").toString()));
+        Map<String, Set<String>> single = classToSpecs(run(arguments));
+        // All classes but C7 and C7$Inner, which only call String.length
+        assertEquals(38, single.size());
+
+        List<Path> classFiles;
+        try (Stream<Path> files = Files.walk(classes)) {
+            classFiles = files.filter(file -> file.toString().endsWith(".class")).collect(Collectors.toList());
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+        // Left over from an earlier run that failed: not a class file, and would fail the shard if woven
+        write("work/shard-0-inpath/pkg/Stale.class", "stale");
+        write("work/shard-5-inpath/pkg/Stale.class", "stale");
+        MessageHandler handler = new ShardedWeaver(options(), 4, dir.resolve("out"), classes, dir.resolve("work"))
+                .weave(classFiles);
+        assertFalse(handler.hasAnyMessage(IMessage.ERROR, true));
+        assertEquals(single, classToSpecs(handler));
+        try (Stream<Path> files = Files.list(dir.resolve("work"))) {
+            assertEquals(Arrays.asList("shard-0.log", "shard-1.log", "shard-2.log", "shard-3.log"),
+                    files.map(file -> file.getFileName().toString()).sorted().collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void testFailedShardIsReported() throws IOException {
+        sources.add(write("src/pkg/Broken.java", "package pkg;\npublic class Broken {\n    void m() {\n"
+                + "        undefined();\n    }\n}\n"));
+        MessageHandler handler = new ShardedWeaver(options(), 3, dir.resolve("out"), null, dir.resolve("work"))
+                .weave(sources);
+        assertTrue(handler.hasAnyMessage(IMessage.ERROR, true));
+    }
+
+    @Test
+    public void testPartitionIsBalanced() throws IOException {
+        List<List<Path>> partition = new ShardedWeaver(options(), 4, dir, null, dir).partition(sources);
+        assertEquals(4, partition.size());
+        long[] sizes = new long[partition.size()];
+        List<Path> all = new ArrayList<>();
+        for (int shard = 0; shard < partition.size(); shard++) {
+            for (Path source : partition.get(shard)) {
+                sizes[shard] += Files.size(source);
+            }
+            all.addAll(partition.get(shard));
+        }
+        assertEquals(sources.size(), all.size());
+        assertTrue(all.containsAll(sources));
+        long largest = Files.size(sources.get(6));
+        assertTrue(Arrays.stream(sizes).max().getAsLong() - Arrays.stream(sizes).min().getAsLong() <= largest);
+
+        assertEquals(2, new ShardedWeaver(options(), 4, dir, null, dir).partition(sources.subList(0, 2)).size());
+        assertEquals(1, new ShardedWeaver(options(), 4, dir, null, dir).partition(new ArrayList<>()).size());
+    }
+
+    private static Map<String, Set<String>> classToSpecs(MessageHandler handler) {
+        Map<String, Set<String>> map = new HashMap<>();
+        WeaveInfoTable.of(handler.getMessages(IMessage.WEAVEINFO, false)).addClassesToSpecs(map);
+        return map;
+    }
+
+    private static MessageHandler run(List<String> arguments) {
+        MessageHandler handler = new MessageHandler();
+        new Main().run(arguments.toArray(new String[0]), handler);
+        return handler;
+    }
+
+    private List<String> options() {
+        List<String> options = new ArrayList<>(Arrays.asList("-classpath", ajcJar(), "-showWeaveInfo", "-1.8"));
+        for (Path aspect : aspects) {
+            options.add(aspect.toString());
+        }
+        return options;
+    }
+
+    private static String ajcJar() {
+        try {
+            return Paths.get(Main.class.getProtectionDomain().getCodeSource().getLocation().toURI()).toString();
+        } catch (URISyntaxException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private Path aspect(String name, String pointcut) throws IOException {
+        return write("mop/" + name + ".aj", "package mop;\npublic aspect " + name + " {\n"
+                + "    before(): " + pointcut + " && !within(mop..*) {}\n}\n");
+    }
+
+    private Path write(String relativePath, String content) throws IOException {
+        Path file = dir.resolve(relativePath);
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
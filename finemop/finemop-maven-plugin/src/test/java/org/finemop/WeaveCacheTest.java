@@ -0,0 +1,170 @@
+package org.finemop;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.aspectj.bridge.IMessage;
+import org.aspectj.bridge.MessageHandler;
+import org.aspectj.tools.ajc.Main;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class WeaveCacheTest {
+
+    private Path dir;
+    private List<Path> aspects;
+    private List<Path> sources;
+    private WeaveCache cache;
+
+    /** Inputs passed to ajc by the last weave. */
+    private List<Path> woven;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("weave");
+        aspects = Arrays.asList(
+                write("mop/Append_Aspect.aj", "package mop;\npublic aspect Append_Aspect {\n"
+                        + "    before(): call(* java.lang.StringBuilder.append(..)) && !within(mop..*) {}\n}\n"),
+                write("mop/HashCode_Aspect.aj", "package mop;\npublic aspect HashCode_Aspect {\n"
+                        + "    before(): call(* java.lang.Object.hashCode()) {}\n"
+                        + "    after(): execution(* mop.HashCode_Aspect.helper()) {}\n"
+                        + "    static void helper() {}\n}\n"));
+        sources = new ArrayList<>(Arrays.asList(
+                write("src/pkg/A.java", "package pkg;\npublic class A {\n"
+                        + "    String m() {\n        return new StringBuilder().append(1).toString();\n    }\n}\n"),
+                write("src/pkg/B.java", "package pkg;\npublic class B {\n"
+                        + "    int m(Object o) {\n        return o.hashCode();\n    }\n"
+                        + "    static class Inner {\n"
+                        + "        void m() {\n            new StringBuilder().append(2);\n        }\n    }\n}\n"
+                        + "class Other {\n    int m() {\n        return hashCode();\n    }\n}\n"),
+                write("src/pkg/sub/A.java", "package pkg.sub;\npublic class A {\n    void m() {}\n}\n")));
+        cache = new WeaveCache(dir.resolve(WeaveCache.CACHE_DIR_NAME),
+                WeaveCache.hashEnvironment(Arrays.asList(ajcOptions()), aspects));
+    }
+
+    @After
+    public void cleanUp() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    public void testCachedAndUncachedClassToSpecsAreEqual() throws IOException {
+        Map<String, Set<String>> uncached
+                = classToSpecs(WeaveInfoTable.of(weave(sources).getMessages(IMessage.WEAVEINFO, false)));
+        assertEquals(new HashSet<>(Arrays.asList("Append_Aspect")), uncached.get("pkg.A"));
+        assertEquals(new HashSet<>(Arrays.asList("Append_Aspect")), uncached.get("pkg.B$Inner"));
+        assertEquals(new HashSet<>(Arrays.asList("HashCode_Aspect")), uncached.get("pkg.Other"));
+
+        assertEquals(uncached, classToSpecs(cache.weave(sources, this::weave)));
+        assertEquals(sources, woven);
+        assertEquals(3, cache.getMisses());
+
+        // Nothing changed, ajc does not run
+        woven = null;
+        assertEquals(uncached, classToSpecs(cache.weave(sources, this::weave)));
+        assertEquals(null, woven);
+        assertEquals(3, cache.getHits());
+
+        // Only the changed source is woven again
+        write("src/pkg/sub/A.java", "package pkg.sub;\npublic class A {\n"
+                + "    int m() {\n        return new Object().hashCode();\n    }\n}\n");
+        uncached = classToSpecs(WeaveInfoTable.of(weave(sources).getMessages(IMessage.WEAVEINFO, false)));
+        assertEquals(new HashSet<>(Arrays.asList("HashCode_Aspect")), uncached.get("pkg.sub.A"));
+        assertEquals(uncached, classToSpecs(cache.weave(sources, this::weave)));
+        assertEquals(Collections.singletonList(sources.get(2)), woven);
+        assertEquals(2, cache.getHits());
+
+        // A subset of the sources is answered from the cache
+        List<Path> subset = sources.subList(1, 2);
+        uncached = classToSpecs(WeaveInfoTable.of(weave(subset).getMessages(IMessage.WEAVEINFO, false)));
+        woven = null;
+        assertEquals(uncached, classToSpecs(cache.weave(subset, this::weave)));
+        assertEquals(null, woven);
+    }
+
+    @Test
+    public void testFailedWeaveIsNotCached() throws IOException {
+        sources.add(write("src/pkg/Broken.java", "package pkg;\npublic class Broken {\n    void m() {\n"
+                + "        new StringBuilder().append(1);\n        undefined();\n    }\n}\n"));
+        cache.weave(sources, this::weave);
+        assertEquals(4, cache.getMisses());
+        cache.weave(sources, this::weave);
+        assertEquals(4, cache.getMisses());
+    }
+
+    @Test
+    public void testOtherAspectsAreNotCacheHits() throws IOException {
+        cache.weave(sources, this::weave);
+        List<String> options = new ArrayList<>(Arrays.asList(ajcOptions()));
+        options.add("-Xlint:ignore");
+        WeaveCache otherCache = new WeaveCache(dir.resolve(WeaveCache.CACHE_DIR_NAME),
+                WeaveCache.hashEnvironment(options, aspects.subList(0, 1)));
+        otherCache.weave(sources, this::weave);
+        assertEquals(3, otherCache.getMisses());
+        assertFalse(woven.isEmpty());
+    }
+
+    /** Same as what the mojo computes for the class and fine granularities. */
+    private static Map<String, Set<String>> classToSpecs(WeaveInfoTable ms) {
+        Map<String, Set<String>> map = new HashMap<>();
+        ms.addClassesToSpecs(map);
+        assertTrue(ms.getMessageCount() > 0);
+        return map;
+    }
+
+    private MessageHandler weave(List<Path> inputs) {
+        woven = inputs;
+        List<String> arguments = new ArrayList<>(Arrays.asList(ajcOptions()));
+        for (Path aspect : aspects) {
+            arguments.add(aspect.toString());
+        }
+        for (Path input : inputs) {
+            arguments.add(input.toString());
+        }
+        MessageHandler handler = new MessageHandler();
+        new Main().run(arguments.toArray(new String[0]), handler);
+        return handler;
+    }
+
+    private String[] ajcOptions() {
+        String runtime;
+        try {
+            runtime = Paths.get(Main.class.getProtectionDomain().getCodeSource().getLocation().toURI()).toString();
+        } catch (URISyntaxException ex) {
+            throw new IllegalStateException(ex);
+        }
+        return new String[] {"-classpath", runtime, "-showWeaveInfo", "-1.8", "-d",
+                dir.resolve("weaved-bytecode").toString()};
+    }
+
+    private Path write(String relativePath, String content) throws IOException {
+        Path file = dir.resolve(relativePath);
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
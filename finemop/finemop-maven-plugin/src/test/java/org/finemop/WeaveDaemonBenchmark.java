@@ -0,0 +1,97 @@
+package org.finemop;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.aspectj.bridge.MessageHandler;
+import org.aspectj.tools.ajc.Main;
+
+/**
+ * Compares repeated weaves of the same sources, each in a fresh JVM as with separate Maven invocations, with ajc
+ * running in-process and in the {@link WeaveDaemon}. Arguments: the number of sources (default 50) and of runs
+ * (default 5).
+ */
+public class WeaveDaemonBenchmark {
+
+    private static final String[] CALLS = {
+        "new StringBuilder().append(i)",
+        "new Object().hashCode()",
+        "new java.util.ArrayList<Object>().add(this)",
+        "new java.util.HashMap<Object, Object>().put(this, this)",
+    };
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("client")) {
+            MessageHandler handler = WeaveDaemon.weave(Paths.get(args[1]),
+                    Arrays.copyOfRange(args, 2, args.length), 60);
+            System.exit(handler == null ? 1 : 0);
+        }
+        int sources = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        Path dir = Files.createTempDirectory("daemon-benchmark");
+        List<String> arguments = new ArrayList<>(Arrays.asList("-classpath", ShardedWeaver.codeSource(Main.class),
+                "-showWeaveInfo", "-1.8", "-d", dir.resolve("out").toString()));
+        for (String spec : new String[] {"Append", "HashCode", "Collection", "Map"}) {
+            String pointcut = spec.equals("Append") ? "call(* java.lang.StringBuilder.append(..))"
+                    : spec.equals("HashCode") ? "call(* java.lang.Object.hashCode())"
+                    : spec.equals("Collection") ? "call(* java.util.Collection+.add(..))"
+                    : "call(* java.util.Map+.put(..))";
+            arguments.add(write(dir, "mop/" + spec + "_Aspect.aj", "package mop;\npublic aspect " + spec
+                    + "_Aspect {\n    before(): " + pointcut + " && !within(mop..*) {}\n}\n").toString());
+        }
+        for (int i = 0; i < sources; i++) {
+            StringBuilder body = new StringBuilder();
+            for (int j = 0; j < 20; j++) {
+                body.append("        ").append(CALLS[(i + j) % CALLS.length]).append(";\n");
+            }
+            arguments.add(write(dir, "src/pkg/C" + i + ".java", "package pkg;\npublic class C" + i + " {\n"
+                    + "    void m(int i) {\n" + body + "    }\n}\n").toString());
+        }
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        String classpath = System.getProperty("java.class.path");
+
+        List<String> inProcess = new ArrayList<>(Arrays.asList(java, "-cp", classpath,
+                ShardedWeaver.class.getName(), dir.resolve("messages").toString()));
+        inProcess.addAll(arguments);
+        List<String> client = new ArrayList<>(Arrays.asList(java, "-cp", classpath,
+                WeaveDaemonBenchmark.class.getName(), "client", dir.resolve("state").toString()));
+        client.addAll(arguments);
+
+        long firstDaemonRun = run(client);
+        long inProcessTotal = 0;
+        long daemonTotal = 0;
+        for (int i = 0; i < runs; i++) {
+            inProcessTotal += run(inProcess);
+            daemonTotal += run(client);
+        }
+        System.out.println("Sources: " + sources + ", runs: " + runs);
+        System.out.println("In-process ajc, per run: " + inProcessTotal / runs + " ms");
+        System.out.println("Daemon, first run (starts the daemon): " + firstDaemonRun + " ms");
+        System.out.println("Daemon, per later run: " + daemonTotal / runs + " ms");
+        System.out.println("The daemon exits after 60 s; remove " + dir + " afterwards");
+    }
+
+    private static long run(List<String> command) throws IOException, InterruptedException {
+        long start = System.currentTimeMillis();
+        Process process = new ProcessBuilder(command).redirectErrorStream(true)
+                .redirectOutput(new File(System.getProperty("java.io.tmpdir"), "daemon-benchmark.log")).start();
+        if (process.waitFor() != 0) {
+            throw new IllegalStateException("Failed: " + command.subList(0, 4));
+        }
+        return System.currentTimeMillis() - start;
+    }
+
+    private static Path write(Path dir, String relativePath, String content) throws IOException {
+        Path file = dir.resolve(relativePath);
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
@@ -0,0 +1,171 @@
+package org.finemop;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.aspectj.bridge.IMessage;
+import org.aspectj.bridge.MessageHandler;
+import org.aspectj.tools.ajc.Main;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class WeaveDaemonTest {
+
+    private Path dir;
+    private Path stateDir;
+    private List<String> arguments;
+
+    @Before
+    public void setUp() throws IOException, URISyntaxException {
+        dir = Files.createTempDirectory("daemon");
+        stateDir = dir.resolve("state");
+        Path aspect = write("mop/Append_Aspect.aj", "package mop;\npublic aspect Append_Aspect {\n"
+                + "    before(): call(* java.lang.StringBuilder.append(..)) && !within(mop..*) {}\n}\n");
+        Path source = write("src/pkg/A.java", "package pkg;\npublic class A {\n"
+                + "    String m() {\n        return new StringBuilder().append(1).toString();\n    }\n"
+                + "    class Inner {\n        void m() {\n            new StringBuilder().append(2);\n        }\n"
+                + "    }\n}\n");
+        String runtime = Paths.get(Main.class.getProtectionDomain().getCodeSource().getLocation().toURI()).toString();
+        arguments = new ArrayList<>(Arrays.asList("-classpath", runtime, "-showWeaveInfo", "-1.8",
+                "-d", dir.resolve("out").toString(), aspect.toString(), source.toString()));
+    }
+
+    @After
+    public void cleanUp() throws IOException, InterruptedException {
+        // Wait for the daemons to exit
+        for (int i = 0; i < 100 && Files.exists(stateDir.resolve(WeaveDaemon.PORT_FILE_NAME)); i++) {
+            Thread.sleep(100);
+        }
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    public void testDaemonMatchesInProcess() throws IOException {
+        MessageHandler inProcess = new MessageHandler();
+        new Main().run(arguments.toArray(new String[0]), inProcess);
+        Map<String, Set<String>> expected = classToSpecs(inProcess);
+        assertEquals(2, expected.size());
+
+        MessageHandler daemon = WeaveDaemon.weave(stateDir, arguments.toArray(new String[0]), 2);
+        assertNotNull(daemon);
+        assertFalse(daemon.hasAnyMessage(IMessage.ERROR, true));
+        assertEquals(expected, classToSpecs(daemon));
+
+        // The second request goes to the same daemon
+        List<String> portFile = Files.readAllLines(stateDir.resolve(WeaveDaemon.PORT_FILE_NAME));
+        daemon = WeaveDaemon.weave(stateDir, arguments.toArray(new String[0]), 2);
+        assertEquals(expected, classToSpecs(daemon));
+        assertEquals(portFile, Files.readAllLines(stateDir.resolve(WeaveDaemon.PORT_FILE_NAME)));
+    }
+
+    @Test
+    public void testErrorsAndRelativeOutputDirectory() throws IOException {
+        Path source = write("src/pkg/Broken.java", "package pkg;\npublic class Broken {\n    void m() {\n"
+                + "        undefined();\n    }\n}\n");
+        List<String> broken = new ArrayList<>(arguments);
+        broken.add(source.toString());
+        assertTrue(WeaveDaemon.weave(stateDir, broken.toArray(new String[0]), 2)
+                .hasAnyMessage(IMessage.ERROR, true));
+
+        // Relative to the working directory of the client, not of the daemon
+        Path relative = Paths.get("").toAbsolutePath().relativize(dir.resolve("relative-out"));
+        arguments.set(arguments.indexOf("-d") + 1, relative.toString());
+        WeaveDaemon.weave(stateDir, arguments.toArray(new String[0]), 2);
+        assertTrue(Files.exists(dir.resolve("relative-out").resolve("pkg").resolve("A.class")));
+    }
+
+    @Test
+    public void testIdleDaemonExitsAndStaleDaemonIsReplaced() throws IOException, InterruptedException {
+        assertNotNull(WeaveDaemon.weave(stateDir, arguments.toArray(new String[0]), 1));
+        Path portFile = stateDir.resolve(WeaveDaemon.PORT_FILE_NAME);
+        for (int i = 0; i < 100 && Files.exists(portFile); i++) {
+            Thread.sleep(100);
+        }
+        assertFalse(Files.exists(portFile));
+
+        // A port file left behind by a killed daemon
+        Files.write(portFile, Arrays.asList("1", "token"));
+        assertNotNull(WeaveDaemon.weave(stateDir, arguments.toArray(new String[0]), 1));
+    }
+
+    @Test
+    public void testRequestWithWrongTokenIsRejected() throws IOException {
+        assertNotNull(WeaveDaemon.weave(stateDir, arguments.toArray(new String[0]), 2));
+        List<String> portFile = Files.readAllLines(stateDir.resolve(WeaveDaemon.PORT_FILE_NAME));
+        try (Socket socket = connect(portFile)) {
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeInt(WeaveDaemon.PROTOCOL_VERSION);
+            out.writeUTF("wrong" + portFile.get(1));
+            out.writeUTF(System.getProperty("user.dir"));
+            out.writeInt(0);
+            out.flush();
+            // The daemon closes the connection without acknowledging the request
+            socket.setSoTimeout(10000);
+            assertEquals(-1, socket.getInputStream().read());
+        }
+        assertNotNull(WeaveDaemon.weave(stateDir, arguments.toArray(new String[0]), 2));
+    }
+
+    @Test
+    public void testSilentClientDoesNotBlockDaemon() throws IOException, InterruptedException {
+        assertNotNull(WeaveDaemon.weave(stateDir, arguments.toArray(new String[0]), 5));
+        List<String> portFile = Files.readAllLines(stateDir.resolve(WeaveDaemon.PORT_FILE_NAME));
+        try (Socket socket = connect(portFile)) {
+            Thread.sleep(1500);
+            // Served by the same daemon, not by a new one started because the daemon did not answer
+            assertNotNull(WeaveDaemon.weave(stateDir, arguments.toArray(new String[0]), 5));
+            assertEquals(portFile, Files.readAllLines(stateDir.resolve(WeaveDaemon.PORT_FILE_NAME)));
+        }
+    }
+
+    @Test
+    public void testUnusableStateDirectory() throws IOException {
+        Files.write(stateDir, new byte[0]);
+        assertNull(WeaveDaemon.weave(stateDir, arguments.toArray(new String[0]), 1));
+        Files.delete(stateDir);
+    }
+
+    private static Socket connect(List<String> portFile) throws IOException {
+        return new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(portFile.get(0)));
+    }
+
+    private static Map<String, Set<String>> classToSpecs(MessageHandler handler) {
+        Map<String, Set<String>> map = new HashMap<>();
+        WeaveInfoTable.of(handler.getMessages(IMessage.WEAVEINFO, false)).addClassesToSpecs(map);
+        return map;
+    }
+
+    private Path write(String relativePath, String content) throws IOException {
+        Path file = dir.resolve(relativePath);
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
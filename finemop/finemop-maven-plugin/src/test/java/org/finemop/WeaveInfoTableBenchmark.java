@@ -0,0 +1,98 @@
+package org.finemop;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Compares parsing a synthetic load-time weaving log by splitting every line, as the mojos did, with
+ * {@link WeaveInfoTable#readLog}, and the size of the log with the binary form of the table. Arguments: the number
+ * of messages (default 1000000) and of runs (default 5).
+ */
+public class WeaveInfoTableBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int messages = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        Path log = Files.createTempFile("weave-benchmark", ".log");
+        Path binary = Files.createTempFile("weave-benchmark", ".bin");
+        Random random = new Random(0);
+        try (BufferedWriter writer = Files.newBufferedWriter(log, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < messages; i++) {
+                String klas = "org.example.module" + random.nextInt(20) + ".Class" + random.nextInt(500);
+                String spec = "Spec" + random.nextInt(150) + "_Aspect";
+                writer.write("[AppClassLoader@18b4aac2] weaveinfo Join point 'method-call(java.lang.StringBuilder "
+                        + "java.lang.StringBuilder.append(java.lang.String))' in Type '" + klas + "' ("
+                        + klas.substring(klas.lastIndexOf('.') + 1) + ".java:" + (1 + random.nextInt(800))
+                        + ") advised by before advice from 'mop." + spec + "' (" + spec + ".aj:" + random.nextInt(90)
+                        + ")");
+                writer.newLine();
+                if (i % 10 == 0) {
+                    writer.write("[AppClassLoader@18b4aac2] info processing reweavable type " + klas);
+                    writer.newLine();
+                }
+            }
+        }
+
+        long splitTotal = 0;
+        long tableTotal = 0;
+        Map<String, Set<String>> split = null;
+        Map<String, Set<String>> table = null;
+        WeaveInfoTable last = null;
+        for (int run = 0; run <= runs; run++) {
+            long start = System.nanoTime();
+            split = splitParse(log);
+            long middle = System.nanoTime();
+            last = WeaveInfoTable.readLog(log);
+            table = new HashMap<>();
+            last.addClassesToSpecs(table);
+            long end = System.nanoTime();
+            // The first run warms up
+            if (run > 0) {
+                splitTotal += middle - start;
+                tableTotal += end - middle;
+            }
+        }
+        if (!split.equals(table)) {
+            throw new IllegalStateException("The parsers disagree");
+        }
+        last.write(binary);
+
+        System.out.println("Messages: " + messages + ", runs: " + runs);
+        System.out.println("String.split parsing, per run: " + splitTotal / runs / 1000000 + " ms");
+        System.out.println("WeaveInfoTable.readLog, per run: " + tableTotal / runs / 1000000 + " ms");
+        System.out.println("Text log: " + Files.size(log) / 1024 + " KiB, binary table: "
+                + Files.size(binary) / 1024 + " KiB");
+        Files.delete(log);
+        Files.delete(binary);
+    }
+
+    private static Map<String, Set<String>> splitParse(Path log) throws IOException {
+        String[] ms = Files.lines(log).toArray(String[]::new);
+        Map<String, Set<String>> map = new HashMap<>();
+        for (String message : ms) {
+            if (!message.contains("weaveinfo Join point")) {
+                continue;
+            }
+            String[] lexedMessage = message.split("'");
+            String key = lexedMessage[3];
+            String value = lexedMessage[5].substring(4);
+            String[] tmp = lexedMessage[4].split(" ")[1].split(":");
+            int specLineNumber = 0;
+            if (tmp.length > 1) {
+                specLineNumber = Integer.parseInt(tmp[1].replace(")", ""));
+            }
+            if (specLineNumber >= 0) {
+                map.computeIfAbsent(key, k -> new HashSet<>()).add(value);
+            }
+        }
+        return map;
+    }
+}
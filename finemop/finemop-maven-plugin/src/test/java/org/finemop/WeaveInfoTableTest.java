@@ -0,0 +1,175 @@
+package org.finemop;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.aspectj.bridge.IMessage;
+import org.aspectj.bridge.Message;
+import org.aspectj.bridge.MessageHandler;
+import org.aspectj.tools.ajc.Main;
+import org.junit.Test;
+
+public class WeaveInfoTableTest {
+
+    private static final String[] MESSAGES = {
+        "[AppClassLoader@18b4aac2] weaveinfo Join point 'method-call(java.lang.StringBuilder "
+                + "java.lang.StringBuilder.append(java.lang.String))' in Type 'org.mitre.dsmiley.httpproxy.ProxyServletTest'"
+                + " (ProxyServletTest.java:53) advised by before advice from 'mop.Appendable_ThreadSafeMonitorAspect'"
+                + " (Appendable_ThreadSafeMonitorAspect.aj:34)",
+        "Join point 'method-call(int java.lang.Object.hashCode())' in Type 'pkg.A$Inner' (A.java:7) advised by"
+                + " before advice from 'mop.HashCode_Aspect' (HashCode_Aspect.aj:2)",
+        "Join point 'method-call(int java.lang.Object.hashCode())' in Type 'pkg.A$Inner' (A.java:7) advised by"
+                + " after advice from 'mop.HashCode_Aspect' (HashCode_Aspect.aj:3)",
+        "Join point 'method-call(int java.lang.Object.hashCode())' in Type 'pkg.A' (A.java:12) advised by"
+                + " before advice from 'mop.HashCode_Aspect' (HashCode_Aspect.aj:2)",
+        "Join point 'method-call(boolean java.util.Iterator.hasNext())' in Type 'lib.Lib' "
+                + "(no source information available) advised by before advice from 'mop.Iterator_HasNextAspect'"
+                + " [with runtime test]",
+    };
+
+    @Test
+    public void testTextMatchesSplitParsing() {
+        WeaveInfoTable table = new WeaveInfoTable();
+        for (String message : MESSAGES) {
+            assertTrue(table.add(message));
+        }
+        assertFalse(table.add("[AppClassLoader@18b4aac2] info AspectJ Weaver Version 1.8.1"));
+        assertEquals(MESSAGES.length, table.getMessageCount());
+
+        Map<String, Set<String>> expectedClasses = new HashMap<>();
+        Set<String> expectedLines = new HashSet<>();
+        for (String message : MESSAGES) {
+            // What the mojos computed before the table
+            String[] lexedMessage = message.split("'");
+            String klas = lexedMessage[3];
+            String spec = lexedMessage[5].substring(4);
+            String[] tmp = lexedMessage[4].split(" ")[1].split(":");
+            int line = tmp.length > 1 ? Integer.parseInt(tmp[1].replace(")", "")) : 0;
+            expectedClasses.computeIfAbsent(klas, key -> new HashSet<>()).add(spec);
+            expectedLines.add(klas + ":" + line + " " + spec);
+            assertEquals(klas, WeaveInfoTable.type(new Message(message, IMessage.WEAVEINFO, null, null)));
+        }
+        Map<String, Set<String>> classes = new HashMap<>();
+        table.addClassesToSpecs(classes);
+        assertEquals(expectedClasses, classes);
+        assertEquals(expectedLines, lines(table));
+        assertTrue(lines(table).contains("lib.Lib:0 Iterator_HasNextAspect"));
+
+        assertEquals("ProxyServletTest.java", WeaveInfoTable.sourceFile(new Message(MESSAGES[0], IMessage.WEAVEINFO,
+                null, null)));
+        assertEquals("", WeaveInfoTable.sourceFile(new Message(MESSAGES[MESSAGES.length - 1], IMessage.WEAVEINFO,
+                null, null)));
+        assertNull(WeaveInfoTable.type(new Message("Extending interface set for type 'pkg.A' (A.java)",
+                IMessage.WEAVEINFO, null, null)));
+    }
+
+    @Test
+    public void testBinaryRoundTrip() throws IOException {
+        WeaveInfoTable table = new WeaveInfoTable();
+        for (String message : MESSAGES) {
+            table.add(message);
+        }
+        for (int line = 1000; line > 0; line -= 7) {
+            table.add("pkg.Big", "Many_Aspect", line);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        table.write(new DataOutputStream(bytes));
+        WeaveInfoTable read = WeaveInfoTable.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(table.getMessageCount(), read.getMessageCount());
+        assertEquals(lines(table), lines(read));
+
+        WeaveInfoTable merged = new WeaveInfoTable();
+        merged.addAll(read);
+        merged.addAll(read);
+        assertEquals(lines(table), lines(merged));
+        assertEquals(2 * table.getMessageCount(), merged.getMessageCount());
+    }
+
+    @Test
+    public void testReadLogSkipsOtherLines() throws IOException {
+        Path log = Files.createTempFile("weave", ".log");
+        try {
+            List<String> content = new ArrayList<>(Arrays.asList(MESSAGES).subList(0, 1));
+            content.add("[AppClassLoader@18b4aac2] info register aspect mop.HashCode_Aspect");
+            Files.write(log, content, StandardCharsets.UTF_8);
+            WeaveInfoTable table = WeaveInfoTable.readLog(log);
+            assertEquals(1, table.getMessageCount());
+            assertEquals(new HashSet<>(Arrays.asList(
+                    "org.mitre.dsmiley.httpproxy.ProxyServletTest:53 Appendable_ThreadSafeMonitorAspect")), lines(table));
+        } finally {
+            Files.delete(log);
+        }
+    }
+
+    @Test
+    public void testWeaveMessagesMatchTheirText() throws IOException, URISyntaxException {
+        Path dir = Files.createTempDirectory("weaveinfo");
+        try {
+            Path aspect = write(dir, "mop/Append_Aspect.aj", "package mop;\npublic aspect Append_Aspect {\n"
+                    + "    before(): call(* java.lang.StringBuilder.append(..)) && !within(mop..*) {}\n}\n");
+            Path source = write(dir, "src/pkg/A.java", "package pkg;\npublic class A {\n"
+                    + "    String m() {\n        return new StringBuilder().append(1).toString();\n    }\n"
+                    + "    class Inner {\n        void m() {\n            new StringBuilder().append(2);\n"
+                    + "            new StringBuilder().append(3);\n        }\n    }\n}\n");
+            String runtime = Paths.get(Main.class.getProtectionDomain().getCodeSource().getLocation().toURI())
+                    .toString();
+            MessageHandler handler = new MessageHandler();
+            new Main().run(new String[] {"-classpath", runtime, "-showWeaveInfo", "-1.8", "-d",
+                dir.resolve("out").toString(), aspect.toString(), source.toString()}, handler);
+            assertFalse(handler.hasAnyMessage(IMessage.ERROR, true));
+
+            IMessage[] messages = handler.getMessages(IMessage.WEAVEINFO, false);
+            WeaveInfoTable structured = WeaveInfoTable.of(messages);
+            WeaveInfoTable text = new WeaveInfoTable();
+            for (IMessage message : messages) {
+                Message textMessage = new Message(message.getMessage(), IMessage.WEAVEINFO, null, null);
+                text.handleMessage(textMessage);
+                assertEquals(WeaveInfoTable.type(message), WeaveInfoTable.type(textMessage));
+                assertEquals("A.java", WeaveInfoTable.sourceFile(message));
+            }
+            assertEquals(new HashSet<>(Arrays.asList("pkg.A:4 Append_Aspect", "pkg.A$Inner:8 Append_Aspect",
+                    "pkg.A$Inner:9 Append_Aspect")), lines(structured));
+            assertEquals(lines(structured), lines(text));
+        } finally {
+            try (Stream<Path> files = Files.walk(dir)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    private static Set<String> lines(WeaveInfoTable table) {
+        return new HashSet<>(Arrays.asList(table.toString().split("\n")));
+    }
+
+    private static Path write(Path dir, String relativePath, String content) throws IOException {
+        Path file = dir.resolve(relativePath);
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
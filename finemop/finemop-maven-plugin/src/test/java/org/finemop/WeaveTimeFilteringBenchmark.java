@@ -0,0 +1,136 @@
+package org.finemop;
+
+import java.io.BufferedReader;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.aspectj.bridge.IMessage;
+import org.aspectj.bridge.MessageHandler;
+import org.aspectj.tools.ajc.Main;
+import org.finemop.finemop.util.Util;
+
+/**
+ * Compares the runtime overhead of finer instrumentation with the inSet check at runtime and with the impacted
+ * methods compiled into the BaseAspect, on a generated project whose every method has advised join points, and
+ * every tenth method is impacted. Plain RV, where every join point is monitored, is the reference. Arguments: the
+ * number of classes (default 200), of methods per class (default 20), and of runs (default 5).
+ */
+public class WeaveTimeFilteringBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int classes = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int methods = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int runs = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        Path dir = Files.createTempDirectory("filtering-benchmark");
+
+        List<String> sources = new ArrayList<>();
+        HashSet<String> impacted = new HashSet<>();
+        StringBuilder calls = new StringBuilder();
+        for (int i = 0; i < classes; i++) {
+            StringBuilder body = new StringBuilder("package pkg;\npublic class C" + i + " {\n");
+            StringBuilder run = new StringBuilder("    public static int run(int i) {\n        int sum = 0;\n");
+            for (int j = 0; j < methods; j++) {
+                body.append("    public static int m").append(j).append("(int i) {\n")
+                        .append("        return new StringBuilder().append(i).append(").append(j)
+                        .append(").append('x').length();\n    }\n");
+                run.append("        sum += m").append(j).append("(i);\n");
+                if ((i * methods + j) % 10 == 0) {
+                    impacted.add("pkg.C" + i + "#m" + j);
+                }
+            }
+            calls.append("            sum += C").append(i).append(".run(round);\n");
+            body.append(run).append("        return sum;\n    }\n}\n");
+            sources.add(write(dir, "src/pkg/C" + i + ".java", body.toString()));
+        }
+        sources.add(write(dir, "src/pkg/Driver.java", "package pkg;\npublic class Driver {\n"
+                + "    public static void main(String[] args) {\n        long sum = 0;\n"
+                + "        long start = System.nanoTime();\n"
+                + "        for (int round = 0; round < Integer.parseInt(args[0]); round++) {\n" + calls + "        }\n"
+                + "        System.out.println((System.nanoTime() - start) / 1000000 + \" \" + mop.Append_Aspect.count"
+                + " + \" \" + sum);\n    }\n}\n"));
+        sources.add(write(dir, "mop/Append_Aspect.aj", "package mop;\npublic aspect Append_Aspect {\n"
+                + "    public static long count;\n"
+                + "    before(): call(* java.lang.StringBuilder.append(..)) && BaseAspect.notwithin() {\n"
+                + "        count++;\n    }\n}\n"));
+        Path impactedFile = dir.resolve("impactedMethods.bin");
+        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(impactedFile.toFile()))) {
+            out.writeObject(impacted);
+        }
+
+        String[] variants = {"Plain RV", "Runtime inSet", "Weave-time filtering"};
+        Path[] outputs = new Path[variants.length];
+        System.out.println("Classes: " + classes + ", methods per class: " + methods + ", impacted methods: "
+                + impacted.size() + ", runs: " + runs);
+        for (int variant = 0; variant < variants.length; variant++) {
+            Path baseAspect = dir.resolve("base" + variant).resolve("BaseAspect.aj");
+            Files.createDirectories(baseAspect.getParent());
+            Util.generateNewBaseAspect(baseAspect.toString(), variant == 0, false, false, false,
+                    Collections.singleton("pkg"), variant == 2 ? impacted : null);
+            outputs[variant] = dir.resolve("out" + variant);
+            List<String> arguments = new ArrayList<>(Arrays.asList("-classpath", ShardedWeaver.codeSource(Main.class),
+                    "-1.8", "-showWeaveInfo", "-d", outputs[variant].toString(), baseAspect.toString()));
+            arguments.addAll(sources);
+            MessageHandler handler = new MessageHandler();
+            long start = System.currentTimeMillis();
+            new Main().run(arguments.toArray(new String[0]), handler);
+            if (handler.hasAnyMessage(IMessage.ERROR, true)) {
+                throw new IllegalStateException(Arrays.toString(handler.getErrors()));
+            }
+            System.out.println(variants[variant] + ": " + handler.getMessages(IMessage.WEAVEINFO, false).length
+                    + " woven join points, ajc " + (System.currentTimeMillis() - start) + " ms");
+        }
+
+        for (int rounds : new int[] {1, 2000}) {
+            for (int variant = 0; variant < variants.length; variant++) {
+                long total = 0;
+                String advised = null;
+                for (int run = 0; run < runs; run++) {
+                    String[] result = run(outputs[variant], impactedFile, rounds).split(" ");
+                    total += Long.parseLong(result[0]);
+                    advised = result[1];
+                }
+                System.out.println("  " + rounds + " rounds, " + variants[variant] + ": " + total / runs
+                        + " ms, " + advised + " advice executions");
+            }
+        }
+        System.out.println("Remove " + dir + " afterwards");
+    }
+
+    private static String run(Path output, Path impactedFile, int rounds) throws IOException, InterruptedException {
+        ProcessBuilder builder = new ProcessBuilder(Paths.get(System.getProperty("java.home"), "bin", "java")
+                .toString(), "-cp", output + java.io.File.pathSeparator + ShardedWeaver.codeSource(Main.class),
+                "pkg.Driver", String.valueOf(rounds));
+        builder.environment().put("IMPACTED_METHODS_FILE", impactedFile.toString());
+        Process process = builder.start();
+        String last = null;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(),
+                StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                last = line;
+            }
+        }
+        if (process.waitFor() != 0 || last == null) {
+            throw new IllegalStateException("Failed: " + output);
+        }
+        return last;
+    }
+
+    private static String write(Path dir, String relativePath, String content) throws IOException {
+        Path file = dir.resolve(relativePath);
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file.toString();
+    }
+}
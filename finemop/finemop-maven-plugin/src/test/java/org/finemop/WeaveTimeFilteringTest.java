@@ -0,0 +1,99 @@
+package org.finemop;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.aspectj.bridge.IMessage;
+import org.aspectj.bridge.MessageHandler;
+import org.aspectj.tools.ajc.Main;
+import org.finemop.finemop.util.Util;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class WeaveTimeFilteringTest {
+
+    private Path dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("filtering");
+        write("src/pkg/A.java", "package pkg;\npublic class A {\n"
+                + "    static { new StringBuilder().append(0); }\n"
+                + "    public A() { new StringBuilder().append(1); }\n"
+                + "    void m() { new StringBuilder().append(2); }\n"
+                + "    void m(int i) { new StringBuilder().append(i); }\n"
+                + "    void n() { new StringBuilder().append(4); }\n"
+                + "    class Inner { void m() { new StringBuilder().append(5); }\n"
+                + "        void k() { new StringBuilder().append(6); } }\n"
+                + "}\n");
+        write("src/pkg/B.java", "package pkg;\npublic class B {\n"
+                + "    void m() { new StringBuilder().append(1); }\n"
+                + "    Runnable r = new Runnable() { public void run() { new StringBuilder().append(2); } };\n"
+                + "}\n");
+        write("mop/Append_Aspect.aj", "package mop;\npublic aspect Append_Aspect {\n"
+                + "    before(): call(* java.lang.StringBuilder.append(..)) && BaseAspect.notwithin() {}\n}\n");
+    }
+
+    @After
+    public void cleanUp() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    public void testOnlyImpactedMethodsAreWoven() throws IOException {
+        assertEquals(new HashSet<>(Arrays.asList("pkg.A:4 Append_Aspect", "pkg.A:5 Append_Aspect",
+                "pkg.A:6 Append_Aspect", "pkg.A$Inner:8 Append_Aspect")),
+                weave(new HashSet<>(Arrays.asList("pkg.A#<init>", "pkg.A#m", "pkg.A$Inner#m"))));
+    }
+
+    @Test
+    public void testAnonymousClassesAndStaticInitializersWeaveTheirClass() throws IOException {
+        Set<String> all = new HashSet<>(Arrays.asList("pkg.B:3 Append_Aspect", "pkg.B$1:4 Append_Aspect"));
+        assertEquals(all, weave(Collections.singleton("pkg.B$1#run")));
+        assertEquals(all, weave(Collections.singleton("pkg.B")));
+        // Every line of A
+        assertEquals(7, weave(Collections.singleton("pkg.A#<clinit>")).size());
+    }
+
+    @Test
+    public void testNoImpactedMethodIsWoven() throws IOException {
+        assertEquals(new HashSet<>(), weave(new HashSet<>()));
+    }
+
+    /** Returns the join points woven with a BaseAspect restricted to the given methods, as class:line spec. */
+    private Set<String> weave(Set<String> impactedMethods) throws IOException {
+        Path baseAspect = dir.resolve("mop").resolve("BaseAspect.aj");
+        Util.generateNewBaseAspect(baseAspect.toString(), false, false, false, false,
+                Collections.singleton("pkg"), impactedMethods);
+        MessageHandler handler = new MessageHandler();
+        new Main().run(new String[] {"-classpath", ShardedWeaver.codeSource(Main.class), "-1.8", "-showWeaveInfo",
+            "-d", dir.resolve("out").toString(), baseAspect.toString(), dir.resolve("mop/Append_Aspect.aj").toString(),
+            dir.resolve("src/pkg/A.java").toString(), dir.resolve("src/pkg/B.java").toString()}, handler);
+        assertFalse(Arrays.toString(handler.getErrors()), handler.hasAnyMessage(IMessage.ERROR, true));
+        String table = WeaveInfoTable.of(handler.getMessages(IMessage.WEAVEINFO, false)).toString();
+        return table.isEmpty() ? new HashSet<>() : new HashSet<>(Arrays.asList(table.split("\n")));
+    }
+
+    private void write(String relativePath, String content) throws IOException {
+        Path file = dir.resolve(relativePath);
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+}
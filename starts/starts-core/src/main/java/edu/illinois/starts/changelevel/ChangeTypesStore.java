@@ -0,0 +1,353 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package edu.illinois.starts.changelevel;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.logging.Level;
+
+import edu.illinois.starts.util.Logger;
+
+/**
+ * Keeps the {@link StartsChangeTypes} of all classes in a single file instead of one serialized file per
+ * class.
+ *
+ * <p>The file starts with a header that points to an offset table (key, record offset, record length), and
+ * records are a compact binary encoding of the change types. {@link #save} appends the records written since
+ * the store was opened, followed by a new offset table, and then switches the header to the new table. A run
+ * that is interrupted before the header is written leaves the previous table in place. Once more than half of
+ * the file is superseded records and tables, the live records are rewritten to a temporary file that
+ * atomically replaces the store.
+ */
+public class ChangeTypesStore {
+
+    private static final Logger LOGGER = Logger.getGlobal();
+
+    private static final int MAGIC = 0x53544354; // "STCT"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+
+    private final Path storeFile;
+    /** Offset and length of every record in the file. */
+    private final Map<String, long[]> index = new HashMap<>();
+    /** Records written since the last save, by key. */
+    private final Map<String, byte[]> pending = new LinkedHashMap<>();
+    private final Set<String> removed = new HashSet<>();
+    private FileChannel reader;
+    private boolean usable;
+
+    private ChangeTypesStore(Path storeFile) {
+        this.storeFile = storeFile;
+    }
+
+    /** Opens the store in the given file; a missing or unreadable file gives an empty store. */
+    public static ChangeTypesStore open(Path storeFile) {
+        ChangeTypesStore store = new ChangeTypesStore(storeFile);
+        store.loadIndex();
+        return store;
+    }
+
+    public int size() {
+        return index.size() + pending.size() - (int) pending.keySet().stream().filter(index::containsKey).count();
+    }
+
+    public boolean contains(String key) {
+        return pending.containsKey(key) || index.containsKey(key);
+    }
+
+    /** Returns the change types stored for the key, or null if there are none. */
+    public StartsChangeTypes get(String key) throws IOException {
+        byte[] record = pending.get(key);
+        if (record == null) {
+            if (!index.containsKey(key)) {
+                return null;
+            }
+            record = readRecord(key);
+        }
+        return decode(record);
+    }
+
+    public void put(String key, StartsChangeTypes changeTypes) {
+        byte[] record = encode(changeTypes);
+        StartsChangeTypes.numChangeTypes += 1;
+        StartsChangeTypes.sizeChangeTypes += record.length;
+        pending.put(key, record);
+        removed.remove(key);
+    }
+
+    public void remove(String key) {
+        pending.remove(key);
+        if (index.containsKey(key)) {
+            removed.add(key);
+        }
+    }
+
+    /** Writes the changes since the store was opened, or since the last save. */
+    public void save() {
+        if (pending.isEmpty() && removed.isEmpty()) {
+            close();
+            return;
+        }
+        long saveStart = System.currentTimeMillis();
+        try {
+            long liveBytes = 0;
+            for (Map.Entry<String, long[]> entry : index.entrySet()) {
+                if (!pending.containsKey(entry.getKey()) && !removed.contains(entry.getKey())) {
+                    liveBytes += entry.getValue()[1];
+                }
+            }
+            long pendingBytes = 0;
+            for (byte[] record : pending.values()) {
+                pendingBytes += record.length;
+            }
+            long fileSize = usable ? Files.size(storeFile) : 0;
+            if (!usable || fileSize + pendingBytes > 2 * (HEADER_SIZE + liveBytes + pendingBytes)) {
+                compact();
+            } else {
+                append(fileSize);
+            }
+            pending.clear();
+            removed.clear();
+        } catch (IOException exception) {
+            LOGGER.log(Level.INFO, "[ChangeTypesStore] cannot write store: " + storeFile, exception);
+        } finally {
+            close();
+        }
+        StartsChangeTypes.saveChangeTypes += System.currentTimeMillis() - saveStart;
+    }
+
+    /** Closes the file handle used for reading records; the store can still be used afterwards. */
+    public void close() {
+        if (reader != null) {
+            try {
+                reader.close();
+            } catch (IOException exception) {
+                // nothing was written through the reader
+            }
+            reader = null;
+        }
+    }
+
+    private void append(long fileSize) throws IOException {
+        close();
+        try (FileChannel channel = FileChannel.open(storeFile, StandardOpenOption.WRITE)) {
+            long position = fileSize;
+            for (Map.Entry<String, byte[]> entry : pending.entrySet()) {
+                byte[] record = entry.getValue();
+                writeFully(channel, ByteBuffer.wrap(record), position);
+                index.put(entry.getKey(), new long[] {position, record.length});
+                position += record.length;
+            }
+            index.keySet().removeAll(removed);
+            writeFully(channel, ByteBuffer.wrap(encodeIndex(index)), position);
+            channel.force(false);
+            // Only switch to the new table once it and the records it points to are on disk.
+            writeFully(channel, header(position), 0);
+            channel.force(false);
+        }
+    }
+
+    private void compact() throws IOException {
+        Map<String, byte[]> records = new LinkedHashMap<>();
+        for (String key : index.keySet()) {
+            if (!pending.containsKey(key) && !removed.contains(key)) {
+                records.put(key, readRecord(key));
+            }
+        }
+        records.putAll(pending);
+        close();
+        if (storeFile.getParent() != null) {
+            Files.createDirectories(storeFile.getParent());
+        }
+        Path tempFile = Files.createTempFile(storeFile.toAbsolutePath().getParent(), "changeTypes", ".tmp");
+        Map<String, long[]> newIndex = new HashMap<>();
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+            long position = HEADER_SIZE;
+            for (Map.Entry<String, byte[]> entry : records.entrySet()) {
+                byte[] record = entry.getValue();
+                writeFully(channel, ByteBuffer.wrap(record), position);
+                newIndex.put(entry.getKey(), new long[] {position, record.length});
+                position += record.length;
+            }
+            writeFully(channel, ByteBuffer.wrap(encodeIndex(newIndex)), position);
+            writeFully(channel, header(position), 0);
+            channel.force(false);
+        }
+        try {
+            Files.move(tempFile, storeFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException exception) {
+            Files.deleteIfExists(tempFile);
+            throw exception;
+        }
+        index.clear();
+        index.putAll(newIndex);
+        usable = true;
+    }
+
+    private byte[] readRecord(String key) throws IOException {
+        long[] location = index.get(key);
+        if (reader == null) {
+            reader = FileChannel.open(storeFile, StandardOpenOption.READ);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) location[1]);
+        readFully(reader, buffer, location[0]);
+        return buffer.array();
+    }
+
+    private void loadIndex() {
+        if (!Files.exists(storeFile)) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(storeFile, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(channel, header, 0);
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != FORMAT_VERSION) {
+                LOGGER.log(Level.INFO, "[ChangeTypesStore] ignoring store in unknown format: " + storeFile);
+                return;
+            }
+            long indexOffset = header.getLong();
+            ByteBuffer table = ByteBuffer.allocate((int) (channel.size() - indexOffset));
+            readFully(channel, table, indexOffset);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(table.array()));
+            int entryCount = in.readInt();
+            for (int i = 0; i < entryCount; i++) {
+                String key = readString(in);
+                index.put(key, new long[] {in.readLong(), in.readInt()});
+            }
+            usable = true;
+        } catch (IOException | RuntimeException exception) {
+            LOGGER.log(Level.INFO, "[ChangeTypesStore] ignoring unreadable store: " + storeFile, exception);
+            index.clear();
+        }
+    }
+
+    private static ByteBuffer header(long indexOffset) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(indexOffset);
+        header.flip();
+        return header;
+    }
+
+    private static byte[] encodeIndex(Map<String, long[]> index) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(index.size());
+        for (Map.Entry<String, long[]> entry : index.entrySet()) {
+            writeString(out, entry.getKey());
+            out.writeLong(entry.getValue()[0]);
+            out.writeInt((int) entry.getValue()[1]);
+        }
+        return bytes.toByteArray();
+    }
+
+    /** Encodes the fields of the change types that the serialized form keeps. */
+    static byte[] encode(StartsChangeTypes changeTypes) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            writeString(out, changeTypes.curClass);
+            writeString(out, changeTypes.superClass);
+            writeString(out, changeTypes.urlExternalForm);
+            writeMap(out, changeTypes.constructorsMap);
+            writeMap(out, changeTypes.instanceMethodMap);
+            writeMap(out, changeTypes.staticMethodMap);
+            out.writeInt(changeTypes.fieldList.size());
+            for (String field : changeTypes.fieldList) {
+                writeString(out, field);
+            }
+        } catch (IOException exception) {
+            throw new IllegalStateException(exception);  // cannot happen on a byte array
+        }
+        return bytes.toByteArray();
+    }
+
+    static StartsChangeTypes decode(byte[] record) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        StartsChangeTypes changeTypes = new StartsChangeTypes();
+        changeTypes.curClass = readString(in);
+        changeTypes.superClass = readString(in);
+        changeTypes.urlExternalForm = readString(in);
+        readMap(in, changeTypes.constructorsMap);
+        readMap(in, changeTypes.instanceMethodMap);
+        readMap(in, changeTypes.staticMethodMap);
+        int fieldCount = in.readInt();
+        for (int i = 0; i < fieldCount; i++) {
+            changeTypes.fieldList.add(readString(in));
+        }
+        return changeTypes;
+    }
+
+    private static void writeMap(DataOutputStream out, TreeMap<String, String> map) throws IOException {
+        out.writeInt(map.size());
+        for (Map.Entry<String, String> entry : map.entrySet()) {
+            writeString(out, entry.getKey());
+            writeString(out, entry.getValue());
+        }
+    }
+
+    private static void readMap(DataInputStream in, TreeMap<String, String> map) throws IOException {
+        int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            map.put(readString(in), readString(in));
+        }
+    }
+
+    /**
+     * Writes a string as its length and UTF-8 bytes, or -1 for null. Unlike writeUTF, this allows method
+     * bodies longer than 64 KB.
+     */
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        if (string == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Truncated change types store");
+            }
+            position += read;
+        }
+    }
+}
@@ -69,6 +69,8 @@ public interface StartsConstants {
     String METHODS_CHECKSUMS_SERIALIZED_FILE = "methods-checksums.ser";
     String CLASSES_ZLC_FILE = "classes-checksums.zlc";
     String CLASSES_CHECKSUM_SERIALIZED_FILE = "classes-checksums.ser";
+    String METHOD_GRAPH_STORE_FILE = "method-graph.store";
+    String CHECKSUM_STAT_CACHE_FILE = "checksum-stat.cache";
 
     // Used in smethods
     String SMETHODS_ROOT_DIR_NAME = ".smethods";
@@ -0,0 +1,297 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package edu.illinois.starts.helpers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Versioned binary format for the method and class checksum maps, replacing Java serialization.
+ * Keys are stored sorted (by their UTF-8 bytes) in a string table, and every checksum column is either a
+ * fixed-width array of raw hash bytes (when all its values are hexadecimal strings of the same length) or
+ * a string table. The store is read into the heap and decoded as a whole into the map it was written from.
+ *
+ * <p>Layout: magic, version, flags, entry count, column count, the kind and width of every column, the key
+ * offsets and key bytes, then the data of every column.
+ */
+public final class ChecksumStore {
+
+    static final int MAGIC = 0x5354434b; // "STCK"
+    static final int FORMAT_VERSION = 1;
+
+    private static final int FLAG_LIST_VALUES = 1;
+    private static final byte HEX_COLUMN = 0;
+    private static final byte STRING_COLUMN = 1;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final ByteBuffer buffer;
+    private final boolean listValues;
+    private final int size;
+    private final int keyOffsetsStart;
+    private final int keysStart;
+    private final byte[] columnKinds;
+    private final int[] columnWidths;
+    private final int[] columnStarts;
+
+    private ChecksumStore(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.limit() < 20 || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a checksum store");
+        }
+        if (buffer.getInt(4) != FORMAT_VERSION) {
+            throw new IOException("Unsupported checksum store version: " + buffer.getInt(4));
+        }
+        listValues = (buffer.getInt(8) & FLAG_LIST_VALUES) != 0;
+        size = buffer.getInt(12);
+        int columnCount = buffer.getInt(16);
+        columnKinds = new byte[columnCount];
+        columnWidths = new int[columnCount];
+        columnStarts = new int[columnCount];
+        int position = 20;
+        for (int column = 0; column < columnCount; column++) {
+            columnKinds[column] = buffer.get(position);
+            columnWidths[column] = buffer.getInt(position + 1);
+            position += 5;
+        }
+        keyOffsetsStart = position;
+        keysStart = keyOffsetsStart + 4 * (size + 1);
+        position = keysStart + buffer.getInt(keyOffsetsStart + 4 * size);
+        for (int column = 0; column < columnCount; column++) {
+            columnStarts[column] = position;
+            if (columnKinds[column] == HEX_COLUMN) {
+                position += size * columnWidths[column];
+            } else {
+                position += 4 * (size + 1) + buffer.getInt(position + 4 * size);
+            }
+        }
+        if (position > buffer.limit()) {
+            throw new IOException("Truncated checksum store");
+        }
+    }
+
+    /**
+     * Returns whether the file starts with the magic number of this format.
+     *
+     * @param file The file to check
+     * @return Whether it is a checksum store
+     * @throws IOException If the file cannot be read
+     */
+    public static boolean isChecksumStore(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] magic = new byte[4];
+            int read = 0;
+            while (read < magic.length) {
+                int count = in.read(magic, read, magic.length - read);
+                if (count < 0) {
+                    return false;
+                }
+                read += count;
+            }
+            return ByteBuffer.wrap(magic).getInt() == MAGIC;
+        }
+    }
+
+    /**
+     * Opens a checksum store.
+     *
+     * @param file The store file
+     * @return The store
+     * @throws IOException If the file cannot be read or is not a checksum store
+     */
+    public static ChecksumStore open(Path file) throws IOException {
+        return new ChecksumStore(ByteBuffer.wrap(Files.readAllBytes(file)));
+    }
+
+    /**
+     * Writes a map whose values are checksum strings, or lists of checksum strings of the same length.
+     * Returns false, without writing anything, for any other kind of value.
+     *
+     * @param map The map to write
+     * @param file The file to write to
+     * @return Whether the map could be written in this format
+     * @throws IOException If an I/O error occurs
+     */
+    public static boolean write(Map<String, ?> map, Path file) throws IOException {
+        List<String> keys = new ArrayList<>(map.keySet());
+        byte[][] keyBytes = new byte[keys.size()][];
+        Integer[] order = new Integer[keys.size()];
+        for (int i = 0; i < keys.size(); i++) {
+            keyBytes[i] = keys.get(i).getBytes(StandardCharsets.UTF_8);
+            order[i] = i;
+        }
+        Arrays.sort(order, (first, second) -> compare(keyBytes[first], keyBytes[second]));
+
+        // Columns of values, in key order.
+        boolean listValues = !map.isEmpty() && map.values().iterator().next() instanceof List;
+        int columnCount = -1;
+        String[][] columns = new String[0][];
+        for (int index = 0; index < order.length; index++) {
+            Object value = map.get(keys.get(order[index]));
+            if (listValues ? !(value instanceof List) : !(value instanceof String)) {
+                return false;
+            }
+            List<?> values = listValues ? (List<?>) value : Arrays.asList(value);
+            if (columnCount == -1) {
+                columnCount = values.size();
+                columns = new String[columnCount][order.length];
+            }
+            if (values.size() != columnCount) {
+                return false;
+            }
+            for (int column = 0; column < columnCount; column++) {
+                if (!(values.get(column) instanceof String)) {
+                    return false;
+                }
+                columns[column][index] = (String) values.get(column);
+            }
+        }
+        columnCount = columns.length;
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(listValues ? FLAG_LIST_VALUES : 0);
+        out.writeInt(order.length);
+        out.writeInt(columnCount);
+        int[] hexWidths = new int[columnCount];
+        for (int column = 0; column < columnCount; column++) {
+            hexWidths[column] = hexWidth(columns[column]);
+            out.writeByte(hexWidths[column] > 0 ? HEX_COLUMN : STRING_COLUMN);
+            out.writeInt(Math.max(hexWidths[column], 0));
+        }
+        byte[][] sortedKeys = new byte[order.length][];
+        for (int index = 0; index < order.length; index++) {
+            sortedKeys[index] = keyBytes[order[index]];
+        }
+        writeStrings(out, sortedKeys);
+        for (int column = 0; column < columnCount; column++) {
+            if (hexWidths[column] > 0) {
+                for (String value : columns[column]) {
+                    for (int i = 0; i < value.length(); i += 2) {
+                        out.writeByte(Character.digit(value.charAt(i), 16) << 4
+                                | Character.digit(value.charAt(i + 1), 16));
+                    }
+                }
+            } else {
+                byte[][] values = new byte[order.length][];
+                for (int index = 0; index < order.length; index++) {
+                    values[index] = columns[column][index].getBytes(StandardCharsets.UTF_8);
+                }
+                writeStrings(out, values);
+            }
+        }
+        out.flush();
+        Files.write(file, bytes.toByteArray());
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Decodes the whole store into the map it was written from.
+     *
+     * @param <T> String for single checksums, List of String for lists of checksums
+     * @return The map
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Map<String, T> toMap() {
+        Map<String, T> map = new HashMap<>(size * 4 / 3 + 1);
+        for (int index = 0; index < size; index++) {
+            String key = string(keyOffsetsStart, keysStart, index);
+            if (listValues) {
+                List<String> values = new ArrayList<>(columnKinds.length);
+                for (int column = 0; column < columnKinds.length; column++) {
+                    values.add(value(column, index));
+                }
+                map.put(key, (T) values);
+            } else {
+                map.put(key, (T) value(0, index));
+            }
+        }
+        return map;
+    }
+
+    private String value(int column, int index) {
+        int start = columnStarts[column];
+        if (columnKinds[column] == STRING_COLUMN) {
+            return string(start, start + 4 * (size + 1), index);
+        }
+        int width = columnWidths[column];
+        char[] hex = new char[2 * width];
+        for (int i = 0; i < width; i++) {
+            int value = buffer.get(start + index * width + i) & 0xFF;
+            hex[2 * i] = HEX_DIGITS[value >>> 4];
+            hex[2 * i + 1] = HEX_DIGITS[value & 0xF];
+        }
+        return new String(hex);
+    }
+
+    private String string(int offsetsStart, int bytesStart, int index) {
+        int start = bytesStart + buffer.getInt(offsetsStart + 4 * index);
+        int end = bytesStart + buffer.getInt(offsetsStart + 4 * (index + 1));
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(start + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int compare(byte[] first, byte[] second) {
+        int length = Math.min(first.length, second.length);
+        for (int i = 0; i < length; i++) {
+            int comparison = (first[i] & 0xFF) - (second[i] & 0xFF);
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        return first.length - second.length;
+    }
+
+    /** Returns the byte width of the column if all values are lower-case hexadecimal of one even length, or -1. */
+    private static int hexWidth(String[] values) {
+        if (values.length == 0 || values[0].isEmpty() || values[0].length() % 2 != 0) {
+            return -1;
+        }
+        int length = values[0].length();
+        for (String value : values) {
+            if (value.length() != length) {
+                return -1;
+            }
+            for (int i = 0; i < length; i++) {
+                char character = value.charAt(i);
+                if (!(character >= '0' && character <= '9') && !(character >= 'a' && character <= 'f')) {
+                    return -1;
+                }
+            }
+        }
+        return length / 2;
+    }
+
+    private static void writeStrings(DataOutputStream out, byte[][] strings) throws IOException {
+        int offset = 0;
+        out.writeInt(offset);
+        for (byte[] string : strings) {
+            offset += string.length;
+            out.writeInt(offset);
+        }
+        for (byte[] string : strings) {
+            out.write(string);
+        }
+    }
+}
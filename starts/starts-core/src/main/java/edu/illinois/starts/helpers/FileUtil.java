@@ -4,6 +4,7 @@
 
 package edu.illinois.starts.helpers;
 
+import edu.illinois.starts.changelevel.ChangeTypesStore;
 import edu.illinois.starts.changelevel.Macros;
 
 import java.io.File;
@@ -11,6 +12,7 @@ import java.io.IOException;
 import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
@@ -39,17 +41,31 @@ public class FileUtil {
     }
 
     public static String urlToSerFilePath(String urlExternalForm){
+        return System.getProperty("user.dir") + "/" + Macros.STARTS_ROOT_DIR_NAME + "/" +
+            org.ekstazi.Names.CHANGE_TYPES_DIR_NAME + "/" + urlToChangeTypesKey(urlExternalForm) + ".ser";
+    }
+
+    /**
+     * Returns the key of a class in the {@link ChangeTypesStore}: its name with dots, e.g., "org.Foo" for
+     * ".../target/classes/org/Foo.class".
+     */
+    public static String urlToChangeTypesKey(String urlExternalForm){
         int index = urlExternalForm.indexOf("target");
         urlExternalForm = urlExternalForm.substring(index).replace(".class", "");
         StringBuffer sb = new StringBuffer();
         String[] array = urlExternalForm.split("/");
         for (int i = 2; i < array.length; i++){
+            if (i > 2) {
+                sb.append(".");
+            }
             sb.append(array[i]);
-            sb.append(".");
         }
-        sb.append("ser");
-        return System.getProperty("user.dir") + "/" + Macros.STARTS_ROOT_DIR_NAME + "/" +
-            org.ekstazi.Names.CHANGE_TYPES_DIR_NAME + "/" + sb.toString();
+        return sb.toString();
+    }
+
+    public static Path changeTypesStorePath(){
+        return Paths.get(System.getProperty("user.dir"), Macros.STARTS_ROOT_DIR_NAME,
+            org.ekstazi.Names.CHANGE_TYPES_DIR_NAME + ".store");
     }
 
     public static void extractJar(Path jarPath, Path destinationDir) throws IOException {
@@ -26,6 +26,8 @@ import edu.illinois.starts.data.ZLCFormat;
 import edu.illinois.starts.util.ChecksumUtil;
 import edu.illinois.starts.util.Logger;
 import edu.illinois.starts.util.Pair;
+import edu.illinois.starts.util.ParallelChecksums;
+import edu.illinois.starts.changelevel.ChangeTypesStore;
 import edu.illinois.starts.changelevel.StartsChangeTypes;
 import edu.illinois.starts.changelevel.FineTunedBytecodeCleaner;
 import static edu.illinois.starts.smethods.MethodLevelStaticDepsBuilder.*;
@@ -54,6 +56,7 @@ public class ZLCHelper implements StartsConstants {
     private static Set<String> oldClassesPaths = new HashSet<>();
     private static boolean initGraph = false;
     private static boolean initClassesPaths = false;
+    private static ChangeTypesStore changeTypesStore;
     private static Set<String> changedMethods = new HashSet<>();
     private static HashMap<String, Set<String>> clModifiedClassesMap = new HashMap<>( );
     private static long shouldTestRunTime = 0;
@@ -131,16 +134,13 @@ public class ZLCHelper implements StartsConstants {
     ) {
         long start = System.currentTimeMillis();
         List<ZLCData> zlcData = new ArrayList<>();
-        Set<String> deps = new HashSet<>();
         ChecksumUtil checksumUtil = new ChecksumUtil(true);
-        // merge all the deps for all tests into a single set
-        for (String test : testDeps.keySet()) {
-            deps.addAll(testDeps.get(test));
-        }
         ArrayList<String> testList = new ArrayList<>(testDeps.keySet());  // all tests
+        Map<String, List<Integer>> depToTests = invertTestDeps(testList, testDeps);
 
         // for each dep, find it's url, checksum and tests that depend on it
-        for (String dep : deps) {
+        for (Map.Entry<String, List<Integer>> entry : depToTests.entrySet()) {
+            String dep = entry.getKey();
             String klas = ChecksumUtil.toClassOrJavaName(dep, false);
             if (Types.isIgnorableInternalName(klas)) {
                 continue;
@@ -157,20 +157,13 @@ public class ZLCHelper implements StartsConstants {
             switch (format) {
                 case PLAIN_TEXT:
                     Set<String> testsStr = new HashSet<>();
-                    for (String test: testDeps.keySet()) {
-                        if (testDeps.get(test).contains(dep)) {
-                            testsStr.add(test);
-                        }
+                    for (int index : entry.getValue()) {
+                        testsStr.add(testList.get(index));
                     }
                     zlcData.add(new ZLCData(url, checksum, format, testsStr, null));
                     break;
                 case INDEXED:
-                    Set<Integer> testsIdx = new HashSet<>();
-                    for (int i = 0; i < testList.size(); i++) {
-                        if (testDeps.get(testList.get(i)).contains(dep)) {
-                            testsIdx.add(i);
-                        }
-                    }
+                    Set<Integer> testsIdx = new HashSet<>(entry.getValue());
                     zlcData.add(new ZLCData(url, checksum, format, null, testsIdx));
                     break;
                 default:
@@ -182,7 +175,25 @@ public class ZLCHelper implements StartsConstants {
         return new ZLCFileContent(testList, zlcData, format);
     }
 
-    public static Pair<Set<String>, Set<String>> getChangedData(String artifactsDir, boolean cleanBytes, boolean fineRTSOn, boolean mRTSOn, boolean saveMRTSOn, boolean mMultithreadOn) {
+    /**
+     * Inverts test -> deps in a single pass over the tests.
+     *
+     * @param testList all tests, in the order used for the INDEXED format
+     * @param testDeps the dependencies of each test
+     * @return for each dependency, the indices in testList of the tests that depend on it, in increasing order
+     */
+    public static Map<String, List<Integer>> invertTestDeps(List<String> testList, Map<String, Set<String>> testDeps) {
+        Map<String, List<Integer>> depToTests = new HashMap<>();
+        for (int i = 0; i < testList.size(); i++) {
+            Integer index = i;  // boxed once, shared by all the deps of this test
+            for (String dep : testDeps.get(testList.get(i))) {
+                depToTests.computeIfAbsent(dep, k -> new ArrayList<>()).add(index);
+            }
+        }
+        return depToTests;
+    }
+
+    public static Pair<Set<String>, Set<String>> getChangedData(String artifactsDir, boolean cleanBytes, boolean fineRTSOn, boolean mRTSOn, boolean saveMRTSOn, boolean mMultithreadOn, int checksumThreads) {
         long start = System.currentTimeMillis();
         File zlc = new File(artifactsDir, zlcFile);
 
@@ -201,8 +212,8 @@ public class ZLCHelper implements StartsConstants {
                                 if (classFile.isFile()) {   
                                     StartsChangeTypes curStartsChangeTypes = FineTunedBytecodeCleaner.removeDebugInfo(org.ekstazi.util.FileUtil.readFile(
                                             classFile));
-                                    String fileName = FileUtil.urlToSerFilePath(classFile.getAbsolutePath());
-                                    StartsChangeTypes.toFile(fileName, curStartsChangeTypes);
+                                    getChangeTypesStore().put(FileUtil.urlToChangeTypesKey(classFile.getAbsolutePath()),
+                                            curStartsChangeTypes);
                                     // System.out.println("successfully saved starts change types for " + fileName);
                                 }
                             } catch(IOException e) {
@@ -212,6 +223,7 @@ public class ZLCHelper implements StartsConstants {
                 } catch (IOException e) {
                     e.printStackTrace();
                 }
+                saveChangeTypesStore();
             }
 
             LOGGER.log(Level.FINEST, NOEXISTING_ZLCFILE_FIRST_RUN);
@@ -221,7 +233,6 @@ public class ZLCHelper implements StartsConstants {
         Set<String> nonAffected = new HashSet<>();
         Set<String> affected = new HashSet<>();
         Set<String> starTests = new HashSet<>();
-        ChecksumUtil checksumUtil = new ChecksumUtil(cleanBytes);
         try {
             List<String> zlcLines = Files.readAllLines(zlc.toPath(), Charset.defaultCharset());
             String firstLine = zlcLines.get(0);
@@ -254,8 +265,25 @@ public class ZLCHelper implements StartsConstants {
                 testsList = new ArrayList<>(zlcLines.subList(1, testsCount + 1));
             }
 
+            // compute all the new checksums up front, in parallel; the changes are still processed in zlc order
+            List<String> lines = new ArrayList<>();
+            List<String> urls = new ArrayList<>();
             for (int i = testsCount + 1; i < zlcLines.size(); i++) {
                 String line = zlcLines.get(i);
+                int urlEnd = line.indexOf(space);
+                if (urlEnd == -1) {
+                    LOGGER.log(Level.WARNING, "Skipping malformed line in " + zlc + ": " + line);
+                    continue;
+                }
+                lines.add(line);
+                urls.add(line.substring(0, urlEnd));
+            }
+            int threads = checksumThreads > 0 ? checksumThreads : Runtime.getRuntime().availableProcessors();
+            String[] newCheckSums = new ParallelChecksums(cleanBytes, threads,
+                    Paths.get(artifactsDir, CHECKSUM_STAT_CACHE_FILE)).compute(urls);
+
+            for (int i = 0; i < lines.size(); i++) {
+                String line = lines.get(i);
                 String[] parts = line.split(space);
                 String stringURL = parts[0];
                 String oldCheckSum = parts[1];
@@ -271,7 +299,7 @@ public class ZLCHelper implements StartsConstants {
                 if (fineRTSOn){
                     oldClassesPaths.add(url.getPath());
                 }
-                String newCheckSum = checksumUtil.computeSingleCheckSum(url);
+                String newCheckSum = newCheckSums[i];
                 if (!newCheckSum.equals(oldCheckSum)) {
                     if (fineRTSOn) {
                         long fineRTSOverheadStart = System.currentTimeMillis();
@@ -293,12 +321,12 @@ public class ZLCHelper implements StartsConstants {
                             boolean finertsChanged = true;
                         
                             long parseChangeTypeStart = System.currentTimeMillis();
-                            String fileName = FileUtil.urlToSerFilePath(stringURL);
+                            String changeTypesKey = FileUtil.urlToChangeTypesKey(stringURL);
                             StartsChangeTypes curStartsChangeTypes = null;
                             try {
                                 File curClassFile = new File(stringURL.substring(stringURL.indexOf("/")));
                                 if (curClassFile.exists()) {
-                                    StartsChangeTypes preStartsChangeTypes = StartsChangeTypes.fromFile(fileName);
+                                    StartsChangeTypes preStartsChangeTypes = readChangeTypes(stringURL);
                                     curStartsChangeTypes = FineTunedBytecodeCleaner.removeDebugInfo(org.ekstazi.util.FileUtil.readFile(
                                             curClassFile));
                                     if (preStartsChangeTypes != null && preStartsChangeTypes.equals(curStartsChangeTypes)) {
@@ -344,7 +372,7 @@ public class ZLCHelper implements StartsConstants {
                                 changedClasses.add(stringURL);
                             }
                             if (saveMRTSOn && curStartsChangeTypes!=null) {
-                                StartsChangeTypes.toFile(fileName, curStartsChangeTypes);
+                                getChangeTypesStore().put(changeTypesKey, curStartsChangeTypes);
                             }  
                         }else{
                             affected.addAll(tests);
@@ -363,6 +391,7 @@ public class ZLCHelper implements StartsConstants {
                     if (fineRTSOn){
                         try{
                             // System.out.println("Deleting " + stringURL);
+                            getChangeTypesStore().remove(FileUtil.urlToChangeTypesKey(url.toExternalForm()));
                             String preChangeTypePath = FileUtil.urlToSerFilePath(url.toExternalForm());
                             new File(preChangeTypePath).delete();
                         }catch (Exception e){
@@ -420,14 +449,16 @@ public class ZLCHelper implements StartsConstants {
                         long parseChangeTypeEnd = System.currentTimeMillis();
                         parseChangeTypeTime += parseChangeTypeEnd - parseChangeTypeStart;
                         if (saveMRTSOn && curStartsChangeTypes != null){
-                            String fileName = FileUtil.urlToSerFilePath(remainingFile.toURI().toURL().toExternalForm());
-                            StartsChangeTypes.toFile(fileName, curStartsChangeTypes);
+                            String changeTypesKey = FileUtil.urlToChangeTypesKey(
+                                    remainingFile.toURI().toURL().toExternalForm());
+                            getChangeTypesStore().put(changeTypesKey, curStartsChangeTypes);
                         }
                     } catch (IOException e) {
                         e.printStackTrace();
                     }
                 }
             }
+            saveChangeTypesStore();
             long fineRTSOverheadEnd = System.currentTimeMillis();
             fineRTSOverheadTime += fineRTSOverheadEnd - fineRTSOverheadStart;
         }
@@ -445,6 +476,32 @@ public class ZLCHelper implements StartsConstants {
         return new Pair<>(nonAffected, changedClasses);
     }
 
+    private static ChangeTypesStore getChangeTypesStore() {
+        if (changeTypesStore == null) {
+            changeTypesStore = ChangeTypesStore.open(FileUtil.changeTypesStorePath());
+        }
+        return changeTypesStore;
+    }
+
+    private static void saveChangeTypesStore() {
+        if (changeTypesStore != null) {
+            changeTypesStore.save();
+            changeTypesStore = null;
+        }
+    }
+
+    /**
+     * Reads the change types saved for a class by a previous run, from the store or, if it was saved by an
+     * earlier version, from its own serialized file.
+     */
+    private static StartsChangeTypes readChangeTypes(String stringURL) throws IOException, ClassNotFoundException {
+        String changeTypesKey = FileUtil.urlToChangeTypesKey(stringURL);
+        if (getChangeTypesStore().contains(changeTypesKey)) {
+            return getChangeTypesStore().get(changeTypesKey);
+        }
+        return StartsChangeTypes.fromFile(FileUtil.urlToSerFilePath(stringURL));
+    }
+
     public static boolean shouldTestRun(String test, Map<String, Set<String>> test2methods){
 //        System.out.println("test: " + test);
         Set<String> mlUsedClasses = new HashSet<>();
@@ -11,6 +11,9 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -18,6 +21,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.logging.Level;
 
 import edu.illinois.starts.constants.StartsConstants;
@@ -53,6 +57,22 @@ public class ZLCHelperMethods implements StartsConstants {
 
     public static List<Set<String>> getChangedDataMethods(Map<String, String> newMethodsChecksums,
             Map<String, Set<String>> methodToTestClasses, String artifactsDir, String filepath) {
+        return getChangedDataMethods(newMethodsChecksums,
+                method -> methodToTestClasses.getOrDefault(method, new HashSet<>()), artifactsDir, filepath);
+    }
+
+    /**
+     * Same as {@link #getChangedDataMethods(Map, Map, String, String)}, but looks up the test classes of the
+     * changed methods only, e.g., with {@link MethodLevelStaticDepsBuilder#getTestClassesOf(String)}.
+     *
+     * @param artifactsDir        The directory where the serialized file is saved.
+     * @param newMethodsChecksums A map containing the method names and their
+     *                            checksums.
+     * @param testClassesOf       Returns the test classes of a method.
+     * @return A list of sets containing all the information described above.
+     */
+    public static List<Set<String>> getChangedDataMethods(Map<String, String> newMethodsChecksums,
+            Function<String, Set<String>> testClassesOf, String artifactsDir, String filepath) {
         long start = System.currentTimeMillis();
 
         Map<String, String> oldMethodChecksums = deserializeMapping(artifactsDir, filepath);
@@ -66,7 +86,6 @@ public class ZLCHelperMethods implements StartsConstants {
         for (String method : oldMethodChecksums.keySet()) {
             String oldChecksum = oldMethodChecksums.get(method);
             String newChecksum = newMethodsChecksums.get(method);
-            Set<String> deps = methodToTestClasses.getOrDefault(method, new HashSet<>());
             String className = method.split("#")[0];
 
             oldClasses.add(className);
@@ -77,7 +96,7 @@ public class ZLCHelperMethods implements StartsConstants {
                 continue;
             } else {
                 changedMethods.add(method);
-                affectedTests.addAll(deps);
+                affectedTests.addAll(testClassesOf.apply(method));
                 changedClasses.add(className);
             }
         }
@@ -281,7 +300,9 @@ public class ZLCHelperMethods implements StartsConstants {
 
     /**
      * This method serializes the method-to-testclasses mapping and saves it to the
-     * specified directory.
+     * specified directory. Checksum maps (whose values are strings or lists of strings)
+     * are written in the binary {@link ChecksumStore} format, any other map with Java
+     * serialization.
      *
      * @param methodToTestClasses The mapping of methods to test classes.
      * @param artifactsDir        The directory where the serialized file will be
@@ -291,6 +312,9 @@ public class ZLCHelperMethods implements StartsConstants {
     public static <T> void serializeMapping(Map<String, T> map, String artifactsDir, String fileName)
             throws IOException {
         try {
+            if (ChecksumStore.write(map, Paths.get(artifactsDir + fileName))) {
+                return;
+            }
             FileOutputStream fos = new FileOutputStream(artifactsDir + fileName);
             ObjectOutputStream oos = new ObjectOutputStream(fos);
             oos.writeObject(map);
@@ -304,7 +328,8 @@ public class ZLCHelperMethods implements StartsConstants {
 
     /**
      * This method deserializes the method-to-testclasses mapping from the specified
-     * directory.
+     * directory. Both the binary {@link ChecksumStore} format and Java serialization
+     * (written by earlier versions) are read.
      *
      * @param artifactsDir The directory where the serialized file is saved.
      * @return The deserialized mapping of methods to test classes.
@@ -313,9 +338,13 @@ public class ZLCHelperMethods implements StartsConstants {
      *                                found.
      */
     @SuppressWarnings("unchecked")
-    private static <T> Map<String, T> deserializeMapping(String artifactsDir, String filename) {
+    static <T> Map<String, T> deserializeMapping(String artifactsDir, String filename) {
         Map<String, T> map = new HashMap<>();
         try {
+            Path file = Paths.get(artifactsDir + filename);
+            if (Files.exists(file) && ChecksumStore.isChecksumStore(file)) {
+                return ChecksumStore.open(file).toMap();
+            }
             FileInputStream fis = new FileInputStream(artifactsDir + filename);
             ObjectInputStream ois = new ObjectInputStream(fis);
             map = (HashMap<String, T>) ois.readObject();
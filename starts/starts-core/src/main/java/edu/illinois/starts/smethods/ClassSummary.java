@@ -0,0 +1,279 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package edu.illinois.starts.smethods;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.illinois.starts.constants.StartsConstants;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Immutable summary of a single class file: its header (name, super class, interfaces),
+ * its declared methods with their line ranges, and the raw method/field instructions of every method body.
+ * A summary is built from a single read of the bytecode and can be replayed into any
+ * {@link ClassVisitor} (e.g., {@link ClassToMethodsCollectorCV} or {@link MethodCallCollectorCV})
+ * without touching the file system again.
+ */
+public final class ClassSummary implements StartsConstants {
+
+    private final int version;
+    private final int access;
+    private final String name;
+    private final String superName;
+    private final String[] interfaces;
+    private final List<MethodSummary> methods;
+
+    ClassSummary(int version, int access, String name, String superName, String[] interfaces,
+                         List<MethodSummary> methods) {
+        this.version = version;
+        this.access = access;
+        this.name = name;
+        this.superName = superName;
+        this.interfaces = interfaces;
+        this.methods = Collections.unmodifiableList(methods);
+    }
+
+    /**
+     * Parses the given bytecode once and records everything needed to build the method graph.
+     *
+     * @param bytecode The content of a .class file
+     * @return The summary of the class
+     */
+    public static ClassSummary fromBytes(byte[] bytecode) {
+        SummaryCollectorCV collector = new SummaryCollectorCV();
+        new ClassReader(bytecode).accept(collector, ClassReader.SKIP_FRAMES);
+        return collector.build();
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public int getAccess() {
+        return access;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getSuperName() {
+        return superName;
+    }
+
+    public String[] getInterfaces() {
+        return interfaces.clone();
+    }
+
+    public List<MethodSummary> getMethods() {
+        return methods;
+    }
+
+    /**
+     * Replays the recorded class into the given visitor, in the same order the
+     * {@link ClassReader} originally reported it (header, then every method and its instructions).
+     *
+     * @param classVisitor The visitor to feed
+     */
+    public void accept(ClassVisitor classVisitor) {
+        classVisitor.visit(version, access, name, null, superName, interfaces.clone());
+        for (MethodSummary method : methods) {
+            MethodVisitor methodVisitor = classVisitor.visitMethod(method.access, method.name, method.desc,
+                    null, null);
+            if (methodVisitor == null) {
+                continue;
+            }
+            for (Instruction instruction : method.instructions) {
+                if (instruction.field) {
+                    methodVisitor.visitFieldInsn(instruction.opcode, instruction.owner, instruction.name,
+                            instruction.desc);
+                } else {
+                    methodVisitor.visitMethodInsn(instruction.opcode, instruction.owner, instruction.name,
+                            instruction.desc, instruction.itf);
+                }
+            }
+            methodVisitor.visitEnd();
+        }
+        classVisitor.visitEnd();
+    }
+
+    /**
+     * Adds the line range of every method that has line numbers, keyed by name and descriptor in declaration
+     * order, as the entry of this class. Bridge methods are left out: they only hold the call to the method they
+     * bridge, at the line of the class declaration, and differ from it only in the return type.
+     *
+     * @param classToMethodLines Map from every class to the first and last line of its methods
+     */
+    public void addMethodLines(Map<String, Map<String, int[]>> classToMethodLines) {
+        Map<String, int[]> methodLines = new LinkedHashMap<>();
+        for (MethodSummary method : methods) {
+            if (method.firstLine > 0 && (method.access & Opcodes.ACC_BRIDGE) == 0) {
+                methodLines.put(method.name + method.desc, new int[] {method.firstLine, method.lastLine});
+            }
+        }
+        if (!methodLines.isEmpty()) {
+            classToMethodLines.put(name, methodLines);
+        }
+    }
+
+    /**
+     * A declared method, the first and last line of its body in the line number table (0 if the class file
+     * has none), and the invoke/field instructions in its body.
+     */
+    public static final class MethodSummary {
+        private final int access;
+        private final String name;
+        private final String desc;
+        private final int firstLine;
+        private final int lastLine;
+        private final List<Instruction> instructions;
+
+        MethodSummary(int access, String name, String desc, int firstLine, int lastLine,
+                      List<Instruction> instructions) {
+            this.access = access;
+            this.name = name;
+            this.desc = desc;
+            this.firstLine = firstLine;
+            this.lastLine = lastLine;
+            this.instructions = Collections.unmodifiableList(instructions);
+        }
+
+        public int getAccess() {
+            return access;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getDesc() {
+            return desc;
+        }
+
+        public int getFirstLine() {
+            return firstLine;
+        }
+
+        public int getLastLine() {
+            return lastLine;
+        }
+
+        public List<Instruction> getInstructions() {
+            return instructions;
+        }
+    }
+
+    /** A raw method invocation or field access instruction. */
+    public static final class Instruction {
+        private final int opcode;
+        private final String owner;
+        private final String name;
+        private final String desc;
+        private final boolean itf;
+        private final boolean field;
+
+        Instruction(int opcode, String owner, String name, String desc, boolean itf, boolean field) {
+            this.opcode = opcode;
+            this.owner = owner;
+            this.name = name;
+            this.desc = desc;
+            this.itf = itf;
+            this.field = field;
+        }
+
+        public int getOpcode() {
+            return opcode;
+        }
+
+        public String getOwner() {
+            return owner;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getDesc() {
+            return desc;
+        }
+
+        public boolean isInterface() {
+            return itf;
+        }
+
+        public boolean isField() {
+            return field;
+        }
+    }
+
+    private static class SummaryCollectorCV extends ClassVisitor {
+        private int version;
+        private int access;
+        private String name;
+        private String superName;
+        private String[] interfaces;
+        private final List<MethodSummary> methods = new ArrayList<>();
+
+        SummaryCollectorCV() {
+            super(ASM_VERSION);
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName,
+                          String[] interfaces) {
+            this.version = version;
+            this.access = access;
+            this.name = name;
+            this.superName = superName;
+            this.interfaces = interfaces == null ? new String[0] : interfaces.clone();
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String methodName, String desc, String signature,
+                                         String[] exceptions) {
+            List<Instruction> instructions = new ArrayList<>();
+            return new MethodVisitor(ASM_VERSION) {
+                private int firstLine;
+                private int lastLine;
+
+                @Override
+                public void visitLineNumber(int line, Label start) {
+                    if (firstLine == 0 || line < firstLine) {
+                        firstLine = line;
+                    }
+                    lastLine = Math.max(lastLine, line);
+                }
+
+                @Override
+                public void visitMethodInsn(int opcode, String owner, String insnName, String insnDesc,
+                                            boolean itf) {
+                    instructions.add(new Instruction(opcode, owner, insnName, insnDesc, itf, false));
+                }
+
+                @Override
+                public void visitFieldInsn(int opcode, String owner, String insnName, String insnDesc) {
+                    instructions.add(new Instruction(opcode, owner, insnName, insnDesc, false, true));
+                }
+
+                @Override
+                public void visitEnd() {
+                    methods.add(new MethodSummary(access, methodName, desc, firstLine, lastLine, instructions));
+                }
+            };
+        }
+
+        ClassSummary build() {
+            return new ClassSummary(version, access, name, superName, interfaces, methods);
+        }
+    }
+}
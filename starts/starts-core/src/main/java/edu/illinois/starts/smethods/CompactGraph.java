@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package edu.illinois.starts.smethods;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable directed graph stored in compressed sparse row (CSR) form over the ids of a
+ * {@link SymbolTable}: the successors of node {@code n} are
+ * {@code targets[offsets[n]] ... targets[offsets[n + 1] - 1]}.
+ * Nodes interned in the symbol table after the graph was built simply have no successors.
+ */
+public final class CompactGraph {
+
+    private final SymbolTable symbols;
+    private final int[] offsets;
+    private final int[] targets;
+
+    private CompactGraph(SymbolTable symbols, int[] offsets, int[] targets) {
+        this.symbols = symbols;
+        this.offsets = offsets;
+        this.targets = targets;
+    }
+
+    /**
+     * Builds a compact graph from an adjacency map, interning every key and value in the given table.
+     *
+     * @param adjacency Map from a node to its successors
+     * @param symbols   The symbol table shared by the graphs over the same kind of nodes
+     * @return The compact graph
+     */
+    public static CompactGraph fromMap(Map<String, Set<String>> adjacency, SymbolTable symbols) {
+        int edgeCount = 0;
+        for (Map.Entry<String, Set<String>> entry : adjacency.entrySet()) {
+            symbols.intern(entry.getKey());
+            for (String successor : entry.getValue()) {
+                symbols.intern(successor);
+            }
+            edgeCount += entry.getValue().size();
+        }
+        int nodeCount = symbols.size();
+        int[] offsets = new int[nodeCount + 1];
+        for (Map.Entry<String, Set<String>> entry : adjacency.entrySet()) {
+            offsets[symbols.getId(entry.getKey()) + 1] = entry.getValue().size();
+        }
+        for (int node = 0; node < nodeCount; node++) {
+            offsets[node + 1] += offsets[node];
+        }
+        int[] targets = new int[edgeCount];
+        for (Map.Entry<String, Set<String>> entry : adjacency.entrySet()) {
+            int position = offsets[symbols.getId(entry.getKey())];
+            for (String successor : entry.getValue()) {
+                targets[position++] = symbols.getId(successor);
+            }
+        }
+        return new CompactGraph(symbols, offsets, targets);
+    }
+
+    public SymbolTable getSymbols() {
+        return symbols;
+    }
+
+    public int nodeCount() {
+        return offsets.length - 1;
+    }
+
+    public int edgeCount() {
+        return targets.length;
+    }
+
+    public int outDegree(int node) {
+        return node < nodeCount() ? offsets[node + 1] - offsets[node] : 0;
+    }
+
+    /**
+     * Returns the {@code index}-th successor of the given node.
+     *
+     * @param node  The id of the node
+     * @param index The position of the successor, in {@code [0, outDegree(node))}
+     * @return The id of the successor
+     */
+    public int successor(int node, int index) {
+        return targets[offsets[node] + index];
+    }
+
+    /**
+     * Computes every node reachable from the given source ids, sources included.
+     *
+     * @param sources Ids of the nodes to start from
+     * @return The reachable node ids
+     */
+    public BitSet reachable(int[] sources) {
+        BitSet visited = new BitSet(symbols.size());
+        int[] stack = new int[Math.max(16, sources.length)];
+        int top = 0;
+        for (int source : sources) {
+            if (!visited.get(source)) {
+                visited.set(source);
+                if (top == stack.length) {
+                    stack = Arrays.copyOf(stack, top * 2);
+                }
+                stack[top++] = source;
+            }
+        }
+        int nodeCount = nodeCount();
+        while (top > 0) {
+            int current = stack[--top];
+            if (current >= nodeCount) {
+                continue;
+            }
+            for (int i = offsets[current]; i < offsets[current + 1]; i++) {
+                int next = targets[i];
+                if (!visited.get(next)) {
+                    visited.set(next);
+                    if (top == stack.length) {
+                        stack = Arrays.copyOf(stack, top * 2);
+                    }
+                    stack[top++] = next;
+                }
+            }
+        }
+        return visited;
+    }
+
+    /**
+     * Computes every node reachable from the given sources, sources included (even when they are not
+     * part of the graph), with the same result as a traversal of the original adjacency map.
+     *
+     * @param sources Signatures of the nodes to start from
+     * @return The reachable signatures
+     */
+    public Set<String> reachable(Collection<String> sources) {
+        Set<String> result = new HashSet<>();
+        int[] sourceIds = new int[sources.size()];
+        int count = 0;
+        for (String source : sources) {
+            int id = symbols.getId(source);
+            if (id == SymbolTable.NO_ID) {
+                result.add(source);
+            } else {
+                sourceIds[count++] = id;
+            }
+        }
+        BitSet visited = reachable(Arrays.copyOf(sourceIds, count));
+        for (int id = visited.nextSetBit(0); id >= 0; id = visited.nextSetBit(id + 1)) {
+            result.add(symbols.getSymbol(id));
+        }
+        return result;
+    }
+
+    /**
+     * Expands the graph back into an adjacency map, e.g., for debugging output.
+     *
+     * @return Map from every node with successors to its successors
+     */
+    public Map<String, Set<String>> toMap() {
+        Map<String, Set<String>> map = new HashMap<>();
+        for (int node = 0; node < nodeCount(); node++) {
+            if (offsets[node] == offsets[node + 1]) {
+                continue;
+            }
+            Set<String> successors = new HashSet<>();
+            for (int i = offsets[node]; i < offsets[node + 1]; i++) {
+                successors.add(symbols.getSymbol(targets[i]));
+            }
+            map.put(symbols.getSymbol(node), successors);
+        }
+        return map;
+    }
+}
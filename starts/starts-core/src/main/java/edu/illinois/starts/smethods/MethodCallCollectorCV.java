@@ -1,6 +1,10 @@
 package edu.illinois.starts.smethods;
 
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
@@ -18,6 +22,9 @@ public class MethodCallCollectorCV extends ClassVisitor implements StartsConstan
     Map<String, Set<String>> class2ContainedMethodNames;
     Set<String> classesInConstantPool;
 
+    // Memoized results of findFirstParent, keyed by "class#methodSig"; "" means no parent implements it.
+    Map<String, String> firstParentCache;
+
     // Name of the class being visited.
     private String methodClassName;
 
@@ -32,6 +39,7 @@ public class MethodCallCollectorCV extends ClassVisitor implements StartsConstan
         this.hierarchyChildren = hierarchyChildren;
         this.class2ContainedMethodNames = class2ContainedMethodNames;
         this.classesInConstantPool = classesInConstantPool;
+        this.firstParentCache = new HashMap<>();
     }
 
     public MethodCallCollectorCV(Map<String, Set<String>> methodName2MethodNames,
@@ -43,6 +51,21 @@ public class MethodCallCollectorCV extends ClassVisitor implements StartsConstan
         this.hierarchyParents = hierarchyParents;
         this.hierarchyChildren = hierarchyChildren;
         this.class2ContainedMethodNames = class2ContainedMethodNames;
+        this.firstParentCache = new HashMap<>();
+    }
+
+    /**
+     * Same as {@link #MethodCallCollectorCV(Map, Map, Map, Map)}, but shares the memoized
+     * {@link #findFirstParent(String, String)} results with other visitors. The cache is only valid while the
+     * hierarchy maps do not change, and must be thread-safe if the visitors run concurrently.
+     */
+    public MethodCallCollectorCV(Map<String, Set<String>> methodName2MethodNames,
+                                 Map<String, Set<String>> hierarchyParents,
+                                 Map<String, Set<String>> hierarchyChildren,
+                                 Map<String, Set<String>> class2ContainedMethodNames,
+                                 Map<String, String> firstParentCache) {
+        this(methodName2MethodNames, hierarchyParents, hierarchyChildren, class2ContainedMethodNames);
+        this.firstParentCache = firstParentCache;
     }
 
     /**
@@ -142,12 +165,13 @@ public class MethodCallCollectorCV extends ClassVisitor implements StartsConstan
 
     /**
      * This method finds the first parent of a given class that contains a given
-     * method signature. It does this by recursively traversing the hierarchy of the
-     * class and its parents, and checking if each parent contains the method
+     * method signature. It traverses the hierarchy of the class and its parents
+     * depth-first with an explicit stack, checking if each parent contains the method
      * signature. If a parent is found that contains the method signature, it is
      * returned. Otherwise, the search continues with the parent's parents. If no
      * parent is found that contains the method signature, an empty string is
-     * returned.
+     * returned. Classes already explored are skipped, and results are memoized per
+     * (class, method) pair.
      *
      * @param currentClass The name of the class to start searching from.
      * @param methodSig    The signature of the method to search for.
@@ -156,16 +180,33 @@ public class MethodCallCollectorCV extends ClassVisitor implements StartsConstan
      */
 
     public String findFirstParent(String currentClass, String methodSig) {
-        for (String parent : hierarchyParents.getOrDefault(currentClass, new HashSet<>())) {
-            if (class2ContainedMethodNames.getOrDefault(parent, new HashSet<>()).contains(methodSig)) {
-                return parent;
-            } else {
-                String firstParent = findFirstParent(parent, methodSig);
-                if (!firstParent.equals("")) {
-                    return firstParent;
-                }
+        String cacheKey = currentClass + "#" + methodSig;
+        String cached = firstParentCache.get(cacheKey);
+        if (cached != null) {
+            return cached;
+        }
+        String firstParent = "";
+        Set<String> visited = new HashSet<>();
+        visited.add(currentClass);
+        ArrayDeque<Iterator<String>> stack = new ArrayDeque<>();
+        stack.push(hierarchyParents.getOrDefault(currentClass, Collections.emptySet()).iterator());
+        while (!stack.isEmpty()) {
+            Iterator<String> parents = stack.peek();
+            if (!parents.hasNext()) {
+                stack.pop();
+                continue;
+            }
+            String parent = parents.next();
+            if (class2ContainedMethodNames.getOrDefault(parent, Collections.emptySet()).contains(methodSig)) {
+                firstParent = parent;
+                break;
+            }
+            // A class explored before did not contain the method anywhere above it, so it is skipped.
+            if (visited.add(parent)) {
+                stack.push(hierarchyParents.getOrDefault(parent, Collections.emptySet()).iterator());
             }
         }
-        return "";
+        firstParentCache.put(cacheKey, firstParent);
+        return firstParent;
     }
 }
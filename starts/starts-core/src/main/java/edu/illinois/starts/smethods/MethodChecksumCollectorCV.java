@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package edu.illinois.starts.smethods;
+
+import java.util.Map;
+
+import edu.illinois.starts.constants.StartsConstants;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+
+/**
+ * Computes the checksum of every method of the visited class with a {@link MethodHashVisitor}, in a single
+ * pass over the bytecode, and puts it in the given map under the "class#name(args)" key of the method.
+ */
+public class MethodChecksumCollectorCV extends ClassVisitor implements StartsConstants {
+
+    // Mapping from method to its checksum.
+    Map<String, String> methodToChecksum;
+
+    // Name of the class being visited.
+    private String methodClassName;
+
+    public MethodChecksumCollectorCV(Map<String, String> methodToChecksum) {
+        super(ASM_VERSION);
+        this.methodToChecksum = methodToChecksum;
+    }
+
+    @Override
+    public void visit(int version, int access, String name, String signature, String superName,
+                      String[] interfaces) {
+        super.visit(version, access, name, signature, superName, interfaces);
+        methodClassName = name;
+    }
+
+    @Override
+    public MethodVisitor visitMethod(int access, final String outerName, final String outerDesc, String signature,
+                                     String[] exceptions) {
+        String key = methodClassName + "#" + outerName + outerDesc.substring(0, outerDesc.indexOf(")") + 1);
+        return new MethodHashVisitor(access, outerName, outerDesc, signature) {
+            @Override
+            public void visitEnd() {
+                methodToChecksum.put(key, getChecksum());
+            }
+        };
+    }
+}
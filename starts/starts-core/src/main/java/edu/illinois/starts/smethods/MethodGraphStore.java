@@ -0,0 +1,474 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package edu.illinois.starts.smethods;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import java.util.logging.Level;
+
+import edu.illinois.starts.constants.StartsConstants;
+import edu.illinois.starts.util.Logger;
+import edu.illinois.starts.util.XxHash64;
+
+/**
+ * Persists, for every scanned class file, its {@link ClassSummary} (method list and line ranges, supertypes
+ * and the raw invoke/field instructions), the call edges it contributes, and the size, modification time and checksum
+ * of the file. The next {@link #update} only reads class files whose size or modification time changed,
+ * and only parses those whose checksum changed. Edges of unchanged classes are reused as long as no class
+ * was added or removed and no class changed its supertypes or method list; otherwise they are resolved
+ * again from the stored summaries, without touching the class files. Either way, the resulting maps are
+ * the same as those of a from-scratch {@link MethodLevelStaticDepsBuilder#findMethodsInvoked(Set)}.
+ * With a positive number of threads, the changed class files are read and parsed, and the edges resolved,
+ * in parallel as {@link ParallelBytecodeScanner} does.
+ */
+public class MethodGraphStore implements StartsConstants {
+
+    private static final Logger LOGGER = Logger.getGlobal();
+
+    private static final int MAGIC = 0x53544d47; // "STMG"
+    private static final int FORMAT_VERSION = 2;
+
+    /**
+     * Modification times are only trusted if they are older than the previous store by this margin, so that
+     * a class file rewritten within the file system's timestamp granularity is still checksummed.
+     */
+    private static final long RACY_MILLIS = 2000;
+
+    private final Path storeFile;
+    private final int scanThreads;
+
+    private final AtomicInteger parsedFiles = new AtomicInteger();
+    private final AtomicInteger checksummedFiles = new AtomicInteger();
+    private boolean edgesReused;
+
+    public MethodGraphStore(Path storeFile) {
+        this(storeFile, 0);
+    }
+
+    /**
+     * Creates a store that scans the changed class files with the given number of threads, or on the calling
+     * thread if it is not positive.
+     */
+    public MethodGraphStore(Path storeFile, int scanThreads) {
+        this.storeFile = storeFile;
+        this.scanThreads = scanThreads;
+    }
+
+    public MethodGraphStore(String artifactsDir) {
+        this(artifactsDir, 0);
+    }
+
+    public MethodGraphStore(String artifactsDir, int scanThreads) {
+        this(Paths.get(artifactsDir, METHOD_GRAPH_STORE_FILE), scanThreads);
+    }
+
+    /** Returns the number of class files parsed by the last {@link #update}. */
+    public int getParsedFiles() {
+        return parsedFiles.get();
+    }
+
+    /** Returns the number of class files read and checksummed by the last {@link #update}. */
+    public int getChecksummedFiles() {
+        return checksummedFiles.get();
+    }
+
+    /** Returns whether the last {@link #update} reused the stored edges of unchanged classes. */
+    public boolean isEdgesReused() {
+        return edgesReused;
+    }
+
+    /**
+     * Brings the store up to date with the given class files, fills the given maps in the same way
+     * the {@link ClassToMethodsCollectorCV} and {@link MethodCallCollectorCV} passes do, and saves the store.
+     *
+     * @param bytecodePaths     Paths to the class files to scan
+     * @param classToMethods    Map from every class to the methods it contains
+     * @param classToSuperclass Map from every class to its parents
+     * @param classToSubclasses Map from every class to its subclasses
+     * @param callerToCalled    Map from method to the methods it directly invokes
+     */
+    public void update(Set<String> bytecodePaths,
+                       Map<String, Set<String>> classToMethods,
+                       Map<String, Set<String>> classToSuperclass,
+                       Map<String, Set<String>> classToSubclasses,
+                       Map<String, Set<String>> callerToCalled) {
+        update(bytecodePaths, classToMethods, classToSuperclass, classToSubclasses, callerToCalled, new HashMap<>());
+    }
+
+    /**
+     * Same as {@link #update(Set, Map, Map, Map, Map)}, and also fills the line ranges of the methods, as
+     * {@link ClassSummary#addMethodLines} does.
+     *
+     * @param classToMethodLines Map from every class to the first and last line of its methods
+     */
+    public void update(Set<String> bytecodePaths,
+                       Map<String, Set<String>> classToMethods,
+                       Map<String, Set<String>> classToSuperclass,
+                       Map<String, Set<String>> classToSubclasses,
+                       Map<String, Set<String>> callerToCalled,
+                       Map<String, Map<String, int[]>> classToMethodLines) {
+        parsedFiles.set(0);
+        checksummedFiles.set(0);
+        long storeTime = System.currentTimeMillis();
+        Map<String, Entry> oldEntries = new HashMap<>();
+        long oldStoreTime = load(oldEntries);
+
+        // Find the class files that changed, and whether the structure (supertypes, methods) of any class did.
+        List<String> paths = new ArrayList<>(bytecodePaths);
+        paths.sort(null);
+        Entry[] refreshed = new Entry[paths.size()];
+        forEachIndex(paths.size(), index -> refreshed[index] = refresh(paths.get(index),
+                oldEntries.get(paths.get(index)), oldStoreTime));
+        Map<String, Entry> entries = new HashMap<>();
+        boolean structureChanged = !oldEntries.keySet().equals(bytecodePaths);
+        for (int i = 0; i < paths.size(); i++) {
+            Entry oldEntry = oldEntries.get(paths.get(i));
+            Entry entry = refreshed[i];
+            if (entry == null) {
+                structureChanged = true;
+                continue;
+            }
+            entries.put(paths.get(i), entry);
+            if (entry != oldEntry && entry.edges == null) {
+                structureChanged |= oldEntry == null || !sameStructure(oldEntry.summary, entry.summary);
+            }
+        }
+
+        // Hierarchy and declared methods, needed by every call edge resolution below.
+        for (String path : paths) {
+            Entry entry = entries.get(path);
+            if (entry != null) {
+                entry.summary.accept(new ClassToMethodsCollectorCV(classToMethods, classToSuperclass,
+                        classToSubclasses));
+                entry.summary.addMethodLines(classToMethodLines);
+            }
+        }
+
+        // Resolve the call edges of rescanned classes, or of all classes if the structure changed.
+        edgesReused = !structureChanged;
+        List<Entry> unresolved = new ArrayList<>();
+        for (String path : paths) {
+            Entry entry = entries.get(path);
+            if (entry != null && (entry.edges == null || !edgesReused)) {
+                unresolved.add(entry);
+            }
+        }
+        Map<String, String> firstParentCache = scanThreads > 0 ? new ConcurrentHashMap<>() : new HashMap<>();
+        forEachIndex(unresolved.size(), index -> {
+            Entry entry = unresolved.get(index);
+            Map<String, Set<String>> localEdges = new HashMap<>();
+            entry.summary.accept(new MethodCallCollectorCV(localEdges, classToSuperclass, classToSubclasses,
+                    classToMethods, firstParentCache));
+            entry.edges = localEdges;
+        });
+        for (String path : paths) {
+            Entry entry = entries.get(path);
+            if (entry == null) {
+                continue;
+            }
+            for (Map.Entry<String, Set<String>> edges : entry.edges.entrySet()) {
+                callerToCalled.computeIfAbsent(edges.getKey(), k -> new TreeSet<>()).addAll(edges.getValue());
+            }
+        }
+        LOGGER.log(Level.FINE, "[MethodGraphStore] classes: " + entries.size() + ", checksummed: "
+                + checksummedFiles + ", parsed: " + parsedFiles + ", edges reused: " + edgesReused);
+        save(entries, storeTime);
+    }
+
+    /** Applies the action to every index below the count, on the calling thread or across a pool. */
+    private void forEachIndex(int count, IntConsumer action) {
+        if (scanThreads <= 0) {
+            for (int index = 0; index < count; index++) {
+                action.accept(index);
+            }
+            return;
+        }
+        ForkJoinPool pool = new ForkJoinPool(scanThreads);
+        try {
+            pool.invoke(new ParallelBytecodeScanner.RangeAction(0, count, action));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Returns the stored entry if the class file did not change, or a new entry without edges otherwise.
+     * Returns null if the class file cannot be read.
+     */
+    private Entry refresh(String path, Entry oldEntry, long oldStoreTime) {
+        long size;
+        long modified;
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(Paths.get(path), BasicFileAttributes.class);
+            size = attributes.size();
+            modified = attributes.lastModifiedTime().toMillis();
+        } catch (IOException exception) {
+            LOGGER.log(Level.INFO, "[ERROR] cannot parse file: " + path);
+            return null;
+        }
+        if (oldEntry != null && oldEntry.size == size && oldEntry.modified == modified
+                && modified + RACY_MILLIS < oldStoreTime) {
+            return oldEntry;
+        }
+        byte[] bytecode;
+        try {
+            bytecode = Files.readAllBytes(Paths.get(path));
+        } catch (IOException exception) {
+            LOGGER.log(Level.INFO, "[ERROR] cannot parse file: " + path);
+            return null;
+        }
+        checksummedFiles.incrementAndGet();
+        long checksum = new XxHash64().update(bytecode, 0, bytecode.length).digest();
+        if (oldEntry != null && oldEntry.checksum == checksum) {
+            Entry entry = new Entry(size, modified, checksum, oldEntry.summary);
+            entry.edges = oldEntry.edges;
+            return entry;
+        }
+        parsedFiles.incrementAndGet();
+        return new Entry(size, modified, checksum, ClassSummary.fromBytes(bytecode));
+    }
+
+    /** Whether two summaries contribute the same entries to the hierarchy maps and to classToMethods. */
+    private static boolean sameStructure(ClassSummary oldSummary, ClassSummary newSummary) {
+        if (!oldSummary.getName().equals(newSummary.getName())
+                || !String.valueOf(oldSummary.getSuperName()).equals(String.valueOf(newSummary.getSuperName()))
+                || !Arrays.equals(oldSummary.getInterfaces(), newSummary.getInterfaces())
+                || oldSummary.getMethods().size() != newSummary.getMethods().size()) {
+            return false;
+        }
+        for (int i = 0; i < oldSummary.getMethods().size(); i++) {
+            ClassSummary.MethodSummary oldMethod = oldSummary.getMethods().get(i);
+            ClassSummary.MethodSummary newMethod = newSummary.getMethods().get(i);
+            if (!oldMethod.getName().equals(newMethod.getName()) || !oldMethod.getDesc().equals(newMethod.getDesc())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Loads the stored entries, and returns the time the store was saved (0 if there is no usable store). */
+    private long load(Map<String, Entry> entries) {
+        if (!Files.exists(storeFile)) {
+            return 0;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(storeFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                LOGGER.log(Level.INFO, "[MethodGraphStore] ignoring store in unknown format: " + storeFile);
+                return 0;
+            }
+            long storeTime = in.readLong();
+            StringTableReader strings = new StringTableReader(in);
+            int entryCount = in.readInt();
+            for (int i = 0; i < entryCount; i++) {
+                String path = strings.read();
+                Entry entry = new Entry(in.readLong(), in.readLong(), in.readLong(), readSummary(in, strings));
+                int edgeCount = in.readInt();
+                entry.edges = new HashMap<>();
+                for (int j = 0; j < edgeCount; j++) {
+                    String caller = strings.read();
+                    Set<String> called = new TreeSet<>();
+                    int calledCount = in.readInt();
+                    for (int k = 0; k < calledCount; k++) {
+                        called.add(strings.read());
+                    }
+                    entry.edges.put(caller, called);
+                }
+                entries.put(path, entry);
+            }
+            return storeTime;
+        } catch (IOException exception) {
+            LOGGER.log(Level.INFO, "[MethodGraphStore] ignoring unreadable store: " + storeFile, exception);
+            entries.clear();
+            return 0;
+        }
+    }
+
+    private void save(Map<String, Entry> entries, long storeTime) {
+        try {
+            if (storeFile.getParent() != null) {
+                Files.createDirectories(storeFile.getParent());
+            }
+            // Written next to the store and moved over it, so an interrupted build leaves the old store intact.
+            Path tempFile = Files.createTempFile(storeFile.toAbsolutePath().getParent(), "methodGraph", ".tmp");
+            try {
+                write(tempFile, entries, storeTime);
+                Files.move(tempFile, storeFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException exception) {
+                Files.deleteIfExists(tempFile);
+                throw exception;
+            }
+        } catch (IOException exception) {
+            LOGGER.log(Level.INFO, "[MethodGraphStore] cannot write store: " + storeFile, exception);
+        }
+    }
+
+    private static void write(Path file, Map<String, Entry> entries, long storeTime) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(storeTime);
+            StringTableWriter strings = new StringTableWriter(out);
+            out.writeInt(entries.size());
+            for (Map.Entry<String, Entry> pathEntry : entries.entrySet()) {
+                Entry entry = pathEntry.getValue();
+                strings.write(pathEntry.getKey());
+                out.writeLong(entry.size);
+                out.writeLong(entry.modified);
+                out.writeLong(entry.checksum);
+                writeSummary(out, strings, entry.summary);
+                out.writeInt(entry.edges.size());
+                for (Map.Entry<String, Set<String>> edges : entry.edges.entrySet()) {
+                    strings.write(edges.getKey());
+                    out.writeInt(edges.getValue().size());
+                    for (String called : edges.getValue()) {
+                        strings.write(called);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void writeSummary(DataOutputStream out, StringTableWriter strings, ClassSummary summary)
+            throws IOException {
+        out.writeInt(summary.getVersion());
+        out.writeInt(summary.getAccess());
+        strings.write(summary.getName());
+        strings.write(summary.getSuperName());
+        String[] interfaces = summary.getInterfaces();
+        out.writeInt(interfaces.length);
+        for (String anInterface : interfaces) {
+            strings.write(anInterface);
+        }
+        out.writeInt(summary.getMethods().size());
+        for (ClassSummary.MethodSummary method : summary.getMethods()) {
+            out.writeInt(method.getAccess());
+            strings.write(method.getName());
+            strings.write(method.getDesc());
+            out.writeInt(method.getFirstLine());
+            out.writeInt(method.getLastLine());
+            out.writeInt(method.getInstructions().size());
+            for (ClassSummary.Instruction instruction : method.getInstructions()) {
+                out.writeShort(instruction.getOpcode());
+                out.writeByte((instruction.isInterface() ? 1 : 0) | (instruction.isField() ? 2 : 0));
+                strings.write(instruction.getOwner());
+                strings.write(instruction.getName());
+                strings.write(instruction.getDesc());
+            }
+        }
+    }
+
+    private static ClassSummary readSummary(DataInputStream in, StringTableReader strings) throws IOException {
+        int version = in.readInt();
+        int access = in.readInt();
+        String name = strings.read();
+        String superName = strings.read();
+        String[] interfaces = new String[in.readInt()];
+        for (int i = 0; i < interfaces.length; i++) {
+            interfaces[i] = strings.read();
+        }
+        int methodCount = in.readInt();
+        List<ClassSummary.MethodSummary> methods = new ArrayList<>(methodCount);
+        for (int i = 0; i < methodCount; i++) {
+            int methodAccess = in.readInt();
+            String methodName = strings.read();
+            String methodDesc = strings.read();
+            int firstLine = in.readInt();
+            int lastLine = in.readInt();
+            int instructionCount = in.readInt();
+            List<ClassSummary.Instruction> instructions = new ArrayList<>(instructionCount);
+            for (int j = 0; j < instructionCount; j++) {
+                int opcode = in.readShort();
+                int flags = in.readByte();
+                instructions.add(new ClassSummary.Instruction(opcode, strings.read(), strings.read(),
+                        strings.read(), (flags & 1) != 0, (flags & 2) != 0));
+            }
+            methods.add(new ClassSummary.MethodSummary(methodAccess, methodName, methodDesc, firstLine, lastLine,
+                    instructions));
+        }
+        return new ClassSummary(version, access, name, superName, interfaces, methods);
+    }
+
+    /** The stored state of a single class file. */
+    private static class Entry {
+        private final long size;
+        private final long modified;
+        private final long checksum;
+        private final ClassSummary summary;
+        // Edges contributed by the class, null until they are resolved against the current hierarchy.
+        private Map<String, Set<String>> edges;
+
+        Entry(long size, long modified, long checksum, ClassSummary summary) {
+            this.size = size;
+            this.modified = modified;
+            this.checksum = checksum;
+            this.summary = summary;
+        }
+    }
+
+    /** Writes every distinct string once; later occurrences are written as the index of the first one. */
+    private static class StringTableWriter {
+        private final DataOutputStream out;
+        private final Map<String, Integer> ids = new HashMap<>();
+
+        StringTableWriter(DataOutputStream out) {
+            this.out = out;
+        }
+
+        void write(String value) throws IOException {
+            if (value == null) {
+                out.writeInt(-1);
+                return;
+            }
+            Integer id = ids.get(value);
+            if (id != null) {
+                out.writeInt(id);
+                return;
+            }
+            out.writeInt(ids.size());
+            ids.put(value, ids.size());
+            out.writeUTF(value);
+        }
+    }
+
+    /** Reads the strings written by {@link StringTableWriter}. */
+    private static class StringTableReader {
+        private final DataInputStream in;
+        private final List<String> strings = new ArrayList<>();
+
+        StringTableReader(DataInputStream in) {
+            this.in = in;
+        }
+
+        String read() throws IOException {
+            int id = in.readInt();
+            if (id == -1) {
+                return null;
+            }
+            if (id == strings.size()) {
+                strings.add(in.readUTF());
+            }
+            return strings.get(id);
+        }
+    }
+}
@@ -0,0 +1,384 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package edu.illinois.starts.smethods;
+
+import java.lang.reflect.Array;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import edu.illinois.starts.constants.StartsConstants;
+import edu.illinois.starts.util.XxHash64;
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.Attribute;
+import org.objectweb.asm.ConstantDynamic;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.TypePath;
+
+/**
+ * Computes the checksum of a single method by feeding every event of its body (opcodes, operands, and the
+ * owners, names and descriptors they reference) into a streaming {@link XxHash64}, instead of rendering the
+ * method to text and hashing the text. It covers the same content as
+ * {@link edu.illinois.starts.helpers.ZLCHelperMethods#printMethodContent}: the access flags, generic
+ * signature, name and descriptor of the method, plus everything its body visits except line numbers and
+ * local variable names, which are debug information. Labels are numbered in the order they are first seen,
+ * as the Textifier does, so the checksum does not depend on label identities.
+ */
+public class MethodHashVisitor extends MethodVisitor implements StartsConstants {
+
+    // Tags fed before the operands of each event, so that different events never hash alike.
+    private static final int PARAMETER = 1;
+    private static final int ANNOTATION_DEFAULT = 2;
+    private static final int ANNOTATION = 3;
+    private static final int TYPE_ANNOTATION = 4;
+    private static final int ANNOTABLE_PARAMETER_COUNT = 5;
+    private static final int PARAMETER_ANNOTATION = 6;
+    private static final int ATTRIBUTE = 7;
+    private static final int FRAME = 8;
+    private static final int INSN = 9;
+    private static final int INT_INSN = 10;
+    private static final int VAR_INSN = 11;
+    private static final int TYPE_INSN = 12;
+    private static final int FIELD_INSN = 13;
+    private static final int METHOD_INSN = 14;
+    private static final int INVOKE_DYNAMIC_INSN = 15;
+    private static final int JUMP_INSN = 16;
+    private static final int LABEL = 17;
+    private static final int LDC_INSN = 18;
+    private static final int IINC_INSN = 19;
+    private static final int TABLE_SWITCH_INSN = 20;
+    private static final int LOOKUP_SWITCH_INSN = 21;
+    private static final int MULTI_ANEW_ARRAY_INSN = 22;
+    private static final int INSN_ANNOTATION = 23;
+    private static final int TRY_CATCH_BLOCK = 24;
+    private static final int TRY_CATCH_ANNOTATION = 25;
+    private static final int LOCAL_VARIABLE_ANNOTATION = 26;
+    private static final int MAXS = 27;
+    private static final int ANNOTATION_VALUE = 28;
+    private static final int ANNOTATION_ENUM = 29;
+    private static final int ANNOTATION_NESTED = 30;
+    private static final int ANNOTATION_ARRAY = 31;
+    private static final int ANNOTATION_END = 32;
+
+    private final XxHash64 hash = new XxHash64();
+    private final Map<Label, Integer> labelIds = new IdentityHashMap<>();
+
+    /**
+     * Starts hashing a method with the header that {@code ClassVisitor.visitMethod} reports for it.
+     *
+     * @param access    The method's access flags
+     * @param name      The method's name
+     * @param desc      The method's descriptor
+     * @param signature The method's generic signature, may be null
+     */
+    public MethodHashVisitor(int access, String name, String desc, String signature) {
+        super(ASM_VERSION);
+        hash.updateInt(access).updateString(signature).updateString(name).updateString(desc);
+    }
+
+    /**
+     * Returns the checksum of everything visited so far.
+     *
+     * @return The checksum, as 16 hexadecimal digits
+     */
+    public String getChecksum() {
+        return hash.hexDigest();
+    }
+
+    @Override
+    public void visitParameter(String name, int access) {
+        hash.updateInt(PARAMETER).updateString(name).updateInt(access);
+    }
+
+    @Override
+    public AnnotationVisitor visitAnnotationDefault() {
+        hash.updateInt(ANNOTATION_DEFAULT);
+        return new AnnotationHashVisitor();
+    }
+
+    @Override
+    public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+        hash.updateInt(ANNOTATION).updateString(desc).updateInt(visible ? 1 : 0);
+        return new AnnotationHashVisitor();
+    }
+
+    @Override
+    public AnnotationVisitor visitTypeAnnotation(int typeRef, TypePath typePath, String desc, boolean visible) {
+        hash.updateInt(TYPE_ANNOTATION).updateInt(typeRef).updateString(pathOf(typePath)).updateString(desc)
+                .updateInt(visible ? 1 : 0);
+        return new AnnotationHashVisitor();
+    }
+
+    @Override
+    public void visitAnnotableParameterCount(int parameterCount, boolean visible) {
+        hash.updateInt(ANNOTABLE_PARAMETER_COUNT).updateInt(parameterCount).updateInt(visible ? 1 : 0);
+    }
+
+    @Override
+    public AnnotationVisitor visitParameterAnnotation(int parameter, String desc, boolean visible) {
+        hash.updateInt(PARAMETER_ANNOTATION).updateInt(parameter).updateString(desc).updateInt(visible ? 1 : 0);
+        return new AnnotationHashVisitor();
+    }
+
+    @Override
+    public void visitAttribute(Attribute attribute) {
+        // As with the Textifier, only the type of a non-standard attribute is known.
+        hash.updateInt(ATTRIBUTE).updateString(attribute.type);
+    }
+
+    @Override
+    public void visitFrame(int type, int numLocal, Object[] local, int numStack, Object[] stack) {
+        hash.updateInt(FRAME).updateInt(type).updateInt(numLocal);
+        for (int i = 0; i < numLocal; i++) {
+            updateFrameEntry(local[i]);
+        }
+        hash.updateInt(numStack);
+        for (int i = 0; i < numStack; i++) {
+            updateFrameEntry(stack[i]);
+        }
+    }
+
+    @Override
+    public void visitInsn(int opcode) {
+        hash.updateInt(INSN).updateInt(opcode);
+    }
+
+    @Override
+    public void visitIntInsn(int opcode, int operand) {
+        hash.updateInt(INT_INSN).updateInt(opcode).updateInt(operand);
+    }
+
+    @Override
+    public void visitVarInsn(int opcode, int var) {
+        hash.updateInt(VAR_INSN).updateInt(opcode).updateInt(var);
+    }
+
+    @Override
+    public void visitTypeInsn(int opcode, String type) {
+        hash.updateInt(TYPE_INSN).updateInt(opcode).updateString(type);
+    }
+
+    @Override
+    public void visitFieldInsn(int opcode, String owner, String name, String desc) {
+        hash.updateInt(FIELD_INSN).updateInt(opcode).updateString(owner).updateString(name).updateString(desc);
+    }
+
+    @Override
+    public void visitMethodInsn(int opcode, String owner, String name, String desc, boolean itf) {
+        hash.updateInt(METHOD_INSN).updateInt(opcode).updateString(owner).updateString(name).updateString(desc)
+                .updateInt(itf ? 1 : 0);
+    }
+
+    @Override
+    public void visitInvokeDynamicInsn(String name, String desc, Handle bsm, Object... bsmArgs) {
+        hash.updateInt(INVOKE_DYNAMIC_INSN).updateString(name).updateString(desc);
+        updateConstant(bsm);
+        hash.updateInt(bsmArgs.length);
+        for (Object bsmArg : bsmArgs) {
+            updateConstant(bsmArg);
+        }
+    }
+
+    @Override
+    public void visitJumpInsn(int opcode, Label label) {
+        hash.updateInt(JUMP_INSN).updateInt(opcode).updateInt(labelId(label));
+    }
+
+    @Override
+    public void visitLabel(Label label) {
+        hash.updateInt(LABEL).updateInt(labelId(label));
+    }
+
+    @Override
+    public void visitLdcInsn(Object value) {
+        hash.updateInt(LDC_INSN);
+        updateConstant(value);
+    }
+
+    @Override
+    public void visitIincInsn(int var, int increment) {
+        hash.updateInt(IINC_INSN).updateInt(var).updateInt(increment);
+    }
+
+    @Override
+    public void visitTableSwitchInsn(int min, int max, Label dflt, Label... labels) {
+        hash.updateInt(TABLE_SWITCH_INSN).updateInt(min).updateInt(max).updateInt(labelId(dflt));
+        for (Label label : labels) {
+            hash.updateInt(labelId(label));
+        }
+    }
+
+    @Override
+    public void visitLookupSwitchInsn(Label dflt, int[] keys, Label[] labels) {
+        hash.updateInt(LOOKUP_SWITCH_INSN).updateInt(labelId(dflt)).updateInt(keys.length);
+        for (int i = 0; i < keys.length; i++) {
+            hash.updateInt(keys[i]).updateInt(labelId(labels[i]));
+        }
+    }
+
+    @Override
+    public void visitMultiANewArrayInsn(String desc, int dims) {
+        hash.updateInt(MULTI_ANEW_ARRAY_INSN).updateString(desc).updateInt(dims);
+    }
+
+    @Override
+    public AnnotationVisitor visitInsnAnnotation(int typeRef, TypePath typePath, String desc, boolean visible) {
+        hash.updateInt(INSN_ANNOTATION).updateInt(typeRef).updateString(pathOf(typePath)).updateString(desc)
+                .updateInt(visible ? 1 : 0);
+        return new AnnotationHashVisitor();
+    }
+
+    @Override
+    public void visitTryCatchBlock(Label start, Label end, Label handler, String type) {
+        hash.updateInt(TRY_CATCH_BLOCK).updateInt(labelId(start)).updateInt(labelId(end))
+                .updateInt(labelId(handler)).updateString(type);
+    }
+
+    @Override
+    public AnnotationVisitor visitTryCatchAnnotation(int typeRef, TypePath typePath, String desc,
+                                                     boolean visible) {
+        hash.updateInt(TRY_CATCH_ANNOTATION).updateInt(typeRef).updateString(pathOf(typePath)).updateString(desc)
+                .updateInt(visible ? 1 : 0);
+        return new AnnotationHashVisitor();
+    }
+
+    @Override
+    public void visitLocalVariable(String name, String desc, String signature, Label start, Label end,
+                                   int index) {
+        // Debug information: ignored, like the LocalVariableTable that ClassReader.SKIP_DEBUG drops.
+    }
+
+    @Override
+    public AnnotationVisitor visitLocalVariableAnnotation(int typeRef, TypePath typePath, Label[] start,
+                                                          Label[] end, int[] index, String desc,
+                                                          boolean visible) {
+        hash.updateInt(LOCAL_VARIABLE_ANNOTATION).updateInt(typeRef).updateString(pathOf(typePath))
+                .updateInt(start.length);
+        for (int i = 0; i < start.length; i++) {
+            hash.updateInt(labelId(start[i])).updateInt(labelId(end[i])).updateInt(index[i]);
+        }
+        hash.updateString(desc).updateInt(visible ? 1 : 0);
+        return new AnnotationHashVisitor();
+    }
+
+    @Override
+    public void visitLineNumber(int line, Label start) {
+        // Debug information: ignored, as in ZLCHelperMethods.printMethodContent.
+    }
+
+    @Override
+    public void visitMaxs(int maxStack, int maxLocals) {
+        hash.updateInt(MAXS).updateInt(maxStack).updateInt(maxLocals);
+    }
+
+    private int labelId(Label label) {
+        Integer id = labelIds.get(label);
+        if (id == null) {
+            id = labelIds.size();
+            labelIds.put(label, id);
+        }
+        return id;
+    }
+
+    private static String pathOf(TypePath typePath) {
+        return typePath == null ? null : typePath.toString();
+    }
+
+    private void updateFrameEntry(Object entry) {
+        if (entry instanceof Integer) {
+            hash.update((byte) 'I').updateInt((Integer) entry);
+        } else if (entry instanceof Label) {
+            hash.update((byte) 'L').updateInt(labelId((Label) entry));
+        } else {
+            hash.update((byte) 'T').updateString((String) entry);
+        }
+    }
+
+    private void updateConstant(Object value) {
+        if (value == null) {
+            hash.update((byte) 'N');
+        } else if (value instanceof String) {
+            hash.update((byte) 's').updateString((String) value);
+        } else if (value instanceof Integer) {
+            hash.update((byte) 'I').updateInt((Integer) value);
+        } else if (value instanceof Long) {
+            hash.update((byte) 'J').updateLong((Long) value);
+        } else if (value instanceof Float) {
+            hash.update((byte) 'F').updateInt(Float.floatToRawIntBits((Float) value));
+        } else if (value instanceof Double) {
+            hash.update((byte) 'D').updateLong(Double.doubleToRawLongBits((Double) value));
+        } else if (value instanceof Byte) {
+            hash.update((byte) 'B').update((Byte) value);
+        } else if (value instanceof Short) {
+            hash.update((byte) 'S').updateInt((Short) value);
+        } else if (value instanceof Character) {
+            hash.update((byte) 'C').updateInt((Character) value);
+        } else if (value instanceof Boolean) {
+            hash.update((byte) 'Z').update((byte) ((Boolean) value ? 1 : 0));
+        } else if (value instanceof Type) {
+            hash.update((byte) 'T').updateInt(((Type) value).getSort()).updateString(((Type) value).getDescriptor());
+        } else if (value instanceof Handle) {
+            Handle handle = (Handle) value;
+            hash.update((byte) 'H').updateInt(handle.getTag()).updateString(handle.getOwner())
+                    .updateString(handle.getName()).updateString(handle.getDesc())
+                    .updateInt(handle.isInterface() ? 1 : 0);
+        } else if (value instanceof ConstantDynamic) {
+            ConstantDynamic constant = (ConstantDynamic) value;
+            hash.update((byte) 'Y').updateString(constant.getName()).updateString(constant.getDescriptor());
+            updateConstant(constant.getBootstrapMethod());
+            hash.updateInt(constant.getBootstrapMethodArgumentCount());
+            for (int i = 0; i < constant.getBootstrapMethodArgumentCount(); i++) {
+                updateConstant(constant.getBootstrapMethodArgument(i));
+            }
+        } else if (value.getClass().isArray()) {
+            // Primitive arrays, as found in annotation values.
+            int length = Array.getLength(value);
+            hash.update((byte) '[').updateInt(length);
+            for (int i = 0; i < length; i++) {
+                updateConstant(Array.get(value, i));
+            }
+        } else {
+            hash.update((byte) '?').updateString(value.toString());
+        }
+    }
+
+    /** Feeds the values of an annotation (and of its nested annotations and arrays) into the method hash. */
+    private class AnnotationHashVisitor extends AnnotationVisitor {
+
+        AnnotationHashVisitor() {
+            super(ASM_VERSION);
+        }
+
+        @Override
+        public void visit(String name, Object value) {
+            hash.updateInt(ANNOTATION_VALUE).updateString(name);
+            updateConstant(value);
+        }
+
+        @Override
+        public void visitEnum(String name, String desc, String value) {
+            hash.updateInt(ANNOTATION_ENUM).updateString(name).updateString(desc).updateString(value);
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation(String name, String desc) {
+            hash.updateInt(ANNOTATION_NESTED).updateString(name).updateString(desc);
+            return new AnnotationHashVisitor();
+        }
+
+        @Override
+        public AnnotationVisitor visitArray(String name) {
+            hash.updateInt(ANNOTATION_ARRAY).updateString(name);
+            return new AnnotationHashVisitor();
+        }
+
+        @Override
+        public void visitEnd() {
+            hash.updateInt(ANNOTATION_END);
+        }
+    }
+}
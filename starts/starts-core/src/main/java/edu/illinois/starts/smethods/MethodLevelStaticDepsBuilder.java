@@ -11,6 +11,9 @@ import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -26,13 +29,11 @@ import java.util.logging.Level;
 import java.util.stream.Collectors;
 
 import edu.illinois.starts.enums.TransitiveClosureOptions;
-import edu.illinois.starts.helpers.ZLCHelperMethods;
 import edu.illinois.starts.util.ChecksumUtil;
 import edu.illinois.starts.util.Logger;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.tree.ClassNode;
-import org.objectweb.asm.tree.MethodNode;
 import org.objectweb.asm.util.Printer;
 import org.objectweb.asm.util.Textifier;
 import org.objectweb.asm.util.TraceClassVisitor;
@@ -42,22 +43,42 @@ public class MethodLevelStaticDepsBuilder {
     /** Map from every class to the methods it contains. */
     public static Map<String, Set<String>> classToMethods = new HashMap<>();
 
+    /**
+     * Map from every class to the first and last line of its methods (name and descriptor) in declaration order,
+     * taken from the line number tables by the scan that builds the method graph.
+     */
+    public static Map<String, Map<String, int[]>> classToMethodLines = new HashMap<>();
+
     /**
      * Map from method to the methods it directly invokes (i.e. forward dependency graph).
      * {@code (dependant => dependee)}
+     * Released by {@link #buildMethodsGraph}, which keeps the graph in {@link #compactCallerToCalled} instead.
      */
     public static Map<String, Set<String>> callerToCalled = new HashMap<>();
 
     /**
      * Contains backward method level dependency graph.
      * {@code (dependee => dependant)}
+     * Released by {@link #buildMethodsGraph}, which keeps the graph in {@link #compactCalledToCaller} instead.
      */
     public static Map<String, Set<String>> calledToCaller = new HashMap<>();
 
-    /** Contains (backward) class to class dependency graph. */
+    /**
+     * Map from every class to the keys of callerToCalled it owns, i.e., its methods (including
+     * inherited test methods) and the fields it initializes. Built together with callerToCalled.
+     */
+    public static Map<String, Set<String>> classToMethodKeys = new HashMap<>();
+
+    /**
+     * Contains (backward) class to class dependency graph. Released by {@link #constructClassesDependencyGraph()},
+     * which keeps the graph in {@link #compactBackwardClassesDependencyGraph} instead.
+     */
     public static Map<String, Set<String>> backwardClassesDependencyGraph = new HashMap<>();
 
-    /** Contains (forward) class to class dependency graph. */
+    /**
+     * Contains (forward) class to class dependency graph. Released by {@link #constructClassesDependencyGraph()},
+     * which keeps the graph in {@link #compactForwardClassesDependencyGraph} instead.
+     */
     public static Map<String, Set<String>> forwardClassesDependencyGraph = new HashMap<>();
 
     /** Map from every class to its parents, including base class and implemented interfaces. */
@@ -66,13 +87,14 @@ public class MethodLevelStaticDepsBuilder {
     /** Map from every class to its subclasses. */
     public static Map<String, Set<String>> classToSubclasses = new HashMap<>();
 
+    /** Map from test class to the methods it reaches. Left empty by {@link #buildMethodsGraph}, see testReachability. */
     public static Map<String, Set<String>> testClassToMethods = new HashMap<>();
 
     public static Map<String, Set<String>> testClassesToClasses = new HashMap<>();
 
     public static Map<String, Set<String>> classesToTestClasses = new HashMap<>();
 
-    /** Map from method to test classes. */
+    /** Map from method to test classes. Left empty by {@link #buildMethodsGraph}, see testReachability. */
     public static Map<String, Set<String>> methodToTestClasses = new HashMap<>();
 
     /** Map from method to test methods. */
@@ -84,6 +106,33 @@ public class MethodLevelStaticDepsBuilder {
     /** Map from method to its checksum. */
     private static Map<String, String> methodsCheckSum = new HashMap<>();
 
+    /** Dense ids for every method (and variable) signature in the method-level graphs. */
+    public static SymbolTable methodSymbols = new SymbolTable();
+
+    /** Compact (CSR) form of callerToCalled, with every method reaching itself, once the graph is built. */
+    public static CompactGraph compactCallerToCalled;
+
+    /** Compact (CSR) form of calledToCaller, once the graph is built. */
+    public static CompactGraph compactCalledToCaller;
+
+    /**
+     * For every method, the test classes that reach it; built once per graph instead of once per test.
+     * Test classes are looked up here instead of in testClassToMethods and methodToTestClasses.
+     */
+    public static TestReachabilityIndex testReachability;
+
+    /** Whether the graph of testReachability keeps the variables; if not, no test class reaches them. */
+    private static boolean testReachabilityIncludesVars;
+
+    /** Dense ids for every class in the class-level graphs. */
+    public static SymbolTable classSymbols = new SymbolTable();
+
+    /** Compact (CSR) form of forwardClassesDependencyGraph. */
+    public static CompactGraph compactForwardClassesDependencyGraph;
+
+    /** Compact (CSR) form of backwardClassesDependencyGraph. */
+    public static CompactGraph compactBackwardClassesDependencyGraph;
+
     private static final Logger LOGGER = Logger.getGlobal();
 
     /**
@@ -114,6 +163,31 @@ public class MethodLevelStaticDepsBuilder {
      * @param includeVars Specifies whether the method dependency graph include variables.
      */
     public static void buildMethodsGraph(boolean includeVars, boolean useThirdParty) {
+        buildMethodsGraph(includeVars, useThirdParty, 0);
+    }
+
+    /**
+     * This function builds the method dependency graph for all the methods in the project.
+     *
+     * @param includeVars Specifies whether the method dependency graph include variables.
+     * @param useThirdParty Specifies whether to also scan extracted third-party classes.
+     * @param scanThreads Number of threads used to scan class files, non-positive means sequential two-pass scan.
+     */
+    public static void buildMethodsGraph(boolean includeVars, boolean useThirdParty, int scanThreads) {
+        buildMethodsGraph(includeVars, useThirdParty, scanThreads, null);
+    }
+
+    /**
+     * This function builds the method dependency graph for all the methods in the project.
+     *
+     * @param includeVars Specifies whether the method dependency graph include variables.
+     * @param useThirdParty Specifies whether to also scan extracted third-party classes.
+     * @param scanThreads Number of threads used to scan class files, non-positive means sequential two-pass scan.
+     * @param artifactsDir Directory of the {@link MethodGraphStore} that makes the scan incremental, or null to
+     *                     scan every class file.
+     */
+    public static void buildMethodsGraph(boolean includeVars, boolean useThirdParty, int scanThreads,
+                                         String artifactsDir) {
         // find all .class files in project
         HashSet<String> bytecodePaths = null;
         try {
@@ -137,19 +211,43 @@ public class MethodLevelStaticDepsBuilder {
             LOGGER.log(Level.INFO, "[ERROR] Files.walk(Paths.get(\".\")) errored out.");
             ex.printStackTrace();
         }
+        buildMethodsGraph(bytecodePaths, includeVars, scanThreads, artifactsDir);
+    }
+
+    /**
+     * Builds the method dependency graph from the given class files.
+     *
+     * @param bytecodePaths The class files to build the graph from.
+     * @param includeVars Specifies whether the method dependency graph include variables.
+     * @param scanThreads Number of threads used to scan class files, non-positive means sequential two-pass scan.
+     * @param artifactsDir Directory of the {@link MethodGraphStore} that makes the scan incremental, or null to
+     *                     scan every class file.
+     */
+    static void buildMethodsGraph(Set<String> bytecodePaths, boolean includeVars, int scanThreads,
+                                  String artifactsDir) {
         // Find classToMethods, callerToCalled, classToSuperclass, classToSubclasses
-        findMethodsInvoked(bytecodePaths);
+        if (artifactsDir != null) {
+            findMethodsInvokedIncrementally(bytecodePaths, new MethodGraphStore(artifactsDir, scanThreads));
+        } else {
+            findMethodsInvoked(bytecodePaths, scanThreads);
+        }
+        // The reflexive closure keeps every key in the compact graph, as a node with at least one successor.
+        addReflexiveClosure(callerToCalled);
+        methodSymbols = new SymbolTable(callerToCalled.size());
+        compactCallerToCalled = CompactGraph.fromMap(callerToCalled, methodSymbols);
         // Assumptions: 1) Test classes have "Test" in their class name. 2) Test classes are in src/test.
         Set<String> testClasses = new HashSet<>();
-        for (String method : callerToCalled.keySet()) {
-            String className = method.split("#|\\$")[0];
+        for (String clazz : classToMethodKeys.keySet()) {
+            String className = clazz.split("\\$")[0];
             if (isTestClass(className)) {
                 testClasses.add(className);
             }
         }
-        // Find Test Classes to methods
-        testClassToMethods = getDepsSingleThread(testClasses);
-        addReflexiveClosure(callerToCalled);
+        // Find Test Classes to methods, with a single sweep over the graph for all test classes
+        testReachability = TestReachabilityIndex.build(compactCallerToCalled, testClasses, classToMethodKeys);
+        testReachabilityIncludesVars = includeVars;
+        testClassToMethods = new HashMap<>();
+        methodToTestClasses = new HashMap<>();
         // Inverting callerToCalled to have the dependency graph for each method
         calledToCaller = invertMap(callerToCalled);
         if (includeVars) {
@@ -158,6 +256,10 @@ public class MethodLevelStaticDepsBuilder {
             // Remove any variables from keys or values i.e. pure method-level deps
             filterVariables();
         }
+        compactCalledToCaller = CompactGraph.fromMap(calledToCaller, methodSymbols);
+        // Only the compact graphs are kept from here on, the maps would hold every signature and edge again.
+        callerToCalled = new HashMap<>();
+        calledToCaller = new HashMap<>();
     }
 
     /**
@@ -167,54 +269,159 @@ public class MethodLevelStaticDepsBuilder {
      * @param bytecodePaths The classpath in which to compute maps under.
      */
     public static void findMethodsInvoked(Set<String> bytecodePaths) {
-        // Find classToMethods, classToSuperclass, classToSubclasses.
+        findMethodsInvoked(bytecodePaths, 0);
+    }
+
+    /**
+     * Compute the following maps: classToMethods, callerToCalled, callerToCalled,
+     * classToSuperclass, classToSubclasses.
+     * With a positive number of threads, every class file is read only once by a
+     * {@link ParallelBytecodeScanner}; otherwise class files are parsed twice on the calling thread.
+     *
+     * @param bytecodePaths The classpath in which to compute maps under.
+     * @param scanThreads Number of threads used to scan class files.
+     */
+    public static void findMethodsInvoked(Set<String> bytecodePaths, int scanThreads) {
+        // The compact graphs are rebuilt by buildMethodsGraph, any other caller falls back to the maps.
+        compactCallerToCalled = null;
+        compactCalledToCaller = null;
+        testReachability = null;
+        if (scanThreads > 0) {
+            new ParallelBytecodeScanner(scanThreads).scan(bytecodePaths, classToMethods, classToSuperclass,
+                    classToSubclasses, callerToCalled, classToMethodLines);
+        } else {
+            findMethodsInvokedSequentially(bytecodePaths);
+        }
+        addTestHierarchyEdges();
+        indexMethodKeysByClass();
+    }
+
+    /**
+     * Same as {@link #findMethodsInvoked(Set)}, but only parses the class files that changed since the
+     * store was last updated, and saves the store for the next run.
+     *
+     * @param bytecodePaths The classpath in which to compute maps under.
+     * @param store The store holding the summaries of the previous scan.
+     */
+    public static void findMethodsInvokedIncrementally(Set<String> bytecodePaths, MethodGraphStore store) {
+        compactCallerToCalled = null;
+        compactCalledToCaller = null;
+        testReachability = null;
+        store.update(bytecodePaths, classToMethods, classToSuperclass, classToSubclasses, callerToCalled,
+                classToMethodLines);
+        addTestHierarchyEdges();
+        indexMethodKeysByClass();
+    }
+
+    private static void addTestHierarchyEdges() {
+        // Deal with test class in a special way, all the @test method in hierarchy should be considered.
+        for (String superClass : classToSubclasses.keySet()) {
+            if (superClass.contains("Test")) {
+                for (String subClass : classToSubclasses.getOrDefault(superClass, new HashSet<>())) {
+                    for (String methodSig : classToMethods.getOrDefault(superClass, new HashSet<>())) {
+                        String subClassKey = subClass + "#" + methodSig;
+                        String superClassKey = superClass + "#" + methodSig;
+                        callerToCalled.computeIfAbsent(subClassKey, k -> new TreeSet<>()).add(superClassKey);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void indexMethodKeysByClass() {
+        // Index the keys of callerToCalled by class, so that test dependencies need no prefix scan.
+        classToMethodKeys.clear();
+        for (String method : callerToCalled.keySet()) {
+            classToMethodKeys.computeIfAbsent(method.substring(0, method.indexOf('#')), k -> new HashSet<>())
+                    .add(method);
+        }
+    }
+
+    private static void findMethodsInvokedSequentially(Set<String> bytecodePaths) {
+        // Find classToMethods, classToSuperclass, classToSubclasses, classToMethodLines.
         for (String bytecodePath : bytecodePaths) {
-            try (InputStream fis = Files.newInputStream(Paths.get(bytecodePath))) {
-                ClassReader classReader = new ClassReader(fis);
-                ClassToMethodsCollectorCV classToMethodsVisitor = new ClassToMethodsCollectorCV(
-                        classToMethods, classToSuperclass, classToSubclasses);
-                classReader.accept(classToMethodsVisitor, ClassReader.SKIP_DEBUG);
+            try {
+                ClassSummary summary = ClassSummary.fromBytes(Files.readAllBytes(Paths.get(bytecodePath)));
+                summary.accept(new ClassToMethodsCollectorCV(classToMethods, classToSuperclass, classToSubclasses));
+                summary.addMethodLines(classToMethodLines);
             } catch (IOException e) {
                 LOGGER.log(Level.INFO, "[ERROR] cannot parse file: " + bytecodePath);
             }
         }
 
         // Find callerToCalled map.
+        Map<String, String> firstParentCache = new HashMap<>();
         for (String bytecodePath : bytecodePaths) {
             try (InputStream fis = Files.newInputStream(new File(bytecodePath).toPath())) {
                 ClassReader classReader = new ClassReader(fis);
                 MethodCallCollectorCV methodClassVisitor = new MethodCallCollectorCV(callerToCalled,
-                        classToSuperclass, classToSubclasses, classToMethods);
+                        classToSuperclass, classToSubclasses, classToMethods, firstParentCache);
                 classReader.accept(methodClassVisitor, ClassReader.SKIP_DEBUG);
             } catch (IOException e) {
                 LOGGER.log(Level.INFO, "[ERROR] cannot parse file: " + bytecodePath);
             }
         }
+    }
 
-        // Deal with test class in a special way, all the @test method in hierarchy should be considered.
-        for (String superClass : classToSubclasses.keySet()) {
-            if (superClass.contains("Test")) {
-                for (String subClass : classToSubclasses.getOrDefault(superClass, new HashSet<>())) {
-                    for (String methodSig : classToMethods.getOrDefault(superClass, new HashSet<>())) {
-                        String subClassKey = subClass + "#" + methodSig;
-                        String superClassKey = superClass + "#" + methodSig;
-                        callerToCalled.computeIfAbsent(subClassKey, k -> new TreeSet<>()).add(superClassKey);
-                    }
-                }
+    /**
+     * This function returns the test classes that reach the given method, without traversing the graph.
+     *
+     * @param method The method signature
+     * @return The test classes whose methods transitively invoke the method
+     */
+    public static Set<String> getTestClassesOf(String method) {
+        return getTestClassesOf(Collections.singleton(method));
+    }
+
+    /**
+     * This function returns the test classes that reach any of the given methods, without traversing the graph.
+     *
+     * @param methods The method signatures
+     * @return The test classes whose methods transitively invoke one of the methods
+     */
+    public static Set<String> getTestClassesOf(Collection<String> methods) {
+        if (testReachability == null) {
+            Set<String> testClasses = new HashSet<>();
+            for (String method : methods) {
+                testClasses.addAll(methodToTestClasses.getOrDefault(method, Collections.emptySet()));
+            }
+            return testClasses;
+        }
+        BitSet tests = new BitSet();
+        for (String method : methods) {
+            if (testReachabilityIncludesVars || isMethod(method)) {
+                tests.or(testReachability.getTestBits(method));
             }
         }
+        return testReachability.getTestClasses(tests);
     }
 
     /**
      * This function Computes and returns the methodToTestClasses map.
+     * Once buildMethodsGraph built the graph, the map is expanded from testReachability; lookups of a few
+     * methods are cheaper with {@link #getTestClassesOf(Collection)}.
      *
      * @return methodToTestClasses method to test classes mapping
      */
     public static Map<String, Set<String>> computeMethodToTestClasses() {
-        methodToTestClasses = invertMap(testClassToMethods);
+        methodToTestClasses = invertMap(getTestClassToMethods());
         return methodToTestClasses;
     }
 
+    /** Returns testClassToMethods, or expands it from testReachability once buildMethodsGraph built the graph. */
+    private static Map<String, Set<String>> getTestClassToMethods() {
+        if (testReachability == null) {
+            return testClassToMethods;
+        }
+        return testReachability.toTestClassTo(
+                method -> testReachabilityIncludesVars || isMethod(method) ? method : null);
+    }
+
+    /** Whether the signature is a method rather than a variable, as the pattern of filterVariables tells. */
+    private static boolean isMethod(String signature) {
+        return signature.endsWith(")") && signature.indexOf('(') >= 0;
+    }
+
     /**
      * This function computes methods checksums for the given classes and returns a
      * map containing them.
@@ -238,31 +445,12 @@ public class MethodLevelStaticDepsBuilder {
                 continue;
             }
 
-            ClassNode node = new ClassNode(Opcodes.ASM5);
-            ClassReader reader;
-            try {
-                reader = new ClassReader(new FileInputStream(path));
+            // Hash every method straight from the bytecode, in a single pass over the class file.
+            try (FileInputStream fis = new FileInputStream(path)) {
+                new ClassReader(fis).accept(new MethodChecksumCollectorCV(computedMethodsChecksums),
+                        ClassReader.SKIP_DEBUG);
             } catch (IOException exception) {
                 LOGGER.log(Level.INFO, "[ERROR] reading class: " + path);
-                continue;
-            }
-
-            String methodChecksum;
-            reader.accept(node, ClassReader.SKIP_DEBUG);
-            List<MethodNode> methods = node.methods;
-            // Looping over all the methods in the class, and computing the checksum for
-            // each method
-            for (MethodNode method : methods) {
-                String methodContent = ZLCHelperMethods.printMethodContent(method);
-                try {
-                    methodChecksum = ChecksumUtil.computeStringChecksum(methodContent);
-                } catch (IOException exception) {
-                    throw new RuntimeException(exception);
-                }
-
-                computedMethodsChecksums.put(
-                        className + "#" + method.name + method.desc.substring(0, method.desc.indexOf(")") + 1),
-                        methodChecksum);
             }
         }
         return computedMethodsChecksums;
@@ -358,6 +546,21 @@ public class MethodLevelStaticDepsBuilder {
      * inheritance and uses
      */
     public static Map<String, Set<String>> constructClassesDependencyGraph() {
+        if (compactCallerToCalled != null) {
+            // Every key of callerToCalled reaches itself, so the nodes without successors were no keys.
+            SymbolTable symbols = compactCallerToCalled.getSymbols();
+            for (int node = 0; node < compactCallerToCalled.nodeCount(); node++) {
+                int successors = compactCallerToCalled.outDegree(node);
+                if (successors == 0) {
+                    continue;
+                }
+                Set<String> toClasses = forwardClassesDependencyGraph.computeIfAbsent(
+                        symbols.getSymbol(node).split("#")[0], k -> new HashSet<>());
+                for (int i = 0; i < successors; i++) {
+                    toClasses.add(symbols.getSymbol(compactCallerToCalled.successor(node, i)).split("#")[0]);
+                }
+            }
+        }
         for (Map.Entry<String, Set<String>> entry : callerToCalled.entrySet()) {
             String fromClass = entry.getKey().split("#")[0];
             Set<String> toClasses = new HashSet<>();
@@ -380,14 +583,26 @@ public class MethodLevelStaticDepsBuilder {
         }
         addReflexiveClosure(classToMethods);
         backwardClassesDependencyGraph = invertMap(forwardClassesDependencyGraph);
-
-        return backwardClassesDependencyGraph;
+        classSymbols = new SymbolTable(forwardClassesDependencyGraph.size());
+        compactForwardClassesDependencyGraph = CompactGraph.fromMap(forwardClassesDependencyGraph, classSymbols);
+        compactBackwardClassesDependencyGraph = CompactGraph.fromMap(backwardClassesDependencyGraph, classSymbols);
+
+        Map<String, Set<String>> backwardGraph = backwardClassesDependencyGraph;
+        forwardClassesDependencyGraph = new HashMap<>();
+        backwardClassesDependencyGraph = new HashMap<>();
+        return backwardGraph;
     }
 
     /*
      * This function computes the testClassesToClasses graph.
      */
     public static Map<String, Set<String>> constuctTestClassesToClassesGraph() {
+        if (testReachability != null) {
+            // Maps every method to its class once, instead of once per test class that reaches it.
+            testClassesToClasses.putAll(testReachability.toTestClassTo(
+                    method -> testReachabilityIncludesVars || isMethod(method) ? method.split("#")[0] : null));
+            return testClassesToClasses;
+        }
         for (String testClass : testClassToMethods.keySet()) {
             Set<String> classes = new HashSet<>();
             for (String method : testClassToMethods.get(testClass)) {
@@ -430,36 +645,12 @@ public class MethodLevelStaticDepsBuilder {
                 continue;
             }
 
-            ClassNode node = new ClassNode(Opcodes.ASM5);
-            ClassReader reader = null;
-
+            // Hash every method straight from the bytecode, in a single pass over the class file.
             try (FileInputStream fis = new FileInputStream(path)) {
-                try {
-                    reader = new ClassReader(fis);
-                } catch (IOException exception) {
-                    LOGGER.log(Level.INFO, "[ERROR] reading class file: " + path, exception);
-                    continue;
-                }
-                reader.accept(node, ClassReader.SKIP_DEBUG);
+                new ClassReader(fis).accept(new MethodChecksumCollectorCV(methodsCheckSum), ClassReader.SKIP_DEBUG);
             } catch (IOException exception) {
                 LOGGER.log(Level.INFO, "[ERROR] reading class file: " + path, exception);
             }
-
-            String methodChecksum;
-            reader.accept(node, ClassReader.SKIP_DEBUG);
-            List<MethodNode> methods = node.methods;
-            // Loop over all methods in a class and compute checksum for each method.
-            for (MethodNode method : methods) {
-                String methodContent = ZLCHelperMethods.printMethodContent(method);
-                try {
-                    methodChecksum = ChecksumUtil.computeStringChecksum(methodContent);
-                } catch (IOException exception) {
-                    throw new RuntimeException(exception);
-                }
-                methodsCheckSum.put(
-                        className + "#" + method.name + method.desc.substring(0, method.desc.indexOf(")") + 1),
-                        methodChecksum);
-            }
         }
         return methodsCheckSum;
     }
@@ -532,13 +723,21 @@ public class MethodLevelStaticDepsBuilder {
         }
     }
 
-    // simple DFS
+    /**
+     * Adds every method reachable from the given method to the visited set. The traversal uses an explicit
+     * stack, so deep call chains do not overflow the thread stack. Methods already in the visited set (e.g.,
+     * from an earlier invocation with the same set) are not explored again.
+     *
+     * @param methodName The method to start from
+     * @param visitedMethods The methods visited so far, updated in place
+     */
     public static void getDepsDFS(String methodName, Set<String> visitedMethods) {
-        if (callerToCalled.containsKey(methodName)) {
-            for (String method : callerToCalled.get(methodName)) {
-                if (!visitedMethods.contains(method)) {
-                    visitedMethods.add(method);
-                    getDepsDFS(method, visitedMethods);
+        ArrayDeque<String> stack = new ArrayDeque<>();
+        stack.push(methodName);
+        while (!stack.isEmpty()) {
+            for (String method : callerToCalled.getOrDefault(stack.pop(), Collections.emptySet())) {
+                if (visitedMethods.add(method)) {
+                    stack.push(method);
                 }
             }
         }
@@ -558,6 +757,17 @@ public class MethodLevelStaticDepsBuilder {
         return toReturn;
     }
 
+    /**
+     * Same as {@link #computeReachability(Set, Map)}, but traverses the primitive arrays of a compact graph.
+     *
+     * @param sources The nodes to start from
+     * @param graph The compact graph to traverse
+     * @return The sources and every node reachable from them
+     */
+    public static Set<String> computeReachability(Set<String> sources, CompactGraph graph) {
+        return graph.reachable(sources);
+    }
+
     private static Set<String> computeReachabilityHelper(String source, Map<String, Set<String>> graph) {
         // Initialization:
         Set<String> visited = new HashSet<>();
@@ -620,12 +830,12 @@ public class MethodLevelStaticDepsBuilder {
     }
 
     public static Set<String> getDeps(String testClass) {
-        Set<String> visited = new HashSet<>();
-        for (String method : callerToCalled.keySet()) {
-            if (method.startsWith(testClass + "#")) {
-                visited.add(method);
-                getDepsDFS(method, visited);
-            }
+        Set<String> visited = new HashSet<>(classToMethodKeys.getOrDefault(testClass, Collections.emptySet()));
+        if (compactCallerToCalled != null) {
+            return compactCallerToCalled.reachable(visited);
+        }
+        for (String method : new ArrayList<>(visited)) {
+            getDepsDFS(method, visited);
         }
         return visited;
     }
@@ -716,6 +926,9 @@ public class MethodLevelStaticDepsBuilder {
      * @return testClasses
      */
     public static Set<String> computeTestClasses() {
+        if (testReachability != null) {
+            return new HashSet<>(testReachability.getTestClasses());
+        }
         Set<String> testClasses = new HashSet<>();
         for (String testClass : testClassToMethods.keySet()) {
             testClasses.add(testClass);
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package edu.illinois.starts.smethods;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+import java.util.logging.Level;
+
+import edu.illinois.starts.util.Logger;
+
+/**
+ * Builds the method-level maps of {@link MethodLevelStaticDepsBuilder} with a single read of every
+ * class file. The first phase reads and parses all class files in parallel into {@link ClassSummary}
+ * objects. The second phase collects class hierarchies and declared methods from the summaries, and
+ * the third phase resolves call edges in parallel, touching memory only.
+ */
+public class ParallelBytecodeScanner {
+
+    private static final Logger LOGGER = Logger.getGlobal();
+
+    /** Minimum number of classes handled by a single fork-join task. */
+    private static final int THRESHOLD = 64;
+
+    private final int parallelism;
+
+    public ParallelBytecodeScanner(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Scans the given class files and fills the given maps in the same way the sequential
+     * {@link ClassToMethodsCollectorCV} and {@link MethodCallCollectorCV} passes do.
+     *
+     * @param bytecodePaths     Paths to the class files to scan
+     * @param classToMethods    Map from every class to the methods it contains
+     * @param classToSuperclass Map from every class to its parents
+     * @param classToSubclasses Map from every class to its subclasses
+     * @param callerToCalled    Map from method to the methods it directly invokes
+     */
+    public void scan(Set<String> bytecodePaths,
+                     Map<String, Set<String>> classToMethods,
+                     Map<String, Set<String>> classToSuperclass,
+                     Map<String, Set<String>> classToSubclasses,
+                     Map<String, Set<String>> callerToCalled) {
+        scan(bytecodePaths, classToMethods, classToSuperclass, classToSubclasses, callerToCalled, new HashMap<>());
+    }
+
+    /**
+     * Same as {@link #scan(Set, Map, Map, Map, Map)}, and also fills the line ranges of the methods, as
+     * {@link ClassSummary#addMethodLines} does.
+     *
+     * @param classToMethodLines Map from every class to the first and last line of its methods
+     */
+    public void scan(Set<String> bytecodePaths,
+                     Map<String, Set<String>> classToMethods,
+                     Map<String, Set<String>> classToSuperclass,
+                     Map<String, Set<String>> classToSubclasses,
+                     Map<String, Set<String>> callerToCalled,
+                     Map<String, Map<String, int[]>> classToMethodLines) {
+        String[] paths = bytecodePaths.toArray(new String[0]);
+        ClassSummary[] summaries = new ClassSummary[paths.length];
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            // Phase 1: read every class file exactly once.
+            pool.invoke(new RangeAction(0, paths.length, index -> summaries[index] = readSummary(paths[index])));
+
+            // Phase 2: hierarchy and declared methods, needed by every call edge resolution below.
+            for (ClassSummary summary : summaries) {
+                if (summary != null) {
+                    summary.accept(new ClassToMethodsCollectorCV(classToMethods, classToSuperclass,
+                            classToSubclasses));
+                    summary.addMethodLines(classToMethodLines);
+                }
+            }
+
+            // Phase 3: resolve call edges against the (now read-only) hierarchy maps.
+            List<Map<String, Set<String>>> edges = new ArrayList<>(summaries.length);
+            for (int i = 0; i < summaries.length; i++) {
+                edges.add(null);
+            }
+            Map<String, String> firstParentCache = new ConcurrentHashMap<>();
+            pool.invoke(new RangeAction(0, summaries.length, index -> {
+                if (summaries[index] != null) {
+                    Map<String, Set<String>> localEdges = new HashMap<>();
+                    summaries[index].accept(new MethodCallCollectorCV(localEdges, classToSuperclass,
+                            classToSubclasses, classToMethods, firstParentCache));
+                    edges.set(index, localEdges);
+                }
+            }));
+            for (Map<String, Set<String>> localEdges : edges) {
+                if (localEdges == null) {
+                    continue;
+                }
+                for (Map.Entry<String, Set<String>> entry : localEdges.entrySet()) {
+                    callerToCalled.computeIfAbsent(entry.getKey(), k -> new TreeSet<>()).addAll(entry.getValue());
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static ClassSummary readSummary(String bytecodePath) {
+        try {
+            return ClassSummary.fromBytes(Files.readAllBytes(Paths.get(bytecodePath)));
+        } catch (IOException e) {
+            LOGGER.log(Level.INFO, "[ERROR] cannot parse file: " + bytecodePath);
+            return null;
+        }
+    }
+
+    /** Applies an action to every index of a range, splitting the range across the pool. */
+    static class RangeAction extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final IntConsumer body;
+
+        RangeAction(int from, int to, IntConsumer body) {
+            this.from = from;
+            this.to = to;
+            this.body = body;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    body.accept(i);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new RangeAction(from, middle, body), new RangeAction(middle, to, body));
+        }
+    }
+}
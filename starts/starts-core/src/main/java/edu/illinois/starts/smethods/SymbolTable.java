@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package edu.illinois.starts.smethods;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Maps method/class signatures (e.g., {@code owner#name(desc)}) to dense int ids, so that graphs
+ * can be stored as primitive arrays and every signature is kept in memory only once.
+ */
+public class SymbolTable {
+
+    /** Id returned for symbols that were never interned. */
+    public static final int NO_ID = -1;
+
+    private final Map<String, Integer> ids;
+    private String[] symbols;
+    private int size;
+
+    public SymbolTable() {
+        this(1024);
+    }
+
+    public SymbolTable(int expectedSize) {
+        ids = new HashMap<>(Math.max(16, expectedSize * 4 / 3));
+        symbols = new String[Math.max(16, expectedSize)];
+    }
+
+    /**
+     * Returns the id of the given symbol, assigning the next free id if the symbol is new.
+     *
+     * @param symbol The signature to intern
+     * @return The dense id of the symbol
+     */
+    public int intern(String symbol) {
+        Integer id = ids.get(symbol);
+        if (id != null) {
+            return id;
+        }
+        if (size == symbols.length) {
+            symbols = Arrays.copyOf(symbols, size * 2);
+        }
+        symbols[size] = symbol;
+        ids.put(symbol, size);
+        return size++;
+    }
+
+    /**
+     * Returns the id of the given symbol without interning it.
+     *
+     * @param symbol The signature to look up
+     * @return The id of the symbol, or {@link #NO_ID} if it is unknown
+     */
+    public int getId(String symbol) {
+        Integer id = ids.get(symbol);
+        return id == null ? NO_ID : id;
+    }
+
+    public String getSymbol(int id) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("Unknown symbol id: " + id);
+        }
+        return symbols[id];
+    }
+
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package edu.illinois.starts.smethods;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * For every node of the forward method graph, the set of test classes that (transitively) reach it.
+ * The index is built once for all tests: strongly connected components are collapsed with
+ * (an iterative version of) Tarjan's algorithm, and the test bitsets are then propagated along the
+ * condensed DAG in topological order. Components that only inherit the tests of a single predecessor
+ * share its bitset (copy-on-write), which keeps chains of calls cheap.
+ */
+public final class TestReachabilityIndex {
+
+    private final SymbolTable symbols;
+    private final List<String> testClasses;
+    private final int[] componentOf;
+    private final BitSet[] componentTests;
+
+    private TestReachabilityIndex(SymbolTable symbols, List<String> testClasses, int[] componentOf,
+                                  BitSet[] componentTests) {
+        this.symbols = symbols;
+        this.testClasses = testClasses;
+        this.componentOf = componentOf;
+        this.componentTests = componentTests;
+    }
+
+    /**
+     * Builds the index.
+     *
+     * @param forward      The forward (caller to called) method graph
+     * @param testClasses  The test classes to index
+     * @param classToNodes Map from class to the nodes it owns; the nodes of a test class are its entry points
+     * @return The index
+     */
+    public static TestReachabilityIndex build(CompactGraph forward, Collection<String> testClasses,
+                                              Map<String, Set<String>> classToNodes) {
+        List<String> tests = new ArrayList<>(testClasses);
+        Collections.sort(tests);
+        SymbolTable symbols = forward.getSymbols();
+        int nodeCount = forward.nodeCount();
+
+        int[] componentOf = new int[nodeCount];
+        int componentCount = findComponents(forward, componentOf);
+
+        // Tests whose own methods are in each component.
+        BitSet[] componentTests = new BitSet[componentCount];
+        for (int test = 0; test < tests.size(); test++) {
+            for (String node : classToNodes.getOrDefault(tests.get(test), Collections.emptySet())) {
+                int id = symbols.getId(node);
+                if (id == SymbolTable.NO_ID || id >= nodeCount) {
+                    continue;
+                }
+                int component = componentOf[id];
+                if (componentTests[component] == null) {
+                    componentTests[component] = new BitSet(tests.size());
+                }
+                componentTests[component].set(test);
+            }
+        }
+
+        // Nodes of every component, in CSR form.
+        int[] componentStart = new int[componentCount + 1];
+        for (int node = 0; node < nodeCount; node++) {
+            componentStart[componentOf[node] + 1]++;
+        }
+        for (int component = 0; component < componentCount; component++) {
+            componentStart[component + 1] += componentStart[component];
+        }
+        int[] componentNodes = new int[nodeCount];
+        int[] fill = componentStart.clone();
+        for (int node = 0; node < nodeCount; node++) {
+            componentNodes[fill[componentOf[node]]++] = node;
+        }
+
+        // Tarjan numbers components in reverse topological order, so callers come from the highest id down.
+        boolean[] shared = new boolean[componentCount];
+        for (int component = componentCount - 1; component >= 0; component--) {
+            BitSet bits = componentTests[component];
+            if (bits == null || bits.isEmpty()) {
+                continue;
+            }
+            for (int i = componentStart[component]; i < componentStart[component + 1]; i++) {
+                int node = componentNodes[i];
+                for (int j = 0; j < forward.outDegree(node); j++) {
+                    int successor = componentOf[forward.successor(node, j)];
+                    if (successor == component) {
+                        continue;
+                    }
+                    BitSet successorBits = componentTests[successor];
+                    if (successorBits == null) {
+                        componentTests[successor] = bits;
+                        shared[successor] = true;
+                    } else if (successorBits != bits) {
+                        if (shared[successor]) {
+                            successorBits = (BitSet) successorBits.clone();
+                            componentTests[successor] = successorBits;
+                            shared[successor] = false;
+                        }
+                        successorBits.or(bits);
+                    }
+                }
+            }
+        }
+        return new TestReachabilityIndex(symbols, tests, componentOf, componentTests);
+    }
+
+    /**
+     * Computes the strongly connected components of the graph with an iterative Tarjan's algorithm.
+     *
+     * @param graph       The graph
+     * @param componentOf Output: the component of every node, components are numbered in reverse topological order
+     * @return The number of components
+     */
+    static int findComponents(CompactGraph graph, int[] componentOf) {
+        int nodeCount = graph.nodeCount();
+        int[] index = new int[nodeCount];
+        int[] low = new int[nodeCount];
+        boolean[] onStack = new boolean[nodeCount];
+        int[] tarjanStack = new int[nodeCount];
+        int[] callStack = new int[nodeCount];
+        int[] edgePosition = new int[nodeCount];
+        Arrays.fill(index, -1);
+        int counter = 0;
+        int componentCount = 0;
+        int tarjanTop = 0;
+
+        for (int root = 0; root < nodeCount; root++) {
+            if (index[root] != -1) {
+                continue;
+            }
+            int callTop = 0;
+            index[root] = low[root] = counter++;
+            tarjanStack[tarjanTop++] = root;
+            onStack[root] = true;
+            callStack[callTop] = root;
+            edgePosition[callTop++] = 0;
+            while (callTop > 0) {
+                int node = callStack[callTop - 1];
+                if (edgePosition[callTop - 1] < graph.outDegree(node)) {
+                    int successor = graph.successor(node, edgePosition[callTop - 1]++);
+                    if (index[successor] == -1) {
+                        index[successor] = low[successor] = counter++;
+                        tarjanStack[tarjanTop++] = successor;
+                        onStack[successor] = true;
+                        callStack[callTop] = successor;
+                        edgePosition[callTop++] = 0;
+                    } else if (onStack[successor]) {
+                        low[node] = Math.min(low[node], index[successor]);
+                    }
+                    continue;
+                }
+                callTop--;
+                if (low[node] == index[node]) {
+                    int member;
+                    do {
+                        member = tarjanStack[--tarjanTop];
+                        onStack[member] = false;
+                        componentOf[member] = componentCount;
+                    } while (member != node);
+                    componentCount++;
+                }
+                if (callTop > 0) {
+                    int caller = callStack[callTop - 1];
+                    low[caller] = Math.min(low[caller], low[node]);
+                }
+            }
+        }
+        return componentCount;
+    }
+
+    public List<String> getTestClasses() {
+        return Collections.unmodifiableList(testClasses);
+    }
+
+    /**
+     * Returns the test classes that reach the given method, without any graph traversal.
+     *
+     * @param method The method (or variable) signature
+     * @return The test classes reaching it
+     */
+    public Set<String> getTestClasses(String method) {
+        return getTestClasses(getTestBits(method));
+    }
+
+    /**
+     * Returns the test classes with the given indices in {@link #getTestClasses()}.
+     *
+     * @param bits The test indices, e.g., the union of those of several methods
+     * @return The test classes
+     */
+    public Set<String> getTestClasses(BitSet bits) {
+        Set<String> result = new HashSet<>();
+        for (int test = bits.nextSetBit(0); test >= 0; test = bits.nextSetBit(test + 1)) {
+            result.add(testClasses.get(test));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the indices (in {@link #getTestClasses()}) of the test classes that reach the given method.
+     * The returned bitset must not be modified.
+     *
+     * @param method The method (or variable) signature
+     * @return The test indices reaching it
+     */
+    public BitSet getTestBits(String method) {
+        int id = symbols.getId(method);
+        if (id == SymbolTable.NO_ID || id >= componentOf.length) {
+            return new BitSet();
+        }
+        BitSet bits = componentTests[componentOf[id]];
+        return bits == null ? new BitSet() : bits;
+    }
+
+    /**
+     * Expands the index into a map from every test class to the methods it reaches, which is the same as
+     * calling {@link MethodLevelStaticDepsBuilder#getDeps(String)} for every test class.
+     *
+     * @return Map from test class to the methods it reaches
+     */
+    public Map<String, Set<String>> toTestClassToMethods() {
+        return toTestClassTo(Function.identity());
+    }
+
+    /**
+     * Expands the index into a map from every test class to what the methods it reaches map to, e.g., their
+     * classes. Every method is mapped once, however many test classes reach it.
+     *
+     * @param mapping Maps a method (or variable) signature, or returns null to leave it out
+     * @return Map from test class to the mapped methods it reaches
+     */
+    public Map<String, Set<String>> toTestClassTo(Function<String, String> mapping) {
+        Map<String, Set<String>> testToMethods = new HashMap<>();
+        List<Set<String>> methodsByTest = new ArrayList<>(testClasses.size());
+        for (String testClass : testClasses) {
+            Set<String> methods = new HashSet<>();
+            methodsByTest.add(methods);
+            testToMethods.put(testClass, methods);
+        }
+        for (int node = 0; node < componentOf.length; node++) {
+            BitSet bits = componentTests[componentOf[node]];
+            if (bits == null) {
+                continue;
+            }
+            String method = mapping.apply(symbols.getSymbol(node));
+            if (method == null) {
+                continue;
+            }
+            for (int test = bits.nextSetBit(0); test >= 0; test = bits.nextSetBit(test + 1)) {
+                methodsByTest.get(test).add(method);
+            }
+        }
+        return testToMethods;
+    }
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package edu.illinois.starts.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.zip.Adler32;
+
+import edu.illinois.starts.constants.StartsConstants;
+import org.ekstazi.hash.BytecodeCleaner;
+import org.ekstazi.hash.Hasher;
+
+/**
+ * Computes the same checksums as {@link ChecksumUtil#computeSingleCheckSum} for many URLs at once, on a
+ * bounded thread pool. Class files are read with {@link Files#readAllBytes}, and a persisted stat cache of
+ * (size, modification time, file key) per file skips reading files that did not change since the previous
+ * run. The file key is the inode on Unix file systems. URLs that are not files, e.g., classes in jars, are
+ * hashed by a {@link Hasher} as before.
+ */
+public class ParallelChecksums implements StartsConstants {
+
+    private static final Logger LOGGER = Logger.getGlobal();
+
+    private static final int MAGIC = 0x53544353; // "STCS"
+    private static final int FORMAT_VERSION = 1;
+
+    /** Same as the Hasher, for files that cannot be read. */
+    private static final String ERR_CHECKSUM = "-1";
+
+    /**
+     * Modification times are only trusted if they are older than the previous cache by this margin, so that
+     * a class file rewritten within the file system's timestamp granularity is still read.
+     */
+    private static final long RACY_MILLIS = 2000;
+
+    /** Number of URLs handled by a single task. */
+    private static final int BATCH_SIZE = 256;
+
+    private final boolean cleanBytes;
+    private final int parallelism;
+    private final Path cacheFile;
+
+    private final AtomicInteger readFiles = new AtomicInteger();
+
+    /**
+     * @param cleanBytes  Whether debug information is removed from class files before hashing
+     * @param parallelism Number of threads
+     * @param cacheFile   File of the stat cache, or null to read every file
+     */
+    public ParallelChecksums(boolean cleanBytes, int parallelism, Path cacheFile) {
+        this.cleanBytes = cleanBytes;
+        this.parallelism = Math.max(1, parallelism);
+        this.cacheFile = cacheFile;
+    }
+
+    /** Returns the number of files read by the last {@link #compute}. */
+    public int getReadFiles() {
+        return readFiles.get();
+    }
+
+    /**
+     * Computes the checksum of every URL, and saves the stat cache.
+     *
+     * @param externalForms The URLs, in external form
+     * @return The checksums, at the same positions as the URLs
+     */
+    public String[] compute(List<String> externalForms) {
+        readFiles.set(0);
+        Map<String, Entry> oldEntries = new HashMap<>();
+        long oldCacheTime = load(oldEntries);
+        long cacheTime = System.currentTimeMillis();
+        String[] checksums = new String[externalForms.size()];
+        Entry[] entries = new Entry[externalForms.size()];
+
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int from = 0; from < externalForms.size(); from += BATCH_SIZE) {
+            int batchFrom = from;
+            int batchTo = Math.min(externalForms.size(), from + BATCH_SIZE);
+            tasks.add(() -> {
+                ByteHasher hasher = new ByteHasher(cleanBytes);
+                for (int i = batchFrom; i < batchTo; i++) {
+                    String externalForm = externalForms.get(i);
+                    checksums[i] = checksum(externalForm, oldEntries.get(externalForm), oldCacheTime, hasher,
+                            entries, i);
+                }
+                return null;
+            });
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(parallelism, Math.max(1, tasks.size())));
+        try {
+            for (Future<Void> future : pool.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(exception);
+        } catch (ExecutionException exception) {
+            throw new RuntimeException(exception.getCause());
+        } finally {
+            pool.shutdown();
+        }
+
+        if (cacheFile != null) {
+            Map<String, Entry> newEntries = new HashMap<>();
+            for (int i = 0; i < entries.length; i++) {
+                if (entries[i] != null) {
+                    newEntries.put(externalForms.get(i), entries[i]);
+                }
+            }
+            save(newEntries, cacheTime);
+        }
+        return checksums;
+    }
+
+    /** Computes the checksum of one URL, and records its stat cache entry if it is a readable file. */
+    private String checksum(String externalForm, Entry oldEntry, long oldCacheTime, ByteHasher hasher,
+                            Entry[] entries, int index) {
+        Path path;
+        try {
+            URL url = new URL(externalForm);
+            if (!"file".equals(url.getProtocol())) {
+                return hasher.hashURL(externalForm);
+            }
+            path = Paths.get(url.toURI());
+        } catch (IOException | URISyntaxException | IllegalArgumentException exception) {
+            return hasher.hashURL(externalForm);
+        }
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException exception) {
+            return ERR_CHECKSUM;
+        }
+        long size = attributes.size();
+        long modified = attributes.lastModifiedTime().toMillis();
+        String fileKey = String.valueOf(attributes.fileKey());
+        if (oldEntry != null && oldEntry.size == size && oldEntry.modified == modified
+                && oldEntry.fileKey.equals(fileKey) && modified + RACY_MILLIS < oldCacheTime) {
+            entries[index] = oldEntry;
+            return oldEntry.checksum;
+        }
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(path);
+        } catch (IOException exception) {
+            return ERR_CHECKSUM;
+        }
+        readFiles.incrementAndGet();
+        String checksum = hasher.hashBytes(bytes);
+        entries[index] = new Entry(size, modified, fileKey, checksum);
+        return checksum;
+    }
+
+    /** Loads the cached entries, and returns the time the cache was saved (0 if there is no usable cache). */
+    private long load(Map<String, Entry> entries) {
+        if (cacheFile == null || !Files.exists(cacheFile)) {
+            return 0;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(cacheFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || in.readBoolean() != cleanBytes) {
+                LOGGER.log(Level.INFO, "[ParallelChecksums] ignoring cache in another format: " + cacheFile);
+                return 0;
+            }
+            long cacheTime = in.readLong();
+            int entryCount = in.readInt();
+            for (int i = 0; i < entryCount; i++) {
+                String externalForm = in.readUTF();
+                entries.put(externalForm, new Entry(in.readLong(), in.readLong(), in.readUTF(), in.readUTF()));
+            }
+            return cacheTime;
+        } catch (IOException exception) {
+            LOGGER.log(Level.INFO, "[ParallelChecksums] ignoring unreadable cache: " + cacheFile, exception);
+            entries.clear();
+            return 0;
+        }
+    }
+
+    private void save(Map<String, Entry> entries, long cacheTime) {
+        try {
+            if (cacheFile.getParent() != null) {
+                Files.createDirectories(cacheFile.getParent());
+            }
+            // Written next to the cache and moved over it, so an interrupted build leaves the old cache intact.
+            Path tempFile = Files.createTempFile(cacheFile.toAbsolutePath().getParent(), "checksumStats", ".tmp");
+            try {
+                write(tempFile, entries, cacheTime);
+                Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException exception) {
+                Files.deleteIfExists(tempFile);
+                throw exception;
+            }
+        } catch (IOException exception) {
+            LOGGER.log(Level.INFO, "[ParallelChecksums] cannot write cache: " + cacheFile, exception);
+        }
+    }
+
+    private void write(Path file, Map<String, Entry> entries, long cacheTime) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeBoolean(cleanBytes);
+            out.writeLong(cacheTime);
+            out.writeInt(entries.size());
+            for (Map.Entry<String, Entry> urlEntry : entries.entrySet()) {
+                Entry entry = urlEntry.getValue();
+                out.writeUTF(urlEntry.getKey());
+                out.writeLong(entry.size);
+                out.writeLong(entry.modified);
+                out.writeUTF(entry.fileKey);
+                out.writeUTF(entry.checksum);
+            }
+        }
+    }
+
+    private static class Entry {
+        private final long size;
+        private final long modified;
+        private final String fileKey;
+        private final String checksum;
+
+        Entry(long size, long modified, String fileKey, String checksum) {
+            this.size = size;
+            this.modified = modified;
+            this.fileKey = fileKey;
+            this.checksum = checksum;
+        }
+    }
+
+    /**
+     * A {@link Hasher} that also hashes bytes that were already read, the same way it hashes the content of
+     * a URL. A Hasher is not thread-safe, so every task uses its own.
+     */
+    private static class ByteHasher extends Hasher {
+        ByteHasher(boolean cleanBytes) {
+            super(Hasher.Algorithm.CRC32, 1000, cleanBytes);
+        }
+
+        String hashBytes(byte[] bytes) {
+            if (mIsSemanticHashing) {
+                return hashByteArray(BytecodeCleaner.removeDebugInfo(bytes));
+            }
+            Adler32 checksum = new Adler32();
+            checksum.update(bytes, 0, bytes.length);
+            return Long.toString(checksum.getValue());
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package edu.illinois.starts.util;
+
+/**
+ * Streaming implementation of the 64-bit xxHash algorithm (XXH64). Values are fed one at a time, in
+ * little-endian byte order, and only a 32-byte block is buffered, so callers never need to build the
+ * hashed content in memory.
+ */
+public final class XxHash64 {
+
+    private static final long PRIME64_1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME64_2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME64_3 = 0x165667B19E3779F9L;
+    private static final long PRIME64_4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME64_5 = 0x27D4EB2F165667C5L;
+
+    private final long seed;
+    private final byte[] buffer = new byte[32];
+    private int bufferSize;
+    private long totalLength;
+    private long v1;
+    private long v2;
+    private long v3;
+    private long v4;
+
+    public XxHash64() {
+        this(0L);
+    }
+
+    public XxHash64(long seed) {
+        this.seed = seed;
+        reset();
+    }
+
+    /** Discards everything fed so far. */
+    public void reset() {
+        v1 = seed + PRIME64_1 + PRIME64_2;
+        v2 = seed + PRIME64_2;
+        v3 = seed;
+        v4 = seed - PRIME64_1;
+        bufferSize = 0;
+        totalLength = 0;
+    }
+
+    public XxHash64 update(byte value) {
+        buffer[bufferSize++] = value;
+        totalLength++;
+        if (bufferSize == buffer.length) {
+            processBuffer();
+        }
+        return this;
+    }
+
+    public XxHash64 update(byte[] values, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            update(values[i]);
+        }
+        return this;
+    }
+
+    public XxHash64 updateInt(int value) {
+        if (bufferSize + 4 > buffer.length) {
+            for (int shift = 0; shift < 32; shift += 8) {
+                update((byte) (value >>> shift));
+            }
+            return this;
+        }
+        buffer[bufferSize] = (byte) value;
+        buffer[bufferSize + 1] = (byte) (value >>> 8);
+        buffer[bufferSize + 2] = (byte) (value >>> 16);
+        buffer[bufferSize + 3] = (byte) (value >>> 24);
+        bufferSize += 4;
+        totalLength += 4;
+        if (bufferSize == buffer.length) {
+            processBuffer();
+        }
+        return this;
+    }
+
+    public XxHash64 updateLong(long value) {
+        updateInt((int) value);
+        return updateInt((int) (value >>> 32));
+    }
+
+    /**
+     * Feeds the length and the UTF-16 code units of a string, or a length of -1 for null. The length prefix
+     * keeps consecutive strings from running into each other.
+     *
+     * @param value The string to feed, may be null
+     * @return This hash
+     */
+    public XxHash64 updateString(String value) {
+        if (value == null) {
+            return updateInt(-1);
+        }
+        updateInt(value.length());
+        int index = 0;
+        // Two characters at a time, which keeps the buffer aligned on 4 bytes.
+        for (; index + 1 < value.length(); index += 2) {
+            updateInt(value.charAt(index) | value.charAt(index + 1) << 16);
+        }
+        if (index < value.length()) {
+            char character = value.charAt(index);
+            update((byte) character);
+            update((byte) (character >>> 8));
+        }
+        return this;
+    }
+
+    /**
+     * Returns the hash of everything fed so far. The state is left untouched, so more values can be fed.
+     *
+     * @return The 64-bit hash
+     */
+    public long digest() {
+        long hash;
+        if (totalLength >= buffer.length) {
+            hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12)
+                    + Long.rotateLeft(v4, 18);
+            hash = mergeRound(hash, v1);
+            hash = mergeRound(hash, v2);
+            hash = mergeRound(hash, v3);
+            hash = mergeRound(hash, v4);
+        } else {
+            hash = seed + PRIME64_5;
+        }
+        hash += totalLength;
+
+        int position = 0;
+        for (; position + 8 <= bufferSize; position += 8) {
+            hash ^= round(0, readLong(buffer, position));
+            hash = Long.rotateLeft(hash, 27) * PRIME64_1 + PRIME64_4;
+        }
+        if (position + 4 <= bufferSize) {
+            hash ^= (readInt(buffer, position) & 0xFFFFFFFFL) * PRIME64_1;
+            hash = Long.rotateLeft(hash, 23) * PRIME64_2 + PRIME64_3;
+            position += 4;
+        }
+        for (; position < bufferSize; position++) {
+            hash ^= (buffer[position] & 0xFF) * PRIME64_5;
+            hash = Long.rotateLeft(hash, 11) * PRIME64_1;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= PRIME64_2;
+        hash ^= hash >>> 29;
+        hash *= PRIME64_3;
+        hash ^= hash >>> 32;
+        return hash;
+    }
+
+    /**
+     * Returns the hash of everything fed so far as 16 lower-case hexadecimal digits.
+     *
+     * @return The hexadecimal hash
+     */
+    public String hexDigest() {
+        String hex = Long.toHexString(digest());
+        StringBuilder builder = new StringBuilder(16);
+        for (int i = hex.length(); i < 16; i++) {
+            builder.append('0');
+        }
+        return builder.append(hex).toString();
+    }
+
+    private void processBuffer() {
+        v1 = round(v1, readLong(buffer, 0));
+        v2 = round(v2, readLong(buffer, 8));
+        v3 = round(v3, readLong(buffer, 16));
+        v4 = round(v4, readLong(buffer, 24));
+        bufferSize = 0;
+    }
+
+    private static long round(long acc, long input) {
+        acc += input * PRIME64_2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * PRIME64_1;
+    }
+
+    private static long mergeRound(long acc, long value) {
+        acc ^= round(0, value);
+        return acc * PRIME64_1 + PRIME64_4;
+    }
+
+    private static long readLong(byte[] bytes, int offset) {
+        return (readInt(bytes, offset) & 0xFFFFFFFFL) | ((long) readInt(bytes, offset + 4) << 32);
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) | (bytes[offset + 1] & 0xFF) << 8 | (bytes[offset + 2] & 0xFF) << 16
+                | (bytes[offset + 3] & 0xFF) << 24;
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package edu.illinois.starts.changelevel;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import edu.illinois.starts.util.Logger;
+
+/**
+ * Compares reading back the change types of every class from one serialized file per class with reading them
+ * from a {@link ChangeTypesStore}. Before each read, the benchmark tries to drop the page cache (this needs
+ * root on Linux), so that both read from disk; otherwise both read from a warm cache.
+ */
+public class ChangeTypesStoreBenchmark {
+
+    private static final Logger LOGGER = Logger.getGlobal();
+
+    public static void main(String[] args) throws Exception {
+        int classes = args.length > 0 ? Integer.parseInt(args[0]) : 30000;
+        Path dir = args.length > 1 ? Files.createTempDirectory(Paths.get(args[1]), "starts")
+                : Files.createTempDirectory("starts");
+        Path serDir = dir.resolve("changeTypes");
+        Files.createDirectories(serDir);
+        Path storeFile = dir.resolve("changeTypes.store");
+
+        Random random = new Random(0);
+        ChangeTypesStore store = ChangeTypesStore.open(storeFile);
+        for (int i = 0; i < classes; i++) {
+            StartsChangeTypes changeTypes = ChangeTypesStoreTest.randomChangeTypes(random, "pkg/C" + i, 60);
+            StartsChangeTypes.toFile(serDir.resolve("pkg.C" + i + ".ser").toString(), changeTypes);
+            store.put("pkg.C" + i, changeTypes);
+        }
+        store.save();
+        long serBytes;
+        try (Stream<Path> files = Files.list(serDir)) {
+            serBytes = files.mapToLong(file -> file.toFile().length()).sum();
+        }
+
+        boolean cold = dropPageCache();
+        long start = System.nanoTime();
+        for (int i = 0; i < classes; i++) {
+            StartsChangeTypes.fromFile(serDir.resolve("pkg.C" + i + ".ser").toString());
+        }
+        long perFile = System.nanoTime() - start;
+
+        dropPageCache();
+        start = System.nanoTime();
+        store = ChangeTypesStore.open(storeFile);
+        for (int i = 0; i < classes; i++) {
+            store.get("pkg.C" + i);
+        }
+        store.close();
+        long singleFile = System.nanoTime() - start;
+
+        LOGGER.log(Level.INFO, "Classes: " + classes + (cold ? ", cold page cache" : ", warm page cache"));
+        LOGGER.log(Level.INFO, "Per-class files: " + serBytes / 1024 + " KB, read " + perFile / 1000000 + " ms");
+        LOGGER.log(Level.INFO, "Single-file store: " + Files.size(storeFile) / 1024 + " KB, read "
+                + singleFile / 1000000 + " ms");
+
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private static boolean dropPageCache() {
+        try {
+            new ProcessBuilder("sync").inheritIO().start().waitFor();
+            Files.write(Paths.get("/proc/sys/vm/drop_caches"), "3\n".getBytes("US-ASCII"));
+            return true;
+        } catch (IOException | InterruptedException | RuntimeException exception) {
+            return false;
+        }
+    }
+}
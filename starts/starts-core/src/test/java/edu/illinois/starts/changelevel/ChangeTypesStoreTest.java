@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package edu.illinois.starts.changelevel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import edu.illinois.starts.helpers.FileUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ChangeTypesStoreTest {
+
+    private Path dir;
+    private Path storeFile;
+
+    /** Change types of a made-up class, with method bodies of roughly the given length. */
+    public static StartsChangeTypes randomChangeTypes(Random random, String className, int bodyLength) {
+        StartsChangeTypes changeTypes = new StartsChangeTypes();
+        changeTypes.curClass = className;
+        changeTypes.superClass = "java/lang/Object";
+        changeTypes.urlExternalForm = "file:/project/target/classes/" + className + ".class";
+        changeTypes.constructorsMap.put("<init>()V", body(random, bodyLength));
+        for (int i = 0; i < 5; i++) {
+            changeTypes.instanceMethodMap.put("m" + i + "(I)V", body(random, bodyLength));
+            changeTypes.staticMethodMap.put("s" + i + "()I", body(random, bodyLength));
+            changeTypes.fieldList.add("f" + i + "I");
+        }
+        return changeTypes;
+    }
+
+    private static String body(Random random, int length) {
+        StringBuilder body = new StringBuilder();
+        while (body.length() < length) {
+            body.append("INVOKEVIRTUAL pkg/C").append(random.nextInt(100)).append(".m ()V\n");
+        }
+        return body.toString();
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("starts");
+        storeFile = dir.resolve("changeTypes.store");
+    }
+
+    @After
+    public void cleanUp() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        StartsChangeTypes changeTypes = randomChangeTypes(new Random(1), "pkg/C", 100);
+        changeTypes.superClass = null;
+        // Longer than what DataOutput.writeUTF allows.
+        changeTypes.staticMethodMap.put("big()V", body(new Random(2), 100000) + "\u00e9");
+        ChangeTypesStore store = ChangeTypesStore.open(storeFile);
+        store.put("pkg.C", changeTypes);
+        assertSame(changeTypes, store.get("pkg.C"));
+        store.save();
+
+        store = ChangeTypesStore.open(storeFile);
+        assertEquals(1, store.size());
+        assertSame(changeTypes, store.get("pkg.C"));
+        assertNull(store.get("pkg.Missing"));
+        store.close();
+    }
+
+    @Test
+    public void testAppendRemoveAndCompact() throws IOException {
+        Random random = new Random(3);
+        StartsChangeTypes[] expected = new StartsChangeTypes[100];
+        ChangeTypesStore store = ChangeTypesStore.open(storeFile);
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = randomChangeTypes(random, "pkg/C" + i, 50);
+            store.put("pkg.C" + i, expected[i]);
+        }
+        store.save();
+        long initialSize = Files.size(storeFile);
+
+        // Every run changes a few classes and removes one.
+        for (int run = 0; run < 50; run++) {
+            store = ChangeTypesStore.open(storeFile);
+            for (int j = 0; j < 5; j++) {
+                int i = random.nextInt(expected.length);
+                expected[i] = randomChangeTypes(random, "pkg/C" + i, 50);
+                store.put("pkg.C" + i, expected[i]);
+            }
+            int removed = random.nextInt(expected.length);
+            store.remove("pkg.C" + removed);
+            expected[removed] = null;
+            store.save();
+
+            store = ChangeTypesStore.open(storeFile);
+            for (int i = 0; i < expected.length; i++) {
+                if (expected[i] == null) {
+                    assertFalse(store.contains("pkg.C" + i));
+                } else {
+                    assertSame(expected[i], store.get("pkg.C" + i));
+                }
+            }
+            store.close();
+            // Superseded records are compacted away.
+            assertTrue(Files.size(storeFile) < 3 * initialSize);
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(Arrays.asList(storeFile), files.collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void testInterruptedAppendAndUnreadableStore() throws IOException {
+        StartsChangeTypes changeTypes = randomChangeTypes(new Random(4), "pkg/C", 100);
+        ChangeTypesStore store = ChangeTypesStore.open(storeFile);
+        store.put("pkg.C", changeTypes);
+        store.save();
+
+        // Records appended by a run that stopped before switching the header are ignored.
+        Files.write(storeFile, new byte[] {1, 2, 3, 4, 5}, StandardOpenOption.APPEND);
+        store = ChangeTypesStore.open(storeFile);
+        assertSame(changeTypes, store.get("pkg.C"));
+        store.put("pkg.D", changeTypes);
+        store.save();
+        store = ChangeTypesStore.open(storeFile);
+        assertSame(changeTypes, store.get("pkg.C"));
+        assertSame(changeTypes, store.get("pkg.D"));
+        store.close();
+
+        // An unreadable store is empty, and is rewritten on save.
+        Files.write(storeFile, new byte[] {1, 2, 3});
+        store = ChangeTypesStore.open(storeFile);
+        assertEquals(0, store.size());
+        store.put("pkg.C", changeTypes);
+        store.save();
+        store = ChangeTypesStore.open(storeFile);
+        assertSame(changeTypes, store.get("pkg.C"));
+        store.close();
+    }
+
+    @Test
+    public void testKeysMatchSerializedFileNames() {
+        String url = "file:/project/target/test-classes/org/example/FooTest.class";
+        assertEquals("org.example.FooTest", FileUtil.urlToChangeTypesKey(url));
+        assertTrue(FileUtil.urlToSerFilePath(url).endsWith("/org.example.FooTest.ser"));
+    }
+
+    private static void assertSame(StartsChangeTypes expected, StartsChangeTypes actual) {
+        assertEquals(expected.toString(), actual.toString());
+        assertEquals(expected.curClass, actual.curClass);
+        assertEquals(expected.superClass, actual.superClass);
+        assertEquals(expected.urlExternalForm, actual.urlExternalForm);
+        assertEquals(expected.fieldList, actual.fieldList);
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package edu.illinois.starts.helpers;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Random;
+import java.util.logging.Level;
+
+import edu.illinois.starts.util.Logger;
+
+/**
+ * Compares Java serialization of a method checksum map with {@link ChecksumStore}: file size, write time,
+ * and time to load the whole map.
+ */
+public class ChecksumStoreBenchmark {
+
+    private static final Logger LOGGER = Logger.getGlobal();
+
+    private static final int ITERATIONS = 10;
+
+    public static void main(String[] args) throws Exception {
+        int methods = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        Map<String, String> checksums = ChecksumStoreTest.randomMethodChecksums(new Random(0), methods, 16);
+        Path dir = Files.createTempDirectory("starts");
+        File serialized = dir.resolve("methods-checksums.ser").toFile();
+        Path store = dir.resolve("methods-checksums.store");
+
+        long serializeWrite = 0;
+        long serializeRead = 0;
+        long storeWrite = 0;
+        long storeRead = 0;
+        for (int iteration = 0; iteration < 2 * ITERATIONS; iteration++) {
+            boolean measured = iteration >= ITERATIONS;
+            long start = System.nanoTime();
+            try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(serialized))) {
+                out.writeObject(checksums);
+            }
+            long afterSerializeWrite = System.nanoTime();
+            try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(serialized))) {
+                in.readObject();
+            }
+            long afterSerializeRead = System.nanoTime();
+            ChecksumStore.write(checksums, store);
+            long afterStoreWrite = System.nanoTime();
+            ChecksumStore.open(store).toMap();
+            long afterStoreRead = System.nanoTime();
+            if (measured) {
+                serializeWrite += afterSerializeWrite - start;
+                serializeRead += afterSerializeRead - afterSerializeWrite;
+                storeWrite += afterStoreWrite - afterSerializeRead;
+                storeRead += afterStoreRead - afterStoreWrite;
+            }
+        }
+
+        LOGGER.log(Level.INFO, "Methods: " + methods);
+        LOGGER.log(Level.INFO, "Java serialization: " + serialized.length() / 1024 + " KB, write "
+                + serializeWrite / ITERATIONS / 1000000 + " ms, load " + serializeRead / ITERATIONS / 1000000 + " ms");
+        LOGGER.log(Level.INFO, "ChecksumStore: " + Files.size(store) / 1024 + " KB, write "
+                + storeWrite / ITERATIONS / 1000000 + " ms, load " + storeRead / ITERATIONS / 1000000 + " ms");
+        Files.delete(store);
+        Files.delete(serialized.toPath());
+        Files.delete(dir);
+    }
+}
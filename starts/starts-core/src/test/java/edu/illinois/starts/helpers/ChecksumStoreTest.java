@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package edu.illinois.starts.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ChecksumStoreTest {
+
+    private Path artifactsDir;
+
+    public static Map<String, String> randomMethodChecksums(Random random, int count, int hexDigits) {
+        Map<String, String> checksums = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            StringBuilder checksum = new StringBuilder();
+            for (int digit = 0; digit < hexDigits; digit++) {
+                checksum.append(Character.forDigit(random.nextInt(16), 16));
+            }
+            checksums.put("org/example/pkg" + i % 50 + "/Class" + i % 1000 + "#method" + i + "(I)", checksum.toString());
+        }
+        return checksums;
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        artifactsDir = Files.createTempDirectory("starts");
+    }
+
+    @After
+    public void cleanUp() throws IOException {
+        for (File file : artifactsDir.toFile().listFiles()) {
+            file.delete();
+        }
+        Files.delete(artifactsDir);
+    }
+
+    @Test
+    public void testMethodChecksumsRoundTrip() throws IOException {
+        Map<String, String> checksums = randomMethodChecksums(new Random(8), 5000, 16);
+        checksums.put("org/example/Unicode\u00e9#m()", "0123456789abcdef");
+        Path file = artifactsDir.resolve("methods");
+        assertTrue(ChecksumStore.write(checksums, file));
+        assertTrue(ChecksumStore.isChecksumStore(file));
+        ChecksumStore store = ChecksumStore.open(file);
+        assertEquals(checksums.size(), store.size());
+        assertEquals(checksums, store.toMap());
+    }
+
+    @Test
+    public void testClassChecksumsRoundTrip() throws IOException {
+        // Class checksums: a non-hexadecimal file checksum and a hexadecimal header checksum.
+        Map<String, List<String>> checksums = new HashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            checksums.put("org/example/Class" + i, new ArrayList<>(Arrays.asList(Integer.toString(i * 7919),
+                    String.format("%032x", i))));
+        }
+        Path file = artifactsDir.resolve("classes");
+        assertTrue(ChecksumStore.write(checksums, file));
+        assertEquals(checksums, ChecksumStore.open(file).toMap());
+    }
+
+    @Test
+    public void testOtherMapsAreNotStored() throws IOException {
+        Map<String, Set<String>> methodToTests = new HashMap<>();
+        methodToTests.put("a#m()", new HashSet<>(Arrays.asList("ATest")));
+        assertFalse(ChecksumStore.write(methodToTests, artifactsDir.resolve("other")));
+        assertFalse(Files.exists(artifactsDir.resolve("other")));
+    }
+
+    @Test
+    public void testSerializeMappingUsesStoreAndReadsOldFormat() throws IOException {
+        String dir = artifactsDir.toString() + File.separator;
+        Map<String, String> checksums = randomMethodChecksums(new Random(1), 100, 32);
+        ZLCHelperMethods.serializeMapping(checksums, dir, "new.ser");
+        assertTrue(ChecksumStore.isChecksumStore(artifactsDir.resolve("new.ser")));
+        assertEquals(checksums, ZLCHelperMethods.deserializeMapping(dir, "new.ser"));
+
+        // A file written by an earlier version, with Java serialization.
+        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(dir + "old.ser"))) {
+            out.writeObject(new HashMap<>(checksums));
+        }
+        assertFalse(ChecksumStore.isChecksumStore(artifactsDir.resolve("old.ser")));
+        assertEquals(checksums, ZLCHelperMethods.deserializeMapping(dir, "old.ser"));
+    }
+}
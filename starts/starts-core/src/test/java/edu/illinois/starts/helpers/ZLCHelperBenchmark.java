@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package edu.illinois.starts.helpers;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.logging.Level;
+
+import edu.illinois.starts.util.Logger;
+
+/**
+ * Compares building the dependency -> tests index of the .zlc file with {@link ZLCHelper#invertTestDeps} against
+ * scanning every test's dependencies once per dependency. The scan is timed on a sample of the dependencies and
+ * extrapolated.
+ */
+public class ZLCHelperBenchmark {
+
+    private static final Logger LOGGER = Logger.getGlobal();
+
+    private static final int SAMPLED_DEPS = 500;
+
+    public static void main(String[] args) {
+        int tests = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int deps = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+        int depsPerTest = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+        Map<String, Set<String>> testDeps = ZLCHelperTest.randomTestDeps(new Random(0), tests, deps, depsPerTest);
+        List<String> testList = new ArrayList<>(testDeps.keySet());
+        Set<String> allDeps = new HashSet<>();
+        testDeps.values().forEach(allDeps::addAll);
+
+        long inverted = Long.MAX_VALUE;
+        long edges = 0;
+        for (int iteration = 0; iteration < 5; iteration++) {
+            long start = System.nanoTime();
+            Map<String, List<Integer>> depToTests = ZLCHelper.invertTestDeps(testList, testDeps);
+            inverted = Math.min(inverted, System.nanoTime() - start);
+            edges = depToTests.values().stream().mapToLong(List::size).sum();
+        }
+
+        List<String> sample = new ArrayList<>(allDeps).subList(0, Math.min(SAMPLED_DEPS, allDeps.size()));
+        long start = System.nanoTime();
+        long found = 0;
+        for (String dep : sample) {
+            for (int i = 0; i < testList.size(); i++) {
+                if (testDeps.get(testList.get(i)).contains(dep)) {
+                    found++;
+                }
+            }
+        }
+        long scan = (System.nanoTime() - start) / sample.size() * allDeps.size();
+
+        LOGGER.log(Level.INFO, "Tests: " + tests + ", dependencies: " + allDeps.size() + ", edges: " + edges
+                + " (" + found + " in sample)");
+        LOGGER.log(Level.INFO, "Inverted index: " + inverted / 1000000 + " ms");
+        LOGGER.log(Level.INFO, "Scan per dependency (extrapolated): " + scan / 1000000 + " ms");
+    }
+}
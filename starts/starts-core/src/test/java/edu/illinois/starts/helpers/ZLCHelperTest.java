@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package edu.illinois.starts.helpers;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import edu.illinois.starts.data.ZLCData;
+import edu.illinois.starts.data.ZLCFileContent;
+import edu.illinois.starts.data.ZLCFormat;
+import edu.illinois.starts.util.ChecksumUtil;
+import edu.illinois.starts.util.Pair;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+
+public class ZLCHelperTest {
+
+    private Path classesDir;
+
+    /** Random test -> deps map over tests "pkg.T0".. and dependencies "pkg.C0".. . */
+    public static Map<String, Set<String>> randomTestDeps(Random random, int tests, int deps, int depsPerTest) {
+        Map<String, Set<String>> testDeps = new HashMap<>();
+        for (int test = 0; test < tests; test++) {
+            Set<String> testDepsSet = new HashSet<>();
+            for (int i = 0; i < depsPerTest; i++) {
+                testDepsSet.add("pkg.C" + random.nextInt(deps));
+            }
+            testDeps.put("pkg.T" + test, testDepsSet);
+        }
+        return testDeps;
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        classesDir = Files.createTempDirectory("classes");
+    }
+
+    @After
+    public void cleanUp() throws IOException {
+        try (Stream<Path> files = Files.walk(classesDir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    public void testInvertTestDeps() {
+        Map<String, Set<String>> testDeps = randomTestDeps(new Random(9), 200, 300, 20);
+        List<String> testList = new ArrayList<>(testDeps.keySet());
+        Map<String, List<Integer>> depToTests = ZLCHelper.invertTestDeps(testList, testDeps);
+        Set<String> deps = new HashSet<>();
+        testDeps.values().forEach(deps::addAll);
+        assertEquals(deps, depToTests.keySet());
+        for (String dep : deps) {
+            List<Integer> expected = new ArrayList<>();
+            for (int i = 0; i < testList.size(); i++) {
+                if (testDeps.get(testList.get(i)).contains(dep)) {
+                    expected.add(i);
+                }
+            }
+            assertEquals(expected, depToTests.get(dep));
+        }
+    }
+
+    @Test
+    public void testCreateZLCData() throws IOException {
+        Map<String, Set<String>> testDeps = randomTestDeps(new Random(3), 40, 30, 5);
+        // Dependencies that are skipped: a JDK class and a class that cannot be found.
+        testDeps.get("pkg.T0").addAll(Arrays.asList("java.lang.String", "pkg.Missing"));
+        for (int i = 0; i < 30; i++) {
+            writeClass("pkg/C" + i);
+        }
+        try (URLClassLoader loader = new URLClassLoader(new URL[] {classesDir.toUri().toURL()}, null)) {
+            for (ZLCFormat format : ZLCFormat.values()) {
+                ZLCFileContent content = ZLCHelper.createZLCData(testDeps, loader, false, format);
+                Map<String, Set<String>> urlToTests = new HashMap<>();
+                for (ZLCData data : content.getZlcData()) {
+                    String[] parts = data.toString().split(" ");
+                    Set<String> tests = new HashSet<>();
+                    for (String test : parts.length > 2 ? parts[2].split(",") : new String[0]) {
+                        tests.add(format == ZLCFormat.INDEXED
+                                ? content.getTests().get(Integer.parseInt(test)) : test);
+                    }
+                    urlToTests.put(parts[0], tests);
+                }
+                assertEquals(expectedUrlToTests(testDeps), urlToTests);
+            }
+        }
+    }
+
+    @Test
+    public void testGetChangedDataSkipsMalformedLines() throws IOException {
+        writeClass("pkg/C0");
+        writeClass("pkg/C1");
+        String url0 = classesDir.resolve("pkg/C0.class").toUri().toURL().toExternalForm();
+        String url1 = classesDir.resolve("pkg/C1.class").toUri().toURL().toExternalForm();
+        String checksum0 = new ChecksumUtil(true).computeSingleCheckSum(new URL(url0));
+        Files.write(classesDir.resolve(ZLCHelper.zlcFile), Arrays.asList(ZLCFormat.PLAIN_TEXT.toString(),
+                url0 + " " + checksum0 + " pkg.T0", "malformed", url1 + " 1 pkg.T1"));
+
+        Pair<Set<String>, Set<String>> data = ZLCHelper.getChangedData(classesDir.toString(), true, false, false,
+                false, false, 2);
+        assertEquals(new HashSet<>(Arrays.asList("pkg.T0")), data.getKey());
+        assertEquals(new HashSet<>(Arrays.asList(url1)), data.getValue());
+    }
+
+    private Map<String, Set<String>> expectedUrlToTests(Map<String, Set<String>> testDeps) throws IOException {
+        Map<String, Set<String>> urlToTests = new HashMap<>();
+        for (Map.Entry<String, Set<String>> entry : testDeps.entrySet()) {
+            for (String dep : entry.getValue()) {
+                File classFile = classesDir.resolve(dep.replace('.', '/') + ".class").toFile();
+                if (classFile.exists()) {
+                    urlToTests.computeIfAbsent(classFile.toURI().toURL().toExternalForm(), k -> new HashSet<>())
+                            .add(entry.getKey());
+                }
+            }
+        }
+        return urlToTests;
+    }
+
+    private void writeClass(String name) throws IOException {
+        ClassWriter writer = new ClassWriter(0);
+        writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, name, null, "java/lang/Object", null);
+        writer.visitEnd();
+        Path classFile = classesDir.resolve(name + ".class");
+        Files.createDirectories(classFile.getParent());
+        Files.write(classFile, writer.toByteArray());
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package edu.illinois.starts.smethods;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import edu.illinois.starts.util.Logger;
+
+/**
+ * Compares the heap retained by the String-keyed method graphs with the heap that
+ * {@link MethodLevelStaticDepsBuilder#buildMethodsGraph} retains once it built the graph.
+ * Both include the per-class maps of the scan. Run it on the class files of the integration test projects
+ * after they were built, e.g.,
+ * {@code java -cp ... edu.illinois.starts.smethods.CompactGraphFootprintBenchmark starts-plugin/target/it}.
+ */
+public class CompactGraphFootprintBenchmark {
+
+    private static final Logger LOGGER = Logger.getGlobal();
+
+    public static void main(String[] args) throws IOException {
+        Path root = Paths.get(args.length > 0 ? args[0] : "starts-plugin/target/it");
+        Set<String> bytecodePaths;
+        try (Stream<Path> files = Files.walk(root)) {
+            bytecodePaths = files.filter(f -> f.toString().endsWith(".class"))
+                    .map(f -> f.toAbsolutePath().toString())
+                    .collect(Collectors.toSet());
+        }
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        long baseline = usedHeap();
+        Map<String, Set<String>> callerToCalled = new HashMap<>();
+        Map<String, Set<String>> classToMethods = new HashMap<>();
+        Map<String, Set<String>> classToSuperclass = new HashMap<>();
+        Map<String, Set<String>> classToSubclasses = new HashMap<>();
+        new ParallelBytecodeScanner(threads).scan(bytecodePaths, classToMethods, classToSuperclass,
+                classToSubclasses, callerToCalled);
+        MethodLevelStaticDepsBuilder.addReflexiveClosure(callerToCalled);
+        Map<String, Set<String>> calledToCaller = MethodLevelStaticDepsBuilder.invertMap(callerToCalled);
+        long withMaps = usedHeap() - baseline;
+        int edges = callerToCalled.values().stream().mapToInt(Set::size).sum()
+                + calledToCaller.values().stream().mapToInt(Set::size).sum();
+        LOGGER.log(Level.INFO, "Classes: " + bytecodePaths.size() + ", methods: " + callerToCalled.size()
+                + ", edges: " + edges);
+        callerToCalled = null;
+        calledToCaller = null;
+        classToMethods = null;
+        classToSuperclass = null;
+        classToSubclasses = null;
+
+        baseline = usedHeap();
+        MethodLevelStaticDepsBuilder.buildMethodsGraph(bytecodePaths, false, threads, null);
+        long retained = usedHeap() - baseline;
+
+        LOGGER.log(Level.INFO, "HashMap<String, Set<String>> graphs: " + withMaps / 1024 + " KB");
+        LOGGER.log(Level.INFO, "Retained by buildMethodsGraph: " + retained / 1024 + " KB");
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package edu.illinois.starts.smethods;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class CompactGraphTest {
+
+    public static Map<String, Set<String>> randomGraph(Random random, int nodes, int edges) {
+        Map<String, Set<String>> graph = new HashMap<>();
+        for (int i = 0; i < edges; i++) {
+            String from = "pkg/C" + random.nextInt(nodes / 10 + 1) + "#m" + random.nextInt(nodes) + "()";
+            String to = "pkg/C" + random.nextInt(nodes / 10 + 1) + "#m" + random.nextInt(nodes) + "()";
+            graph.computeIfAbsent(from, k -> new HashSet<>()).add(to);
+        }
+        return graph;
+    }
+
+    @Test
+    public void testReachabilityMatchesMapTraversal() {
+        Random random = new Random(42);
+        for (int round = 0; round < 20; round++) {
+            Map<String, Set<String>> graph = randomGraph(random, 200, 400);
+            CompactGraph compactGraph = CompactGraph.fromMap(graph, new SymbolTable());
+            Set<String> sources = new HashSet<>();
+            for (String node : graph.keySet()) {
+                if (random.nextInt(10) == 0) {
+                    sources.add(node);
+                }
+            }
+            sources.add("pkg/Unknown#m()");
+            assertEquals(MethodLevelStaticDepsBuilder.computeReachability(sources, graph),
+                    MethodLevelStaticDepsBuilder.computeReachability(sources, compactGraph));
+        }
+    }
+
+    @Test
+    public void testToMapRoundTrip() {
+        Map<String, Set<String>> graph = randomGraph(new Random(7), 100, 300);
+        graph.put("pkg/Leaf#m()", new HashSet<>());
+        Map<String, Set<String>> expected = new HashMap<>(graph);
+        expected.remove("pkg/Leaf#m()");
+        assertEquals(expected, CompactGraph.fromMap(graph, new SymbolTable()).toMap());
+    }
+
+    @Test
+    public void testSharedSymbolTable() {
+        SymbolTable symbols = new SymbolTable();
+        Map<String, Set<String>> forward = new HashMap<>();
+        forward.put("a", new HashSet<>(Collections.singleton("b")));
+        CompactGraph forwardGraph = CompactGraph.fromMap(forward, symbols);
+        CompactGraph backwardGraph = CompactGraph.fromMap(MethodLevelStaticDepsBuilder.invertMap(forward), symbols);
+        assertEquals(2, symbols.size());
+        assertEquals(1, forwardGraph.outDegree(symbols.getId("a")));
+        assertEquals(symbols.getId("a"), backwardGraph.successor(symbols.getId("b"), 0));
+        assertEquals(0, forwardGraph.outDegree(symbols.intern("c")));
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package edu.illinois.starts.smethods;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Traversals over 100k-deep call chains and class hierarchies, which used to overflow the default thread stack.
+ */
+public class DeepChainTest {
+
+    private static final int DEPTH = 100000;
+
+    @After
+    public void cleanUp() {
+        ParallelBytecodeScannerTest.clearGraphs();
+        MethodLevelStaticDepsBuilder.compactCallerToCalled = null;
+    }
+
+    @Test
+    public void testGetDepsOnDeepCallChain() {
+        ParallelBytecodeScannerTest.clearGraphs();
+        MethodLevelStaticDepsBuilder.compactCallerToCalled = null;
+        for (int i = 0; i < DEPTH; i++) {
+            MethodLevelStaticDepsBuilder.callerToCalled.put(method(i), new HashSet<>(
+                    Collections.singleton(method(i + 1))));
+        }
+        // Close a cycle at the end of the chain.
+        MethodLevelStaticDepsBuilder.callerToCalled.put(method(DEPTH), new HashSet<>(
+                Collections.singleton(method(0))));
+        MethodLevelStaticDepsBuilder.classToMethodKeys.put("pkg/C0", new HashSet<>(
+                Collections.singleton(method(0))));
+
+        Set<String> visited = new HashSet<>();
+        MethodLevelStaticDepsBuilder.getDepsDFS(method(0), visited);
+        assertEquals(DEPTH + 1, visited.size());
+        assertEquals(DEPTH + 1, MethodLevelStaticDepsBuilder.getDeps("pkg/C0").size());
+
+        // A visited set reused across invocations is not explored again.
+        MethodLevelStaticDepsBuilder.getDepsDFS(method(DEPTH / 2), visited);
+        assertEquals(DEPTH + 1, visited.size());
+    }
+
+    @Test
+    public void testFindFirstParentOnDeepHierarchy() {
+        Map<String, Set<String>> parents = new HashMap<>();
+        Map<String, Set<String>> children = new HashMap<>();
+        Map<String, Set<String>> classToMethods = new HashMap<>();
+        for (int i = 0; i < DEPTH; i++) {
+            parents.put(clazz(i), new HashSet<>(Collections.singleton(clazz(i + 1))));
+            children.put(clazz(i + 1), new HashSet<>(Collections.singleton(clazz(i))));
+        }
+        classToMethods.put(clazz(DEPTH), new HashSet<>(Collections.singleton("m()")));
+        // A diamond near the bottom: both sides lead to the same deep chain.
+        parents.get(clazz(0)).add("pkg/Side");
+        parents.put("pkg/Side", new HashSet<>(Collections.singleton(clazz(1))));
+
+        MethodCallCollectorCV visitor = new MethodCallCollectorCV(new HashMap<>(), parents, children,
+                classToMethods);
+        assertEquals(clazz(DEPTH), visitor.findFirstParent(clazz(0), "m()"));
+        assertEquals("", visitor.findFirstParent(clazz(0), "other()"));
+        // Memoized results are returned for repeated lookups.
+        assertEquals(clazz(DEPTH), visitor.findFirstParent(clazz(0), "m()"));
+        assertEquals(clazz(DEPTH), visitor.findFirstParent(clazz(DEPTH / 2), "m()"));
+    }
+
+    private static String method(int index) {
+        return "pkg/C" + index + "#m()";
+    }
+
+    private static String clazz(int index) {
+        return "pkg/C" + index;
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package edu.illinois.starts.smethods;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import edu.illinois.starts.constants.StartsConstants;
+import edu.illinois.starts.helpers.ZLCHelperMethods;
+import edu.illinois.starts.util.ChecksumUtil;
+import edu.illinois.starts.util.Logger;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+/**
+ * Compares the time to compute method checksums with the Textifier and MD5 against {@link MethodHashVisitor}.
+ * The class files are read into memory first, so only parsing and hashing are timed. Run it on the class
+ * files of the integration test projects after they were built, e.g.,
+ * {@code java -cp ... edu.illinois.starts.smethods.MethodChecksumBenchmark starts-plugin/target/it}.
+ */
+public class MethodChecksumBenchmark implements StartsConstants {
+
+    private static final Logger LOGGER = Logger.getGlobal();
+
+    private static final int WARMUP = 20;
+    private static final int ITERATIONS = 20;
+
+    public static void main(String[] args) throws IOException {
+        Path root = Paths.get(args.length > 0 ? args[0] : "starts-plugin/target/it");
+        List<byte[]> classes = new ArrayList<>();
+        try (Stream<Path> files = Files.walk(root)) {
+            for (Path file : files.filter(f -> f.toString().endsWith(".class")).collect(Collectors.toList())) {
+                classes.add(Files.readAllBytes(file));
+            }
+        }
+
+        long textNanos = 0;
+        long streamNanos = 0;
+        int methods = 0;
+        for (int iteration = 0; iteration < WARMUP + ITERATIONS; iteration++) {
+            long start = System.nanoTime();
+            Map<String, String> textChecksums = new HashMap<>();
+            for (byte[] bytecode : classes) {
+                ClassNode node = new ClassNode(ASM_VERSION);
+                new ClassReader(bytecode).accept(node, ClassReader.SKIP_DEBUG);
+                for (MethodNode method : node.methods) {
+                    textChecksums.put(node.name + "#" + method.name + method.desc,
+                            ChecksumUtil.computeStringChecksum(ZLCHelperMethods.printMethodContent(method)));
+                }
+            }
+            long afterText = System.nanoTime();
+            Map<String, String> streamChecksums = new HashMap<>();
+            for (byte[] bytecode : classes) {
+                new ClassReader(bytecode).accept(new MethodChecksumCollectorCV(streamChecksums),
+                        ClassReader.SKIP_DEBUG);
+            }
+            long afterStream = System.nanoTime();
+            if (iteration >= WARMUP) {
+                textNanos += afterText - start;
+                streamNanos += afterStream - afterText;
+            }
+            methods = streamChecksums.size();
+        }
+
+        LOGGER.log(Level.INFO, "Classes: " + classes.size() + ", methods: " + methods);
+        LOGGER.log(Level.INFO, "Textifier + MD5: " + textNanos / ITERATIONS / 1000 + " us per run");
+        LOGGER.log(Level.INFO, "MethodHashVisitor (XXH64): " + streamNanos / ITERATIONS / 1000 + " us per run");
+    }
+}
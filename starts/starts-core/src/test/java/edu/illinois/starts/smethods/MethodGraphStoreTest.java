@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package edu.illinois.starts.smethods;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import edu.illinois.starts.constants.StartsConstants;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Applies a scripted series of edits to a small generated project, and checks after every edit that the
+ * incrementally updated graph is the same as a graph built from scratch.
+ */
+public class MethodGraphStoreTest implements StartsConstants {
+
+    private Path classesDir;
+    private Path storeFile;
+    private int scanThreads;
+
+    @Before
+    public void setUp() throws IOException {
+        classesDir = Files.createTempDirectory("classes");
+        storeFile = Files.createTempDirectory("starts").resolve(METHOD_GRAPH_STORE_FILE);
+        ParallelBytecodeScannerTest.clearGraphs();
+    }
+
+    @After
+    public void cleanUp() throws IOException {
+        ParallelBytecodeScannerTest.clearGraphs();
+        delete(classesDir);
+        delete(storeFile.getParent());
+    }
+
+    @Test
+    public void testIncrementalGraphMatchesGraphFromScratch() throws IOException {
+        checkEdits(0);
+    }
+
+    @Test
+    public void testIncrementalGraphWithScanThreadsMatchesGraphFromScratch() throws IOException {
+        checkEdits(2);
+    }
+
+    private void checkEdits(int scanThreads) throws IOException {
+        this.scanThreads = scanThreads;
+        // Initial version: B extends A, ATest calls B.m(), A.m() reads a field of C.
+        writeClass("pkg/A", "java/lang/Object", "m()", "pkg/C.f", "n()");
+        writeClass("pkg/B", "pkg/A", "m()", "pkg/A#n()");
+        writeClass("pkg/C", "java/lang/Object", "<clinit>()", "pkg/C.f");
+        writeClass("pkg/ATest", "java/lang/Object", "test()", "pkg/B#m()", "pkg/B#n()");
+        MethodGraphStore store = checkIncrementalGraph();
+        assertEquals(4, store.getParsedFiles());
+
+        // No change: nothing is parsed.
+        store = checkIncrementalGraph();
+        assertEquals(0, store.getParsedFiles());
+        assertTrue(store.isEdgesReused());
+
+        // Class files older than the store are not even read.
+        setModifiedTimes(System.currentTimeMillis() - 3600 * 1000);
+        checkIncrementalGraph();
+        store = checkIncrementalGraph();
+        assertEquals(0, store.getChecksummedFiles());
+
+        // Method body change: only B is parsed, and the edges of the other classes are reused.
+        writeClass("pkg/B", "pkg/A", "m()", "pkg/C#<clinit>()");
+        store = checkIncrementalGraph();
+        assertEquals(1, store.getParsedFiles());
+        assertTrue(store.isEdgesReused());
+
+        // Rewriting a class with the same content: checksummed, but not parsed.
+        writeClass("pkg/B", "pkg/A", "m()", "pkg/C#<clinit>()");
+        store = checkIncrementalGraph();
+        assertEquals(0, store.getParsedFiles());
+
+        // New method in a super class: calls to B.k() now resolve to A.k().
+        writeClass("pkg/ATest", "java/lang/Object", "test()", "pkg/B#m()", "pkg/B#k()");
+        writeClass("pkg/A", "java/lang/Object", "m()", "pkg/C.f", "n()", "k()");
+        store = checkIncrementalGraph();
+        assertEquals(2, store.getParsedFiles());
+        assertFalse(store.isEdgesReused());
+
+        // New subclass overriding m(): calls to B.m() now also reach D.m().
+        writeClass("pkg/D", "pkg/B", "m()");
+        checkIncrementalGraph();
+
+        // New test class extending a test class.
+        writeClass("pkg/BTest", "pkg/ATest", "other()", "pkg/D#m()");
+        checkIncrementalGraph();
+
+        // Deleted class.
+        Files.delete(classesDir.resolve("pkg/D.class"));
+        checkIncrementalGraph();
+
+        // Changed super class.
+        writeClass("pkg/B", "java/lang/Object", "m()", "pkg/C#<clinit>()");
+        store = checkIncrementalGraph();
+        assertFalse(store.isEdgesReused());
+
+        // Unreadable store: everything is parsed again.
+        Files.write(storeFile, new byte[] {1, 2, 3});
+        store = checkIncrementalGraph();
+        assertEquals(5, store.getParsedFiles());
+    }
+
+    /** Builds the graph incrementally and from scratch, checks they are the same, and returns the store. */
+    private MethodGraphStore checkIncrementalGraph() throws IOException {
+        Set<String> bytecodePaths;
+        try (Stream<Path> files = Files.walk(classesDir)) {
+            bytecodePaths = files.filter(f -> f.toString().endsWith(".class"))
+                    .map(f -> f.toAbsolutePath().toString())
+                    .collect(Collectors.toSet());
+        }
+        ParallelBytecodeScannerTest.clearGraphs();
+        MethodLevelStaticDepsBuilder.findMethodsInvoked(bytecodePaths);
+        Map<String, Map<String, Set<String>>> fromScratch = snapshot();
+
+        ParallelBytecodeScannerTest.clearGraphs();
+        MethodGraphStore store = new MethodGraphStore(storeFile, scanThreads);
+        MethodLevelStaticDepsBuilder.findMethodsInvokedIncrementally(bytecodePaths, store);
+        assertEquals(fromScratch, snapshot());
+        try (Stream<Path> files = Files.list(storeFile.getParent())) {
+            // The store is written to a temporary file that is moved over the store.
+            assertEquals(1, files.count());
+        }
+        return store;
+    }
+
+    private static Map<String, Map<String, Set<String>>> snapshot() {
+        Map<String, Map<String, Set<String>>> maps = new HashMap<>();
+        maps.put("callerToCalled", copy(MethodLevelStaticDepsBuilder.callerToCalled));
+        maps.put("classToMethods", copy(MethodLevelStaticDepsBuilder.classToMethods));
+        maps.put("classToSuperclass", copy(MethodLevelStaticDepsBuilder.classToSuperclass));
+        maps.put("classToSubclasses", copy(MethodLevelStaticDepsBuilder.classToSubclasses));
+        maps.put("classToMethodKeys", copy(MethodLevelStaticDepsBuilder.classToMethodKeys));
+        Map<String, Set<String>> methodLines = new HashMap<>();
+        for (Map.Entry<String, Map<String, int[]>> entry : MethodLevelStaticDepsBuilder.classToMethodLines.entrySet()) {
+            for (Map.Entry<String, int[]> lines : entry.getValue().entrySet()) {
+                methodLines.computeIfAbsent(entry.getKey(), k -> new HashSet<>())
+                        .add(lines.getKey() + ":" + lines.getValue()[0] + "-" + lines.getValue()[1]);
+            }
+        }
+        maps.put("classToMethodLines", methodLines);
+        return maps;
+    }
+
+    private static Map<String, Set<String>> copy(Map<String, Set<String>> map) {
+        Map<String, Set<String>> copy = new HashMap<>();
+        for (Map.Entry<String, Set<String>> entry : map.entrySet()) {
+            copy.put(entry.getKey(), new HashSet<>(entry.getValue()));
+        }
+        return copy;
+    }
+
+    /**
+     * Writes a class whose methods are given as "name()" followed by what the method calls, either
+     * "owner#name()" for a method or "owner.name" for a static field. Every member is on its own line.
+     */
+    private void writeClass(String name, String superName, String... members) throws IOException {
+        ClassWriter writer = new ClassWriter(0);
+        writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, name, null, superName, null);
+        writer.visitField(Opcodes.ACC_STATIC, "f", "I", null, null).visitEnd();
+        MethodVisitor method = null;
+        int line = 0;
+        for (String member : members) {
+            if (!member.contains("#") && !member.contains(".")) {
+                endMethod(method);
+                method = writer.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC,
+                        member.substring(0, member.indexOf('(')), "()V", null, null);
+                method.visitCode();
+            }
+            Label start = new Label();
+            method.visitLabel(start);
+            method.visitLineNumber(++line, start);
+            if (member.contains("#")) {
+                String owner = member.substring(0, member.indexOf('#'));
+                String methodName = member.substring(member.indexOf('#') + 1, member.indexOf('('));
+                method.visitMethodInsn(Opcodes.INVOKESTATIC, owner, methodName, "()V", false);
+            } else if (member.contains(".")) {
+                method.visitFieldInsn(Opcodes.PUTSTATIC, member.substring(0, member.indexOf('.')),
+                        member.substring(member.indexOf('.') + 1), "I");
+            }
+        }
+        endMethod(method);
+        writer.visitEnd();
+        Path classFile = classesDir.resolve(name + CLASS_EXTENSION);
+        Files.createDirectories(classFile.getParent());
+        Files.write(classFile, writer.toByteArray());
+    }
+
+    private static void endMethod(MethodVisitor method) {
+        if (method != null) {
+            method.visitInsn(Opcodes.RETURN);
+            method.visitMaxs(1, 0);
+            method.visitEnd();
+        }
+    }
+
+    private void setModifiedTimes(long millis) throws IOException {
+        try (Stream<Path> files = Files.walk(classesDir)) {
+            for (Path file : files.collect(Collectors.toList())) {
+                Files.setLastModifiedTime(file, FileTime.fromMillis(millis));
+            }
+        }
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+    }
+}
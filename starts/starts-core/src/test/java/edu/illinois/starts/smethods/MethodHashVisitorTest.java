@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package edu.illinois.starts.smethods;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import edu.illinois.starts.constants.StartsConstants;
+import edu.illinois.starts.helpers.ZLCHelperMethods;
+import edu.illinois.starts.util.ChecksumUtil;
+import org.junit.Before;
+import org.junit.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+/**
+ * Checks that {@link MethodHashVisitor} detects exactly the method changes that the Textifier-based
+ * checksum ({@link ZLCHelperMethods#printMethodContent} hashed with {@link ChecksumUtil#computeStringChecksum})
+ * detects, on the compiled STARTS classes and on edited copies of them.
+ */
+public class MethodHashVisitorTest implements StartsConstants {
+
+    /** The edits applied to every other method of every class in the corpus. */
+    enum Edit { LINE_NUMBERS, LOCAL_NAMES, NOP, MAXS, ACCESS, CONSTANTS }
+
+    private List<byte[]> corpus;
+
+    @Before
+    public void setUp() throws Exception {
+        Path classesDir = Paths.get(MethodLevelStaticDepsBuilder.class.getProtectionDomain()
+                .getCodeSource().getLocation().toURI());
+        corpus = new ArrayList<>();
+        try (Stream<Path> files = Files.walk(classesDir)) {
+            for (Path file : files.filter(f -> f.toString().endsWith(".class")).collect(Collectors.toList())) {
+                corpus.add(Files.readAllBytes(file));
+            }
+        }
+        assertFalse(corpus.isEmpty());
+    }
+
+    @Test
+    public void testChecksumsPartitionMethodsLikeTextChecksums() throws IOException {
+        Map<String, String> textChecksums = new HashMap<>();
+        Map<String, String> streamChecksums = new HashMap<>();
+        for (byte[] bytecode : corpus) {
+            textChecksums.putAll(textChecksums(bytecode));
+            streamChecksums.putAll(streamChecksums(bytecode));
+        }
+        assertEquals(textChecksums.keySet(), streamChecksums.keySet());
+        // Two methods have the same text checksum if and only if they have the same streaming checksum.
+        Map<String, Set<String>> textToStream = new HashMap<>();
+        Map<String, Set<String>> streamToText = new HashMap<>();
+        for (String method : textChecksums.keySet()) {
+            textToStream.computeIfAbsent(textChecksums.get(method), k -> new HashSet<>())
+                    .add(streamChecksums.get(method));
+            streamToText.computeIfAbsent(streamChecksums.get(method), k -> new HashSet<>())
+                    .add(textChecksums.get(method));
+        }
+        for (Set<String> checksums : textToStream.values()) {
+            assertEquals(1, checksums.size());
+        }
+        for (Set<String> checksums : streamToText.values()) {
+            assertEquals(1, checksums.size());
+        }
+    }
+
+    @Test
+    public void testEditsAreDetectedLikeTextChecksums() throws IOException {
+        for (Edit edit : Edit.values()) {
+            int changed = 0;
+            for (byte[] bytecode : corpus) {
+                byte[] edited = edit(bytecode, edit);
+                Map<String, String> oldText = textChecksums(bytecode);
+                Map<String, String> newText = textChecksums(edited);
+                Map<String, String> oldStream = streamChecksums(bytecode);
+                Map<String, String> newStream = streamChecksums(edited);
+                for (String method : oldText.keySet()) {
+                    boolean textChanged = !oldText.get(method).equals(newText.get(method));
+                    boolean streamChanged = !oldStream.get(method).equals(newStream.get(method));
+                    assertEquals(edit + " " + method, textChanged, streamChanged);
+                    changed += textChanged ? 1 : 0;
+                }
+            }
+            if (edit == Edit.LINE_NUMBERS || edit == Edit.LOCAL_NAMES) {
+                assertEquals(edit.toString(), 0, changed);
+            } else {
+                assertTrue(edit.toString(), changed > 0);
+            }
+        }
+    }
+
+    private static Map<String, String> textChecksums(byte[] bytecode) throws IOException {
+        ClassNode node = new ClassNode(ASM_VERSION);
+        new ClassReader(bytecode).accept(node, ClassReader.SKIP_DEBUG);
+        Map<String, String> checksums = new HashMap<>();
+        for (MethodNode method : node.methods) {
+            checksums.put(node.name + "#" + method.name + method.desc.substring(0, method.desc.indexOf(")") + 1),
+                    ChecksumUtil.computeStringChecksum(ZLCHelperMethods.printMethodContent(method)));
+        }
+        return checksums;
+    }
+
+    private static Map<String, String> streamChecksums(byte[] bytecode) {
+        Map<String, String> checksums = new HashMap<>();
+        new ClassReader(bytecode).accept(new MethodChecksumCollectorCV(checksums), ClassReader.SKIP_DEBUG);
+        return checksums;
+    }
+
+    private static byte[] edit(byte[] bytecode, Edit edit) {
+        ClassWriter writer = new ClassWriter(0);
+        new ClassReader(bytecode).accept(new ClassVisitor(ASM_VERSION, writer) {
+            private int methodCount;
+
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String desc, String signature,
+                                             String[] exceptions) {
+                boolean edited = methodCount++ % 2 == 0;
+                int newAccess = edited && edit == Edit.ACCESS ? access ^ Opcodes.ACC_SYNTHETIC : access;
+                MethodVisitor methodVisitor = super.visitMethod(newAccess, name, desc, signature, exceptions);
+                return edited ? new EditingMethodVisitor(methodVisitor, edit) : methodVisitor;
+            }
+        }, 0);
+        return writer.toByteArray();
+    }
+
+    private static class EditingMethodVisitor extends MethodVisitor {
+        private final Edit edit;
+
+        EditingMethodVisitor(MethodVisitor methodVisitor, Edit edit) {
+            super(ASM_VERSION, methodVisitor);
+            this.edit = edit;
+        }
+
+        @Override
+        public void visitCode() {
+            super.visitCode();
+            if (edit == Edit.NOP) {
+                super.visitInsn(Opcodes.NOP);
+            }
+        }
+
+        @Override
+        public void visitLineNumber(int line, Label start) {
+            super.visitLineNumber(edit == Edit.LINE_NUMBERS ? line + 10 : line, start);
+        }
+
+        @Override
+        public void visitLocalVariable(String name, String desc, String signature, Label start, Label end,
+                                       int index) {
+            super.visitLocalVariable(edit == Edit.LOCAL_NAMES ? name + "Renamed" : name, desc, signature, start,
+                    end, index);
+        }
+
+        @Override
+        public void visitLdcInsn(Object value) {
+            super.visitLdcInsn(edit == Edit.CONSTANTS && value instanceof String ? value + "!" : value);
+        }
+
+        @Override
+        public void visitIntInsn(int opcode, int operand) {
+            super.visitIntInsn(opcode, edit == Edit.CONSTANTS && opcode == Opcodes.BIPUSH ? operand ^ 1 : operand);
+        }
+
+        @Override
+        public void visitMaxs(int maxStack, int maxLocals) {
+            super.visitMaxs(edit == Edit.MAXS ? maxStack + 1 : maxStack, maxLocals);
+        }
+    }
+}
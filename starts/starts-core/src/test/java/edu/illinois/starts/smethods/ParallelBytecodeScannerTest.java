@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package edu.illinois.starts.smethods;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ParallelBytecodeScannerTest {
+
+    private Set<String> bytecodePaths;
+
+    public static void clearGraphs() {
+        MethodLevelStaticDepsBuilder.classToMethods.clear();
+        MethodLevelStaticDepsBuilder.classToSuperclass.clear();
+        MethodLevelStaticDepsBuilder.classToSubclasses.clear();
+        MethodLevelStaticDepsBuilder.callerToCalled.clear();
+        MethodLevelStaticDepsBuilder.classToMethodKeys.clear();
+        MethodLevelStaticDepsBuilder.classToMethodLines.clear();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        // Scan the compiled STARTS classes themselves, they give a reasonably large and varied corpus.
+        Path classesDir = Paths.get(MethodLevelStaticDepsBuilder.class.getProtectionDomain()
+                .getCodeSource().getLocation().toURI());
+        try (Stream<Path> files = Files.walk(classesDir)) {
+            bytecodePaths = files.filter(f -> f.toString().endsWith(".class"))
+                    .map(f -> f.toAbsolutePath().toString())
+                    .collect(Collectors.toSet());
+        }
+        clearGraphs();
+    }
+
+    @After
+    public void cleanUp() {
+        clearGraphs();
+    }
+
+    @Test
+    public void testParallelScanMatchesSequentialScan() {
+        MethodLevelStaticDepsBuilder.findMethodsInvoked(bytecodePaths);
+        Map<String, Set<String>> sequentialCallerToCalled = copy(MethodLevelStaticDepsBuilder.callerToCalled);
+        Map<String, Set<String>> sequentialClassToMethods = copy(MethodLevelStaticDepsBuilder.classToMethods);
+        Map<String, Set<String>> sequentialClassToSuperclass = copy(MethodLevelStaticDepsBuilder.classToSuperclass);
+        Map<String, Set<String>> sequentialClassToSubclasses = copy(MethodLevelStaticDepsBuilder.classToSubclasses);
+        assertFalse(sequentialCallerToCalled.isEmpty());
+
+        for (int threads : new int[] {1, 4}) {
+            clearGraphs();
+            MethodLevelStaticDepsBuilder.findMethodsInvoked(bytecodePaths, threads);
+            assertEquals(sequentialCallerToCalled, MethodLevelStaticDepsBuilder.callerToCalled);
+            assertEquals(sequentialClassToMethods, MethodLevelStaticDepsBuilder.classToMethods);
+            assertEquals(sequentialClassToSuperclass, MethodLevelStaticDepsBuilder.classToSuperclass);
+            assertEquals(sequentialClassToSubclasses, MethodLevelStaticDepsBuilder.classToSubclasses);
+        }
+    }
+
+    private static Map<String, Set<String>> copy(Map<String, Set<String>> map) {
+        Map<String, Set<String>> copy = new HashMap<>();
+        for (Map.Entry<String, Set<String>> entry : map.entrySet()) {
+            copy.put(entry.getKey(), new HashSet<>(entry.getValue()));
+        }
+        return copy;
+    }
+}
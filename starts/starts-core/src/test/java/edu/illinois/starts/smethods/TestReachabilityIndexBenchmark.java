@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package edu.illinois.starts.smethods;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.logging.Level;
+
+import edu.illinois.starts.util.Logger;
+
+/**
+ * Compares computing the test classes of every method with one traversal per test class against
+ * building a {@link TestReachabilityIndex}, on random graphs with 10^5 to 10^6 edges, or with the number of
+ * edges given as argument. Also times expanding the index into the test-class-to-methods and
+ * method-to-test-classes maps, which lookups in the index avoid.
+ */
+public class TestReachabilityIndexBenchmark {
+
+    private static final Logger LOGGER = Logger.getGlobal();
+
+    public static void main(String[] args) {
+        int[] edgeCounts = args.length > 0 ? new int[] {Integer.parseInt(args[0])}
+                : new int[] {100000, 300000, 1000000};
+        for (int edges : edgeCounts) {
+            Random random = new Random(edges);
+            int classes = edges / 50;
+            Map<String, Set<String>> graph = TestReachabilityIndexTest.randomGraph(random, classes, 10, edges);
+            Map<String, Set<String>> classToNodes = TestReachabilityIndexTest.indexByClass(graph);
+            Set<String> testClasses = new HashSet<>();
+            for (String clazz : classToNodes.keySet()) {
+                if (clazz.endsWith("Test")) {
+                    testClasses.add(clazz);
+                }
+            }
+            SymbolTable symbols = new SymbolTable(graph.size());
+            CompactGraph compactGraph = CompactGraph.fromMap(graph, symbols);
+
+            long start = System.nanoTime();
+            long reached = 0;
+            for (String testClass : testClasses) {
+                reached += compactGraph.reachable(classToNodes.get(testClass)).size();
+            }
+            long perTest = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            TestReachabilityIndex index = TestReachabilityIndex.build(compactGraph, testClasses, classToNodes);
+            long indexBuild = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            long lookups = 0;
+            for (String method : graph.keySet()) {
+                lookups += index.getTestBits(method).cardinality();
+            }
+            long indexLookups = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            Map<String, Set<String>> testClassToMethods = index.toTestClassToMethods();
+            Map<String, Set<String>> methodToTestClasses = MethodLevelStaticDepsBuilder.invertMap(testClassToMethods);
+            long expansion = System.nanoTime() - start;
+            long entries = testClassToMethods.values().stream().mapToLong(Set::size).sum()
+                    + methodToTestClasses.values().stream().mapToLong(Set::size).sum();
+
+            LOGGER.log(Level.INFO, "edges=" + edges + " nodes=" + symbols.size() + " tests=" + testClasses.size()
+                    + " reached=" + reached + "/" + lookups
+                    + " perTestTraversalMs=" + perTest / 1000000
+                    + " indexBuildMs=" + indexBuild / 1000000
+                    + " indexLookupsMs=" + indexLookups / 1000000
+                    + " expandedMapsMs=" + expansion / 1000000 + " expandedEntries=" + entries);
+        }
+    }
+}
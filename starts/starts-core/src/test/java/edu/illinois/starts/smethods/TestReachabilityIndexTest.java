@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package edu.illinois.starts.smethods;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class TestReachabilityIndexTest {
+
+    /**
+     * Random graph over a few classes; classes whose name ends with "Test" are test classes.
+     * Cycles, self loops and shared subgraphs are all likely with these sizes.
+     */
+    public static Map<String, Set<String>> randomGraph(Random random, int classes, int methods, int edges) {
+        Map<String, Set<String>> graph = new HashMap<>();
+        for (int i = 0; i < edges; i++) {
+            graph.computeIfAbsent(randomMethod(random, classes, methods), k -> new HashSet<>())
+                    .add(randomMethod(random, classes, methods));
+        }
+        return graph;
+    }
+
+    private static String randomMethod(Random random, int classes, int methods) {
+        int clazz = random.nextInt(classes);
+        return "pkg/C" + clazz + (clazz % 3 == 0 ? "Test" : "") + "#m" + random.nextInt(methods) + "()";
+    }
+
+    public static Map<String, Set<String>> indexByClass(Map<String, Set<String>> graph) {
+        Map<String, Set<String>> classToNodes = new HashMap<>();
+        for (String method : graph.keySet()) {
+            classToNodes.computeIfAbsent(method.substring(0, method.indexOf('#')), k -> new HashSet<>()).add(method);
+        }
+        return classToNodes;
+    }
+
+    @After
+    public void cleanUp() {
+        MethodLevelStaticDepsBuilder.callerToCalled.clear();
+        MethodLevelStaticDepsBuilder.classToMethodKeys.clear();
+        MethodLevelStaticDepsBuilder.testClassesToClasses.clear();
+        MethodLevelStaticDepsBuilder.compactCallerToCalled = null;
+        MethodLevelStaticDepsBuilder.compactCalledToCaller = null;
+        MethodLevelStaticDepsBuilder.testReachability = null;
+    }
+
+    @Test
+    public void testIndexMatchesDepthFirstSearch() {
+        Random random = new Random(2023);
+        for (int round = 0; round < 50; round++) {
+            int classes = 2 + random.nextInt(20);
+            Map<String, Set<String>> graph = randomGraph(random, classes, 1 + random.nextInt(10),
+                    random.nextInt(300));
+            Map<String, Set<String>> classToNodes = indexByClass(graph);
+            Set<String> testClasses = new HashSet<>();
+            for (String clazz : classToNodes.keySet()) {
+                if (clazz.endsWith("Test")) {
+                    testClasses.add(clazz);
+                }
+            }
+            testClasses.add("pkg/NoMethodsTest");
+
+            MethodLevelStaticDepsBuilder.callerToCalled.clear();
+            MethodLevelStaticDepsBuilder.callerToCalled.putAll(graph);
+            Map<String, Set<String>> expected = new HashMap<>();
+            for (String testClass : testClasses) {
+                Set<String> visited = new HashSet<>();
+                for (String method : classToNodes.getOrDefault(testClass, new HashSet<>())) {
+                    visited.add(method);
+                    MethodLevelStaticDepsBuilder.getDepsDFS(method, visited);
+                }
+                expected.put(testClass, visited);
+            }
+
+            TestReachabilityIndex index = TestReachabilityIndex.build(
+                    CompactGraph.fromMap(graph, new SymbolTable()), testClasses, classToNodes);
+            assertEquals(expected, index.toTestClassToMethods());
+            Map<String, Set<String>> methodToTests = MethodLevelStaticDepsBuilder.invertMap(expected);
+            for (Map.Entry<String, Set<String>> entry : methodToTests.entrySet()) {
+                assertEquals(entry.getValue(), index.getTestClasses(entry.getKey()));
+            }
+            assertEquals(new HashSet<String>(), index.getTestClasses("pkg/Unknown#m()"));
+        }
+    }
+
+    @Test
+    public void testLookupsMatchDepthFirstSearch() {
+        Random random = new Random(7);
+        for (boolean includeVars : new boolean[] {false, true}) {
+            Map<String, Set<String>> graph = randomGraph(random, 12, 6, 150);
+            // Variables, which the graph keeps only with includeVars
+            for (int i = 0; i < 20; i++) {
+                String variable = "pkg/C" + random.nextInt(12) + "#f" + random.nextInt(3);
+                graph.computeIfAbsent(randomMethod(random, 12, 6), k -> new HashSet<>()).add(variable);
+                graph.computeIfAbsent(variable, k -> new HashSet<>()).add(randomMethod(random, 12, 6));
+            }
+            Map<String, Set<String>> classToNodes = indexByClass(graph);
+            MethodLevelStaticDepsBuilder.callerToCalled.clear();
+            MethodLevelStaticDepsBuilder.callerToCalled.putAll(graph);
+            Map<String, Set<String>> expected = new HashMap<>();
+            for (Map.Entry<String, Set<String>> entry : classToNodes.entrySet()) {
+                if (entry.getKey().endsWith("Test")) {
+                    Set<String> visited = new HashSet<>(entry.getValue());
+                    for (String method : entry.getValue()) {
+                        MethodLevelStaticDepsBuilder.getDepsDFS(method, visited);
+                    }
+                    if (!includeVars) {
+                        visited.removeIf(method -> !method.endsWith(")"));
+                    }
+                    expected.put(entry.getKey(), visited);
+                }
+            }
+            Map<String, Set<String>> methodToTests = MethodLevelStaticDepsBuilder.invertMap(expected);
+            Map<String, Set<String>> testToClasses = new HashMap<>();
+            for (Map.Entry<String, Set<String>> entry : expected.entrySet()) {
+                testToClasses.put(entry.getKey(), entry.getValue().stream().map(method -> method.split("#")[0])
+                        .collect(Collectors.toSet()));
+            }
+
+            MethodLevelStaticDepsBuilder.buildMethodsGraph(new HashSet<>(), includeVars, 0, null);
+            assertTrue(MethodLevelStaticDepsBuilder.testClassToMethods.isEmpty());
+            assertEquals(expected.keySet(), MethodLevelStaticDepsBuilder.computeTestClasses());
+            Set<String> union = new HashSet<>();
+            for (String method : graph.keySet()) {
+                Set<String> tests = methodToTests.getOrDefault(method, new HashSet<>());
+                assertEquals(method, tests, MethodLevelStaticDepsBuilder.getTestClassesOf(method));
+                union.addAll(tests);
+            }
+            assertEquals(union, MethodLevelStaticDepsBuilder.getTestClassesOf(graph.keySet()));
+            MethodLevelStaticDepsBuilder.testClassesToClasses.clear();
+            assertEquals(testToClasses, MethodLevelStaticDepsBuilder.constuctTestClassesToClassesGraph());
+            assertEquals(methodToTests, MethodLevelStaticDepsBuilder.computeMethodToTestClasses());
+        }
+    }
+
+    @Test
+    public void testComponentsAreReverseTopological() {
+        Map<String, Set<String>> graph = new HashMap<>();
+        // a -> b <-> c -> d
+        graph.put("a", new HashSet<>(Collections.singleton("b")));
+        graph.put("b", new HashSet<>(Collections.singleton("c")));
+        graph.put("c", new HashSet<>(Arrays.asList("b", "d")));
+        SymbolTable symbols = new SymbolTable();
+        CompactGraph compactGraph = CompactGraph.fromMap(graph, symbols);
+        int[] componentOf = new int[compactGraph.nodeCount()];
+        assertEquals(3, TestReachabilityIndex.findComponents(compactGraph, componentOf));
+        assertEquals(componentOf[symbols.getId("b")], componentOf[symbols.getId("c")]);
+        assertTrue(componentOf[symbols.getId("a")] > componentOf[symbols.getId("b")]);
+        assertTrue(componentOf[symbols.getId("b")] > componentOf[symbols.getId("d")]);
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package edu.illinois.starts.smethods;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.logging.Level;
+
+import edu.illinois.starts.util.Logger;
+
+/**
+ * Reports the time to compute the dependencies of every test class (getDepsSingleThread) against the
+ * number of test classes, on synthetic graphs, with and without the per-class method index.
+ */
+public class TestSelectionBenchmark {
+
+    private static final Logger LOGGER = Logger.getGlobal();
+    private static final int METHODS_PER_CLASS = 10;
+    private static final int CALLS_PER_METHOD = 3;
+
+    public static void main(String[] args) {
+        int[] testClassCounts = args.length > 0 ? parse(args) : new int[] {100, 1000, 5000, 10000};
+        for (int testClassCount : testClassCounts) {
+            buildSyntheticGraph(testClassCount, new Random(testClassCount));
+            Set<String> testClasses = new HashSet<>();
+            for (int i = 0; i < testClassCount; i++) {
+                testClasses.add("bench/C" + i + "Test");
+            }
+
+            long start = System.nanoTime();
+            for (String testClass : testClasses) {
+                getDepsWithPrefixScan(testClass);
+            }
+            long prefixScan = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            MethodLevelStaticDepsBuilder.getDepsSingleThread(testClasses);
+            long indexed = System.nanoTime() - start;
+
+            LOGGER.log(Level.INFO, "testClasses=" + testClassCount
+                    + " methods=" + MethodLevelStaticDepsBuilder.callerToCalled.size()
+                    + " prefixScanMs=" + prefixScan / 1000000 + " indexedMs=" + indexed / 1000000);
+        }
+    }
+
+    /**
+     * Same number of production and test classes. Test methods call a few random production methods,
+     * which are leaves, so that the time is dominated by finding the methods of each test class.
+     */
+    private static void buildSyntheticGraph(int testClassCount, Random random) {
+        Map<String, Set<String>> callerToCalled = MethodLevelStaticDepsBuilder.callerToCalled;
+        callerToCalled.clear();
+        for (int i = 0; i < testClassCount * 2; i++) {
+            boolean isTest = i < testClassCount;
+            String className = isTest ? "bench/C" + i + "Test" : "bench/C" + i;
+            for (int m = 0; m < METHODS_PER_CLASS; m++) {
+                Set<String> called = new TreeSet<>();
+                for (int c = 0; isTest && c < CALLS_PER_METHOD; c++) {
+                    called.add("bench/C" + (testClassCount + random.nextInt(testClassCount)) + "#m"
+                            + random.nextInt(METHODS_PER_CLASS) + "()");
+                }
+                callerToCalled.put(className + "#m" + m + "()", called);
+            }
+        }
+        // Rebuilds classToMethodKeys from callerToCalled.
+        MethodLevelStaticDepsBuilder.findMethodsInvoked(new HashSet<>());
+    }
+
+    private static Set<String> getDepsWithPrefixScan(String testClass) {
+        Set<String> visited = new HashSet<>();
+        for (String method : MethodLevelStaticDepsBuilder.callerToCalled.keySet()) {
+            if (method.startsWith(testClass + "#")) {
+                visited.add(method);
+                MethodLevelStaticDepsBuilder.getDepsDFS(method, visited);
+            }
+        }
+        return visited;
+    }
+
+    private static int[] parse(String[] args) {
+        int[] counts = new int[args.length];
+        for (int i = 0; i < args.length; i++) {
+            counts[i] = Integer.parseInt(args[i]);
+        }
+        return counts;
+    }
+}
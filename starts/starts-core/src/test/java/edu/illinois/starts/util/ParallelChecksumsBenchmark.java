@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package edu.illinois.starts.util;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Compares {@link ChecksumUtil#computeSingleCheckSum} one URL at a time with {@link ParallelChecksums}, without
+ * and with the stat cache, on the class files of a directory (args[0]).
+ *
+ * <p>The first pass reads the files from disk if the page cache was dropped before the benchmark started,
+ * e.g., with {@code sync; echo 3 > /proc/sys/vm/drop_caches} on Linux; all later passes run on a warm cache.
+ */
+public class ParallelChecksumsBenchmark {
+
+    private static final Logger LOGGER = Logger.getGlobal();
+
+    private static final int ITERATIONS = 5;
+
+    public static void main(String[] args) throws IOException {
+        Path classesDir = Paths.get(args[0]);
+        List<String> urls;
+        try (Stream<Path> files = Files.walk(classesDir)) {
+            urls = files.filter(f -> f.toString().endsWith(".class"))
+                    .map(f -> f.toUri().toString())
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        int threads = Runtime.getRuntime().availableProcessors();
+        Path cacheFile = Files.createTempFile("checksum-stat", ".cache");
+        Files.delete(cacheFile);
+
+        long start = System.nanoTime();
+        new ParallelChecksums(true, threads, null).compute(urls);
+        long cold = System.nanoTime() - start;
+
+        long sequential = Long.MAX_VALUE;
+        long parallel = Long.MAX_VALUE;
+        long cached = Long.MAX_VALUE;
+        for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+            start = System.nanoTime();
+            ChecksumUtil checksumUtil = new ChecksumUtil(true);
+            for (String url : urls) {
+                checksumUtil.computeSingleCheckSum(new URL(url));
+            }
+            sequential = Math.min(sequential, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            new ParallelChecksums(true, threads, null).compute(urls);
+            parallel = Math.min(parallel, System.nanoTime() - start);
+
+            new ParallelChecksums(true, threads, cacheFile).compute(urls);
+            start = System.nanoTime();
+            new ParallelChecksums(true, threads, cacheFile).compute(urls);
+            cached = Math.min(cached, System.nanoTime() - start);
+        }
+        Files.delete(cacheFile);
+
+        LOGGER.log(Level.INFO, "Class files: " + urls.size() + ", threads: " + threads);
+        LOGGER.log(Level.INFO, "First pass, parallel: " + cold / 1000000 + " ms");
+        LOGGER.log(Level.INFO, "Warm, sequential ChecksumUtil: " + sequential / 1000000 + " ms");
+        LOGGER.log(Level.INFO, "Warm, parallel: " + parallel / 1000000 + " ms");
+        LOGGER.log(Level.INFO, "Warm, parallel with stat cache: " + cached / 1000000 + " ms");
+    }
+}
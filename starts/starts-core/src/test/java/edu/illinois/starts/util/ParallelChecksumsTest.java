@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package edu.illinois.starts.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+public class ParallelChecksumsTest {
+
+    private Path dir;
+    private Path cacheFile;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("checksums");
+        cacheFile = dir.resolve(".starts").resolve("checksum-stat.cache");
+    }
+
+    @After
+    public void cleanUp() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    public void testSameChecksumsAsChecksumUtil() throws IOException {
+        List<String> urls = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            urls.add(writeClass("pkg/C" + i, i));
+        }
+        Path text = dir.resolve("notAClass.txt");
+        Files.write(text, "text".getBytes("UTF-8"));
+        urls.add(text.toUri().toURL().toExternalForm());
+        urls.add(dir.resolve("pkg/Missing.class").toUri().toURL().toExternalForm());
+        Path jar = dir.resolve("lib.jar");
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+            out.putNextEntry(new JarEntry("pkg/C0.class"));
+            out.write(Files.readAllBytes(dir.resolve("pkg/C0.class")));
+        }
+        urls.add("jar:" + jar.toUri().toURL().toExternalForm() + "!/pkg/C0.class");
+
+        for (boolean cleanBytes : new boolean[] {true, false}) {
+            ChecksumUtil checksumUtil = new ChecksumUtil(cleanBytes);
+            String[] expected = new String[urls.size()];
+            for (int i = 0; i < urls.size(); i++) {
+                expected[i] = checksumUtil.computeSingleCheckSum(new URL(urls.get(i)));
+            }
+            assertEquals("-1", expected[urls.size() - 2]);
+            assertArrayEquals(expected, new ParallelChecksums(cleanBytes, 4, null).compute(urls));
+            assertArrayEquals(expected, new ParallelChecksums(cleanBytes, 1, null).compute(urls));
+        }
+    }
+
+    @Test
+    public void testStatCache() throws IOException {
+        List<String> urls = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            urls.add(writeClass("pkg/C" + i, i));
+        }
+        setModifiedTimes(System.currentTimeMillis() - 3600 * 1000);
+        ParallelChecksums checksums = new ParallelChecksums(true, 2, cacheFile);
+        String[] first = checksums.compute(urls);
+        assertEquals(10, checksums.getReadFiles());
+
+        // The cache is written through a temporary file that is moved over it.
+        try (Stream<Path> files = Files.list(cacheFile.getParent())) {
+            assertEquals(Arrays.asList(cacheFile), files.collect(Collectors.toList()));
+        }
+
+        // Unchanged files are not read again.
+        assertArrayEquals(first, checksums.compute(urls));
+        assertEquals(0, checksums.getReadFiles());
+
+        // A changed file of the same size is read again because of its modification time.
+        urls.set(3, writeClass("pkg/C3", 1000003));
+        String[] second = checksums.compute(urls);
+        assertEquals(1, checksums.getReadFiles());
+        assertEquals(new ChecksumUtil(true).computeSingleCheckSum(new URL(urls.get(3))), second[3]);
+
+        // A recently modified file is read again even if its stat did not change, since the cache may be
+        // older than the file system's timestamp granularity.
+        checksums.compute(urls);
+        assertEquals(1, checksums.getReadFiles());
+
+        // A cache written for the other hashing mode is not used.
+        new ParallelChecksums(false, 2, cacheFile).compute(urls);
+        checksums.compute(urls);
+        assertEquals(10, checksums.getReadFiles());
+    }
+
+    /** Writes a class with a method returning the given constant, and returns its URL. */
+    private String writeClass(String name, int constant) throws IOException {
+        ClassWriter writer = new ClassWriter(0);
+        writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, name, null, "java/lang/Object", null);
+        MethodVisitor method = writer.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "m", "()I", null, null);
+        method.visitCode();
+        method.visitLdcInsn(constant);
+        method.visitInsn(Opcodes.IRETURN);
+        method.visitMaxs(1, 0);
+        method.visitEnd();
+        writer.visitEnd();
+        Path classFile = dir.resolve(name + ".class");
+        Files.createDirectories(classFile.getParent());
+        try (OutputStream out = Files.newOutputStream(classFile)) {
+            out.write(writer.toByteArray());
+        }
+        return classFile.toUri().toURL().toExternalForm();
+    }
+
+    private void setModifiedTimes(long millis) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.collect(Collectors.toList())) {
+                Files.setLastModifiedTime(file, FileTime.fromMillis(millis));
+            }
+        }
+    }
+}
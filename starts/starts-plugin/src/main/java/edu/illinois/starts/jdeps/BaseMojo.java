@@ -273,11 +273,20 @@ abstract class BaseMojo extends SurefirePlugin implements StartsConstants {
     }
 
     protected List<String> getAllClasses() {
-        DirectoryScanner testScanner = new DirectoryScanner(getTestClassesDirectory(), new TestListResolver(STAR));
-        DirectoryScanner classScanner = new DirectoryScanner(getClassesDirectory(), new TestListResolver(STAR));
         DirectoryScanner libScanner = new DirectoryScanner(
                 new File(artifactsDir + File.separator + "lib-jars"), new TestListResolver(STAR));
-        DefaultScanResult scanResult = classScanner.scan().append(testScanner.scan()).append(libScanner.scan());
+        DefaultScanResult scanResult = scanProjectClasses().append(libScanner.scan());
         return scanResult.getFiles();
     }
+
+    /** Returns the classes of the classes and test-classes directories, without the classes of lib-jars. */
+    protected List<String> getProjectClasses() {
+        return scanProjectClasses().getFiles();
+    }
+
+    private DefaultScanResult scanProjectClasses() {
+        DirectoryScanner testScanner = new DirectoryScanner(getTestClassesDirectory(), new TestListResolver(STAR));
+        DirectoryScanner classScanner = new DirectoryScanner(getClassesDirectory(), new TestListResolver(STAR));
+        return classScanner.scan().append(testScanner.scan());
+    }
 }
@@ -55,6 +55,14 @@ public class DiffMojo extends BaseMojo implements StartsConstants {
 
     @Parameter(property = "mMultithread", defaultValue = TRUE)
     protected boolean mMultithreadOn;
+
+    /**
+     * Number of threads used to compute the checksums of the classes in deps.zlc. With "0", one thread
+     * is used per available processor.
+     */
+    @Parameter(property = "checksumThreads", defaultValue = "0")
+    protected int checksumThreads;
+
     /**
      * Format of the ZLC dependency file deps.zlc
      * Set to "INDEXED" to store indices of tests
@@ -95,7 +103,8 @@ public class DiffMojo extends BaseMojo implements StartsConstants {
         Pair<Set<String>, Set<String>> data = null;
         if (depFormat == DependencyFormat.ZLC) {
             ZLCHelper zlcHelper = new ZLCHelper();
-            data = zlcHelper.getChangedData(getArtifactsDir(), cleanBytes, fineRTSOn, mRTSOn, saveMRTSOn, mMultithreadOn);
+            data = zlcHelper.getChangedData(getArtifactsDir(), cleanBytes, fineRTSOn, mRTSOn, saveMRTSOn, mMultithreadOn,
+                    checksumThreads);
         } else if (depFormat == DependencyFormat.CLZ) {
             data = EkstaziHelper.getNonAffectedTests(getArtifactsDir());
         }
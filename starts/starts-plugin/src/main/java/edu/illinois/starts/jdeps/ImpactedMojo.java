@@ -26,6 +26,7 @@ import edu.illinois.starts.helpers.RTSUtil;
 import edu.illinois.starts.helpers.Writer;
 import edu.illinois.starts.helpers.ZLCHelper;
 import edu.illinois.starts.helpers.ZLCHelperMethods;
+import edu.illinois.starts.smethods.CompactGraph;
 import edu.illinois.starts.smethods.MethodLevelStaticDepsBuilder;
 import edu.illinois.starts.util.ChecksumUtil;
 import edu.illinois.starts.util.Logger;
@@ -107,6 +108,22 @@ public class ImpactedMojo extends DiffMojo implements StartsConstants {
     @Parameter(property = "granularity", defaultValue = "CLASS")
     private Granularity granularity;
 
+    /**
+     * Number of threads used to scan class files when building the method-level static dependencies.
+     * With a positive value, every class file is read once and parsed in parallel; with "0", class files
+     * are parsed twice on a single thread. With incrementalGraph, the class files that changed are parsed
+     * with these threads, or on a single thread with "0".
+     */
+    @Parameter(property = "scanThreads", defaultValue = "0")
+    private int scanThreads;
+
+    /**
+     * Set this to "true" to keep per-class summaries of the method-level static dependencies under the artifacts
+     * directory, so that the next run only parses the class files that changed.
+     */
+    @Parameter(property = "incrementalGraph", defaultValue = FALSE)
+    private boolean incrementalGraph;
+
     private Logger logger;
 
     // Class-level data
@@ -126,12 +143,10 @@ public class ImpactedMojo extends DiffMojo implements StartsConstants {
     private Set<String> affectedTestClasses;
     private Set<String> nonAffectedMethods; // This may not be needed at all
     private Map<String, String> methodsCheckSum;
-    private Map<String, Set<String>> methodToTestClasses;
     private ClassLoader loader;
 
     // Hybrid-level
     private Map<String, List<String>> classesChecksum;
-    private Map<String, Set<String>> backwardClassDependencyGraph;
     private Map<String, Set<String>> classToTestClassGraph;
     private Set<String> deletedClasses;
     private Set<String> changedClassesWithChangedHeaders;
@@ -215,6 +230,14 @@ public class ImpactedMojo extends DiffMojo implements StartsConstants {
         this.includeVariables = includeVariables;
     }
 
+    public void setScanThreads(int scanThreads) {
+        this.scanThreads = scanThreads;
+    }
+
+    public void setIncrementalGraph(boolean incrementalGraph) {
+        this.incrementalGraph = incrementalGraph;
+    }
+
     public void setComputeAffectedTests(boolean computeAffectedTests) {
         this.computeAffectedTests = computeAffectedTests;
     }
@@ -372,7 +395,8 @@ public class ImpactedMojo extends DiffMojo implements StartsConstants {
             logger.log(Level.INFO, "ChangedClasses: " + changed.size());
             logger.log(Level.INFO, "ImpactedClasses: " + impacted.size());
             if (granularity == Granularity.FINE) {
-                MethodLevelStaticDepsBuilder.buildMethodsGraph(includeVariables, useThirdParty);
+                MethodLevelStaticDepsBuilder.buildMethodsGraph(includeVariables, useThirdParty, scanThreads,
+                        incrementalGraph ? getArtifactsDir() : null);
                 newMethods = MethodLevelStaticDepsBuilder.computeMethods();
                 changedMethods = ZLCHelper.getChangedMethods();
                 computeImpactedMethods();
@@ -380,18 +404,16 @@ public class ImpactedMojo extends DiffMojo implements StartsConstants {
         } else if (granularity == Granularity.METHOD) {
             loader = createClassLoader(getSureFireClassPath());
             // Build method level static dependencies
-            MethodLevelStaticDepsBuilder.buildMethodsGraph(includeVariables, useThirdParty);
-            methodToTestClasses = MethodLevelStaticDepsBuilder.computeMethodToTestClasses();
+            MethodLevelStaticDepsBuilder.buildMethodsGraph(includeVariables, useThirdParty, scanThreads,
+                    incrementalGraph ? getArtifactsDir() : null);
             methodsCheckSum = MethodLevelStaticDepsBuilder.computeMethodsChecksum(loader);
             runMethods(computeImpactedMethods);
         } else if (granularity == Granularity.HYBRID) {
             loader = createClassLoader(getSureFireClassPath());
             // Build method level static dependencies
-            MethodLevelStaticDepsBuilder.buildMethodsGraph(includeVariables, useThirdParty);
+            MethodLevelStaticDepsBuilder.buildMethodsGraph(includeVariables, useThirdParty, scanThreads,
+                    incrementalGraph ? getArtifactsDir() : null);
             classesChecksum = MethodLevelStaticDepsBuilder.computeClassesChecksums(loader, cleanBytes);
-            if (computeAffectedTests) {
-                methodToTestClasses = MethodLevelStaticDepsBuilder.computeMethodToTestClasses();
-            }
             runHybrid(computeImpactedMethods);
         }
     }
@@ -499,11 +521,10 @@ public class ImpactedMojo extends DiffMojo implements StartsConstants {
                 impactedClasses = newClasses;
             }
         } else {
-            backwardClassDependencyGraph = MethodLevelStaticDepsBuilder.constructClassesDependencyGraph();
+            MethodLevelStaticDepsBuilder.constructClassesDependencyGraph();
             MethodLevelStaticDepsBuilder.constuctTestClassesToClassesGraph();
             if (computeAffectedTests) {
                 classToTestClassGraph = MethodLevelStaticDepsBuilder.constructClassesToTestClassesGraph();
-                methodToTestClasses = MethodLevelStaticDepsBuilder.computeMethodToTestClasses();
                 affectedTestClasses = new HashSet<>();
             }
 
@@ -599,7 +620,9 @@ public class ImpactedMojo extends DiffMojo implements StartsConstants {
             } else if (this.granularity == Granularity.HYBRID) {
                 logger.log(Level.INFO, "ImpactedMethods: " + impactedMethods);
                 logger.log(Level.INFO, "ImpactedClasses: " + impactedClasses);
-                logger.log(Level.INFO, "BackwardClassDependencyGraph: " + backwardClassDependencyGraph);
+                CompactGraph backwardClassGraph = MethodLevelStaticDepsBuilder.compactBackwardClassesDependencyGraph;
+                logger.log(Level.INFO, "BackwardClassDependencyGraph: "
+                        + (backwardClassGraph == null ? null : backwardClassGraph.toMap()));
                 logger.log(Level.INFO, "ChangedClassesWithChangedHeaders: " + changedClassesWithChangedHeaders);
                 logger.log(Level.INFO, "ChangedClassesWithoutChangedHeaders: " + changedClassesWithoutChangedHeaders);
                 if (computeAffectedTests) {
@@ -637,13 +660,8 @@ public class ImpactedMojo extends DiffMojo implements StartsConstants {
         newMethods = methodsData == null ? new HashSet<String>() : methodsData.get(1);
 
         if (computeAffectedTests) {
-            for (String newMethod : newMethods) {
-                affectedTestClasses.addAll(methodToTestClasses.getOrDefault(newMethod, new HashSet<>()));
-            }
-
-            for (String changedMethod : changedMethods) {
-                affectedTestClasses.addAll(methodToTestClasses.getOrDefault(changedMethod, new HashSet<>()));
-            }
+            affectedTestClasses.addAll(MethodLevelStaticDepsBuilder.getTestClassesOf(newMethods));
+            affectedTestClasses.addAll(MethodLevelStaticDepsBuilder.getTestClassesOf(changedMethods));
 
             for (String addedClass : newClasses) {
                 affectedTestClasses.addAll(classToTestClassGraph.getOrDefault(addedClass, new HashSet<>()));
@@ -664,15 +682,13 @@ public class ImpactedMojo extends DiffMojo implements StartsConstants {
     protected void computeChangedMethods() throws MojoExecutionException {
 
         List<Set<String>> dataList = ZLCHelperMethods.getChangedDataMethods(methodsCheckSum,
-                methodToTestClasses, getArtifactsDir(), METHODS_CHECKSUMS_SERIALIZED_FILE);
+                MethodLevelStaticDepsBuilder::getTestClassesOf, getArtifactsDir(), METHODS_CHECKSUMS_SERIALIZED_FILE);
 
         changedMethods = dataList == null ? new HashSet<>() : dataList.get(0);
         newMethods = dataList == null ? new HashSet<>() : dataList.get(1);
 
         affectedTestClasses = dataList == null ? new HashSet<>() : dataList.get(2);
-        for (String newMethod : newMethods) {
-            affectedTestClasses.addAll(methodToTestClasses.getOrDefault(newMethod, new HashSet<>()));
-        }
+        affectedTestClasses.addAll(MethodLevelStaticDepsBuilder.getTestClassesOf(newMethods));
 
         oldClasses = dataList == null ? new HashSet<>() : dataList.get(3);
         changedClasses = dataList == null ? new HashSet<>() : dataList.get(4);
@@ -688,9 +704,7 @@ public class ImpactedMojo extends DiffMojo implements StartsConstants {
      * associated with each impacted method to the set of impacted test classes.
      */
     private void computeAffectedTestClasses() {
-        for (String impactedMethod : impactedMethods) {
-            affectedTestClasses.addAll(methodToTestClasses.getOrDefault(impactedMethod, new HashSet<>()));
-        }
+        affectedTestClasses.addAll(MethodLevelStaticDepsBuilder.getTestClassesOf(impactedMethods));
     }
 
     /**
@@ -707,9 +721,7 @@ public class ImpactedMojo extends DiffMojo implements StartsConstants {
         impactedMethods.addAll(findImpactedComponents(newMethods, closureOption, Granularity.METHOD));
         if (granularity == Granularity.HYBRID) {
             if (computeAffectedTests) {
-                for (String impactedMethod : impactedMethods) {
-                    affectedTestClasses.addAll(methodToTestClasses.getOrDefault(impactedMethod, new HashSet<String>()));
-                }
+                affectedTestClasses.addAll(MethodLevelStaticDepsBuilder.getTestClassesOf(impactedMethods));
             }
         }
     }
@@ -746,14 +758,15 @@ public class ImpactedMojo extends DiffMojo implements StartsConstants {
     private Set<String> findImpactedComponents(Set<String> sources,
                                                TransitiveClosureOptions closureOption,
                                                Granularity granularity) {
-        Map<String, Set<String>> forwardGraph = null;
-        Map<String, Set<String>> backwardGraph = null;
+        // Traverse the compact (int-interned) copies of the graphs built by MethodLevelStaticDepsBuilder.
+        CompactGraph forwardGraph = null;
+        CompactGraph backwardGraph = null;
         if (granularity == Granularity.METHOD) {
-            forwardGraph = MethodLevelStaticDepsBuilder.callerToCalled;
-            backwardGraph = MethodLevelStaticDepsBuilder.calledToCaller;
+            forwardGraph = MethodLevelStaticDepsBuilder.compactCallerToCalled;
+            backwardGraph = MethodLevelStaticDepsBuilder.compactCalledToCaller;
         } else if (granularity == Granularity.CLASS) {
-            forwardGraph = MethodLevelStaticDepsBuilder.forwardClassesDependencyGraph;
-            backwardGraph = MethodLevelStaticDepsBuilder.backwardClassesDependencyGraph;
+            forwardGraph = MethodLevelStaticDepsBuilder.compactForwardClassesDependencyGraph;
+            backwardGraph = MethodLevelStaticDepsBuilder.compactBackwardClassesDependencyGraph;
         }
         Set<String> toReturn;
         switch (closureOption) {